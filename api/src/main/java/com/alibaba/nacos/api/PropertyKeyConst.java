@@ -60,6 +60,8 @@ public class PropertyKeyConst {
 
     public final static String NAMING_POLLING_THREAD_COUNT = "namingPollingThreadCount";
 
+    public final static String NAMING_PUSH_TCP_PORT_OFFSET = "namingPushTcpPortOffset";
+
     /**
      * Get the key value of some variable value from the system property
      */
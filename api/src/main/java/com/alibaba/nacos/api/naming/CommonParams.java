@@ -31,4 +31,18 @@ public class CommonParams {
 
     public static final String GROUP_NAME = "groupName";
 
+    public static final String CODE = "code";
+
+    public static final String LIGHT_BEAT_ENABLED = "lightBeatEnabled";
+
+    public static final String METADATA_CHECKSUM = "checksum";
+
+    public static final String BATCH_BEAT_ENABLED = "batchBeatEnabled";
+
+    public static final String BEATS = "beats";
+
+    public static final String NOT_FOUND = "notFound";
+
+    public static final String FAILED = "failed";
+
 }
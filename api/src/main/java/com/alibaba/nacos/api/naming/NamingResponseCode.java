@@ -0,0 +1,32 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.nacos.api.naming;
+
+/**
+ * Response codes of naming APIs that clients need to react to
+ *
+ * @author nkorange
+ * @since 1.1.3
+ */
+public class NamingResponseCode {
+
+    public static final int OK = 10200;
+
+    /**
+     * The server does not know the instance (or knows a different version of it), the full data should be sent.
+     */
+    public static final int RESOURCE_NOT_FOUND = 20404;
+}
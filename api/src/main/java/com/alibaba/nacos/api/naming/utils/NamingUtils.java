@@ -17,6 +17,12 @@ package com.alibaba.nacos.api.naming.utils;
 
 import com.alibaba.nacos.api.common.Constants;
 
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+
 /**
  * @author nkorange
  * @since 1.0.0
@@ -40,4 +46,30 @@ public class NamingUtils {
         }
         return serviceNameWithGroup.split(Constants.SERVICE_INFO_SPLITER)[0];
     }
+
+    /**
+     * Checksum of instance metadata, independent of the iteration order of the map.
+     *
+     * @param metadata metadata of an instance, may be null
+     * @return hex encoded MD5 of the sorted metadata entries
+     */
+    public static String getMetadataChecksum(Map<String, String> metadata) {
+        StringBuilder sb = new StringBuilder();
+        if (metadata != null) {
+            for (Map.Entry<String, String> entry : new TreeMap<String, String>(metadata).entrySet()) {
+                sb.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+            }
+        }
+
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(sb.toString().getBytes(Charset.forName("UTF-8")));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >>> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not supported", e);
+        }
+    }
 }
@@ -95,7 +95,8 @@ public class NacosNamingService implements NamingService {
         serverProxy = new NamingProxy(namespace, endpoint, serverList);
         serverProxy.setProperties(properties);
         beatReactor = new BeatReactor(serverProxy, initClientBeatThreadCount(properties));
-        hostReactor = new HostReactor(eventDispatcher, serverProxy, cacheDir, isLoadCacheAtStart(properties), initPollingThreadCount(properties));
+        hostReactor = new HostReactor(eventDispatcher, serverProxy, cacheDir, isLoadCacheAtStart(properties),
+            initPollingThreadCount(properties), initPushTcpPortOffset(properties));
     }
 
     private int initClientBeatThreadCount(Properties properties) {
@@ -117,6 +118,14 @@ public class NacosNamingService implements NamingService {
             UtilAndComs.DEFAULT_POLLING_THREAD_COUNT);
     }
 
+    private int initPushTcpPortOffset(Properties properties) {
+        if (properties == null) {
+            return 0;
+        }
+
+        return NumberUtils.toInt(properties.getProperty(PropertyKeyConst.NAMING_PUSH_TCP_PORT_OFFSET), 0);
+    }
+
     private boolean isLoadCacheAtStart(Properties properties) {
         boolean loadCacheAtStart = false;
         if (properties != null && StringUtils.isNotEmpty(properties.getProperty(PropertyKeyConst.NAMING_LOAD_CACHE_AT_START))) {
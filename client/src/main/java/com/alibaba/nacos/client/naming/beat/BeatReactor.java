@@ -15,13 +15,22 @@
  */
 package com.alibaba.nacos.client.naming.beat;
 
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
 import com.alibaba.nacos.api.common.Constants;
+import com.alibaba.nacos.api.naming.CommonParams;
+import com.alibaba.nacos.api.naming.NamingResponseCode;
 import com.alibaba.nacos.client.monitor.MetricsMonitor;
 import com.alibaba.nacos.client.naming.net.NamingProxy;
 import com.alibaba.nacos.client.naming.utils.UtilAndComs;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.alibaba.nacos.client.utils.LogUtils.NAMING_LOGGER;
 
@@ -30,12 +39,31 @@ import static com.alibaba.nacos.client.utils.LogUtils.NAMING_LOGGER;
  */
 public class BeatReactor {
 
+    private static final int MAX_BEATS_PER_REQUEST = 50;
+
     private ScheduledExecutorService executorService;
 
     private NamingProxy serverProxy;
 
     public final Map<String, BeatInfo> dom2Beat = new ConcurrentHashMap<String, BeatInfo>();
 
+    /**
+     * Whether the server accepts light beats, learned from the responses of full beats.
+     */
+    private volatile boolean lightBeatEnabled = false;
+
+    /**
+     * Whether the server accepts beats of several instances in one request, learned from the responses of beats.
+     */
+    private volatile boolean batchBeatEnabled = false;
+
+    /**
+     * Beats sent by the batch beat task instead of their own beat tasks.
+     */
+    private final Set<BeatInfo> batchBeats = Collections.newSetFromMap(new ConcurrentHashMap<BeatInfo, Boolean>());
+
+    private final AtomicBoolean batchBeatScheduled = new AtomicBoolean(false);
+
     public BeatReactor(NamingProxy serverProxy) {
         this(serverProxy, UtilAndComs.DEFAULT_CLIENT_BEAT_THREAD_COUNT);
     }
@@ -76,6 +104,26 @@ public class BeatReactor {
             + ip + Constants.NAMING_INSTANCE_ID_SPLITTER + port;
     }
 
+    private void handOverToBatch(BeatInfo beatInfo) {
+        batchBeats.add(beatInfo);
+        if (batchBeatScheduled.compareAndSet(false, true)) {
+            executorService.schedule(new BatchBeatTask(), beatInfo.getPeriod(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Give the beats back to their own beat tasks, used when the server does not accept batch beats.
+     */
+    private void fallbackFromBatch() {
+        batchBeatEnabled = false;
+        batchBeatScheduled.set(false);
+        for (BeatInfo beatInfo : batchBeats) {
+            if (batchBeats.remove(beatInfo)) {
+                executorService.schedule(new BeatTask(beatInfo), 0, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
     class BeatTask implements Runnable {
 
         BeatInfo beatInfo;
@@ -89,9 +137,110 @@ public class BeatReactor {
             if (beatInfo.isStopped()) {
                 return;
             }
-            long result = serverProxy.sendBeat(beatInfo);
-            long nextTime = result > 0 ? result : beatInfo.getPeriod();
+            if (batchBeatEnabled) {
+                handOverToBatch(beatInfo);
+                return;
+            }
+            long nextTime = beatInfo.getPeriod();
+            JSONObject result = serverProxy.sendBeat(beatInfo, lightBeatEnabled);
+            if (result != null) {
+                long interval = result.getLongValue("clientBeatInterval");
+                if (interval > 0) {
+                    nextTime = interval;
+                }
+                lightBeatEnabled = result.getBooleanValue(CommonParams.LIGHT_BEAT_ENABLED);
+                batchBeatEnabled = result.getBooleanValue(CommonParams.BATCH_BEAT_ENABLED);
+                if (result.getIntValue(CommonParams.CODE) == NamingResponseCode.RESOURCE_NOT_FOUND) {
+                    // server does not know the instance as we do, send it in full:
+                    serverProxy.sendBeat(beatInfo, false);
+                }
+            }
             executorService.schedule(new BeatTask(beatInfo), nextTime, TimeUnit.MILLISECONDS);
         }
     }
+
+    /**
+     * Sends beats of all instances handed over by their beat tasks, at most {@link #MAX_BEATS_PER_REQUEST} beats
+     * in each request.
+     */
+    class BatchBeatTask implements Runnable {
+
+        @Override
+        public void run() {
+            List<BeatInfo> beats = new ArrayList<BeatInfo>(batchBeats.size());
+            long nextTime = Long.MAX_VALUE;
+            for (BeatInfo beatInfo : batchBeats) {
+                if (beatInfo.isStopped()) {
+                    batchBeats.remove(beatInfo);
+                    continue;
+                }
+                beats.add(beatInfo);
+                nextTime = Math.min(nextTime, beatInfo.getPeriod());
+            }
+
+            if (beats.isEmpty()) {
+                batchBeatScheduled.set(false);
+                if (!batchBeats.isEmpty() && batchBeatScheduled.compareAndSet(false, true)) {
+                    executorService.schedule(this, 0, TimeUnit.MILLISECONDS);
+                }
+                return;
+            }
+
+            long interval = Long.MAX_VALUE;
+            for (int i = 0; i < beats.size(); i += MAX_BEATS_PER_REQUEST) {
+                List<BeatInfo> batch = beats.subList(i, Math.min(beats.size(), i + MAX_BEATS_PER_REQUEST));
+                JSONObject result = serverProxy.sendBatchBeat(batch, lightBeatEnabled);
+                if (result == null || !result.getBooleanValue(CommonParams.BATCH_BEAT_ENABLED)) {
+                    fallbackFromBatch();
+                    return;
+                }
+                lightBeatEnabled = result.getBooleanValue(CommonParams.LIGHT_BEAT_ENABLED);
+                long clientBeatInterval = result.getLongValue("clientBeatInterval");
+                if (clientBeatInterval > 0) {
+                    interval = Math.min(interval, clientBeatInterval);
+                }
+                resendNotFound(result.getJSONArray(CommonParams.NOT_FOUND));
+                resendFailed(result.getJSONArray(CommonParams.FAILED));
+            }
+
+            if (interval != Long.MAX_VALUE) {
+                nextTime = interval;
+            }
+            executorService.schedule(this, nextTime, TimeUnit.MILLISECONDS);
+        }
+
+        private void resendNotFound(JSONArray notFound) {
+            List<BeatInfo> beats = toBeatInfos(notFound);
+            if (!beats.isEmpty()) {
+                // server does not know these instances as we do, send them in full:
+                serverProxy.sendBatchBeat(beats, false);
+            }
+        }
+
+        /**
+         * Beats the server failed to forward to their owners are sent one by one, each may reach its owner through
+         * another server.
+         */
+        private void resendFailed(JSONArray failed) {
+            for (BeatInfo beatInfo : toBeatInfos(failed)) {
+                serverProxy.sendBeat(beatInfo, false);
+            }
+        }
+
+        private List<BeatInfo> toBeatInfos(JSONArray items) {
+            if (items == null || items.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<BeatInfo> beats = new ArrayList<BeatInfo>(items.size());
+            for (int i = 0; i < items.size(); i++) {
+                JSONObject beat = items.getJSONObject(i);
+                BeatInfo beatInfo = dom2Beat.get(buildKey(beat.getString(CommonParams.SERVICE_NAME),
+                    beat.getString("ip"), beat.getIntValue("port")));
+                if (beatInfo != null && !beatInfo.isStopped()) {
+                    beats.add(beatInfo);
+                }
+            }
+            return beats;
+        }
+    }
 }
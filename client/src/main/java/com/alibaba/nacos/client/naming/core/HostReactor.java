@@ -16,6 +16,7 @@
 package com.alibaba.nacos.client.naming.core;
 
 import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
 import com.alibaba.nacos.api.exception.NacosException;
 import com.alibaba.nacos.api.naming.pojo.Instance;
 import com.alibaba.nacos.api.naming.pojo.ServiceInfo;
@@ -46,8 +47,15 @@ public class HostReactor {
 
     private Map<String, Object> updatingMap;
 
+    /**
+     * Version of the pushed data each service is built on, the base delta pushes are applied to.
+     */
+    private Map<String, Long> pushVersionMap = new ConcurrentHashMap<String, Long>();
+
     private PushReceiver pushReceiver;
 
+    private PushChannel pushChannel;
+
     private EventDispatcher eventDispatcher;
 
     private NamingProxy serverProxy;
@@ -64,6 +72,15 @@ public class HostReactor {
 
     public HostReactor(EventDispatcher eventDispatcher, NamingProxy serverProxy, String cacheDir,
                        boolean loadCacheAtStart, int pollingThreadCount) {
+        this(eventDispatcher, serverProxy, cacheDir, loadCacheAtStart, pollingThreadCount, 0);
+    }
+
+    /**
+     * @param pushTcpPortOffset offset of the server push channel port to the server port, 0 to receive pushes
+     *                          through UDP only
+     */
+    public HostReactor(EventDispatcher eventDispatcher, NamingProxy serverProxy, String cacheDir,
+                       boolean loadCacheAtStart, int pollingThreadCount, int pushTcpPortOffset) {
 
         executor = new ScheduledThreadPoolExecutor(pollingThreadCount, new ThreadFactory() {
             @Override
@@ -87,6 +104,9 @@ public class HostReactor {
         this.updatingMap = new ConcurrentHashMap<String, Object>();
         this.failoverReactor = new FailoverReactor(this, cacheDir);
         this.pushReceiver = new PushReceiver(this);
+        if (pushTcpPortOffset > 0) {
+            this.pushChannel = new PushChannel(serverProxy, pushReceiver, pushTcpPortOffset);
+        }
     }
 
     public Map<String, ServiceInfo> getServiceInfoMap() {
@@ -105,6 +125,9 @@ public class HostReactor {
             return oldService;
         }
 
+        // the version deltas are based on is unknown until a push tells it again:
+        pushVersionMap.remove(serviceInfo.getKey());
+
         boolean changed = false;
 
         if (oldService != null) {
@@ -204,6 +227,77 @@ public class HostReactor {
         return serviceInfo;
     }
 
+    public ServiceInfo processServiceJSON(String json, long pushVersion) {
+        ServiceInfo serviceInfo = processServiceJSON(json);
+        if (serviceInfo != null && pushVersion != 0) {
+            pushVersionMap.put(serviceInfo.getKey(), pushVersion);
+        }
+        return serviceInfo;
+    }
+
+    /**
+     * Apply the instances added, modified and removed since the base version to the local service.
+     *
+     * @param json        delta pushed by server
+     * @param baseVersion version the delta is based on
+     * @param pushVersion version of the service after the delta
+     * @return false if the local service is not on the base version, a full update is requested instead
+     */
+    public boolean processServiceDelta(String json, long baseVersion, long pushVersion) {
+        JSONObject delta = JSON.parseObject(json);
+        final ServiceInfo serviceInfo = JSON.parseObject(json, ServiceInfo.class);
+        String key = serviceInfo.getKey();
+        ServiceInfo oldService = serviceInfoMap.get(key);
+        Long version = pushVersionMap.get(key);
+
+        if (oldService == null || version == null || version != baseVersion) {
+            NAMING_LOGGER.warn("delta push version mismatch, service: " + key + ", local version: " + version
+                + ", base version: " + baseVersion);
+            pushVersionMap.remove(key);
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    updateServiceNow(serviceInfo.getName(), serviceInfo.getClusters());
+                }
+            });
+            return false;
+        }
+
+        List<Instance> newHosts = JSON.parseArray(delta.getString("added"), Instance.class);
+        List<Instance> modHosts = JSON.parseArray(delta.getString("modified"), Instance.class);
+        List<String> remvHosts = JSON.parseArray(delta.getString("removed"), String.class);
+
+        Map<String, Instance> hostMap = new LinkedHashMap<String, Instance>(oldService.getHosts().size());
+        for (Instance host : oldService.getHosts()) {
+            hostMap.put(host.toInetAddr(), host);
+        }
+        for (String addr : remvHosts) {
+            hostMap.remove(addr);
+        }
+        for (Instance host : newHosts) {
+            hostMap.put(host.toInetAddr(), host);
+        }
+        for (Instance host : modHosts) {
+            hostMap.put(host.toInetAddr(), host);
+        }
+
+        serviceInfo.setHosts(new ArrayList<Instance>(hostMap.values()));
+        serviceInfo.setJsonFromServer(JSON.toJSONString(serviceInfo));
+        serviceInfoMap.put(key, serviceInfo);
+        pushVersionMap.put(key, pushVersion);
+
+        if (newHosts.size() > 0 || remvHosts.size() > 0 || modHosts.size() > 0) {
+            NAMING_LOGGER.info("delta ips, new: " + newHosts.size() + ", modified: " + modHosts.size()
+                + ", removed: " + remvHosts.size() + ", service: " + key + " -> new: " + JSON.toJSONString(newHosts)
+                + ", modified: " + JSON.toJSONString(modHosts) + ", removed: " + remvHosts);
+            eventDispatcher.serviceChanged(serviceInfo);
+            DiskCache.write(serviceInfo, cacheDir);
+        }
+
+        MetricsMonitor.getServiceInfoMapSizeMonitor().set(serviceInfoMap.size());
+        return true;
+    }
+
     private ServiceInfo getServiceInfo0(String serviceName, String clusters) {
 
         String key = ServiceInfo.getKey(serviceName, clusters);
@@ -262,6 +356,10 @@ public class HostReactor {
             return;
         }
 
+        if (pushChannel != null) {
+            pushChannel.subscribe(serviceName, clusters);
+        }
+
         synchronized (futureMap) {
             if (futureMap.get(ServiceInfo.getKey(serviceName, clusters)) != null) {
                 return;
@@ -276,7 +374,7 @@ public class HostReactor {
         ServiceInfo oldService = getServiceInfo0(serviceName, clusters);
         try {
 
-            String result = serverProxy.queryList(serviceName, clusters, pushReceiver.getUDPPort(), false);
+            String result = serverProxy.queryList(serviceName, clusters, getPushPort(serviceName, clusters), false);
 
             if (StringUtils.isNotEmpty(result)) {
                 processServiceJSON(result);
@@ -294,12 +392,23 @@ public class HostReactor {
 
     public void refreshOnly(String serviceName, String clusters) {
         try {
-            serverProxy.queryList(serviceName, clusters, pushReceiver.getUDPPort(), false);
+            serverProxy.queryList(serviceName, clusters, getPushPort(serviceName, clusters), false);
         } catch (Exception e) {
             NAMING_LOGGER.error("[NA] failed to update serviceName: " + serviceName, e);
         }
     }
 
+    /**
+     * UDP port to be pushed to, 0 once the push channel subscription of the service is accepted so the service is
+     * not pushed twice.
+     */
+    private int getPushPort(String serviceName, String clusters) {
+        if (pushChannel != null && pushChannel.isSubscribed(serviceName, clusters)) {
+            return 0;
+        }
+        return pushReceiver.getUDPPort();
+    }
+
     public class UpdateTask implements Runnable {
         long lastRefTime = Long.MAX_VALUE;
         private String clusters;
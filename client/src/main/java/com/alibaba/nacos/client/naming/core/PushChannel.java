@@ -0,0 +1,258 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.nacos.client.naming.core;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.nacos.api.naming.pojo.ServiceInfo;
+import com.alibaba.nacos.client.naming.net.NamingProxy;
+import com.alibaba.nacos.client.naming.utils.IoUtils;
+import com.alibaba.nacos.client.naming.utils.RandomUtils;
+import com.alibaba.nacos.client.naming.utils.UtilAndComs;
+import com.alibaba.nacos.client.utils.AppNameUtils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static com.alibaba.nacos.client.utils.LogUtils.NAMING_LOGGER;
+
+/**
+ * Long-lived TCP connection to a server on which all subscribed services are pushed.
+ * <p>
+ * Frames in both directions are a 4 bytes length followed by the data. The pushes are the same packets as sent
+ * through UDP and are acked on the connection. On every (re)connection all subscriptions are sent again. The server
+ * answers each subscription, a service is only pushed on the connection once its subscription is accepted, until
+ * then it keeps being pushed through UDP.
+ *
+ * @author nacos
+ */
+public class PushChannel implements Runnable {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 3000;
+
+    private static final int MAX_FRAME_BYTES = 10 * 1024 * 1024;
+
+    private static final long PING_INTERVAL_MILLIS = 30000L;
+
+    private static final long RECONNECT_DELAY_MILLIS = 3000L;
+
+    private static final String SUBSCRIBE_RESULT_TYPE = "subscribe-result";
+
+    private final NamingProxy serverProxy;
+
+    private final PushReceiver pushReceiver;
+
+    private final int portOffset;
+
+    /**
+     * Service name and clusters of every subscription, by the key of the service info.
+     */
+    private final Map<String, String[]> subscriptions = new ConcurrentHashMap<String, String[]>();
+
+    /**
+     * Keys of the subscriptions accepted by the server on the current connection.
+     */
+    private final Set<String> accepted = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private final ScheduledExecutorService executorService;
+
+    private volatile Socket socket;
+
+    private DataOutputStream output;
+
+    public PushChannel(NamingProxy serverProxy, PushReceiver pushReceiver, int portOffset) {
+        this.serverProxy = serverProxy;
+        this.pushReceiver = pushReceiver;
+        this.portOffset = portOffset;
+
+        executorService = new ScheduledThreadPoolExecutor(2, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r);
+                thread.setDaemon(true);
+                thread.setName("com.alibaba.nacos.naming.push.channel");
+                return thread;
+            }
+        });
+
+        executorService.execute(this);
+        executorService.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                JSONObject ping = new JSONObject();
+                ping.put("type", "ping");
+                send(ping.toJSONString());
+            }
+        }, PING_INTERVAL_MILLIS, PING_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isConnected() {
+        Socket current = socket;
+        return current != null && current.isConnected() && !current.isClosed();
+    }
+
+    /**
+     * @return true if the service is pushed on the connection
+     */
+    public boolean isSubscribed(String serviceName, String clusters) {
+        return isConnected() && accepted.contains(ServiceInfo.getKey(serviceName, clusters));
+    }
+
+    public void subscribe(String serviceName, String clusters) {
+        String key = ServiceInfo.getKey(serviceName, clusters);
+        if (subscriptions.put(key, new String[]{serviceName, clusters}) == null) {
+            sendSubscribe(serviceName, clusters);
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                Socket current = connect();
+                if (current == null) {
+                    TimeUnit.MILLISECONDS.sleep(RECONNECT_DELAY_MILLIS);
+                    continue;
+                }
+
+                DataInputStream input = new DataInputStream(current.getInputStream());
+                while (true) {
+                    int length = input.readInt();
+                    if (length < 0 || length > MAX_FRAME_BYTES) {
+                        throw new IOException("illegal frame length: " + length);
+                    }
+                    byte[] frame = new byte[length];
+                    input.readFully(frame);
+
+                    String json = new String(IoUtils.tryDecompress(frame), UTF_8).trim();
+                    JSONObject packet = JSON.parseObject(json);
+                    if (SUBSCRIBE_RESULT_TYPE.equals(packet.getString("type"))) {
+                        onSubscribeResult(packet);
+                        continue;
+                    }
+                    NAMING_LOGGER.info("received push data: " + json + " from push channel");
+                    send(pushReceiver.processPushPacket(json));
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                NAMING_LOGGER.warn("[NA] push channel is broken, reconnect later: " + e.getMessage());
+                close();
+                try {
+                    TimeUnit.MILLISECONDS.sleep(RECONNECT_DELAY_MILLIS);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private Socket connect() {
+        List<String> servers = serverProxy.getServers();
+        if (servers.isEmpty()) {
+            return null;
+        }
+
+        String server = servers.get(RandomUtils.nextInt(servers.size()));
+        String[] ipPort = server.split(UtilAndComs.SERVER_ADDR_IP_SPLITER);
+        try {
+            Socket current = new Socket();
+            current.setTcpNoDelay(true);
+            current.setKeepAlive(true);
+            current.connect(new InetSocketAddress(ipPort[0], Integer.parseInt(ipPort[1]) + portOffset),
+                CONNECT_TIMEOUT_MILLIS);
+
+            synchronized (this) {
+                socket = current;
+                output = new DataOutputStream(current.getOutputStream());
+            }
+            NAMING_LOGGER.info("[NA] push channel connected to " + current.getRemoteSocketAddress());
+
+            for (String[] subscription : subscriptions.values()) {
+                sendSubscribe(subscription[0], subscription[1]);
+            }
+            return current;
+        } catch (Exception e) {
+            NAMING_LOGGER.warn("[NA] failed to connect push channel to " + server + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void onSubscribeResult(JSONObject result) {
+        String key = ServiceInfo.getKey(result.getString("serviceName"), result.getString("clusters"));
+        if (result.getBooleanValue("accepted")) {
+            accepted.add(key);
+            return;
+        }
+        accepted.remove(key);
+        NAMING_LOGGER.warn("[NA] push channel subscription of " + key + " is rejected, keep receiving pushes by udp");
+    }
+
+    private void sendSubscribe(String serviceName, String clusters) {
+        JSONObject subscribe = new JSONObject();
+        subscribe.put("type", "subscribe");
+        subscribe.put("namespaceId", serverProxy.getNamespaceId());
+        subscribe.put("serviceName", serviceName);
+        subscribe.put("clusters", clusters);
+        subscribe.put("agent", UtilAndComs.VERSION);
+        subscribe.put("app", AppNameUtils.getAppName());
+        send(subscribe.toJSONString());
+    }
+
+    private synchronized void send(String json) {
+        if (output == null) {
+            return;
+        }
+        try {
+            byte[] data = json.getBytes(UTF_8);
+            output.writeInt(data.length);
+            output.write(data);
+            output.flush();
+        } catch (IOException e) {
+            NAMING_LOGGER.warn("[NA] failed to send to push channel: " + e.getMessage());
+            close();
+        }
+    }
+
+    private synchronized void close() {
+        output = null;
+        accepted.clear();
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            NAMING_LOGGER.debug("[NA] failed to close push channel: " + e.getMessage());
+        }
+        socket = null;
+    }
+}
@@ -37,6 +37,14 @@ public class PushReceiver implements Runnable {
 
     private static final int UDP_MSS = 64 * 1024;
 
+    private static final String DOM_PUSH_TYPE = "dom";
+
+    private static final String SERVICE_PUSH_TYPE = "service";
+
+    private static final String DELTA_PUSH_TYPE = "dom-delta";
+
+    private static final String DUMP_PUSH_TYPE = "dump";
+
     private DatagramSocket udpSocket;
 
     private HostReactor hostReactor;
@@ -75,28 +83,7 @@ public class PushReceiver implements Runnable {
                 String json = new String(IoUtils.tryDecompress(packet.getData()), "UTF-8").trim();
                 NAMING_LOGGER.info("received push data: " + json + " from " + packet.getAddress().toString());
 
-                PushPacket pushPacket = JSON.parseObject(json, PushPacket.class);
-                String ack;
-                if ("dom".equals(pushPacket.type) || "service".equals(pushPacket.type)) {
-                    hostReactor.processServiceJSON(pushPacket.data);
-
-                    // send ack to server
-                    ack = "{\"type\": \"push-ack\""
-                        + ", \"lastRefTime\":\"" + pushPacket.lastRefTime
-                        + "\", \"data\":" + "\"\"}";
-                } else if ("dump".equals(pushPacket.type)) {
-                    // dump data to server
-                    ack = "{\"type\": \"dump-ack\""
-                        + ", \"lastRefTime\": \"" + pushPacket.lastRefTime
-                        + "\", \"data\":" + "\""
-                        + StringUtils.escapeJavaScript(JSON.toJSONString(hostReactor.getServiceInfoMap()))
-                        + "\"}";
-                } else {
-                    // do nothing send ack only
-                    ack = "{\"type\": \"unknown-ack\""
-                        + ", \"lastRefTime\":\"" + pushPacket.lastRefTime
-                        + "\", \"data\":" + "\"\"}";
-                }
+                String ack = processPushPacket(json);
 
                 udpSocket.send(new DatagramPacket(ack.getBytes(Charset.forName("UTF-8")),
                     ack.getBytes(Charset.forName("UTF-8")).length, packet.getSocketAddress()));
@@ -106,10 +93,51 @@ public class PushReceiver implements Runnable {
         }
     }
 
+    /**
+     * Apply a push packet, received through UDP or the push channel.
+     *
+     * @return the ack to send back to the server
+     */
+    public String processPushPacket(String json) {
+        PushPacket pushPacket = JSON.parseObject(json, PushPacket.class);
+        String ack;
+        if (DOM_PUSH_TYPE.equals(pushPacket.type) || SERVICE_PUSH_TYPE.equals(pushPacket.type)) {
+            hostReactor.processServiceJSON(pushPacket.data, pushPacket.version);
+
+            // send ack to server
+            ack = "{\"type\": \"push-ack\""
+                + ", \"lastRefTime\":\"" + pushPacket.lastRefTime
+                + "\", \"data\":" + "\"\"}";
+        } else if (DELTA_PUSH_TYPE.equals(pushPacket.type)) {
+            // a delta which does not match the local version is not acked as a push, so the next push is full
+            boolean applied = hostReactor.processServiceDelta(pushPacket.data, pushPacket.baseVersion,
+                pushPacket.version);
+            ack = "{\"type\": \"" + (applied ? "push-ack" : "delta-mismatch-ack") + "\""
+                + ", \"lastRefTime\":\"" + pushPacket.lastRefTime
+                + "\", \"data\":" + "\"\"}";
+        } else if (DUMP_PUSH_TYPE.equals(pushPacket.type)) {
+            // dump data to server
+            ack = "{\"type\": \"dump-ack\""
+                + ", \"lastRefTime\": \"" + pushPacket.lastRefTime
+                + "\", \"data\":" + "\""
+                + StringUtils.escapeJavaScript(JSON.toJSONString(hostReactor.getServiceInfoMap()))
+                + "\"}";
+        } else {
+            // do nothing send ack only
+            ack = "{\"type\": \"unknown-ack\""
+                + ", \"lastRefTime\":\"" + pushPacket.lastRefTime
+                + "\", \"data\":" + "\"\"}";
+        }
+
+        return ack;
+    }
+
     public static class PushPacket {
         public String type;
         public long lastRefTime;
         public String data;
+        public long version;
+        public long baseVersion;
     }
 
     public int getUDPPort() {
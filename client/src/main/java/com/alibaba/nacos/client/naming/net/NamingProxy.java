@@ -16,6 +16,7 @@
 package com.alibaba.nacos.client.naming.net;
 
 import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.alibaba.fastjson.TypeReference;
 import com.alibaba.nacos.api.PropertyKeyConst;
@@ -25,6 +26,7 @@ import com.alibaba.nacos.api.naming.CommonParams;
 import com.alibaba.nacos.api.naming.pojo.Instance;
 import com.alibaba.nacos.api.naming.pojo.ListView;
 import com.alibaba.nacos.api.naming.pojo.Service;
+import com.alibaba.nacos.api.naming.utils.NamingUtils;
 import com.alibaba.nacos.api.selector.AbstractSelector;
 import com.alibaba.nacos.api.selector.ExpressionSelector;
 import com.alibaba.nacos.api.selector.SelectorType;
@@ -299,24 +301,77 @@ public class NamingProxy {
     }
 
     public long sendBeat(BeatInfo beatInfo) {
+        JSONObject result = sendBeat(beatInfo, false);
+        if (result != null) {
+            return result.getLongValue("clientBeatInterval");
+        }
+        return 0L;
+    }
+
+    /**
+     * Send beat of an instance to server.
+     *
+     * @param beatInfo  beat info of the instance
+     * @param lightBeat whether to send only the address and the metadata checksum of the instance
+     * @return response of the server, or null if failed
+     */
+    public JSONObject sendBeat(BeatInfo beatInfo, boolean lightBeat) {
         try {
             if (NAMING_LOGGER.isDebugEnabled()) {
                 NAMING_LOGGER.debug("[BEAT] {} sending beat to server: {}", namespaceId, beatInfo.toString());
             }
-            Map<String, String> params = new HashMap<String, String>(4);
-            params.put("beat", JSON.toJSONString(beatInfo));
+            Map<String, String> params = new HashMap<String, String>(8);
+            if (!lightBeat) {
+                params.put("beat", JSON.toJSONString(beatInfo));
+            }
             params.put(CommonParams.NAMESPACE_ID, namespaceId);
             params.put(CommonParams.SERVICE_NAME, beatInfo.getServiceName());
+            params.put(CommonParams.CLUSTER_NAME, beatInfo.getCluster());
+            params.put("ip", beatInfo.getIp());
+            params.put("port", String.valueOf(beatInfo.getPort()));
+            params.put(CommonParams.METADATA_CHECKSUM, NamingUtils.getMetadataChecksum(beatInfo.getMetadata()));
             String result = reqAPI(UtilAndComs.NACOS_URL_BASE + "/instance/beat", params, HttpMethod.PUT);
-            JSONObject jsonObject = JSON.parseObject(result);
+            return JSON.parseObject(result);
+        } catch (Exception e) {
+            NAMING_LOGGER.error("[CLIENT-BEAT] failed to send beat: " + JSON.toJSONString(beatInfo), e);
+        }
+        return null;
+    }
 
-            if (jsonObject != null) {
-                return jsonObject.getLong("clientBeatInterval");
+    /**
+     * Send beats of several instances to server in one request.
+     *
+     * @param beatInfos beat infos of the instances
+     * @param lightBeat whether to send only the addresses and the metadata checksums of the instances
+     * @return response of the server, or null if failed
+     */
+    public JSONObject sendBatchBeat(List<BeatInfo> beatInfos, boolean lightBeat) {
+        try {
+            if (NAMING_LOGGER.isDebugEnabled()) {
+                NAMING_LOGGER.debug("[BEAT] {} sending {} beats to server", namespaceId, beatInfos.size());
+            }
+            JSONArray beats = new JSONArray();
+            for (BeatInfo beatInfo : beatInfos) {
+                JSONObject beat = new JSONObject();
+                if (!lightBeat) {
+                    beat.put("beat", JSON.toJSON(beatInfo));
+                }
+                beat.put(CommonParams.SERVICE_NAME, beatInfo.getServiceName());
+                beat.put(CommonParams.CLUSTER_NAME, beatInfo.getCluster());
+                beat.put("ip", beatInfo.getIp());
+                beat.put("port", beatInfo.getPort());
+                beat.put(CommonParams.METADATA_CHECKSUM, NamingUtils.getMetadataChecksum(beatInfo.getMetadata()));
+                beats.add(beat);
             }
+            Map<String, String> params = new HashMap<String, String>(4);
+            params.put(CommonParams.NAMESPACE_ID, namespaceId);
+            params.put(CommonParams.BEATS, beats.toJSONString());
+            String result = reqAPI(UtilAndComs.NACOS_URL_BASE + "/instance/beat/batch", params, HttpMethod.POST);
+            return JSON.parseObject(result);
         } catch (Exception e) {
-            NAMING_LOGGER.error("[CLIENT-BEAT] failed to send beat: " + JSON.toJSONString(beatInfo), e);
+            NAMING_LOGGER.error("[CLIENT-BEAT] failed to send batch beat of " + beatInfos.size() + " instances", e);
         }
-        return 0L;
+        return null;
     }
 
     public boolean serverHealthy() {
@@ -551,6 +606,36 @@ public class NamingProxy {
         return namespaceId;
     }
 
+    /**
+     * Addresses of the servers, each one with its port.
+     */
+    public List<String> getServers() {
+        List<String> snapshot = serversFromEndpoint;
+        if (!CollectionUtils.isEmpty(serverList)) {
+            snapshot = serverList;
+        }
+        if (CollectionUtils.isEmpty(snapshot) && StringUtils.isNotEmpty(nacosDomain)) {
+            snapshot = Collections.singletonList(nacosDomain);
+        }
+
+        List<String> servers = new ArrayList<String>();
+        if (snapshot == null) {
+            return servers;
+        }
+        for (String server : snapshot) {
+            if (server.startsWith(UtilAndComs.HTTPS)) {
+                server = server.substring(UtilAndComs.HTTPS.length());
+            } else if (server.startsWith(UtilAndComs.HTTP)) {
+                server = server.substring(UtilAndComs.HTTP.length());
+            }
+            if (!server.contains(UtilAndComs.SERVER_ADDR_IP_SPLITER)) {
+                server = server + UtilAndComs.SERVER_ADDR_IP_SPLITER + serverPort;
+            }
+            servers.add(server);
+        }
+        return servers;
+    }
+
     public void setServerPort(int serverPort) {
         this.serverPort = serverPort;
 
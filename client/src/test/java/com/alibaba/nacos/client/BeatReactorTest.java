@@ -37,7 +37,7 @@ public class BeatReactorTest {
         beatInfo.setScheduled(false);
         beatInfo.setPeriod(1000L);
 
-        Mockito.doReturn(0L).when(namingProxy).sendBeat(beatInfo);
+        Mockito.doReturn(null).when(namingProxy).sendBeat(beatInfo, false);
         beatReactor.addBeatInfo("testService", beatInfo);
 
         Assert.assertEquals(1, getActiveThread(beatReactor));
@@ -25,7 +25,7 @@ import org.springframework.stereotype.Component;
 @Component
 public class SwitchAndOptions {
 
-    @Value("${nacos.cmdb.dumpTaskInterval:3600}")
+    @Value("${nacos.cmdb.dumpTaskInterval:21600}")
     private int dumpTaskInterval;
 
     @Value("${nacos.cmdb.eventTaskInterval:10}")
@@ -22,6 +22,7 @@ import com.alibaba.nacos.api.cmdb.pojo.EntityEvent;
 import com.alibaba.nacos.api.cmdb.pojo.Label;
 import com.alibaba.nacos.api.exception.NacosException;
 import com.alibaba.nacos.cmdb.core.SwitchAndOptions;
+import com.alibaba.nacos.cmdb.monitor.MetricsMonitor;
 import com.alibaba.nacos.cmdb.service.CmdbReader;
 import com.alibaba.nacos.cmdb.service.CmdbWriter;
 import com.alibaba.nacos.cmdb.utils.Loggers;
@@ -33,8 +34,16 @@ import javax.annotation.PostConstruct;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * In-memory copy of the CMDB.
+ * <p>
+ * Entity events pulled from {@link CmdbService} are the primary way the copy is kept up to date. A full
+ * reconciliation against all the entities runs rarely, and applies only the differences in place, one entity at a
+ * time: readers running meanwhile may see some of the differences applied and not others, as they would while
+ * events are applied.
+ *
  * @author nkorange
  * @since 0.7.0
  */
@@ -52,7 +61,14 @@ public class CmdbProvider implements CmdbReader, CmdbWriter {
 
     private Map<String, Label> labelMap = new ConcurrentHashMap<>();
 
-    private Set<String> entityTypeSet = new HashSet<>();
+    private final LabelIndex labelIndex = new LabelIndex();
+
+    /**
+     * Increased on every change of the entities, lets readers cache what they derive from them.
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    private volatile Set<String> entityTypeSet = new HashSet<>();
 
     private long eventTimestamp = System.currentTimeMillis();
 
@@ -70,28 +86,17 @@ public class CmdbProvider implements CmdbReader, CmdbWriter {
         }
     }
 
+    public void setCmdbService(CmdbService cmdbService) {
+        this.cmdbService = cmdbService;
+    }
+
     public void load() {
 
         if (!switches.isLoadDataAtStart()) {
             return;
         }
 
-        // init label map:
-        Set<String> labelNames = cmdbService.getLabelNames();
-        if (labelNames == null || labelNames.isEmpty()) {
-            Loggers.MAIN.warn("[LOAD] init label names failed!");
-        } else {
-            for (String labelName : labelNames) {
-                // If get null label, it's still ok. We will try it later when we meet this label:
-                labelMap.put(labelName, cmdbService.getLabel(labelName));
-            }
-        }
-
-        // init entity type set:
-        entityTypeSet = cmdbService.getEntityTypes();
-
-        // init entity map:
-        entityMap = cmdbService.getAllEntities();
+        reconcile();
     }
 
     @PostConstruct
@@ -100,23 +105,26 @@ public class CmdbProvider implements CmdbReader, CmdbWriter {
         initCmdbService();
         load();
 
-        UtilsAndCommons.GLOBAL_EXECUTOR.schedule(new CmdbDumpTask(), switches.getDumpTaskInterval(), TimeUnit.SECONDS);
+        // reconcile soon if nothing was loaded, events only tell the changes
+        long reconcileDelay = entityMap.isEmpty() ? switches.getEventTaskInterval() : switches.getDumpTaskInterval();
+        UtilsAndCommons.GLOBAL_EXECUTOR.schedule(new CmdbDumpTask(), reconcileDelay, TimeUnit.SECONDS);
         UtilsAndCommons.GLOBAL_EXECUTOR.schedule(new CmdbLabelTask(), switches.getLabelTaskInterval(), TimeUnit.SECONDS);
         UtilsAndCommons.GLOBAL_EXECUTOR.schedule(new CmdbEventTask(), switches.getEventTaskInterval(), TimeUnit.SECONDS);
     }
 
     @Override
     public Entity queryEntity(String entityName, String entityType) {
-        if (!entityMap.containsKey(entityType)) {
+        Map<String, Entity> entities = entityMap.get(entityType);
+        if (entities == null) {
             return null;
         }
-        return entityMap.get(entityType).get(entityName);
+        return entities.get(entityName);
     }
 
     @Override
     public String queryLabel(String entityName, String entityType, String labelName) {
         Entity entity = queryEntity(entityName, entityType);
-        if (entity == null) {
+        if (entity == null || entity.getLabels() == null) {
             return null;
         }
         return entity.getLabels().get(labelName);
@@ -124,21 +132,166 @@ public class CmdbProvider implements CmdbReader, CmdbWriter {
 
     @Override
     public List<Entity> queryEntitiesByLabel(String labelName, String labelValue) {
-        throw new UnsupportedOperationException("Not available now!");
+        List<Entity> entities = new ArrayList<>();
+        for (String entityType : entityMap.keySet()) {
+            for (String entityName : labelIndex.get(entityType, labelName, labelValue)) {
+                Entity entity = queryEntity(entityName, entityType);
+                if (entity != null) {
+                    entities.add(entity);
+                }
+            }
+        }
+        return entities;
     }
 
-    public void removeEntity(String entityName, String entityType) {
-        if (!entityMap.containsKey(entityType)) {
+    @Override
+    public Set<String> queryEntityNamesByLabel(String entityType, String labelName, String labelValue) {
+        return labelIndex.get(entityType, labelName, labelValue);
+    }
+
+    @Override
+    public long getVersion() {
+        return version.get();
+    }
+
+    public Label getLabel(String labelName) {
+        return labelMap.get(labelName);
+    }
+
+    public synchronized void removeEntity(String entityName, String entityType) {
+        Map<String, Entity> entities = entityMap.get(entityType);
+        if (entities == null) {
             return;
         }
-        entityMap.get(entityType).remove(entityName);
+        Entity entity = entities.remove(entityName);
+        if (entity != null) {
+            labelIndex.remove(entity);
+            version.incrementAndGet();
+        }
     }
 
-    public void updateEntity(Entity entity) {
-        if (!entityTypeSet.contains(entity.getType())) {
+    public synchronized void updateEntity(Entity entity) {
+        if (entity == null || !entityTypeSet.contains(entity.getType())) {
             return;
         }
-        entityMap.get(entity.getType()).put(entity.getName(), entity);
+        Map<String, Entity> entities = entityMap.get(entity.getType());
+        if (entities == null) {
+            entityMap.putIfAbsent(entity.getType(), new ConcurrentHashMap<String, Entity>(16));
+            entities = entityMap.get(entity.getType());
+        }
+        Entity oldEntity = entities.put(entity.getName(), entity);
+        labelIndex.update(oldEntity, entity);
+        version.incrementAndGet();
+    }
+
+    /**
+     * Apply the entity events since the last pull.
+     *
+     * @return count of events applied
+     */
+    public int applyEvents() {
+        long current = System.currentTimeMillis();
+        List<EntityEvent> events = cmdbService.getEntityEvents(eventTimestamp);
+        eventTimestamp = current;
+
+        if (Loggers.MAIN.isDebugEnabled()) {
+            Loggers.MAIN.debug("EVENT-TASK {}", "got events size:" + ", events:" + JSON.toJSONString(events));
+        }
+
+        if (events == null || events.isEmpty()) {
+            return 0;
+        }
+
+        for (EntityEvent event : events) {
+            switch (event.getType()) {
+                case ENTITY_REMOVE:
+                    removeEntity(event.getEntityName(), event.getEntityType());
+                    break;
+                case ENTITY_ADD_OR_UPDATE:
+                    updateEntity(cmdbService.getEntity(event.getEntityName(), event.getEntityType()));
+                    break;
+                default:
+                    break;
+            }
+        }
+        MetricsMonitor.getEventCounter().increment(events.size());
+        return events.size();
+    }
+
+    /**
+     * Age of the entities, the time since the events were pulled last.
+     */
+    public long getEventLagMillis() {
+        return System.currentTimeMillis() - eventTimestamp;
+    }
+
+    /**
+     * Reconcile the labels and the entities with the full data of the CMDB, only the differences are applied.
+     *
+     * @return count of entities added, updated or removed
+     */
+    public synchronized int reconcile() {
+
+        Set<String> labelNames = cmdbService.getLabelNames();
+        if (labelNames == null || labelNames.isEmpty()) {
+            Loggers.MAIN.warn("[RECONCILE] load label names failed!");
+        } else {
+            for (String labelName : labelNames) {
+                // If get null label, it's still ok. We will try it later when we meet this label:
+                Label label = cmdbService.getLabel(labelName);
+                if (label != null) {
+                    labelMap.put(labelName, label);
+                }
+            }
+            labelMap.keySet().retainAll(labelNames);
+        }
+
+        Set<String> entityTypes = cmdbService.getEntityTypes();
+        if (entityTypes != null) {
+            entityTypeSet = entityTypes;
+        }
+
+        Map<String, Map<String, Entity>> allEntities = cmdbService.getAllEntities();
+        if (allEntities == null) {
+            Loggers.MAIN.warn("[RECONCILE] load entities failed!");
+            return 0;
+        }
+
+        int added = 0;
+        int updated = 0;
+        int removed = 0;
+        for (Map.Entry<String, Map<String, Entity>> typeEntry : allEntities.entrySet()) {
+            Map<String, Entity> entities = entityMap.get(typeEntry.getKey());
+            for (Entity entity : typeEntry.getValue().values()) {
+                Entity oldEntity = entities == null ? null : entities.get(entity.getName());
+                if (oldEntity == null) {
+                    added++;
+                } else if (!Objects.equals(oldEntity.getLabels(), entity.getLabels())) {
+                    updated++;
+                } else {
+                    continue;
+                }
+                updateEntity(entity);
+            }
+        }
+
+        for (Map.Entry<String, Map<String, Entity>> typeEntry : entityMap.entrySet()) {
+            Map<String, Entity> entities = allEntities.get(typeEntry.getKey());
+            for (String entityName : typeEntry.getValue().keySet()) {
+                if (entities == null || !entities.containsKey(entityName)) {
+                    removeEntity(entityName, typeEntry.getKey());
+                    removed++;
+                }
+            }
+        }
+
+        MetricsMonitor.getReconcileDiffCounter("added").increment(added);
+        MetricsMonitor.getReconcileDiffCounter("updated").increment(updated);
+        MetricsMonitor.getReconcileDiffCounter("removed").increment(removed);
+        if (added + updated + removed > 0) {
+            Loggers.MAIN.info("[RECONCILE] entities added: {}, updated: {}, removed: {}", added, updated, removed);
+        }
+        return added + updated + removed;
     }
 
     public class CmdbLabelTask implements Runnable {
@@ -154,22 +307,26 @@ public class CmdbProvider implements CmdbReader, CmdbWriter {
 
             try {
 
-                Map<String, Label> tmpLabelMap = new HashMap<>(16);
-
                 Set<String> labelNames = cmdbService.getLabelNames();
                 if (labelNames == null || labelNames.isEmpty()) {
                     Loggers.MAIN.warn("CMDB-LABEL-TASK {}", "load label names failed!");
                 } else {
+                    // labels already known are refreshed by the reconciliation
                     for (String labelName : labelNames) {
+                        Label label = labelMap.get(labelName);
+                        if (label == null) {
+                            label = cmdbService.getLabel(labelName);
+                        }
                         // If get null label, it's still ok. We will try it later when we meet this label:
-                        tmpLabelMap.put(labelName, cmdbService.getLabel(labelName));
+                        if (label != null) {
+                            labelMap.put(labelName, label);
+                        }
                     }
+                    labelMap.keySet().retainAll(labelNames);
 
                     if (Loggers.MAIN.isDebugEnabled()) {
-                        Loggers.MAIN.debug("LABEL-TASK {}", "got label map:" + JSON.toJSONString(tmpLabelMap));
+                        Loggers.MAIN.debug("LABEL-TASK {}", "got label map:" + JSON.toJSONString(labelMap));
                     }
-
-                    labelMap = tmpLabelMap;
                 }
 
             } catch (Exception e) {
@@ -187,15 +344,14 @@ public class CmdbProvider implements CmdbReader, CmdbWriter {
 
             try {
 
-                Loggers.MAIN.debug("DUMP-TASK {}", "start dump.");
+                Loggers.MAIN.debug("DUMP-TASK {}", "start reconcile.");
 
                 if (cmdbService == null) {
                     return;
                 }
-                // refresh entity map:
-                entityMap = cmdbService.getAllEntities();
+                reconcile();
             } catch (Exception e) {
-                Loggers.MAIN.error("DUMP-TASK {}", "dump failed!", e);
+                Loggers.MAIN.error("DUMP-TASK {}", "reconcile failed!", e);
             } finally {
                 UtilsAndCommons.GLOBAL_EXECUTOR.schedule(this, switches.getDumpTaskInterval(), TimeUnit.SECONDS);
             }
@@ -214,33 +370,11 @@ public class CmdbProvider implements CmdbReader, CmdbWriter {
                     return;
                 }
 
-                long current = System.currentTimeMillis();
-                List<EntityEvent> events = cmdbService.getEntityEvents(eventTimestamp);
-                eventTimestamp = current;
-
-                if (Loggers.MAIN.isDebugEnabled()) {
-                    Loggers.MAIN.debug("EVENT-TASK {}", "got events size:" + ", events:" + JSON.toJSONString(events));
-                }
-
-                if (events != null && !events.isEmpty()) {
-
-                    for (EntityEvent event : events) {
-                        switch (event.getType()) {
-                            case ENTITY_REMOVE:
-                                removeEntity(event.getEntityName(), event.getEntityType());
-                                break;
-                            case ENTITY_ADD_OR_UPDATE:
-                                updateEntity(cmdbService.getEntity(event.getEntityName(), event.getEntityType()));
-                                break;
-                            default:
-                                break;
-                        }
-                    }
-                }
-
+                applyEvents();
             } catch (Exception e) {
                 Loggers.MAIN.error("CMDB-EVENT {}", "event task failed!", e);
             } finally {
+                MetricsMonitor.getEventLagMonitor().set(getEventLagMillis());
                 UtilsAndCommons.GLOBAL_EXECUTOR.schedule(this, switches.getEventTaskInterval(), TimeUnit.SECONDS);
             }
         }
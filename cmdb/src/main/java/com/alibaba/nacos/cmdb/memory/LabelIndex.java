@@ -0,0 +1,128 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.nacos.cmdb.memory;
+
+import com.alibaba.nacos.api.cmdb.pojo.Entity;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Inverted index of entity labels: entity type, label name and label value to the names of the entities.
+ * <p>
+ * Readers may run concurrently with a writer, writers must be serialized by the caller.
+ *
+ * @author nacos
+ */
+public class LabelIndex {
+
+    private final Map<String, Map<String, Map<String, Set<String>>>> index = new ConcurrentHashMap<>();
+
+    public void add(Entity entity) {
+        if (entity == null || entity.getLabels() == null) {
+            return;
+        }
+
+        Map<String, Map<String, Set<String>>> labels = index.get(entity.getType());
+        if (labels == null) {
+            index.putIfAbsent(entity.getType(), new ConcurrentHashMap<String, Map<String, Set<String>>>(16));
+            labels = index.get(entity.getType());
+        }
+
+        for (Map.Entry<String, String> label : entity.getLabels().entrySet()) {
+            if (label.getValue() == null) {
+                continue;
+            }
+            Map<String, Set<String>> values = labels.get(label.getKey());
+            if (values == null) {
+                labels.putIfAbsent(label.getKey(), new ConcurrentHashMap<String, Set<String>>(16));
+                values = labels.get(label.getKey());
+            }
+            Set<String> names = values.get(label.getValue());
+            if (names == null) {
+                values.putIfAbsent(label.getValue(), ConcurrentHashMap.<String>newKeySet());
+                names = values.get(label.getValue());
+            }
+            names.add(entity.getName());
+        }
+    }
+
+    /**
+     * Replace the labels of an entity, the new labels are indexed before the stale ones are removed so readers never
+     * miss a label value the entity keeps.
+     */
+    public void update(Entity oldEntity, Entity entity) {
+        add(entity);
+        if (oldEntity == null || oldEntity.getLabels() == null) {
+            return;
+        }
+        Map<String, String> labels = entity == null ? null : entity.getLabels();
+        for (Map.Entry<String, String> label : oldEntity.getLabels().entrySet()) {
+            if (labels == null || !Objects.equals(label.getValue(), labels.get(label.getKey()))) {
+                remove(oldEntity.getType(), label.getKey(), label.getValue(), oldEntity.getName());
+            }
+        }
+    }
+
+    public void remove(Entity entity) {
+        if (entity == null || entity.getLabels() == null) {
+            return;
+        }
+
+        for (Map.Entry<String, String> label : entity.getLabels().entrySet()) {
+            remove(entity.getType(), label.getKey(), label.getValue(), entity.getName());
+        }
+    }
+
+    private void remove(String entityType, String labelName, String labelValue, String entityName) {
+        if (labelValue == null) {
+            return;
+        }
+
+        Map<String, Map<String, Set<String>>> labels = index.get(entityType);
+        if (labels == null) {
+            return;
+        }
+        Map<String, Set<String>> values = labels.get(labelName);
+        if (values == null) {
+            return;
+        }
+        Set<String> names = values.get(labelValue);
+        if (names != null && names.remove(entityName) && names.isEmpty()) {
+            // values are rarely reused once their last entity is gone, do not keep them around:
+            values.remove(labelValue, names);
+        }
+    }
+
+    /**
+     * @return names of the entities of the type with the label value, never null
+     */
+    public Set<String> get(String entityType, String labelName, String labelValue) {
+        Map<String, Map<String, Set<String>>> labels = index.get(entityType);
+        if (labels == null) {
+            return Collections.emptySet();
+        }
+        Map<String, Set<String>> values = labels.get(labelName);
+        if (values == null) {
+            return Collections.emptySet();
+        }
+        Set<String> names = values.get(labelValue);
+        return names == null ? Collections.<String>emptySet() : Collections.unmodifiableSet(names);
+    }
+}
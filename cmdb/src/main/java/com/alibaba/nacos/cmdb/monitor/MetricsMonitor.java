@@ -0,0 +1,56 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.nacos.cmdb.monitor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.ImmutableTag;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tag;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics Monitor
+ *
+ * @author nacos
+ */
+public class MetricsMonitor {
+
+    private static AtomicLong eventLag = new AtomicLong();
+
+    static {
+        List<Tag> tags = new ArrayList<Tag>();
+        tags.add(new ImmutableTag("module", "cmdb"));
+        tags.add(new ImmutableTag("name", "eventLag"));
+        Metrics.gauge("nacos_monitor", tags, eventLag);
+    }
+
+    public static AtomicLong getEventLagMonitor() {
+        return eventLag;
+    }
+
+    public static Counter getEventCounter() {
+        return Metrics.counter("nacos_cmdb_event",
+            "module", "cmdb");
+    }
+
+    public static Counter getReconcileDiffCounter(String type) {
+        return Metrics.counter("nacos_cmdb_reconcile_diff",
+            "module", "cmdb", "type", type);
+    }
+}
@@ -19,6 +19,7 @@ package com.alibaba.nacos.cmdb.service;
 import com.alibaba.nacos.api.cmdb.pojo.Entity;
 
 import java.util.List;
+import java.util.Set;
 
 /**
  * @author nkorange
@@ -53,4 +54,21 @@ public interface CmdbReader {
      * @return list of entiy
      */
     List<Entity> queryEntitiesByLabel(String labelName, String labelValue);
+
+    /**
+     * Get names of entities of selected type and label, served by an index
+     *
+     * @param entityType type of entity
+     * @param labelName  name of label
+     * @param labelValue value of label
+     * @return set of entity names, never null
+     */
+    Set<String> queryEntityNamesByLabel(String entityType, String labelName, String labelValue);
+
+    /**
+     * Get version of the entities, which is increased on every change of them
+     *
+     * @return version of entities
+     */
+    long getVersion();
 }
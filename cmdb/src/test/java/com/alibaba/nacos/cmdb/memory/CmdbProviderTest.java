@@ -0,0 +1,77 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.nacos.cmdb.memory;
+
+import com.alibaba.nacos.api.cmdb.pojo.PreservedEntityTypes;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+/**
+ * @author nacos
+ */
+public class CmdbProviderTest {
+
+    private static final String IP = PreservedEntityTypes.ip.name();
+
+    private InMemoryCmdbService cmdbService;
+
+    private CmdbProvider cmdbProvider;
+
+    @Before
+    public void before() throws Exception {
+        cmdbService = new InMemoryCmdbService();
+        cmdbService.putLabel("site", "a", "b");
+        cmdbService.putEntity(IP, "1.1.1.1", Collections.singletonMap("site", "a"));
+
+        cmdbProvider = new CmdbProvider();
+        cmdbProvider.setCmdbService(cmdbService);
+        Assert.assertEquals(1, cmdbProvider.reconcile());
+    }
+
+    @Test
+    public void applyEvents() {
+        long version = cmdbProvider.getVersion();
+
+        cmdbService.putEntity(IP, "1.1.1.1", Collections.singletonMap("site", "b"));
+        cmdbService.putEntity(IP, "2.2.2.2", Collections.singletonMap("site", "a"));
+        Assert.assertTrue(cmdbProvider.applyEvents() >= 2);
+
+        Assert.assertEquals("b", cmdbProvider.queryLabel("1.1.1.1", IP, "site"));
+        Assert.assertEquals(Collections.singleton("2.2.2.2"), cmdbProvider.queryEntityNamesByLabel(IP, "site", "a"));
+        Assert.assertTrue(cmdbProvider.getVersion() > version);
+
+        cmdbService.removeEntity(IP, "2.2.2.2");
+        cmdbProvider.applyEvents();
+        Assert.assertNull(cmdbProvider.queryEntity("2.2.2.2", IP));
+        Assert.assertTrue(cmdbProvider.queryEntityNamesByLabel(IP, "site", "a").isEmpty());
+    }
+
+    @Test
+    public void reconcileAppliesOnlyDifferences() {
+        Assert.assertEquals(0, cmdbProvider.reconcile());
+
+        // changes whose events were lost
+        cmdbService.putEntitySilently(IP, "1.1.1.1", Collections.singletonMap("site", "b"));
+        cmdbService.putEntitySilently(IP, "3.3.3.3", Collections.singletonMap("site", "b"));
+
+        Assert.assertEquals(2, cmdbProvider.reconcile());
+        Assert.assertEquals(2, cmdbProvider.queryEntityNamesByLabel(IP, "site", "b").size());
+        Assert.assertNotNull(cmdbProvider.getLabel("site"));
+    }
+}
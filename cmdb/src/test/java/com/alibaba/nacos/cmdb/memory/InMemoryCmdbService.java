@@ -0,0 +1,146 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.nacos.cmdb.memory;
+
+import com.alibaba.nacos.api.cmdb.pojo.Entity;
+import com.alibaba.nacos.api.cmdb.pojo.EntityEvent;
+import com.alibaba.nacos.api.cmdb.pojo.EntityEventType;
+import com.alibaba.nacos.api.cmdb.pojo.Label;
+import com.alibaba.nacos.api.cmdb.spi.CmdbService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * CMDB kept in memory, recording an event for every change.
+ *
+ * @author nacos
+ */
+public class InMemoryCmdbService implements CmdbService {
+
+    private final Map<String, Label> labels = new HashMap<>();
+
+    private final Map<String, Map<String, Entity>> entities = new HashMap<>();
+
+    private final List<Long> eventTimes = new ArrayList<>();
+
+    private final List<EntityEvent> events = new ArrayList<>();
+
+    public synchronized void putLabel(String name, String... values) {
+        Label label = new Label();
+        label.setName(name);
+        label.setValues(new HashSet<>(Arrays.asList(values)));
+        labels.put(name, label);
+    }
+
+    /**
+     * Add or update an entity and record the event of it.
+     */
+    public synchronized void putEntity(String type, String name, Map<String, String> entityLabels) {
+        putEntitySilently(type, name, entityLabels);
+        addEvent(type, name, EntityEventType.ENTITY_ADD_OR_UPDATE);
+    }
+
+    /**
+     * Add or update an entity without any event, as if the event was lost.
+     */
+    public synchronized void putEntitySilently(String type, String name, Map<String, String> entityLabels) {
+        Entity entity = new Entity();
+        entity.setType(type);
+        entity.setName(name);
+        entity.setLabels(new HashMap<>(entityLabels));
+        Map<String, Entity> typeEntities = entities.get(type);
+        if (typeEntities == null) {
+            typeEntities = new HashMap<>();
+            entities.put(type, typeEntities);
+        }
+        typeEntities.put(name, entity);
+    }
+
+    public synchronized void removeEntity(String type, String name) {
+        Map<String, Entity> typeEntities = entities.get(type);
+        if (typeEntities != null && typeEntities.remove(name) != null) {
+            addEvent(type, name, EntityEventType.ENTITY_REMOVE);
+        }
+    }
+
+    private void addEvent(String type, String name, EntityEventType eventType) {
+        EntityEvent event = new EntityEvent();
+        event.setEntityType(type);
+        event.setEntityName(name);
+        event.setType(eventType);
+        events.add(event);
+        eventTimes.add(System.currentTimeMillis());
+    }
+
+    @Override
+    public synchronized Set<String> getLabelNames() {
+        return new HashSet<>(labels.keySet());
+    }
+
+    @Override
+    public synchronized Set<String> getEntityTypes() {
+        return new HashSet<>(entities.keySet());
+    }
+
+    @Override
+    public synchronized Label getLabel(String labelName) {
+        return labels.get(labelName);
+    }
+
+    @Override
+    public synchronized String getLabelValue(String entityName, String entityType, String labelName) {
+        Entity entity = getEntity(entityName, entityType);
+        return entity == null ? null : entity.getLabels().get(labelName);
+    }
+
+    @Override
+    public synchronized Map<String, String> getLabelValues(String entityName, String entityType) {
+        Entity entity = getEntity(entityName, entityType);
+        return entity == null ? null : entity.getLabels();
+    }
+
+    @Override
+    public synchronized Map<String, Map<String, Entity>> getAllEntities() {
+        Map<String, Map<String, Entity>> copy = new HashMap<>(entities.size());
+        for (Map.Entry<String, Map<String, Entity>> entry : entities.entrySet()) {
+            copy.put(entry.getKey(), new HashMap<>(entry.getValue()));
+        }
+        return copy;
+    }
+
+    @Override
+    public synchronized List<EntityEvent> getEntityEvents(long timestamp) {
+        List<EntityEvent> result = new ArrayList<>();
+        for (int i = 0; i < events.size(); i++) {
+            if (eventTimes.get(i) >= timestamp) {
+                result.add(events.get(i));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized Entity getEntity(String entityName, String entityType) {
+        Map<String, Entity> typeEntities = entities.get(entityType);
+        return typeEntities == null ? null : typeEntities.get(entityName);
+    }
+}
@@ -18,6 +18,9 @@ package com.alibaba.nacos.naming.cluster;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.nacos.core.utils.SystemUtils;
 import com.alibaba.nacos.naming.boot.RunningConfig;
+import com.alibaba.nacos.naming.cluster.gossip.GossipMembership;
+import com.alibaba.nacos.naming.cluster.gossip.Member;
+import com.alibaba.nacos.naming.cluster.gossip.UdpGossipTransport;
 import com.alibaba.nacos.naming.cluster.servers.Server;
 import com.alibaba.nacos.naming.cluster.servers.ServerChangeListener;
 import com.alibaba.nacos.naming.misc.*;
@@ -46,6 +49,9 @@ public class ServerListManager {
     @Autowired
     private SwitchDomain switchDomain;
 
+    @Autowired
+    private GlobalConfig globalConfig;
+
     private List<ServerChangeListener> listeners = new ArrayList<>();
 
     private List<Server> servers = new ArrayList<>();
@@ -66,6 +72,11 @@ public class ServerListManager {
 
     private Synchronizer synchronizer = new ServerStatusSynchronizer();
 
+    /**
+     * Membership and health of the servers when gossip is enabled, instead of broadcasting the status.
+     */
+    private volatile GossipMembership gossipMembership;
+
     public void listen(ServerChangeListener listener) {
         listeners.add(listener);
     }
@@ -240,6 +251,87 @@ public class ServerListManager {
         liveSites.addAll(distroConfig.keySet());
     }
 
+    private boolean isGossipEnabled() {
+        return !STANDALONE_MODE && globalConfig.getGossipPortOffset() > 0;
+    }
+
+    /**
+     * Start gossiping once the port of the server is known.
+     */
+    private synchronized GossipMembership startGossip() {
+        if (gossipMembership != null) {
+            return gossipMembership;
+        }
+
+        GossipMembership membership = new GossipMembership(NetUtils.localServer(),
+            new UdpGossipTransport(globalConfig.getGossipPortOffset()),
+            globalConfig.getGossipPeriodMillis(),
+            globalConfig.getGossipProbeTimeoutMillis(),
+            globalConfig.getGossipIndirectProbes(),
+            globalConfig.getGossipSuspectTimeoutMillis());
+        membership.listen(new GossipMembership.Listener() {
+            @Override
+            public void onMembershipChange(final List<Member> members) {
+                // not under the lock of the membership
+                GlobalExecutor.notifyServerListChange(new Runnable() {
+                    @Override
+                    public void run() {
+                        onGossipMembershipChange(members);
+                    }
+                });
+            }
+        });
+
+        try {
+            membership.start();
+        } catch (Exception e) {
+            Loggers.SRV_LOG.error("[GOSSIP] failed to start gossip membership", e);
+            return null;
+        }
+
+        List<String> addresses = new ArrayList<>();
+        for (Server server : servers) {
+            addresses.add(server.getKey());
+        }
+        membership.join(addresses);
+        gossipMembership = membership;
+        return membership;
+    }
+
+    private void onGossipMembershipChange(List<Member> members) {
+        List<Server> siteServers = new ArrayList<>(members.size());
+        List<Server> newHealthyList = new ArrayList<>(members.size());
+        for (Member member : members) {
+            // gossip may know servers before cluster.conf is refreshed
+            if (!contains(member.getAddress())) {
+                continue;
+            }
+
+            Server server = new Server();
+            server.setSite(LOCALHOST_SITE);
+            server.setIp(member.getAddress().split(UtilsAndCommons.IP_PORT_SPLITER)[0]);
+            server.setServePort(Integer.parseInt(member.getAddress().split(UtilsAndCommons.IP_PORT_SPLITER)[1]));
+            server.setAlive(member.isHealthy());
+            server.setLastRefTime(member.getStateChangeMillis());
+            server.setLastRefTimeStr(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(
+                new Date(member.getStateChangeMillis())));
+            siteServers.add(server);
+
+            if (server.isAlive()) {
+                newHealthyList.add(server);
+            }
+        }
+
+        distroConfig.put(LOCALHOST_SITE, siteServers);
+        liveSites.add(LOCALHOST_SITE);
+
+        if (siteServers.isEmpty()) {
+            return;
+        }
+        Collections.sort(newHealthyList);
+        updateHealthyServers(newHealthyList, siteServers.size());
+    }
+
     public void clean() {
         cleanInvalidServers();
 
@@ -310,6 +402,12 @@ public class ServerListManager {
                     Loggers.RAFT.info("server list is updated, dead: {}, servers: {}", deadServers.size(), deadServers);
                 }
 
+                GossipMembership membership = gossipMembership;
+                if (membership != null && changed) {
+                    membership.remove(toKeys(deadServers));
+                    membership.join(toKeys(newServers));
+                }
+
                 if (changed) {
                     notifyListeners();
                 }
@@ -321,6 +419,16 @@ public class ServerListManager {
     }
 
 
+    private static List<String> toKeys(List<Server> servers) {
+        List<String> keys = new ArrayList<>();
+        if (servers != null) {
+            for (Server server : servers) {
+                keys.add(server.getKey());
+            }
+        }
+        return keys;
+    }
+
     private class ServerStatusReporter implements Runnable {
 
         @Override
@@ -331,6 +439,15 @@ public class ServerListManager {
                     return;
                 }
 
+                if (isGossipEnabled()) {
+                    // membership and health are gossiped, only re-evaluate to restore the health check in time
+                    GossipMembership membership = startGossip();
+                    if (membership != null) {
+                        onGossipMembershipChange(membership.getMembers());
+                        return;
+                    }
+                }
+
                 checkDistroHeartbeat();
 
                 int weight = Runtime.getRuntime().availableProcessors() / 2;
@@ -415,7 +532,12 @@ public class ServerListManager {
         }
 
         Collections.sort(newHealthyList);
-        float curRatio = (float) newHealthyList.size() / allLocalSiteSrvs.size();
+        updateHealthyServers(newHealthyList, allLocalSiteSrvs.size());
+    }
+
+    private synchronized void updateHealthyServers(List<Server> newHealthyList, int serverCount) {
+
+        float curRatio = (float) newHealthyList.size() / serverCount;
 
         if (autoDisabledHealthCheck
             && curRatio > switchDomain.getDistroThreshold()
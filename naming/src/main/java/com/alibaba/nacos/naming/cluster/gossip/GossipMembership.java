@@ -0,0 +1,565 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.nacos.naming.cluster.gossip;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.nacos.naming.misc.Loggers;
+import com.alibaba.nacos.naming.monitor.MetricsMonitor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SWIM style membership and failure detection of the servers.
+ * <p>
+ * Every protocol period a member pings the next member of a shuffled round, if no ack arrives within the probe
+ * timeout it asks some other members to ping the target for it. A target which is not acked by the end of the
+ * period is suspected, and declared dead if it does not refute the suspicion with a higher incarnation within the
+ * suspect timeout. Membership updates are piggybacked on the probes and their acks, each one is retransmitted a
+ * number of times growing with the log of the cluster size, so the traffic of a member is constant and the
+ * updates reach all members in O(log N) periods.
+ * <p>
+ * Dead members are still pinged once in a while with the news of their death, so a partitioned member refutes it
+ * once reachable again. A restarted member starts from a new incarnation and overrides its former death.
+ *
+ * @author nacos
+ */
+public class GossipMembership {
+
+    private static final int RETRANSMIT_MULTIPLIER = 3;
+
+    private static final int MAX_PIGGYBACK_UPDATES = 8;
+
+    private static final int DEAD_PROBE_PERIODS = 10;
+
+    private static final long MIN_TICK_MILLIS = 10L;
+
+    private final String localAddress;
+
+    private final GossipTransport transport;
+
+    private final long periodMillis;
+
+    private final long probeTimeoutMillis;
+
+    private final int indirectProbes;
+
+    private final long suspectTimeoutMillis;
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Everything below is guarded by this.
+     */
+    private long incarnation;
+
+    private final Map<String, Member> members = new HashMap<>(16);
+
+    private final Map<String, Broadcast> broadcasts = new HashMap<>(16);
+
+    private final Map<Long, Probe> probes = new HashMap<>(16);
+
+    private final Map<Long, Relay> relays = new HashMap<>(16);
+
+    private List<String> probeOrder = new ArrayList<>();
+
+    private int probeIndex;
+
+    private long seq;
+
+    private long periods;
+
+    private long nextProbeMillis;
+
+    private boolean changed;
+
+    private ScheduledExecutorService executor;
+
+    public GossipMembership(String localAddress, GossipTransport transport, long periodMillis,
+                            long probeTimeoutMillis, int indirectProbes, long suspectTimeoutMillis) {
+        this.localAddress = localAddress;
+        this.transport = transport;
+        this.periodMillis = periodMillis;
+        this.probeTimeoutMillis = probeTimeoutMillis;
+        this.indirectProbes = indirectProbes;
+        this.suspectTimeoutMillis = suspectTimeoutMillis;
+        // a restarted member must override what others remember of its former life
+        this.incarnation = System.currentTimeMillis();
+    }
+
+    public void listen(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void start() throws IOException {
+        transport.start(this);
+
+        executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r);
+                thread.setDaemon(true);
+                thread.setName("com.alibaba.nacos.naming.gossip");
+                return thread;
+            }
+        });
+
+        long tickMillis = Math.max(MIN_TICK_MILLIS, Math.min(periodMillis, probeTimeoutMillis) / 2);
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    tick(System.currentTimeMillis());
+                } catch (Throwable e) {
+                    Loggers.SRV_LOG.error("[GOSSIP] error while probing members", e);
+                }
+            }
+        }, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+
+        Loggers.SRV_LOG.info("[GOSSIP] started gossip membership of {}", localAddress);
+    }
+
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        transport.close();
+    }
+
+    public String getLocalAddress() {
+        return localAddress;
+    }
+
+    public synchronized long getIncarnation() {
+        return incarnation;
+    }
+
+    /**
+     * @return all members including the local one
+     */
+    public synchronized List<Member> getMembers() {
+        List<Member> result = new ArrayList<>(members.size() + 1);
+        result.add(new Member(localAddress, Member.State.ALIVE, incarnation, 0L));
+        for (Member member : members.values()) {
+            result.add(member.copy());
+        }
+        return result;
+    }
+
+    /**
+     * Add members to probe, e.g. from cluster.conf, their real incarnation is learnt from the first contact.
+     */
+    public synchronized void join(Collection<String> addresses) {
+        long now = System.currentTimeMillis();
+        for (String address : addresses) {
+            if (!localAddress.equals(address) && !members.containsKey(address)) {
+                members.put(address, new Member(address, Member.State.ALIVE, 0L, now));
+                changed = true;
+            }
+        }
+        notifyIfChanged();
+    }
+
+    /**
+     * Forget members which are no longer part of the cluster.
+     */
+    public synchronized void remove(Collection<String> addresses) {
+        for (String address : addresses) {
+            if (members.remove(address) != null) {
+                broadcasts.remove(address);
+                changed = true;
+            }
+        }
+        notifyIfChanged();
+    }
+
+    public void receive(byte[] data) {
+        GossipMessage message;
+        try {
+            message = JSON.parseObject(data, GossipMessage.class);
+        } catch (Exception e) {
+            Loggers.SRV_LOG.warn("[GOSSIP] malformed message: {}", e.getMessage());
+            return;
+        }
+        receive(message, System.currentTimeMillis());
+    }
+
+    synchronized void receive(GossipMessage message, long now) {
+        if (message.getFrom() == null || localAddress.equals(message.getFrom())) {
+            return;
+        }
+
+        // the sender is obviously alive as of its incarnation
+        apply(new GossipMessage.Update(message.getFrom(), Member.State.ALIVE, message.getIncarnation(), now),
+            now, false);
+        if (message.getUpdates() != null) {
+            for (GossipMessage.Update update : message.getUpdates()) {
+                apply(update, now, true);
+            }
+        }
+
+        String type = message.getType();
+        if (GossipMessage.PING.equals(type)) {
+            send(GossipMessage.ACK, message.getFrom(), message.getSeq(), null);
+        } else if (GossipMessage.PING_REQ.equals(type)) {
+            long relaySeq = ++seq;
+            relays.put(relaySeq, new Relay(message.getFrom(), message.getSeq(), now));
+            send(GossipMessage.PING, message.getTarget(), relaySeq, null);
+        } else if (GossipMessage.ACK.equals(type)) {
+            Probe probe = probes.remove(message.getSeq());
+            Relay relay = probe == null ? relays.remove(message.getSeq()) : null;
+            if (relay != null) {
+                send(GossipMessage.ACK, relay.requester, relay.seq, null);
+            }
+        }
+
+        notifyIfChanged();
+    }
+
+    synchronized void tick(long now) {
+        Iterator<Probe> probeIterator = probes.values().iterator();
+        List<Probe> expired = new ArrayList<>();
+        while (probeIterator.hasNext()) {
+            Probe probe = probeIterator.next();
+            long elapsed = now - probe.sentMillis;
+            if (elapsed >= periodMillis) {
+                probeIterator.remove();
+                expired.add(probe);
+                continue;
+            }
+            if (!probe.indirect && elapsed >= probeTimeoutMillis) {
+                probe.indirect = true;
+                sendPingReqs(probe);
+            }
+        }
+        for (Probe probe : expired) {
+            suspect(probe.target, now);
+        }
+
+        Iterator<Relay> relayIterator = relays.values().iterator();
+        while (relayIterator.hasNext()) {
+            if (now - relayIterator.next().createdMillis >= periodMillis) {
+                relayIterator.remove();
+            }
+        }
+
+        for (Member member : new ArrayList<>(members.values())) {
+            boolean suspectExpired = member.getState() == Member.State.SUSPECT
+                && now - member.getStateChangeMillis() >= suspectTimeoutMillis;
+            if (suspectExpired) {
+                Loggers.SRV_LOG.warn("[GOSSIP] member {} failed to refute suspicion, declare it dead",
+                    member.getAddress());
+                apply(new GossipMessage.Update(member.getAddress(), Member.State.DEAD, member.getIncarnation(), now),
+                    now, false);
+            }
+        }
+
+        if (now >= nextProbeMillis) {
+            nextProbeMillis = now + periodMillis;
+            periods++;
+            probeNext(now);
+            if (periods % DEAD_PROBE_PERIODS == 0) {
+                probeDead();
+            }
+            updateMetrics();
+        }
+
+        notifyIfChanged();
+    }
+
+    private void probeNext(long now) {
+        if (probeIndex >= probeOrder.size()) {
+            probeOrder = new ArrayList<>(members.size());
+            for (Member member : members.values()) {
+                if (member.isHealthy()) {
+                    probeOrder.add(member.getAddress());
+                }
+            }
+            Collections.shuffle(probeOrder, ThreadLocalRandom.current());
+            probeIndex = 0;
+        }
+
+        while (probeIndex < probeOrder.size()) {
+            Member member = members.get(probeOrder.get(probeIndex++));
+            if (member != null && member.isHealthy()) {
+                long probeSeq = ++seq;
+                probes.put(probeSeq, new Probe(member.getAddress(), probeSeq, now));
+                send(GossipMessage.PING, member.getAddress(), probeSeq, null);
+                return;
+            }
+        }
+    }
+
+    private void probeDead() {
+        List<String> dead = new ArrayList<>();
+        for (Member member : members.values()) {
+            if (!member.isHealthy()) {
+                dead.add(member.getAddress());
+            }
+        }
+        if (!dead.isEmpty()) {
+            // not tracked, an ack revives the member through its refuting incarnation
+            send(GossipMessage.PING, dead.get(ThreadLocalRandom.current().nextInt(dead.size())), ++seq, null);
+        }
+    }
+
+    private void sendPingReqs(Probe probe) {
+        List<String> candidates = new ArrayList<>();
+        for (Member member : members.values()) {
+            boolean candidate = member.getState() == Member.State.ALIVE && !member.getAddress().equals(probe.target);
+            if (candidate) {
+                candidates.add(member.getAddress());
+            }
+        }
+        Collections.shuffle(candidates, ThreadLocalRandom.current());
+        for (int i = 0; i < Math.min(indirectProbes, candidates.size()); i++) {
+            send(GossipMessage.PING_REQ, candidates.get(i), probe.seq, probe.target);
+        }
+    }
+
+    private void suspect(String address, long now) {
+        Member member = members.get(address);
+        if (member == null || member.getState() != Member.State.ALIVE) {
+            return;
+        }
+        Loggers.SRV_LOG.info("[GOSSIP] member {} did not ack in time, suspect it", address);
+        apply(new GossipMessage.Update(address, Member.State.SUSPECT, member.getIncarnation(), now), now, false);
+    }
+
+    /**
+     * Apply an update if it is newer than what is known, and gossip it on.
+     *
+     * @param record whether to record how long the update took to get here
+     */
+    private void apply(GossipMessage.Update update, long now, boolean record) {
+        if (update.getAddress() == null || update.getState() == null) {
+            return;
+        }
+
+        if (localAddress.equals(update.getAddress())) {
+            boolean refute = update.getState() != Member.State.ALIVE && update.getIncarnation() >= incarnation;
+            if (refute) {
+                incarnation = update.getIncarnation() + 1;
+                Loggers.SRV_LOG.warn("[GOSSIP] refute being {}, new incarnation: {}", update.getState(), incarnation);
+                broadcast(new GossipMessage.Update(localAddress, Member.State.ALIVE, incarnation, now));
+            }
+            return;
+        }
+
+        Member member = members.get(update.getAddress());
+        if (member == null) {
+            // the dead of unknown members are of no interest
+            if (update.getState() == Member.State.DEAD) {
+                return;
+            }
+            members.put(update.getAddress(),
+                new Member(update.getAddress(), update.getState(), update.getIncarnation(), now));
+            broadcast(update);
+            changed = true;
+            Loggers.SRV_LOG.info("[GOSSIP] new member: {}, state: {}", update.getAddress(), update.getState());
+            return;
+        }
+
+        if (!overrides(update, member)) {
+            return;
+        }
+
+        Member.State oldState = member.getState();
+        member.update(update.getState(), update.getIncarnation(), now);
+        broadcast(update);
+        if (oldState != update.getState()) {
+            changed = true;
+            Loggers.SRV_LOG.info("[GOSSIP] member {} changed from {} to {}, incarnation: {}", update.getAddress(),
+                oldState, update.getState(), update.getIncarnation());
+            if (record) {
+                MetricsMonitor.getGossipConvergenceTimer(update.getState().name())
+                    .record(Math.max(0L, now - update.getOriginMillis()), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private static boolean overrides(GossipMessage.Update update, Member member) {
+        long known = member.getIncarnation();
+        switch (update.getState()) {
+            case ALIVE:
+                return update.getIncarnation() > known;
+            case SUSPECT:
+                return update.getIncarnation() > known
+                    || update.getIncarnation() == known && member.getState() == Member.State.ALIVE;
+            default:
+                return update.getIncarnation() > known
+                    || update.getIncarnation() == known && member.getState() != Member.State.DEAD;
+        }
+    }
+
+    private void broadcast(GossipMessage.Update update) {
+        // a newer update of a member replaces the one not yet fully gossiped
+        broadcasts.put(update.getAddress(), new Broadcast(update));
+    }
+
+    private List<GossipMessage.Update> piggyback(String target) {
+        List<Broadcast> candidates = new ArrayList<>(broadcasts.values());
+        Collections.sort(candidates, new Comparator<Broadcast>() {
+            @Override
+            public int compare(Broadcast o1, Broadcast o2) {
+                return Integer.compare(o1.transmits, o2.transmits);
+            }
+        });
+
+        int limit = retransmitLimit();
+        List<GossipMessage.Update> result = new ArrayList<>();
+        boolean aboutTarget = false;
+        for (int i = 0; i < Math.min(MAX_PIGGYBACK_UPDATES, candidates.size()); i++) {
+            Broadcast broadcast = candidates.get(i);
+            result.add(broadcast.update);
+            aboutTarget |= broadcast.update.getAddress().equals(target);
+            if (++broadcast.transmits >= limit) {
+                broadcasts.remove(broadcast.update.getAddress());
+            }
+        }
+
+        // tell a suspected or dead member so it can refute
+        Member member = members.get(target);
+        if (!aboutTarget && member != null && member.getState() != Member.State.ALIVE) {
+            result.add(new GossipMessage.Update(target, member.getState(), member.getIncarnation(),
+                member.getStateChangeMillis()));
+        }
+        return result;
+    }
+
+    private int retransmitLimit() {
+        int log = 32 - Integer.numberOfLeadingZeros(members.size() + 1);
+        return RETRANSMIT_MULTIPLIER * log;
+    }
+
+    private void send(String type, String target, long messageSeq, String probeTarget) {
+        if (target == null) {
+            return;
+        }
+        GossipMessage message = new GossipMessage();
+        message.setType(type);
+        message.setSeq(messageSeq);
+        message.setFrom(localAddress);
+        message.setIncarnation(incarnation);
+        message.setTarget(probeTarget);
+        message.setUpdates(piggyback(target));
+
+        transport.send(target, JSON.toJSONBytes(message));
+        MetricsMonitor.getGossipMessageCounter(type).increment();
+    }
+
+    private void updateMetrics() {
+        int alive = 1;
+        int suspect = 0;
+        int dead = 0;
+        for (Member member : members.values()) {
+            if (member.getState() == Member.State.ALIVE) {
+                alive++;
+            } else if (member.getState() == Member.State.SUSPECT) {
+                suspect++;
+            } else {
+                dead++;
+            }
+        }
+        MetricsMonitor.getGossipMemberMonitor(Member.State.ALIVE.name()).set(alive);
+        MetricsMonitor.getGossipMemberMonitor(Member.State.SUSPECT.name()).set(suspect);
+        MetricsMonitor.getGossipMemberMonitor(Member.State.DEAD.name()).set(dead);
+    }
+
+    private void notifyIfChanged() {
+        if (!changed) {
+            return;
+        }
+        changed = false;
+        List<Member> snapshot = getMembers();
+        for (Listener listener : listeners) {
+            try {
+                listener.onMembershipChange(snapshot);
+            } catch (Exception e) {
+                Loggers.SRV_LOG.error("[GOSSIP] error while notifying membership change", e);
+            }
+        }
+    }
+
+    /**
+     * Listener of the membership.
+     */
+    public interface Listener {
+
+        /**
+         * Called from the gossip thread when a member joins, leaves or changes its state.
+         *
+         * @param members all members including the local one
+         */
+        void onMembershipChange(List<Member> members);
+    }
+
+    private static class Probe {
+
+        private final String target;
+
+        private final long seq;
+
+        private final long sentMillis;
+
+        private boolean indirect;
+
+        Probe(String target, long seq, long sentMillis) {
+            this.target = target;
+            this.seq = seq;
+            this.sentMillis = sentMillis;
+        }
+    }
+
+    private static class Relay {
+
+        private final String requester;
+
+        private final long seq;
+
+        private final long createdMillis;
+
+        Relay(String requester, long seq, long createdMillis) {
+            this.requester = requester;
+            this.seq = seq;
+            this.createdMillis = createdMillis;
+        }
+    }
+
+    private static class Broadcast {
+
+        private final GossipMessage.Update update;
+
+        private int transmits;
+
+        Broadcast(GossipMessage.Update update) {
+            this.update = update;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.nacos.naming.cluster.gossip;
+
+import java.util.List;
+
+/**
+ * Message exchanged between members, every message carries the incarnation of its sender and piggybacks some
+ * recent membership updates.
+ *
+ * @author nacos
+ */
+public class GossipMessage {
+
+    public static final String PING = "ping";
+
+    public static final String PING_REQ = "pingReq";
+
+    public static final String ACK = "ack";
+
+    private String type;
+
+    private long seq;
+
+    private String from;
+
+    private long incarnation;
+
+    /**
+     * Member to probe on behalf of the sender of a {@link #PING_REQ}.
+     */
+    private String target;
+
+    private List<Update> updates;
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public void setFrom(String from) {
+        this.from = from;
+    }
+
+    public long getIncarnation() {
+        return incarnation;
+    }
+
+    public void setIncarnation(long incarnation) {
+        this.incarnation = incarnation;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public void setTarget(String target) {
+        this.target = target;
+    }
+
+    public List<Update> getUpdates() {
+        return updates;
+    }
+
+    public void setUpdates(List<Update> updates) {
+        this.updates = updates;
+    }
+
+    /**
+     * State of a member as decided by some node at {@code originMillis}.
+     */
+    public static class Update {
+
+        private String address;
+
+        private Member.State state;
+
+        private long incarnation;
+
+        private long originMillis;
+
+        public Update() {
+        }
+
+        public Update(String address, Member.State state, long incarnation, long originMillis) {
+            this.address = address;
+            this.state = state;
+            this.incarnation = incarnation;
+            this.originMillis = originMillis;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        public void setAddress(String address) {
+            this.address = address;
+        }
+
+        public Member.State getState() {
+            return state;
+        }
+
+        public void setState(Member.State state) {
+            this.state = state;
+        }
+
+        public long getIncarnation() {
+            return incarnation;
+        }
+
+        public void setIncarnation(long incarnation) {
+            this.incarnation = incarnation;
+        }
+
+        public long getOriginMillis() {
+            return originMillis;
+        }
+
+        public void setOriginMillis(long originMillis) {
+            this.originMillis = originMillis;
+        }
+    }
+}
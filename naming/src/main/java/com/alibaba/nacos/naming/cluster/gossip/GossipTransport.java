@@ -0,0 +1,47 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.nacos.naming.cluster.gossip;
+
+import java.io.IOException;
+
+/**
+ * Delivers gossip messages between members, unreliable delivery is fine.
+ *
+ * @author nacos
+ */
+public interface GossipTransport {
+
+    /**
+     * Start receiving messages for the local member.
+     *
+     * @param membership membership to hand the received messages to
+     * @throws IOException if the transport can not be opened
+     */
+    void start(GossipMembership membership) throws IOException;
+
+    /**
+     * Send a message to a member, failures are ignored.
+     *
+     * @param address address of the member
+     * @param data    encoded message
+     */
+    void send(String address, byte[] data);
+
+    /**
+     * Stop the transport.
+     */
+    void close();
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.nacos.naming.cluster.gossip;
+
+/**
+ * A server as seen by the gossip membership.
+ *
+ * @author nacos
+ */
+public class Member {
+
+    /**
+     * States of a member, a suspected member is still considered healthy until it is declared dead.
+     */
+    public enum State {
+        /**
+         * Member responds to probes.
+         */
+        ALIVE,
+        /**
+         * Member failed a probe and may be declared dead.
+         */
+        SUSPECT,
+        /**
+         * Member failed to refute the suspicion in time.
+         */
+        DEAD
+    }
+
+    private final String address;
+
+    private State state;
+
+    private long incarnation;
+
+    private long stateChangeMillis;
+
+    public Member(String address, State state, long incarnation, long stateChangeMillis) {
+        this.address = address;
+        this.state = state;
+        this.incarnation = incarnation;
+        this.stateChangeMillis = stateChangeMillis;
+    }
+
+    /**
+     * @return ip:port of the server, same as {@link com.alibaba.nacos.naming.cluster.servers.Server#getKey()}
+     */
+    public String getAddress() {
+        return address;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public long getIncarnation() {
+        return incarnation;
+    }
+
+    public long getStateChangeMillis() {
+        return stateChangeMillis;
+    }
+
+    public boolean isHealthy() {
+        return state != State.DEAD;
+    }
+
+    void update(State state, long incarnation, long now) {
+        if (this.state != state) {
+            this.stateChangeMillis = now;
+        }
+        this.state = state;
+        this.incarnation = incarnation;
+    }
+
+    Member copy() {
+        return new Member(address, state, incarnation, stateChangeMillis);
+    }
+
+    @Override
+    public String toString() {
+        return address + "#" + state + "#" + incarnation;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.nacos.naming.cluster.gossip;
+
+import com.alibaba.nacos.naming.misc.Loggers;
+import com.alibaba.nacos.naming.misc.UtilsAndCommons;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Gossip over UDP, a member listens on the port of its address plus an offset.
+ *
+ * @author nacos
+ */
+public class UdpGossipTransport implements GossipTransport {
+
+    private static final int MAX_PACKET_BYTES = 64 * 1024;
+
+    private final int portOffset;
+
+    private volatile DatagramSocket socket;
+
+    private ScheduledThreadPoolExecutor executor;
+
+    public UdpGossipTransport(int portOffset) {
+        this.portOffset = portOffset;
+    }
+
+    @Override
+    public void start(final GossipMembership membership) throws IOException {
+        final DatagramSocket current = new DatagramSocket(toSocketAddress(membership.getLocalAddress()).getPort());
+        socket = current;
+
+        executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r);
+                thread.setDaemon(true);
+                thread.setName("com.alibaba.nacos.naming.gossip.receiver");
+                return thread;
+            }
+        });
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                byte[] buffer = new byte[MAX_PACKET_BYTES];
+                while (!current.isClosed()) {
+                    try {
+                        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                        current.receive(packet);
+                        membership.receive(Arrays.copyOfRange(packet.getData(), packet.getOffset(),
+                            packet.getOffset() + packet.getLength()));
+                    } catch (Throwable e) {
+                        if (!current.isClosed()) {
+                            Loggers.SRV_LOG.warn("[GOSSIP] error while receiving: {}", e.getMessage());
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    @Override
+    public void send(String address, byte[] data) {
+        DatagramSocket current = socket;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.send(new DatagramPacket(data, data.length, toSocketAddress(address)));
+        } catch (Exception e) {
+            Loggers.SRV_LOG.debug("[GOSSIP] failed to send to {}: {}", address, e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (socket != null) {
+            socket.close();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private InetSocketAddress toSocketAddress(String address) {
+        String[] ipPort = address.split(UtilsAndCommons.IP_PORT_SPLITER);
+        return new InetSocketAddress(ipPort[0], Integer.parseInt(ipPort[1]) + portOffset);
+    }
+}
@@ -88,6 +88,8 @@ public class ClusterController {
         cluster.setMetadata(UtilsAndCommons.parseMetadata(metadata));
         cluster.init();
         service.getClusterMap().put(clusterName, cluster);
+        // configured by a user, no longer removed when empty:
+        service.setAutoCreated(false);
         service.setLastModifiedMillis(System.currentTimeMillis());
         service.recalculateChecksum();
         service.validate();
@@ -20,22 +20,32 @@ import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.alibaba.nacos.api.common.Constants;
 import com.alibaba.nacos.api.naming.CommonParams;
+import com.alibaba.nacos.api.naming.NamingResponseCode;
 import com.alibaba.nacos.api.naming.utils.NamingUtils;
 import com.alibaba.nacos.core.utils.WebUtils;
+import com.alibaba.nacos.naming.cluster.ServerListManager;
 import com.alibaba.nacos.naming.core.DistroMapper;
 import com.alibaba.nacos.naming.core.Instance;
 import com.alibaba.nacos.naming.core.Service;
 import com.alibaba.nacos.naming.core.ServiceManager;
 import com.alibaba.nacos.naming.exception.NacosException;
+import com.alibaba.nacos.naming.boot.RunningConfig;
+import com.alibaba.nacos.naming.healthcheck.ClientBeatProcessor;
+import com.alibaba.nacos.naming.healthcheck.HealthCheckReactor;
 import com.alibaba.nacos.naming.healthcheck.RsInfo;
+import com.alibaba.nacos.naming.misc.HttpClient;
 import com.alibaba.nacos.naming.misc.Loggers;
+import com.alibaba.nacos.naming.misc.NetUtils;
 import com.alibaba.nacos.naming.misc.SwitchDomain;
 import com.alibaba.nacos.naming.misc.UtilsAndCommons;
 import com.alibaba.nacos.naming.push.ClientInfo;
 import com.alibaba.nacos.naming.push.DataSource;
 import com.alibaba.nacos.naming.push.PushService;
 import com.alibaba.nacos.naming.web.CanDistro;
+import com.ning.http.client.AsyncCompletionHandler;
+import com.ning.http.client.Response;
 import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.codehaus.jackson.util.VersionUtil;
@@ -43,10 +53,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import javax.servlet.http.HttpServletRequest;
+import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Instance operation controller
@@ -57,6 +73,8 @@ import java.util.*;
 @RequestMapping(UtilsAndCommons.NACOS_NAMING_CONTEXT + "/instance")
 public class InstanceController {
 
+    private static final long BATCH_BEAT_FORWARD_TIMEOUT = 2000L;
+
     @Autowired
     private DistroMapper distroMapper;
 
@@ -69,6 +87,9 @@ public class InstanceController {
     @Autowired
     private ServiceManager serviceManager;
 
+    @Autowired
+    private ServerListManager serverListManager;
+
     private DataSource pushDataSource = new DataSource() {
 
         @Override
@@ -90,6 +111,10 @@ public class InstanceController {
         }
     };
 
+    public DataSource getPushDataSource() {
+        return pushDataSource;
+    }
+
     @CanDistro
     @RequestMapping(value = "", method = RequestMethod.POST)
     public String register(HttpServletRequest request) throws Exception {
@@ -97,7 +122,10 @@ public class InstanceController {
         String serviceName = WebUtils.required(request, CommonParams.SERVICE_NAME);
         String namespaceId = WebUtils.optional(request, CommonParams.NAMESPACE_ID, Constants.DEFAULT_NAMESPACE_ID);
 
-        serviceManager.registerInstance(namespaceId, serviceName, parseInstance(request));
+        Instance instance = parseInstance(request);
+        // beats of the client are compared with the metadata it registered:
+        instance.setClientMetadataChecksum(instance.getMetadataChecksum());
+        serviceManager.registerInstance(namespaceId, serviceName, instance);
         return "ok";
     }
 
@@ -210,6 +238,14 @@ public class InstanceController {
         throw new NacosException(NacosException.NOT_FOUND, "no matched ip found!");
     }
 
+    /**
+     * Receive client beat. A full beat carries the whole instance as JSON in parameter 'beat', a light beat only
+     * carries ip, port and cluster name and optionally the checksum of the instance metadata. Light beats of unknown
+     * instances, or whose checksum differs from the one of the metadata the client registered or beat last, are
+     * answered with {@link NamingResponseCode#RESOURCE_NOT_FOUND}, upon which the client sends a full beat with the
+     * checksum. Such a full beat replaces the metadata of the instance, keeping what else was set on the server.
+     * Metadata edited on the server is kept as long as the client does not change its own.
+     */
     @CanDistro
     @RequestMapping(value = "/beat", method = RequestMethod.PUT)
     public JSONObject beat(HttpServletRequest request) throws Exception {
@@ -217,42 +253,368 @@ public class InstanceController {
         JSONObject result = new JSONObject();
 
         result.put("clientBeatInterval", switchDomain.getClientBeatInterval());
+        result.put(CommonParams.LIGHT_BEAT_ENABLED, switchDomain.isLightBeatEnabled());
+        result.put(CommonParams.BATCH_BEAT_ENABLED, switchDomain.isBatchBeatEnabled());
 
         String namespaceId = WebUtils.optional(request, CommonParams.NAMESPACE_ID,
             Constants.DEFAULT_NAMESPACE_ID);
-        String beat = WebUtils.required(request, "beat");
-        RsInfo clientBeat = JSON.parseObject(beat, RsInfo.class);
+        String serviceName = WebUtils.required(request, CommonParams.SERVICE_NAME);
+        String beat = WebUtils.optional(request, "beat", StringUtils.EMPTY);
+
+        RsInfo clientBeat = null;
+        String clusterName;
+        String ip;
+        int port;
+        String checksum = WebUtils.optional(request, CommonParams.METADATA_CHECKSUM, StringUtils.EMPTY);
+
+        if (StringUtils.isNotBlank(beat)) {
+            clientBeat = JSON.parseObject(beat, RsInfo.class);
+
+            if (!switchDomain.isDefaultInstanceEphemeral() && !clientBeat.isEphemeral()) {
+                return result;
+            }
+
+            if (StringUtils.isBlank(clientBeat.getCluster())) {
+                clientBeat.setCluster(UtilsAndCommons.DEFAULT_CLUSTER_NAME);
+            }
+            clusterName = clientBeat.getCluster();
+            ip = clientBeat.getIp();
+            port = clientBeat.getPort();
+        } else {
+            clusterName = WebUtils.optional(request, CommonParams.CLUSTER_NAME, UtilsAndCommons.DEFAULT_CLUSTER_NAME);
+            ip = WebUtils.required(request, "ip");
+            port = Integer.parseInt(WebUtils.required(request, "port"));
+        }
 
-        if (!switchDomain.isDefaultInstanceEphemeral() && !clientBeat.isEphemeral()) {
+        if (Loggers.SRV_LOG.isDebugEnabled()) {
+            Loggers.SRV_LOG.debug("[CLIENT-BEAT] full arguments: beat: {}, serviceName: {}, ip: {}, port: {}",
+                clientBeat, serviceName, ip, port);
+        }
+
+        List<ClientBeatProcessor> processors = new ArrayList<>(1);
+        Instance instance = doBeat(namespaceId, serviceName, clientBeat, clusterName, ip, port, checksum, processors);
+
+        if (instance == null) {
+            result.put(CommonParams.CODE, NamingResponseCode.RESOURCE_NOT_FOUND);
             return result;
         }
 
-        if (StringUtils.isBlank(clientBeat.getCluster())) {
-            clientBeat.setCluster(UtilsAndCommons.DEFAULT_CLUSTER_NAME);
+        HealthCheckReactor.scheduleNow(processors.get(0));
+        result.put(CommonParams.CODE, NamingResponseCode.OK);
+        result.put("clientBeatInterval", instance.getInstanceHeartBeatInterval());
+        return result;
+    }
+
+    /**
+     * Receive beats of all instances registered by one client. Parameter 'beats' is a JSON array, each element
+     * carries the parameters of a single {@link #beat(HttpServletRequest)} request, with 'beat' as a nested object.
+     * Beats of services this server is responsible for are applied in one pass, the others are forwarded to their
+     * owners in one request per owner. Beats answered with {@link NamingResponseCode#RESOURCE_NOT_FOUND} by a single
+     * beat request are returned in 'notFound', beats whose owner failed or did not answer in time in 'failed'.
+     * <p>
+     * The beats are of many services, so this is not {@link CanDistro}: they are routed here one by one. Beats
+     * forwarded by a peer in the server list are applied without routing them again, the request is answered once
+     * all owners have replied, without holding the container thread meanwhile.
+     */
+    @RequestMapping(value = "/beat/batch", method = RequestMethod.POST)
+    public DeferredResult<JSONObject> batchBeat(HttpServletRequest request) throws Exception {
+
+        final JSONObject result = new JSONObject();
+        final DeferredResult<JSONObject> deferredResult = new DeferredResult<>(BATCH_BEAT_FORWARD_TIMEOUT);
+
+        result.put("clientBeatInterval", switchDomain.getClientBeatInterval());
+        result.put(CommonParams.LIGHT_BEAT_ENABLED, switchDomain.isLightBeatEnabled());
+        result.put(CommonParams.BATCH_BEAT_ENABLED, switchDomain.isBatchBeatEnabled());
+
+        if (!switchDomain.isBatchBeatEnabled()) {
+            deferredResult.setResult(result);
+            return deferredResult;
         }
-        String serviceName = WebUtils.required(request, CommonParams.SERVICE_NAME);
 
-        String clusterName = clientBeat.getCluster();
+        String namespaceId = WebUtils.optional(request, CommonParams.NAMESPACE_ID,
+            Constants.DEFAULT_NAMESPACE_ID);
+        JSONArray beats = JSON.parseArray(WebUtils.required(request, CommonParams.BEATS));
+        boolean fromPeer = isFromPeer(request);
+
+        JSONArray localBeats = new JSONArray();
+        Map<String, JSONArray> remoteBeats = new HashMap<>(8);
+        for (int i = 0; i < beats.size(); i++) {
+            JSONObject item = beats.getJSONObject(i);
+            String serviceName = item.getString(CommonParams.SERVICE_NAME);
+            if (StringUtils.isBlank(serviceName)) {
+                continue;
+            }
+            if (!serviceName.contains(Constants.SERVICE_INFO_SPLITER)) {
+                serviceName = Constants.DEFAULT_GROUP + Constants.SERVICE_INFO_SPLITER + serviceName;
+                item.put(CommonParams.SERVICE_NAME, serviceName);
+            }
 
-        if (Loggers.SRV_LOG.isDebugEnabled()) {
-            Loggers.SRV_LOG.debug("[CLIENT-BEAT] full arguments: beat: {}, serviceName: {}", clientBeat, serviceName);
+            // requests from peers are never forwarded again:
+            if (fromPeer || distroMapper.responsible(serviceName)) {
+                localBeats.add(item);
+                continue;
+            }
+
+            String owner = distroMapper.mapSrv(serviceName);
+            if (!remoteBeats.containsKey(owner)) {
+                remoteBeats.put(owner, new JSONArray());
+            }
+            remoteBeats.get(owner).add(item);
+        }
+
+        final List<Object> notFound = Collections.synchronizedList(new ArrayList<>());
+        final AtomicLong clientBeatInterval = new AtomicLong(Long.MAX_VALUE);
+        final Map<String, JSONArray> unanswered = new ConcurrentHashMap<>(remoteBeats);
+        final AtomicBoolean answered = new AtomicBoolean(false);
+        final Runnable answer = new Runnable() {
+            @Override
+            public void run() {
+                if (answered.compareAndSet(false, true)) {
+                    deferredResult.setResult(buildBatchBeatResult(result, notFound, clientBeatInterval, unanswered));
+                }
+            }
+        };
+        deferredResult.onTimeout(new Runnable() {
+            @Override
+            public void run() {
+                Loggers.SRV_LOG.warn("[CLIENT-BEAT] timed out forwarding batch beats to {}", unanswered.keySet());
+                answer.run();
+            }
+        });
+
+        // the beats applied here count as one more reply:
+        final AtomicInteger pending = new AtomicInteger(remoteBeats.size() + 1);
+        forwardBeats(namespaceId, remoteBeats, notFound, clientBeatInterval, unanswered, pending, answer);
+
+        final List<ClientBeatProcessor> processors = new ArrayList<>(localBeats.size());
+        for (int i = 0; i < localBeats.size(); i++) {
+            JSONObject item = localBeats.getJSONObject(i);
+            String serviceName = item.getString(CommonParams.SERVICE_NAME);
+            String checksum = StringUtils.defaultString(item.getString(CommonParams.METADATA_CHECKSUM));
+            JSONObject beat = item.getJSONObject("beat");
+
+            RsInfo clientBeat = null;
+            String clusterName;
+            String ip;
+            int port;
+            if (beat != null) {
+                clientBeat = beat.toJavaObject(RsInfo.class);
+                if (!switchDomain.isDefaultInstanceEphemeral() && !clientBeat.isEphemeral()) {
+                    continue;
+                }
+                if (StringUtils.isBlank(clientBeat.getCluster())) {
+                    clientBeat.setCluster(UtilsAndCommons.DEFAULT_CLUSTER_NAME);
+                }
+                clusterName = clientBeat.getCluster();
+                ip = clientBeat.getIp();
+                port = clientBeat.getPort();
+            } else {
+                clusterName = StringUtils.defaultIfBlank(item.getString(CommonParams.CLUSTER_NAME),
+                    UtilsAndCommons.DEFAULT_CLUSTER_NAME);
+                ip = item.getString("ip");
+                port = item.getIntValue("port");
+            }
+
+            Instance instance = null;
+            try {
+                instance = doBeat(namespaceId, serviceName, clientBeat, clusterName, ip, port, checksum, processors);
+            } catch (Exception e) {
+                Loggers.SRV_LOG.warn("[CLIENT-BEAT] failed to process beat of " + serviceName + ", " + ip + ":" + port, e);
+            }
+
+            if (instance == null) {
+                item.remove("beat");
+                notFound.add(item);
+            } else if (instance.getInstanceHeartBeatInterval() < clientBeatInterval.get()) {
+                clientBeatInterval.set(instance.getInstanceHeartBeatInterval());
+            }
         }
 
-        Instance instance = serviceManager.getInstance(namespaceId, serviceName, clientBeat.getCluster(), clientBeat.getIp(),
-            clientBeat.getPort());
+        if (!processors.isEmpty()) {
+            HealthCheckReactor.scheduleNow(new Runnable() {
+                @Override
+                public void run() {
+                    for (ClientBeatProcessor processor : processors) {
+                        try {
+                            processor.run();
+                        } catch (Exception e) {
+                            Loggers.SRV_LOG.warn("[CLIENT-BEAT] failed to process beat: " + processor.getRsInfo(), e);
+                        }
+                    }
+                }
+            });
+        }
+
+        if (pending.decrementAndGet() == 0) {
+            answer.run();
+        }
+        return deferredResult;
+    }
+
+    /**
+     * A request claiming to come from a server is only trusted if it comes from the address of a server in the list.
+     */
+    private boolean isFromPeer(HttpServletRequest request) {
+        String userAgent = request.getHeader("User-Agent");
+        if (StringUtils.isBlank(userAgent) || !userAgent.contains(UtilsAndCommons.NACOS_SERVER_HEADER)) {
+            return false;
+        }
+        String peer = request.getParameter("clientIP");
+        boolean trusted = StringUtils.isNotBlank(peer) && serverListManager.contains(peer)
+            && peer.startsWith(request.getRemoteAddr() + UtilsAndCommons.IP_PORT_SPLITER);
+        if (!trusted) {
+            Loggers.SRV_LOG.warn("[CLIENT-BEAT] batch beats from unknown server {}, claimed: {}",
+                request.getRemoteAddr(), peer);
+        }
+        return trusted;
+    }
+
+    private JSONObject buildBatchBeatResult(JSONObject result, List<Object> notFound, AtomicLong clientBeatInterval,
+                                            Map<String, JSONArray> unanswered) {
+        JSONArray failed = new JSONArray();
+        for (JSONArray items : unanswered.values()) {
+            for (int i = 0; i < items.size(); i++) {
+                JSONObject item = (JSONObject) items.getJSONObject(i).clone();
+                item.remove("beat");
+                failed.add(item);
+            }
+        }
+        if (!failed.isEmpty()) {
+            result.put(CommonParams.FAILED, failed);
+        }
+
+        if (clientBeatInterval.get() != Long.MAX_VALUE) {
+            result.put("clientBeatInterval", clientBeatInterval.get());
+        }
+        synchronized (notFound) {
+            result.put(CommonParams.NOT_FOUND, new JSONArray(new ArrayList<>(notFound)));
+        }
+        result.put(CommonParams.CODE, NamingResponseCode.OK);
+        return result;
+    }
+
+    /**
+     * Forward batch beats to the servers responsible for them, one request per server. Servers are removed from
+     * 'unanswered' once they have applied their beats, 'pending' is counted down as each request completes and
+     * 'answer' is run when it reaches zero.
+     */
+    private void forwardBeats(String namespaceId, Map<String, JSONArray> remoteBeats, final List<Object> notFound,
+                              final AtomicLong clientBeatInterval, final Map<String, JSONArray> unanswered,
+                              final AtomicInteger pending, final Runnable answer) {
+
+        for (Map.Entry<String, JSONArray> entry : remoteBeats.entrySet()) {
+            final String server = entry.getKey();
+
+            Map<String, String> params = new HashMap<>(4);
+            params.put(CommonParams.NAMESPACE_ID, namespaceId);
+            params.put(CommonParams.BEATS, entry.getValue().toJSONString());
+            params.put("clientIP", NetUtils.localServer());
+
+            String url = "http://" + server + RunningConfig.getContextPath()
+                + UtilsAndCommons.NACOS_NAMING_CONTEXT + "/instance/beat/batch";
+
+            try {
+                HttpClient.asyncHttpPost(url, null, params, new AsyncCompletionHandler() {
+                    @Override
+                    public Integer onCompleted(Response response) throws Exception {
+                        try {
+                            if (response.getStatusCode() != HttpURLConnection.HTTP_OK) {
+                                Loggers.SRV_LOG.warn("[CLIENT-BEAT] failed to forward batch beats to {}, code: {}",
+                                    server, response.getStatusCode());
+                                return 1;
+                            }
+                            JSONObject json = JSON.parseObject(response.getResponseBody());
+                            if (!json.getBooleanValue(CommonParams.BATCH_BEAT_ENABLED)) {
+                                // the owner took none of them:
+                                return 1;
+                            }
+                            JSONArray peerNotFound = json.getJSONArray(CommonParams.NOT_FOUND);
+                            if (peerNotFound != null) {
+                                notFound.addAll(peerNotFound);
+                            }
+                            unanswered.remove(server);
+                            long interval = json.getLongValue("clientBeatInterval");
+                            while (interval > 0) {
+                                long current = clientBeatInterval.get();
+                                if (interval >= current || clientBeatInterval.compareAndSet(current, interval)) {
+                                    break;
+                                }
+                            }
+                            return 0;
+                        } finally {
+                            if (pending.decrementAndGet() == 0) {
+                                answer.run();
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void onThrowable(Throwable t) {
+                        Loggers.SRV_LOG.warn("[CLIENT-BEAT] failed to forward batch beats to " + server, t);
+                        if (pending.decrementAndGet() == 0) {
+                            answer.run();
+                        }
+                    }
+                });
+            } catch (Exception e) {
+                Loggers.SRV_LOG.warn("[CLIENT-BEAT] failed to forward batch beats to " + server, e);
+                if (pending.decrementAndGet() == 0) {
+                    answer.run();
+                }
+            }
+        }
+    }
+
+    /**
+     * Apply a single client beat, registering the instance if a full beat is received for an unknown instance, or
+     * replacing its metadata if the client changed it since it was registered or beat in full last.
+     *
+     * @return the instance beaten, or null if a light beat is received for an unknown instance or with changed
+     * metadata
+     */
+    private Instance doBeat(String namespaceId, String serviceName, RsInfo clientBeat, String clusterName,
+                            String ip, int port, String checksum, List<ClientBeatProcessor> processors)
+        throws Exception {
+
+        Instance instance = serviceManager.getInstance(namespaceId, serviceName, clusterName, ip, port);
+
+        boolean metadataChanged = instance != null && instance.isEphemeral()
+            && StringUtils.isNotEmpty(checksum) && !checksum.equals(instance.getClientMetadataChecksum());
+
+        if (clientBeat == null) {
+            boolean unknown = instance == null || !instance.isEphemeral();
+            if (unknown || metadataChanged) {
+                return null;
+            }
+
+            clientBeat = new RsInfo();
+            clientBeat.setIp(ip);
+            clientBeat.setPort(port);
+            clientBeat.setCluster(clusterName);
+            clientBeat.setServiceName(serviceName);
+        } else if (instance == null) {
 
-        if (instance == null) {
             instance = new Instance();
             instance.setPort(clientBeat.getPort());
             instance.setIp(clientBeat.getIp());
             instance.setWeight(clientBeat.getWeight());
             instance.setMetadata(clientBeat.getMetadata());
+            instance.setClientMetadataChecksum(StringUtils.defaultIfEmpty(checksum, instance.getMetadataChecksum()));
             instance.setClusterName(clusterName);
             instance.setServiceName(serviceName);
             instance.setInstanceId(instance.generateInstanceId());
             instance.setEphemeral(clientBeat.isEphemeral());
 
             serviceManager.registerInstance(namespaceId, serviceName, instance);
+        } else if (metadataChanged) {
+
+            // the client changed its metadata, weight, enabled and the rest set on the server are kept:
+            Instance refreshed = JSON.parseObject(instance.toJSON(), Instance.class);
+            refreshed.setMetadata(clientBeat.getMetadata());
+            refreshed.setClientMetadataChecksum(checksum);
+
+            serviceManager.updateInstance(namespaceId, serviceName, refreshed);
+            instance = refreshed;
         }
 
         Service service = serviceManager.getService(namespaceId, serviceName);
@@ -261,12 +623,13 @@ public class InstanceController {
             throw new NacosException(NacosException.SERVER_ERROR, "service not found: " + serviceName + "@" + namespaceId);
         }
 
-        service.processClientBeat(clientBeat);
-        result.put("clientBeatInterval", instance.getInstanceHeartBeatInterval());
-        return result;
+        ClientBeatProcessor processor = new ClientBeatProcessor();
+        processor.setService(service);
+        processor.setRsInfo(clientBeat);
+        processors.add(processor);
+        return instance;
     }
 
-
     @RequestMapping("/statuses")
     public JSONObject listWithHealthStatus(HttpServletRequest request) throws NacosException {
 
@@ -302,6 +665,47 @@ public class InstanceController {
         return result;
     }
 
+    @RequestMapping(value = "/statuses/batch", method = RequestMethod.POST)
+    public JSONObject batchListWithHealthStatus(HttpServletRequest request) throws Exception {
+
+        String entity = IOUtils.toString(request.getInputStream(), "UTF-8");
+
+        if (StringUtils.isBlank(entity)) {
+            throw new NacosException(NacosException.INVALID_PARAM, "receive empty entity!");
+        }
+
+        JSONObject json = JSON.parseObject(entity);
+        String namespaceId = json.getString(CommonParams.NAMESPACE_ID);
+        if (StringUtils.isBlank(namespaceId)) {
+            namespaceId = Constants.DEFAULT_NAMESPACE_ID;
+        }
+
+        JSONArray serviceNames = json.getJSONArray("serviceNames");
+
+        JSONObject services = new JSONObject();
+
+        if (serviceNames != null) {
+            for (int i = 0; i < serviceNames.size(); i++) {
+                String serviceName = serviceNames.getString(i);
+                Service service = serviceManager.getService(namespaceId, serviceName);
+
+                if (service == null) {
+                    continue;
+                }
+
+                JSONArray ipArray = new JSONArray();
+                for (Instance ip : service.allIPs()) {
+                    ipArray.add(ip.toIPAddr() + "_" + ip.isHealthy());
+                }
+                services.put(serviceName, ipArray);
+            }
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("services", services);
+        return result;
+    }
+
     private Instance parseInstance(HttpServletRequest request) throws Exception {
 
         String serviceName = WebUtils.required(request, CommonParams.SERVICE_NAME);
@@ -387,7 +791,10 @@ public class InstanceController {
 
         // now try to enable the push
         try {
-            if (udpPort > 0 && pushService.canEnablePush(agent)) {
+            // clients demoted for not acking pushes fall back to polling with the default cache millis
+            boolean pushable = udpPort > 0 && pushService.canEnablePush(agent)
+                && !pushService.isPushDemoted(clientIP, udpPort);
+            if (pushable) {
                 pushService.addClient(namespaceId, serviceName,
                     clusters,
                     agent,
@@ -408,7 +815,8 @@ public class InstanceController {
 
         // filter ips using selector:
         if (service.getSelector() != null && StringUtils.isNotBlank(clientIP)) {
-            srvedIPs = service.getSelector().select(clientIP, srvedIPs);
+            srvedIPs = service.getSelector().select(clientIP, srvedIPs,
+                service.getChecksum() + "_" + service.getLastModifiedMillis() + "_" + clusters);
         }
 
         if (CollectionUtils.isEmpty(srvedIPs)) {
@@ -156,6 +156,8 @@ public class OperatorController {
         result.put("raftNotifyTaskCount", raftCore.getNotifyTaskCount());
         result.put("responsibleServiceCount", responsibleDomCount);
         result.put("responsibleInstanceCount", responsibleIPCount);
+        result.put("subscriberCount", pushService.getSubscriberCount());
+        result.put("reclaimedServiceCount", serviceManager.getReclaimedServiceCount());
         result.put("cpu", SystemUtils.getCPU());
         result.put("load", SystemUtils.getLoad());
         result.put("mem", SystemUtils.getMem());
@@ -28,7 +28,7 @@ import com.alibaba.nacos.naming.core.*;
 import com.alibaba.nacos.naming.exception.NacosException;
 import com.alibaba.nacos.naming.misc.Loggers;
 import com.alibaba.nacos.naming.misc.UtilsAndCommons;
-import com.alibaba.nacos.naming.pojo.Subscriber;
+import com.alibaba.nacos.naming.pojo.Subscribers;
 import com.alibaba.nacos.naming.selector.LabelSelector;
 import com.alibaba.nacos.naming.selector.NoneSelector;
 import com.alibaba.nacos.naming.selector.Selector;
@@ -251,6 +251,8 @@ public class ServiceController {
         Map<String, String> metadataMap = UtilsAndCommons.parseMetadata(metadata);
         service.setMetadata(metadataMap);
         service.setSelector(parseSelector(selector));
+        // configured by a user, no longer removed when empty:
+        service.setAutoCreated(false);
         service.setLastModifiedMillis(System.currentTimeMillis());
         service.recalculateChecksum();
         service.validate();
@@ -294,6 +296,12 @@ public class ServiceController {
         return result;
     }
 
+    /**
+     * Compare the checksums of services reported by the server responsible for them and fetch the ones differing.
+     *
+     * @return 'ok' if all checksums are the same, otherwise a JSON object listing in 'mismatched' the services
+     * being fetched
+     */
     @RequestMapping(value = "/status", method = RequestMethod.POST)
     public String serviceStatus(HttpServletRequest request) throws Exception {
 
@@ -317,6 +325,9 @@ public class ServiceController {
                 return "fail";
             }
 
+            List<String> mismatchedServices = new ArrayList<>();
+            List<String> missingServices = new ArrayList<>();
+
             for (Map.Entry<String, String> entry : checksums.serviceName2Checksum.entrySet()) {
                 if (entry == null || StringUtils.isEmpty(entry.getKey()) || StringUtils.isEmpty(entry.getValue())) {
                     continue;
@@ -326,6 +337,8 @@ public class ServiceController {
                 Service service = serviceManager.getService(checksums.namespaceId, serviceName);
 
                 if (service == null) {
+                    // not created here yet, so its statuses cannot be applied, but it is not in sync either:
+                    missingServices.add(serviceName);
                     continue;
                 }
 
@@ -336,11 +349,21 @@ public class ServiceController {
                         Loggers.SRV_LOG.debug("checksum of {} is not consistent, remote: {}, checksum: {}, local: {}",
                             serviceName, serverIP, checksum, service.getChecksum());
                     }
-                    serviceManager.addUpdatedService2Queue(checksums.namespaceId, serviceName, serverIP, checksum);
+                    mismatchedServices.add(serviceName);
                 }
             }
+
+            serviceManager.addUpdatedServices2Queue(checksums.namespaceId, mismatchedServices, serverIP);
+            mismatchedServices.addAll(missingServices);
+
+            if (!mismatchedServices.isEmpty()) {
+                JSONObject result = new JSONObject();
+                result.put("mismatched", mismatchedServices);
+                return result.toJSONString();
+            }
         } catch (Exception e) {
             Loggers.SRV_LOG.warn("[DOMAIN-STATUS] receive malformed data: " + statuses, e);
+            return "fail";
         }
 
         return "ok";
@@ -388,23 +411,11 @@ public class ServiceController {
         JSONObject result = new JSONObject();
 
         try {
-            List<Subscriber> subscribers = subscribeManager.getSubscribers(serviceName, namespaceId, aggregation);
-
-            int start = (pageNo - 1) * pageSize;
-            int end = start + pageSize;
-
-            int count = subscribers.size();
-
-            if (start < 0) {
-                start = 0;
-            }
-
-            if (end > count) {
-                end = count;
-            }
+            Subscribers subscribers = subscribeManager.getSubscribers(serviceName, namespaceId, aggregation,
+                pageNo, pageSize);
 
-            result.put("subscribers", subscribers.subList(start, end));
-            result.put("count", count);
+            result.put("subscribers", subscribers.getSubscribers());
+            result.put("count", subscribers.getCount());
 
             return result;
         } catch (Exception e) {
@@ -54,6 +54,15 @@ public class Cluster extends com.alibaba.nacos.api.naming.pojo.Cluster implement
     @JSONField(serialize = false)
     private Set<Instance> ephemeralInstances = new HashSet<>();
 
+    /**
+     * Map<ip:port, Instance>, to find the instance of a client beat without scanning the cluster
+     */
+    @JSONField(serialize = false)
+    private volatile Map<String, Instance> persistentInstanceIndex = new HashMap<>(16);
+
+    @JSONField(serialize = false)
+    private volatile Map<String, Instance> ephemeralInstanceIndex = new HashMap<>(16);
+
     @JSONField(serialize = false)
     private Service service;
 
@@ -104,6 +113,23 @@ public class Cluster extends com.alibaba.nacos.api.naming.pojo.Cluster implement
         return ephemeral ? new ArrayList<>(ephemeralInstances) : new ArrayList<>(persistentInstances);
     }
 
+    /**
+     * Get instance of this cluster by ip and port.
+     *
+     * @param ip   ip of instance
+     * @param port port of instance
+     * @return the persistent instance if exists, otherwise the ephemeral one, or null if not found
+     */
+    public Instance getInstance(String ip, int port) {
+        Instance instance = getInstance(ip, port, false);
+        return instance != null ? instance : getInstance(ip, port, true);
+    }
+
+    public Instance getInstance(String ip, int port, boolean ephemeral) {
+        Map<String, Instance> index = ephemeral ? ephemeralInstanceIndex : persistentInstanceIndex;
+        return index.get(ip + ":" + port);
+    }
+
     public void init() {
         if (inited) {
             return;
@@ -178,6 +204,7 @@ public class Cluster extends com.alibaba.nacos.api.naming.pojo.Cluster implement
         Cluster cluster = new Cluster(this.getName(), service);
         cluster.setHealthChecker(getHealthChecker().clone());
         cluster.persistentInstances = new HashSet<>();
+        cluster.persistentInstanceIndex = new HashMap<>(16);
         cluster.checkTask = null;
         cluster.metadata = new HashMap<>(metadata);
         return cluster;
@@ -236,15 +263,25 @@ public class Cluster extends com.alibaba.nacos.api.naming.pojo.Cluster implement
 
             for (Instance ip : deadIPs) {
                 HealthCheckStatus.remv(ip);
+                if (checkTask != null) {
+                    checkTask.markRecovered(ip);
+                }
             }
         }
 
         toUpdateInstances = new HashSet<>(ips);
 
+        Map<String, Instance> index = new HashMap<>(toUpdateInstances.size());
+        for (Instance ip : toUpdateInstances) {
+            index.put(ip.toIPAddr(), ip);
+        }
+
         if (ephemeral) {
             ephemeralInstances = toUpdateInstances;
+            ephemeralInstanceIndex = index;
         } else {
             persistentInstances = toUpdateInstances;
+            persistentInstanceIndex = index;
         }
     }
 
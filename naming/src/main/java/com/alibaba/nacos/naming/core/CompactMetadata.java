@@ -0,0 +1,174 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.nacos.naming.core;
+
+import com.alibaba.nacos.naming.misc.UtilsAndCommons;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable metadata of an instance.
+ * <p>
+ * Instances mostly share the same metadata keys and many of the values. The sorted keys are held once for all maps
+ * with the same keys and short values are interned, so a map is one object and an array of values instead of the
+ * table and the entries of a {@link java.util.HashMap}. Keys are found by binary search, which is as fast as hashing
+ * for the few keys metadata has.
+ *
+ * @author nacos
+ */
+public final class CompactMetadata extends AbstractMap<String, String> {
+
+    /**
+     * Longer values are mostly unique to an instance, interning them would only cost.
+     */
+    private static final int MAX_INTERNED_VALUE_LENGTH = 64;
+
+    private static final Interner<Keys> KEYS_INTERNER = Interners.newWeakInterner();
+
+    private static final Keys NO_KEYS = KEYS_INTERNER.intern(new Keys(new String[0]));
+
+    private static final String[] NO_VALUES = new String[0];
+
+    private final Keys keys;
+
+    private final String[] values;
+
+    private CompactMetadata(Keys keys, String[] values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    /**
+     * @return compact copy of the metadata, the metadata itself if already compact or if it has a null key
+     */
+    public static Map<String, String> of(Map<String, String> metadata) {
+        if (metadata == null || metadata instanceof CompactMetadata) {
+            return metadata;
+        }
+        if (metadata.isEmpty()) {
+            // not shared, fastjson would write a reference for a map met twice in the same document
+            return new CompactMetadata(NO_KEYS, NO_VALUES);
+        }
+        if (metadata.containsKey(null)) {
+            return metadata;
+        }
+
+        String[] names = new String[metadata.size()];
+        int i = 0;
+        for (String name : metadata.keySet()) {
+            names[i++] = UtilsAndCommons.intern(name);
+        }
+        Arrays.sort(names);
+        Keys keys = KEYS_INTERNER.intern(new Keys(names));
+
+        String[] values = new String[names.length];
+        for (i = 0; i < names.length; i++) {
+            String value = metadata.get(keys.names[i]);
+            values[i] = value != null && value.length() <= MAX_INTERNED_VALUE_LENGTH
+                ? UtilsAndCommons.intern(value) : value;
+        }
+        return new CompactMetadata(keys, values);
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public String get(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : values[index];
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        return new AbstractSet<Map.Entry<String, String>>() {
+            @Override
+            public Iterator<Map.Entry<String, String>> iterator() {
+                return new Iterator<Map.Entry<String, String>>() {
+
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < values.length;
+                    }
+
+                    @Override
+                    public Map.Entry<String, String> next() {
+                        if (next >= values.length) {
+                            throw new NoSuchElementException();
+                        }
+                        Map.Entry<String, String> entry = new SimpleImmutableEntry<>(keys.names[next], values[next]);
+                        next++;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return values.length;
+            }
+        };
+    }
+
+    private int indexOf(Object key) {
+        if (!(key instanceof String)) {
+            return -1;
+        }
+        return Arrays.binarySearch(keys.names, key);
+    }
+
+    /**
+     * Sorted metadata keys, shared by all maps with the same keys.
+     */
+    private static final class Keys {
+
+        private final String[] names;
+
+        private final int hash;
+
+        Keys(String[] names) {
+            this.names = names;
+            this.hash = Arrays.hashCode(names);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Keys && Arrays.equals(names, ((Keys) obj).names);
+        }
+    }
+}
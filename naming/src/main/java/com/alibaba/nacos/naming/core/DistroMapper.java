@@ -19,6 +19,7 @@ import com.alibaba.nacos.core.utils.SystemUtils;
 import com.alibaba.nacos.naming.cluster.ServerListManager;
 import com.alibaba.nacos.naming.cluster.servers.Server;
 import com.alibaba.nacos.naming.cluster.servers.ServerChangeListener;
+import com.alibaba.nacos.naming.healthcheck.ClientBeatTimingWheel;
 import com.alibaba.nacos.naming.misc.Loggers;
 import com.alibaba.nacos.naming.misc.NetUtils;
 import com.alibaba.nacos.naming.misc.SwitchDomain;
@@ -114,5 +115,6 @@ public class DistroMapper implements ServerChangeListener {
             newHealthyList.add(server.getKey());
         }
         healthyList = newHealthyList;
+        ClientBeatTimingWheel.onDistroChanged(this);
     }
 }
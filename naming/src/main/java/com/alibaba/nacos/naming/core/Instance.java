@@ -17,11 +17,14 @@ package com.alibaba.nacos.naming.core;
 
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.annotation.JSONField;
+import com.alibaba.nacos.api.naming.utils.NamingUtils;
 import com.alibaba.nacos.naming.healthcheck.HealthCheckStatus;
 import com.alibaba.nacos.naming.misc.Loggers;
 import com.alibaba.nacos.naming.misc.UtilsAndCommons;
 import org.apache.commons.lang3.math.NumberUtils;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -48,6 +51,18 @@ public class Instance extends com.alibaba.nacos.api.naming.pojo.Instance impleme
 
     private String app;
 
+    @JSONField(serialize = false)
+    private volatile Map<String, String> checksumMetadata;
+
+    @JSONField(serialize = false)
+    private volatile String metadataChecksum;
+
+    /**
+     * Checksum of the metadata the client registered or sent in its last full beat, kept when the instance is
+     * updated on the server.
+     */
+    private String clientMetadataChecksum;
+
     private static final Pattern IP_PATTERN
         = Pattern.compile("(\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}):?(\\d{1,5})?");
 
@@ -91,8 +106,8 @@ public class Instance extends com.alibaba.nacos.api.naming.pojo.Instance impleme
         this.setIp(ip.trim());
         this.setPort(port);
         this.setClusterName(clusterName);
-        this.tenant = tenant;
-        this.app = app;
+        this.setTenant(tenant);
+        this.setApp(app);
     }
 
     public static Instance fromString(String config) {
@@ -283,7 +298,7 @@ public class Instance extends com.alibaba.nacos.api.naming.pojo.Instance impleme
     }
 
     public void setApp(String app) {
-        this.app = app;
+        this.app = UtilsAndCommons.intern(app);
     }
 
     public String getTenant() {
@@ -291,7 +306,57 @@ public class Instance extends com.alibaba.nacos.api.naming.pojo.Instance impleme
     }
 
     public void setTenant(String tenant) {
-        this.tenant = tenant;
+        this.tenant = UtilsAndCommons.intern(tenant);
+    }
+
+    @Override
+    public void setClusterName(String clusterName) {
+        super.setClusterName(UtilsAndCommons.intern(clusterName));
+    }
+
+    @Override
+    public void setServiceName(String serviceName) {
+        super.setServiceName(UtilsAndCommons.intern(serviceName));
+    }
+
+    /**
+     * The metadata is stored as an immutable {@link CompactMetadata}, replace it to change it.
+     */
+    @Override
+    public void setMetadata(Map<String, String> metadata) {
+        super.setMetadata(CompactMetadata.of(metadata));
+    }
+
+    @Override
+    public void addMetadata(String key, String value) {
+        Map<String, String> metadata = new HashMap<>(getMetadata());
+        metadata.put(key, value);
+        setMetadata(metadata);
+    }
+
+    /**
+     * Checksum of the metadata, cached until the metadata map is replaced.
+     *
+     * @return checksum of metadata, the same as calculated by clients
+     */
+    @JSONField(serialize = false)
+    public String getMetadataChecksum() {
+        Map<String, String> metadata = getMetadata();
+        String checksum = metadataChecksum;
+        if (checksum == null || checksumMetadata != metadata) {
+            checksum = NamingUtils.getMetadataChecksum(metadata);
+            metadataChecksum = checksum;
+            checksumMetadata = metadata;
+        }
+        return checksum;
+    }
+
+    public String getClientMetadataChecksum() {
+        return clientMetadataChecksum;
+    }
+
+    public void setClientMetadataChecksum(String clientMetadataChecksum) {
+        this.clientMetadataChecksum = clientMetadataChecksum;
     }
 
     public String generateInstanceId() {
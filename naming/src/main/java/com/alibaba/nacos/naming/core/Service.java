@@ -21,6 +21,7 @@ import com.alibaba.nacos.naming.boot.SpringContext;
 import com.alibaba.nacos.naming.consistency.KeyBuilder;
 import com.alibaba.nacos.naming.consistency.RecordListener;
 import com.alibaba.nacos.naming.healthcheck.ClientBeatCheckTask;
+import com.alibaba.nacos.naming.healthcheck.ClientBeatTimingWheel;
 import com.alibaba.nacos.naming.healthcheck.ClientBeatProcessor;
 import com.alibaba.nacos.naming.healthcheck.HealthCheckReactor;
 import com.alibaba.nacos.naming.healthcheck.RsInfo;
@@ -71,6 +72,11 @@ public class Service extends com.alibaba.nacos.api.naming.pojo.Service implement
 
     private volatile long lastModifiedMillis = 0L;
 
+    /**
+     * Created silently on registration rather than by a user, it is removed once left empty.
+     */
+    private boolean autoCreated = false;
+
     private volatile String checksum;
 
     /**
@@ -123,6 +129,14 @@ public class Service extends com.alibaba.nacos.api.naming.pojo.Service implement
         this.lastModifiedMillis = lastModifiedMillis;
     }
 
+    public boolean isAutoCreated() {
+        return autoCreated;
+    }
+
+    public void setAutoCreated(boolean autoCreated) {
+        this.autoCreated = autoCreated;
+    }
+
     public Boolean getResetWeight() {
         return resetWeight;
     }
@@ -238,6 +252,10 @@ public class Service extends com.alibaba.nacos.api.naming.pojo.Service implement
             clusterMap.get(entry.getKey()).updateIPs(entryIPs, ephemeral);
         }
 
+        if (ephemeral) {
+            ClientBeatTimingWheel.sync(this, allIPs(true));
+        }
+
         setLastModifiedMillis(System.currentTimeMillis());
         getPushService().serviceChanged(this);
         StringBuilder stringBuilder = new StringBuilder();
@@ -251,9 +269,12 @@ public class Service extends com.alibaba.nacos.api.naming.pojo.Service implement
 
     }
 
-    public void init() {
+    @JSONField(serialize = false)
+    public ClientBeatCheckTask getClientBeatCheckTask() {
+        return clientBeatCheckTask;
+    }
 
-        HealthCheckReactor.scheduleCheck(clientBeatCheckTask);
+    public void init() {
 
         for (Map.Entry<String, Cluster> entry : clusterMap.entrySet()) {
             entry.getValue().setService(this);
@@ -265,7 +286,7 @@ public class Service extends com.alibaba.nacos.api.naming.pojo.Service implement
         for (Map.Entry<String, Cluster> entry : clusterMap.entrySet()) {
             entry.getValue().destroy();
         }
-        HealthCheckReactor.cancelCheck(clientBeatCheckTask);
+        ClientBeatTimingWheel.cancel(this);
     }
 
     public List<Instance> allIPs() {
@@ -420,6 +441,8 @@ public class Service extends com.alibaba.nacos.api.naming.pojo.Service implement
 
         selector = vDom.getSelector();
 
+        autoCreated = vDom.isAutoCreated();
+
         setMetadata(vDom.getMetadata());
 
         updateOrAddCluster(vDom.getClusterMap().values());
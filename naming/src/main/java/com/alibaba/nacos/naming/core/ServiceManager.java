@@ -30,6 +30,7 @@ import com.alibaba.nacos.naming.consistency.RecordListener;
 import com.alibaba.nacos.naming.consistency.persistent.raft.RaftPeer;
 import com.alibaba.nacos.naming.consistency.persistent.raft.RaftPeerSet;
 import com.alibaba.nacos.naming.misc.*;
+import com.alibaba.nacos.naming.monitor.MetricsMonitor;
 import com.alibaba.nacos.naming.push.PushService;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -42,8 +43,11 @@ import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
@@ -62,9 +66,18 @@ public class ServiceManager implements RecordListener<Service> {
      */
     private Map<String, Map<String, Service>> serviceMap = new ConcurrentHashMap<>();
 
+    private static final int MAX_SERVICES_PER_FETCH = 1000;
+
+    private static final int MAX_SERVICES_PER_RECLAIM = 1000;
+
     private LinkedBlockingDeque<ServiceKey> toBeUpdatedServicesQueue = new LinkedBlockingDeque<>(1024 * 1024);
 
-    private Synchronizer synchronizer = new ServiceStatusSynchronizer();
+    private ServiceStatusSynchronizer synchronizer = new ServiceStatusSynchronizer();
+
+    /**
+     * Map<server, Map<namespace, Map<group::serviceName, checksum>>>, checksums acknowledged by each server
+     */
+    private final Map<String, Map<String, Map<String, String>>> reportedChecksums = new ConcurrentHashMap<>();
 
     private final Lock lock = new ReentrantLock();
 
@@ -83,6 +96,11 @@ public class ServiceManager implements RecordListener<Service> {
     @Autowired
     private PushService pushService;
 
+    @Autowired
+    private GlobalConfig globalConfig;
+
+    private final AtomicLong reclaimedServiceCount = new AtomicLong();
+
     private final Object putServiceLock = new Object();
 
     @PostConstruct
@@ -92,6 +110,11 @@ public class ServiceManager implements RecordListener<Service> {
 
         UtilsAndCommons.SERVICE_UPDATE_EXECUTOR.submit(new UpdatedServiceProcessor());
 
+        if (globalConfig.isEmptyServiceReclaimEnabled()) {
+            GlobalExecutor.registerEmptyServiceReclaimer(new EmptyServiceReclaimer(),
+                globalConfig.getEmptyServiceReclaimPeriodMillis());
+        }
+
         try {
             Loggers.SRV_LOG.info("listen for service meta change");
             consistencyService.listen(KeyBuilder.SERVICE_META_KEY_PREFIX, this);
@@ -104,13 +127,24 @@ public class ServiceManager implements RecordListener<Service> {
         return serviceMap.get(namespaceId);
     }
 
-    public void addUpdatedService2Queue(String namespaceId, String serviceName, String serverIP, String checksum) {
+    /**
+     * Queue services whose status should be fetched from the given server, all of them are fetched in one request.
+     *
+     * @param namespaceId  namespace of the services
+     * @param serviceNames names of the services
+     * @param serverIP     server to fetch status from
+     */
+    public void addUpdatedServices2Queue(String namespaceId, List<String> serviceNames, String serverIP) {
+        if (serviceNames == null || serviceNames.isEmpty()) {
+            return;
+        }
+        ServiceKey serviceKey = new ServiceKey(namespaceId, serviceNames, serverIP);
         lock.lock();
         try {
-            toBeUpdatedServicesQueue.offer(new ServiceKey(namespaceId, serviceName, serverIP, checksum), 5, TimeUnit.MILLISECONDS);
+            toBeUpdatedServicesQueue.offer(serviceKey, 5, TimeUnit.MILLISECONDS);
         } catch (Exception e) {
             toBeUpdatedServicesQueue.poll();
-            toBeUpdatedServicesQueue.add(new ServiceKey(namespaceId, serviceName, serverIP, checksum));
+            toBeUpdatedServicesQueue.add(serviceKey);
             Loggers.SRV_LOG.error("[DOMAIN-STATUS] Failed to add service to be updatd to queue.", e);
         } finally {
             lock.unlock();
@@ -182,27 +216,63 @@ public class ServiceManager implements RecordListener<Service> {
         chooseServiceMap(namespace).remove(name);
     }
 
+    /**
+     * Coalesces queued services by source server and namespace, so that all pending services of one server
+     * are fetched in one request. At most {@link GlobalExecutor#SERVICE_UPDATE_THREAD_COUNT} fetches are in
+     * flight, services queued meanwhile are merged into the next batches.
+     */
     private class UpdatedServiceProcessor implements Runnable {
+
+        private final Semaphore fetchPermits = new Semaphore(GlobalExecutor.SERVICE_UPDATE_THREAD_COUNT);
+
         //get changed service from other server asynchronously
         @Override
         public void run() {
-            ServiceKey serviceKey = null;
-
-            try {
-                while (true) {
-                    try {
-                        serviceKey = toBeUpdatedServicesQueue.take();
-                    } catch (Exception e) {
-                        Loggers.EVT_LOG.error("[UPDATE-DOMAIN] Exception while taking item from LinkedBlockingDeque.");
+            List<ServiceKey> serviceKeys = new ArrayList<>();
+
+            while (true) {
+                try {
+                    fetchPermits.acquire();
+
+                    serviceKeys.clear();
+                    serviceKeys.add(toBeUpdatedServicesQueue.take());
+                    toBeUpdatedServicesQueue.drainTo(serviceKeys);
+
+                    // Map<serverIP, Map<namespace, serviceNames>>
+                    Map<String, Map<String, Set<String>>> pending = new HashMap<>(16);
+                    long oldest = System.currentTimeMillis();
+                    for (ServiceKey serviceKey : serviceKeys) {
+                        oldest = Math.min(oldest, serviceKey.getTimestamp());
+                        pending.computeIfAbsent(serviceKey.getServerIP(), k -> new HashMap<>(4))
+                            .computeIfAbsent(serviceKey.getNamespaceId(), k -> new LinkedHashSet<>())
+                            .addAll(serviceKey.getServiceNames());
+                    }
+                    MetricsMonitor.getServiceUpdateLagMonitor().set(System.currentTimeMillis() - oldest);
+
+                    List<ServiceKey> batches = new ArrayList<>();
+                    for (Map.Entry<String, Map<String, Set<String>>> serverEntry : pending.entrySet()) {
+                        for (Map.Entry<String, Set<String>> entry : serverEntry.getValue().entrySet()) {
+                            List<String> serviceNames = new ArrayList<>(entry.getValue());
+                            for (int i = 0; i < serviceNames.size(); i += MAX_SERVICES_PER_FETCH) {
+                                List<String> batch = serviceNames.subList(i, Math.min(serviceNames.size(), i + MAX_SERVICES_PER_FETCH));
+                                batches.add(new ServiceKey(entry.getKey(), new ArrayList<>(batch), serverEntry.getKey()));
+                            }
+                        }
                     }
 
-                    if (serviceKey == null) {
-                        continue;
+                    fetchPermits.release();
+                    for (ServiceKey batch : batches) {
+                        fetchPermits.acquire();
+                        GlobalExecutor.submitServiceUpdate(new ServiceUpdater(batch, fetchPermits));
                     }
-                    GlobalExecutor.submitServiceUpdate(new ServiceUpdater(serviceKey));
+                } catch (InterruptedException e) {
+                    Loggers.EVT_LOG.error("[UPDATE-DOMAIN] interrupted while processing services: {}", serviceKeys);
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Throwable e) {
+                    fetchPermits.release();
+                    Loggers.EVT_LOG.error("[UPDATE-DOMAIN] Exception while update services: {}", serviceKeys, e);
                 }
-            } catch (Exception e) {
-                Loggers.EVT_LOG.error("[UPDATE-DOMAIN] Exception while update service: {}", serviceKey, e);
             }
         }
     }
@@ -210,22 +280,26 @@ public class ServiceManager implements RecordListener<Service> {
     private class ServiceUpdater implements Runnable {
 
         String namespaceId;
-        String serviceName;
+        List<String> serviceNames;
         String serverIP;
+        Semaphore fetchPermits;
 
-        public ServiceUpdater(ServiceKey serviceKey) {
+        public ServiceUpdater(ServiceKey serviceKey, Semaphore fetchPermits) {
             this.namespaceId = serviceKey.getNamespaceId();
-            this.serviceName = serviceKey.getServiceName();
+            this.serviceNames = serviceKey.getServiceNames();
             this.serverIP = serviceKey.getServerIP();
+            this.fetchPermits = fetchPermits;
         }
 
         @Override
         public void run() {
             try {
-                updatedHealthStatus(namespaceId, serviceName, serverIP);
+                updatedHealthStatus(namespaceId, serviceNames, serverIP);
             } catch (Exception e) {
-                Loggers.SRV_LOG.warn("[DOMAIN-UPDATER] Exception while update service: {} from {}, error: {}",
-                    serviceName, serverIP, e);
+                Loggers.SRV_LOG.warn("[DOMAIN-UPDATER] Exception while update services: {} from {}, error: {}",
+                    serviceNames, serverIP, e);
+            } finally {
+                fetchPermits.release();
             }
         }
     }
@@ -265,11 +339,68 @@ public class ServiceManager implements RecordListener<Service> {
         return matchList.size();
     }
 
-    public void updatedHealthStatus(String namespaceId, String serviceName, String serverIP) {
+    /**
+     * Fetch and apply the health statuses of one service from the server responsible for it.
+     *
+     * @return false if the statuses could not be fetched
+     */
+    public boolean updatedHealthStatus(String namespaceId, String serviceName, String serverIP) {
         Message msg = synchronizer.get(serverIP, UtilsAndCommons.assembleFullServiceName(namespaceId, serviceName));
-        JSONObject serviceJson = JSON.parseObject(msg.getData());
+        if (msg == null) {
+            return false;
+        }
+
+        JSONArray ipList = JSON.parseObject(msg.getData()).getJSONArray("ips");
+        if (ipList != null) {
+            updatedHealthStatus(namespaceId, serviceName, ipList);
+        }
+        return true;
+    }
+
+    public void updatedHealthStatus(String namespaceId, List<String> serviceNames, String serverIP) {
+        Message msg = synchronizer.getBatch(serverIP, namespaceId, serviceNames);
+        if (msg == null) {
+            // the server may not serve batch fetches yet during a rolling upgrade, fetch the services one by one,
+            // giving up at the first failure in case the server is just unreachable:
+            for (String serviceName : serviceNames) {
+                if (!updatedHealthStatus(namespaceId, serviceName, serverIP)) {
+                    return;
+                }
+            }
+            return;
+        }
+
+        JSONObject services = JSON.parseObject(msg.getData()).getJSONObject("services");
+        if (services == null) {
+            return;
+        }
 
-        JSONArray ipList = serviceJson.getJSONArray("ips");
+        // apply the statuses of different services in parallel and wait, so fetches are throttled by appliers:
+        CountDownLatch latch = new CountDownLatch(services.size());
+        for (String serviceName : services.keySet()) {
+            JSONArray ipList = services.getJSONArray(serviceName);
+            GlobalExecutor.submitServiceStatusApply(() -> {
+                try {
+                    if (ipList != null) {
+                        updatedHealthStatus(namespaceId, serviceName, ipList);
+                    }
+                } catch (Exception e) {
+                    Loggers.SRV_LOG.warn("[DOMAIN-UPDATER] Exception while update service: {} from {}, error: {}",
+                        serviceName, serverIP, e);
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void updatedHealthStatus(String namespaceId, String serviceName, JSONArray ipList) {
         Map<String, String> ipsMap = new HashMap<>(ipList.size());
         for (int i = 0; i < ipList.size(); i++) {
 
@@ -316,6 +447,10 @@ public class ServiceManager implements RecordListener<Service> {
 
     }
 
+    public int getUpdatedServiceQueueSize() {
+        return toBeUpdatedServicesQueue.size();
+    }
+
     public Set<String> getAllServiceNames(String namespaceId) {
         return serviceMap.get(namespaceId).keySet();
     }
@@ -392,6 +527,10 @@ public class ServiceManager implements RecordListener<Service> {
         consistencyService.remove(KeyBuilder.buildServiceMetaKey(namespaceId, serviceName));
     }
 
+    public long getReclaimedServiceCount() {
+        return reclaimedServiceCount.get();
+    }
+
     public void addOrReplaceService(Service service) throws NacosException {
         consistencyService.put(KeyBuilder.buildServiceMetaKey(service.getNamespaceId(), service.getName()), service);
     }
@@ -409,6 +548,7 @@ public class ServiceManager implements RecordListener<Service> {
             service.setName(serviceName);
             service.setNamespaceId(namespaceId);
             service.setGroupName(NamingUtils.getGroupName(serviceName));
+            service.setAutoCreated(true);
             // now validate the service. if failed, exception will be thrown
             service.setLastModifiedMillis(System.currentTimeMillis());
             service.recalculateChecksum();
@@ -434,6 +574,7 @@ public class ServiceManager implements RecordListener<Service> {
         }
 
         Loggers.SRV_LOG.info("creating empty service {}:{}", namespaceId, serviceName);
+        service.setAutoCreated(true);
         // now validate the service. if failed, exception will be thrown
         service.setLastModifiedMillis(System.currentTimeMillis());
         service.recalculateChecksum();
@@ -526,21 +667,12 @@ public class ServiceManager implements RecordListener<Service> {
             return null;
         }
 
-        List<String> clusters = new ArrayList<>();
-        clusters.add(cluster);
-
-        List<Instance> ips = service.allIPs(clusters);
-        if (ips == null || ips.isEmpty()) {
+        Cluster clusterObj = service.getClusterMap().get(cluster);
+        if (clusterObj == null) {
             return null;
         }
 
-        for (Instance instance : ips) {
-            if (instance.getIp().equals(ip) && instance.getPort() == port) {
-                return instance;
-            }
-        }
-
-        return null;
+        return clusterObj.getInstance(ip, port);
     }
 
     public List<Instance> updateIpAddresses(Service service, String action, boolean ephemeral, Instance... ips) throws NacosException {
@@ -574,6 +706,11 @@ public class ServiceManager implements RecordListener<Service> {
             if (UtilsAndCommons.UPDATE_INSTANCE_ACTION_REMOVE.equals(action)) {
                 instanceMap.remove(instance.getDatumKey());
             } else {
+                Instance oldInstance = instanceMap.get(instance.getDatumKey());
+                if (oldInstance != null && instance.getClientMetadataChecksum() == null) {
+                    // updates on the server keep what the client registered:
+                    instance.setClientMetadataChecksum(oldInstance.getClientMetadataChecksum());
+                }
                 instanceMap.put(instance.getDatumKey(), instance);
             }
 
@@ -766,6 +903,8 @@ public class ServiceManager implements RecordListener<Service> {
 
     private class ServiceReporter implements Runnable {
 
+        private long round = 0;
+
         @Override
         public void run() {
             try {
@@ -777,9 +916,24 @@ public class ServiceManager implements RecordListener<Service> {
                     return;
                 }
 
+                List<Server> sameSiteServers = serverListManager.getServers();
+
+                if (sameSiteServers == null || sameSiteServers.size() <= 0) {
+                    return;
+                }
+
+                Set<String> serverKeys = new HashSet<>();
+                for (Server server : sameSiteServers) {
+                    serverKeys.add(server.getKey());
+                }
+                // forget servers that left, they will receive a full report if they come back:
+                reportedChecksums.keySet().retainAll(serverKeys);
+
+                boolean fullSync = round++ % Math.max(1, switchDomain.getServiceStatusFullSyncRounds()) == 0;
+
                 for (String namespaceId : allServiceNames.keySet()) {
 
-                    ServiceChecksum checksum = new ServiceChecksum(namespaceId);
+                    Map<String, String> checksums = new HashMap<>(allServiceNames.get(namespaceId).size());
 
                     for (String serviceName : allServiceNames.get(namespaceId)) {
                         if (!distroMapper.responsible(serviceName)) {
@@ -794,24 +948,43 @@ public class ServiceManager implements RecordListener<Service> {
 
                         service.recalculateChecksum();
 
-                        checksum.addItem(serviceName, service.getChecksum());
+                        checksums.put(serviceName, service.getChecksum());
                     }
 
-                    Message msg = new Message();
+                    for (Server server : sameSiteServers) {
+                        if (server.getKey().equals(NetUtils.localServer())) {
+                            continue;
+                        }
 
-                    msg.setData(JSON.toJSONString(checksum));
+                        Map<String, String> acknowledged = reportedChecksums
+                            .computeIfAbsent(server.getKey(), k -> new ConcurrentHashMap<>(16))
+                            .computeIfAbsent(namespaceId, k -> new ConcurrentHashMap<>(16));
+                        // services no longer in charge are reported again once they come back:
+                        acknowledged.keySet().retainAll(checksums.keySet());
 
-                    List<Server> sameSiteServers = serverListManager.getServers();
+                        ServiceChecksum checksum = new ServiceChecksum(namespaceId);
 
-                    if (sameSiteServers == null || sameSiteServers.size() <= 0) {
-                        return;
-                    }
+                        for (Map.Entry<String, String> entry : checksums.entrySet()) {
+                            if (fullSync || !entry.getValue().equals(acknowledged.get(entry.getKey()))) {
+                                checksum.addItem(entry.getKey(), entry.getValue());
+                            }
+                        }
 
-                    for (Server server : sameSiteServers) {
-                        if (server.getKey().equals(NetUtils.localServer())) {
+                        if (checksum.serviceName2Checksum.isEmpty()) {
                             continue;
                         }
-                        synchronizer.send(server.getKey(), msg);
+
+                        Message msg = new Message();
+
+                        msg.setData(JSON.toJSONString(checksum));
+
+                        // a server holding other checksums fetches those services, they are reported again until it
+                        // holds the same ones:
+                        synchronizer.send(server.getKey(), msg, mismatched -> {
+                            Map<String, String> matched = new HashMap<>(checksum.serviceName2Checksum);
+                            matched.keySet().removeAll(mismatched);
+                            acknowledged.putAll(matched);
+                        });
                     }
                 }
             } catch (Exception e) {
@@ -822,33 +995,110 @@ public class ServiceManager implements RecordListener<Service> {
         }
     }
 
+    /**
+     * Removes the services created silently on registration which have had no instance for longer than the grace
+     * period. Services created or configured by users are kept.
+     * <p>
+     * Only the server responsible for a service reclaims it, with the same replicated delete of its metadata as
+     * {@link #easyRemoveService}, so every server destroys its copy, cancels its health checks and drops its
+     * listeners in {@link #onDelete}. The last modified time of a service is set whenever its instances change, so
+     * it tells how long it has been empty. Just before the delete the stored instance lists are checked again, they
+     * are written as soon as an instance registers while the service is updated asynchronously.
+     */
+    class EmptyServiceReclaimer implements Runnable {
+
+        @Override
+        public void run() {
+            if (!consistencyService.isAvailable()) {
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            int reclaimed = 0;
+            try {
+                for (Map<String, Service> services : serviceMap.values()) {
+                    for (Service service : services.values()) {
+                        if (reclaimed >= MAX_SERVICES_PER_RECLAIM) {
+                            // the rest is left to the next round
+                            break;
+                        }
+                        if (!reclaimable(service, now)) {
+                            continue;
+                        }
+                        try {
+                            consistencyService.remove(KeyBuilder.buildServiceMetaKey(service.getNamespaceId(),
+                                service.getName()));
+                            reclaimed++;
+                            Loggers.SRV_LOG.info("[EMPTY-SERVICE] reclaimed {}:{}, empty since {}",
+                                service.getNamespaceId(), service.getName(), service.getLastModifiedMillis());
+                        } catch (Exception e) {
+                            Loggers.SRV_LOG.warn("[EMPTY-SERVICE] failed to reclaim {}:{}",
+                                service.getNamespaceId(), service.getName(), e);
+                        }
+                    }
+                }
+            } catch (Throwable e) {
+                Loggers.SRV_LOG.error("[EMPTY-SERVICE] error while reclaiming empty services", e);
+            }
+
+            if (reclaimed > 0) {
+                reclaimedServiceCount.addAndGet(reclaimed);
+                MetricsMonitor.getReclaimedServiceCounter().increment(reclaimed);
+                Loggers.SRV_LOG.info("[EMPTY-SERVICE] {} services reclaimed, {} in total", reclaimed,
+                    reclaimedServiceCount.get());
+            }
+        }
+
+        private boolean reclaimable(Service service, long now) throws NacosException {
+            if (!service.isAutoCreated() || !distroMapper.responsible(service.getName())) {
+                return false;
+            }
+            if (now - service.getLastModifiedMillis() < globalConfig.getEmptyServiceGraceMillis()) {
+                return false;
+            }
+            if (!service.allIPs().isEmpty()) {
+                return false;
+            }
+            return !hasStoredInstances(service, true) && !hasStoredInstances(service, false);
+        }
+
+        private boolean hasStoredInstances(Service service, boolean ephemeral) throws NacosException {
+            Datum datum = consistencyService.get(KeyBuilder.buildInstanceListKey(service.getNamespaceId(),
+                service.getName(), ephemeral));
+            if (datum == null || datum.value == null) {
+                return false;
+            }
+            List<Instance> instances = ((Instances) datum.value).getInstanceList();
+            return instances != null && !instances.isEmpty();
+        }
+    }
+
     private static class ServiceKey {
         private String namespaceId;
-        private String serviceName;
+        private List<String> serviceNames;
         private String serverIP;
-        private String checksum;
+        private long timestamp = System.currentTimeMillis();
 
-        public String getChecksum() {
-            return checksum;
+        public long getTimestamp() {
+            return timestamp;
         }
 
         public String getServerIP() {
             return serverIP;
         }
 
-        public String getServiceName() {
-            return serviceName;
+        public List<String> getServiceNames() {
+            return serviceNames;
         }
 
         public String getNamespaceId() {
             return namespaceId;
         }
 
-        public ServiceKey(String namespaceId, String serviceName, String serverIP, String checksum) {
+        public ServiceKey(String namespaceId, List<String> serviceNames, String serverIP) {
             this.namespaceId = namespaceId;
-            this.serviceName = serviceName;
+            this.serviceNames = serviceNames;
             this.serverIP = serverIP;
-            this.checksum = checksum;
         }
 
         @Override
@@ -15,28 +15,48 @@
  */
 package com.alibaba.nacos.naming.core;
 
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.alibaba.nacos.api.naming.CommonParams;
+import com.alibaba.nacos.common.util.HttpMethod;
 import com.alibaba.nacos.naming.boot.RunningConfig;
 import com.alibaba.nacos.naming.cluster.ServerListManager;
 import com.alibaba.nacos.naming.cluster.servers.Server;
+import com.alibaba.nacos.naming.misc.GlobalConfig;
 import com.alibaba.nacos.naming.misc.HttpClient;
+import com.alibaba.nacos.naming.misc.Loggers;
 import com.alibaba.nacos.naming.misc.NetUtils;
 import com.alibaba.nacos.naming.misc.UtilsAndCommons;
+import com.alibaba.nacos.naming.monitor.MetricsMonitor;
 import com.alibaba.nacos.naming.pojo.Subscriber;
 import com.alibaba.nacos.naming.pojo.Subscribers;
 import com.alibaba.nacos.naming.push.PushService;
+import com.ning.http.client.AsyncCompletionHandler;
+import com.ning.http.client.Response;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.net.HttpURLConnection;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Function;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * Subscribers of a service, on this server or on all servers of the cluster.
+ * <p>
+ * Subscribers are sorted so that a page is the same on every server. An aggregated page is merged from the first
+ * pageNo * pageSize subscribers of every server, which are all the page can be made of, queried in parallel.
+ * Servers which do not answer in time are left out, and merged windows of complete answers are cached for a
+ * short time so that paging through the console does not ask the cluster again.
+ *
  * @author Nicholas
  * @since 1.0.1
  */
@@ -45,15 +65,27 @@ public class SubscribeManager {
 
     private static final String SUBSCRIBER_ON_SYNC_URL = "/service/subscribers";
 
+    private static final Comparator<Subscriber> SUBSCRIBER_ORDER = new Comparator<Subscriber>() {
+        @Override
+        public int compare(Subscriber o1, Subscriber o2) {
+            return o1.toString().compareTo(o2.toString());
+        }
+    };
+
     @Autowired
     private PushService pushService;
 
     @Autowired
     private ServerListManager serverListManager;
 
+    @Autowired
+    private GlobalConfig globalConfig;
+
+    private final Map<String, Window> aggregationCache = new ConcurrentHashMap<>(16);
 
     private List<Subscriber> getSubscribers(String serviceName, String namespaceId) {
-        return pushService.getClients(serviceName, namespaceId);
+        List<Subscriber> subscribers = pushService.getClients(serviceName, namespaceId);
+        return subscribers == null ? new ArrayList<Subscriber>() : subscribers;
     }
 
     /**
@@ -64,43 +96,208 @@ public class SubscribeManager {
      * @throws InterruptedException
      */
     public List<Subscriber> getSubscribers(String serviceName, String namespaceId, boolean aggregation) throws InterruptedException {
-        if (aggregation) {
-            // size = 1 means only myself in the list, we need at least one another server alive:
-            if (serverListManager.getHealthyServers().size() <= 1) {
-                return getSubscribers(serviceName, namespaceId);
+        return getSubscribers(serviceName, namespaceId, aggregation, 1, Integer.MAX_VALUE).getSubscribers();
+    }
+
+    /**
+     * Get a page of the subscribers of a service.
+     * <p>
+     * When aggregated the count is the sum of the counts of the servers less the duplicates found in their windows,
+     * so it may be too large if a subscriber of several servers is beyond the windows. The result is partial if a
+     * server did not answer in time.
+     *
+     * @param pageNo   starts from 1
+     * @param pageSize max subscribers in the page
+     * @return subscribers in the page and the count of all subscribers
+     */
+    public Subscribers getSubscribers(String serviceName, String namespaceId, boolean aggregation, int pageNo,
+                                      int pageSize) throws InterruptedException {
+        int start = (int) Math.max(0L, Math.min(Integer.MAX_VALUE, ((long) pageNo - 1) * pageSize));
+        int end = (int) Math.max(start, Math.min(Integer.MAX_VALUE, (long) pageNo * pageSize));
+
+        Window window;
+        // size = 1 means only myself in the list, we need at least one another server alive:
+        if (aggregation && serverListManager.getHealthyServers().size() > 1) {
+            window = aggregate(serviceName, namespaceId, end);
+        } else {
+            window = localWindow(serviceName, namespaceId, end);
+        }
+
+        int size = window.subscribers.size();
+        Subscribers subscribers = new Subscribers();
+        subscribers.setSubscribers(new ArrayList<>(window.subscribers.subList(Math.min(start, size), Math.min(end, size))));
+        subscribers.setCount(window.count);
+        return subscribers;
+    }
+
+    private Window localWindow(String serviceName, String namespaceId, int end) {
+        List<Subscriber> subscribers = getSubscribers(serviceName, namespaceId);
+        Collections.sort(subscribers, SUBSCRIBER_ORDER);
+        int count = subscribers.size();
+        if (count > end) {
+            subscribers = subscribers.subList(0, end);
+        }
+        return new Window(subscribers, count, end, true);
+    }
+
+    private Window aggregate(final String serviceName, final String namespaceId, int end) throws InterruptedException {
+        String key = UtilsAndCommons.assembleFullServiceName(namespaceId, serviceName);
+        long now = System.currentTimeMillis();
+        long cacheMillis = globalConfig.getSubscriberAggregationCacheMillis();
+        for (Iterator<Window> iterator = aggregationCache.values().iterator(); iterator.hasNext(); ) {
+            if (now - iterator.next().createMillis > cacheMillis) {
+                iterator.remove();
             }
+        }
 
-            List<Subscriber> subscriberList = new ArrayList<Subscriber>();
-            // try sync data from remote server:
-            for (Server server : serverListManager.getHealthyServers()) {
+        Window cached = aggregationCache.get(key);
+        if (cached != null && cached.covers(end)) {
+            MetricsMonitor.getSubscriberAggregationCounter("cached").increment();
+            return cached;
+        }
+
+        List<Server> servers = serverListManager.getHealthyServers();
+        final Map<String, Window> windows = new ConcurrentHashMap<>(servers.size() * 2);
+        final CountDownLatch latch = new CountDownLatch(servers.size());
+        int timeout = globalConfig.getSubscriberAggregationTimeoutMillis();
 
-                Map<String, String> paramValues = new HashMap<>(128);
-                paramValues.put(CommonParams.SERVICE_NAME, serviceName);
-                paramValues.put(CommonParams.NAMESPACE_ID, namespaceId);
-                paramValues.put("aggregation", String.valueOf(Boolean.FALSE));
-                if (NetUtils.localServer().equals(server.getKey())) {
-                    subscriberList.addAll(getSubscribers(serviceName, namespaceId));
-                }
+        for (final Server server : servers) {
+            if (NetUtils.localServer().equals(server.getKey())) {
+                windows.put(server.getKey(), localWindow(serviceName, namespaceId, end));
+                latch.countDown();
+                continue;
+            }
 
-                HttpClient.HttpResult result = HttpClient.httpGet("http://" + server.getKey() + RunningConfig.getContextPath()
-                    + UtilsAndCommons.NACOS_NAMING_CONTEXT + SUBSCRIBER_ON_SYNC_URL, new ArrayList<>(), paramValues);
+            Map<String, String> paramValues = new HashMap<>(8);
+            paramValues.put(CommonParams.SERVICE_NAME, serviceName);
+            paramValues.put(CommonParams.NAMESPACE_ID, namespaceId);
+            paramValues.put("aggregation", String.valueOf(Boolean.FALSE));
+            paramValues.put("pageNo", "1");
+            paramValues.put("pageSize", String.valueOf(end));
 
-                if (HttpURLConnection.HTTP_OK == result.code) {
-                    Subscribers subscribers = (Subscribers) JSONObject.parseObject(result.content, Subscribers.class);
-                    subscriberList.addAll(subscribers.getSubscribers());
-                }
-                return subscriberList.stream().filter(distinctByKey(Subscriber::toString)).collect(Collectors.toList());
+            final String url = "http://" + server.getKey() + RunningConfig.getContextPath()
+                + UtilsAndCommons.NACOS_NAMING_CONTEXT + SUBSCRIBER_ON_SYNC_URL;
+            final int window = end;
+            try {
+                HttpClient.asyncHttpRequest(url, null, paramValues, HttpMethod.GET, timeout,
+                    new AsyncCompletionHandler<Void>() {
+                        @Override
+                        public Void onCompleted(Response response) {
+                            try {
+                                if (HttpURLConnection.HTTP_OK == response.getStatusCode()) {
+                                    windows.put(server.getKey(), parseWindow(response.getResponseBody("UTF-8"), window));
+                                } else {
+                                    Loggers.SRV_LOG.warn("[SUBSCRIBERS] failed to query {}, code: {}", url,
+                                        response.getStatusCode());
+                                }
+                            } catch (Exception e) {
+                                Loggers.SRV_LOG.warn("[SUBSCRIBERS] failed to parse subscribers from {}", url, e);
+                            } finally {
+                                latch.countDown();
+                            }
+                            return null;
+                        }
 
+                        @Override
+                        public void onThrowable(Throwable t) {
+                            Loggers.SRV_LOG.warn("[SUBSCRIBERS] failed to query {}: {}", url, t.toString());
+                            latch.countDown();
+                        }
+                    });
+            } catch (Exception e) {
+                Loggers.SRV_LOG.warn("[SUBSCRIBERS] failed to query {}", url, e);
+                latch.countDown();
             }
+        }
+
+        latch.await(timeout, TimeUnit.MILLISECONDS);
+
+        Window merged = merge(new ArrayList<>(windows.values()), servers.size(), end);
+        if (merged.complete) {
+            aggregationCache.put(key, merged);
+            MetricsMonitor.getSubscriberAggregationCounter("complete").increment();
         } else {
-            // local server
-            return getSubscribers(serviceName, namespaceId);
+            MetricsMonitor.getSubscriberAggregationCounter("partial").increment();
         }
-        return Collections.emptyList();
+        return merged;
     }
 
-    public static <T> Predicate<T> distinctByKey(Function<? super T, Object> keyExtractor) {
-        Map<Object, Boolean> seen = new ConcurrentHashMap<>(128);
-        return object -> seen.putIfAbsent(keyExtractor.apply(object), Boolean.TRUE) == null;
+    private static Window merge(List<Window> windows, int serverCount, int end) {
+        List<Subscriber> all = new ArrayList<>();
+        int count = 0;
+        for (Window window : windows) {
+            all.addAll(window.subscribers);
+            count += window.count;
+        }
+        Collections.sort(all, SUBSCRIBER_ORDER);
+
+        List<Subscriber> subscribers = new ArrayList<>(Math.min(all.size(), end));
+        Subscriber last = null;
+        for (Subscriber subscriber : all) {
+            if (subscriber.equals(last)) {
+                count--;
+                continue;
+            }
+            last = subscriber;
+            if (subscribers.size() < end) {
+                subscribers.add(subscriber);
+            }
+        }
+
+        // a server with subscribers beyond its window makes the count exceed the merged window as well
+        return new Window(subscribers, count, end, windows.size() == serverCount);
+    }
+
+    private static Window parseWindow(String content, int end) {
+        JSONObject result = JSON.parseObject(content);
+        JSONArray array = result.getJSONArray("subscribers");
+        List<Subscriber> subscribers = new ArrayList<>(array == null ? 0 : array.size());
+        if (array != null) {
+            for (int i = 0; i < array.size(); i++) {
+                JSONObject json = array.getJSONObject(i);
+                subscribers.add(new Subscriber(json.getString("addrStr"), json.getString("agent"),
+                    json.getString("app"), json.getString("ip"), json.getString("namespaceId"),
+                    json.getString("serviceName")));
+            }
+        }
+        // servers of older versions do not sort their subscribers
+        Collections.sort(subscribers, SUBSCRIBER_ORDER);
+        return new Window(subscribers, result.getIntValue("count"), end, true);
+    }
+
+    /**
+     * The first subscribers of a service in order, from one server or merged from all of them.
+     */
+    private static class Window {
+
+        private final List<Subscriber> subscribers;
+
+        private final int count;
+
+        private final int end;
+
+        /**
+         * Whether all servers answered.
+         */
+        private final boolean complete;
+
+        /**
+         * Whether no subscriber is beyond the window.
+         */
+        private final boolean whole;
+
+        private final long createMillis = System.currentTimeMillis();
+
+        Window(List<Subscriber> subscribers, int count, int end, boolean complete) {
+            this.subscribers = subscribers;
+            this.count = count;
+            this.end = end;
+            this.complete = complete;
+            this.whole = subscribers.size() >= count;
+        }
+
+        boolean covers(int end) {
+            return end <= this.end || whole;
+        }
     }
 }
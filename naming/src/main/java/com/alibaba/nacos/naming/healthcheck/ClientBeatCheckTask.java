@@ -19,7 +19,6 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.annotation.JSONField;
 import com.alibaba.nacos.naming.boot.RunningConfig;
 import com.alibaba.nacos.naming.boot.SpringContext;
-import com.alibaba.nacos.naming.core.DistroMapper;
 import com.alibaba.nacos.naming.core.Instance;
 import com.alibaba.nacos.naming.core.Service;
 import com.alibaba.nacos.naming.healthcheck.events.InstanceHeartbeatTimeoutEvent;
@@ -29,15 +28,18 @@ import com.ning.http.client.AsyncCompletionHandler;
 import com.ning.http.client.Response;
 
 import java.net.HttpURLConnection;
-import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 
 /**
- * Check and update statues of ephemeral instances, remove them if they have been expired.
+ * Check and update statues of ephemeral instances, remove them if they have been expired. Instances are checked
+ * one by one as their deadlines pass in {@link ClientBeatTimingWheel}.
  *
  * @author nkorange
  */
-public class ClientBeatCheckTask implements Runnable {
+public class ClientBeatCheckTask {
+
+    public static final long CHECK_INTERVAL = TimeUnit.SECONDS.toMillis(5);
 
     private Service service;
 
@@ -51,68 +53,55 @@ public class ClientBeatCheckTask implements Runnable {
         return SpringContext.getAppContext().getBean(PushService.class);
     }
 
-    @JSONField(serialize = false)
-    public DistroMapper getDistroMapper() {
-        return SpringContext.getAppContext().getBean(DistroMapper.class);
-    }
-
     public GlobalConfig getGlobalConfig() {
         return SpringContext.getAppContext().getBean(GlobalConfig.class);
     }
 
-    public String taskKey() {
-        return service.getName();
-    }
+    /**
+     * Set health status of an ephemeral instance, and remove it if it has been expired. Only called for instances of
+     * services this server is responsible for.
+     *
+     * @param instance instance to check
+     * @return time in milliseconds when the instance should be checked again
+     */
+    public long check(Instance instance) {
 
-    @Override
-    public void run() {
-        try {
-            if (!getDistroMapper().responsible(service.getName())) {
-                return;
-            }
-
-            List<Instance> instances = service.allIPs(true);
-
-            // first set health status of instances:
-            for (Instance instance : instances) {
-                if (System.currentTimeMillis() - instance.getLastBeat() > instance.getInstanceHeartBeatTimeOut()) {
-                    if (!instance.isMarked()) {
-                        if (instance.isHealthy()) {
-                            instance.setHealthy(false);
-                            Loggers.EVT_LOG.info("{POS} {IP-DISABLED} valid: {}:{}@{}@{}, region: {}, msg: client timeout after {}, last beat: {}",
-                                instance.getIp(), instance.getPort(), instance.getClusterName(), service.getName(),
-                                UtilsAndCommons.LOCALHOST_SITE, instance.getInstanceHeartBeatTimeOut(), instance.getLastBeat());
-                            getPushService().serviceChanged(service);
-                            SpringContext.getAppContext().publishEvent(new InstanceHeartbeatTimeoutEvent(this, instance));
-                        }
-                    }
-                }
-            }
+        long now = System.currentTimeMillis();
 
-            if (!getGlobalConfig().isExpireInstance()) {
-                return;
-            }
+        boolean expireInstance = getGlobalConfig().isExpireInstance();
+        boolean timeout = now - instance.getLastBeat() > instance.getInstanceHeartBeatTimeOut();
 
-            // then remove obsolete instances:
-            for (Instance instance : instances) {
+        if (instance.isMarked()) {
+            return now + CHECK_INTERVAL;
+        }
 
-                if (instance.isMarked()) {
-                    continue;
-                }
+        if (!timeout) {
+            return instance.getLastBeat() + instance.getInstanceHeartBeatTimeOut();
+        }
 
-                if (System.currentTimeMillis() - instance.getLastBeat() > instance.getIpDeleteTimeout()) {
-                    // delete instance
-                    Loggers.SRV_LOG.info("[AUTO-DELETE-IP] service: {}, ip: {}", service.getName(), JSON.toJSONString(instance));
-                    deleteIP(instance);
-                }
-            }
+        if (instance.isHealthy()) {
+            instance.setHealthy(false);
+            Loggers.EVT_LOG.info("{POS} {IP-DISABLED} valid: {}:{}@{}@{}, region: {}, msg: client timeout after {}, last beat: {}",
+                instance.getIp(), instance.getPort(), instance.getClusterName(), service.getName(),
+                UtilsAndCommons.LOCALHOST_SITE, instance.getInstanceHeartBeatTimeOut(), instance.getLastBeat());
+            service.setLastModifiedMillis(System.currentTimeMillis());
+            getPushService().serviceChanged(service);
+            SpringContext.getAppContext().publishEvent(new InstanceHeartbeatTimeoutEvent(this, instance));
+        }
 
-        } catch (Exception e) {
-            Loggers.SRV_LOG.warn("Exception while processing client beat time out.", e);
+        if (!expireInstance) {
+            return now + CHECK_INTERVAL;
         }
 
-    }
+        if (now - instance.getLastBeat() > instance.getIpDeleteTimeout()) {
+            // delete instance
+            Loggers.SRV_LOG.info("[AUTO-DELETE-IP] service: {}, ip: {}", service.getName(), JSON.toJSONString(instance));
+            deleteIP(instance);
+            return now + CHECK_INTERVAL;
+        }
 
+        return instance.getLastBeat() + instance.getIpDeleteTimeout();
+    }
 
     private void deleteIP(Instance instance) {
 
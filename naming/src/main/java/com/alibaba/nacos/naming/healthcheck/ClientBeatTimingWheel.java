@@ -0,0 +1,411 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.nacos.naming.healthcheck;
+
+import com.alibaba.nacos.api.common.Constants;
+import com.alibaba.nacos.naming.boot.SpringContext;
+import com.alibaba.nacos.naming.core.Cluster;
+import com.alibaba.nacos.naming.core.DistroMapper;
+import com.alibaba.nacos.naming.core.Instance;
+import com.alibaba.nacos.naming.core.Service;
+import com.alibaba.nacos.naming.core.ServiceManager;
+import com.alibaba.nacos.naming.misc.Loggers;
+import com.alibaba.nacos.naming.misc.UtilsAndCommons;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hierarchical timing wheel of ephemeral instance deadlines. Each instance owns one timer, armed when the instance
+ * is added to its service and re-armed on every client beat, so only instances whose deadline actually passes are
+ * handed to {@link ClientBeatCheckTask#check(Instance)}, which tells when to check them again.
+ * <p>
+ * Timers of services this server is not responsible for are parked outside the wheel, and put back when the distro
+ * mapping changes. Timers of deregistered instances are cancelled.
+ * <p>
+ * All buckets are only touched by the wheel thread, other threads just queue the timers they re-arm or cancel.
+ *
+ * @author nkorange
+ */
+public class ClientBeatTimingWheel {
+
+    private static final long TICK_MILLIS = 500L;
+
+    private static final int WHEEL_BITS = 6;
+
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    private static final int LEVELS = 3;
+
+    private static final long MAX_TICKS = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    /**
+     * Timers of each service, keyed by the cluster, ip and port of the instance.
+     */
+    private static final Map<String, Map<String, ExpiryTimer>> TIMERS = new ConcurrentHashMap<>();
+
+    private static final Queue<ExpiryTimer> PENDING = new ConcurrentLinkedQueue<>();
+
+    private static final List<List<Set<ExpiryTimer>>> WHEELS = new ArrayList<>(LEVELS);
+
+    private static final ScheduledExecutorService EXECUTOR;
+
+    /**
+     * The next tick to be processed, only accessed by the wheel thread.
+     */
+    private static long currentTick;
+
+    static {
+        for (int level = 0; level < LEVELS; level++) {
+            List<Set<ExpiryTimer>> wheel = new ArrayList<>(WHEEL_SIZE);
+            for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+                wheel.add(new HashSet<ExpiryTimer>());
+            }
+            WHEELS.add(wheel);
+        }
+
+        currentTick = System.currentTimeMillis() / TICK_MILLIS;
+
+        EXECUTOR = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r);
+                thread.setDaemon(true);
+                thread.setName("com.alibaba.nacos.naming.beat.wheel");
+                return thread;
+            }
+        });
+
+        EXECUTOR.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    advance(System.currentTimeMillis() / TICK_MILLIS);
+                } catch (Throwable e) {
+                    Loggers.SRV_LOG.error("[CLIENT-BEAT] error while advancing timing wheel", e);
+                }
+            }
+        }, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sync the timers of a service with its ephemeral instances: arm a timer for each instance which has none, and
+     * cancel the timers of instances which are gone.
+     */
+    public static void sync(Service service, Collection<Instance> instances) {
+        Map<String, ExpiryTimer> timers = timersOf(service);
+        boolean responsible = getDistroMapper().responsible(service.getName());
+
+        Set<String> alive = new HashSet<>(instances.size() * 2);
+        for (Instance instance : instances) {
+            String key = buildInstanceKey(instance.getClusterName(), instance.getIp(), instance.getPort());
+            alive.add(key);
+            if (!timers.containsKey(key)) {
+                arm(timers, key, service, instance, responsible);
+            }
+        }
+
+        Iterator<Map.Entry<String, ExpiryTimer>> iterator = timers.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, ExpiryTimer> entry = iterator.next();
+            if (!alive.contains(entry.getKey())) {
+                iterator.remove();
+                cancel(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Re-arm the timer of an instance which has just sent a beat.
+     */
+    public static void rearm(Service service, Instance instance) {
+        Map<String, ExpiryTimer> timers = timersOf(service);
+        String key = buildInstanceKey(instance.getClusterName(), instance.getIp(), instance.getPort());
+        ExpiryTimer timer = timers.get(key);
+        if (timer == null) {
+            arm(timers, key, service, instance, true);
+            return;
+        }
+        timer.parked = false;
+        schedule(timer, instance.getLastBeat() + instance.getInstanceHeartBeatTimeOut());
+    }
+
+    /**
+     * Cancel the timers of all instances of a removed service.
+     */
+    public static void cancel(Service service) {
+        Map<String, ExpiryTimer> timers = TIMERS.remove(buildServiceKey(service.getNamespaceId(), service.getName()));
+        if (timers == null) {
+            return;
+        }
+        for (ExpiryTimer timer : timers.values()) {
+            cancel(timer);
+        }
+    }
+
+    /**
+     * Put the parked timers of services this server has become responsible for back into the wheel, they are
+     * checked right away.
+     */
+    public static void onDistroChanged(DistroMapper distroMapper) {
+        long now = System.currentTimeMillis();
+        for (Map<String, ExpiryTimer> timers : TIMERS.values()) {
+            for (ExpiryTimer timer : timers.values()) {
+                if (!timer.parked) {
+                    continue;
+                }
+                if (!distroMapper.responsible(timer.serviceName)) {
+                    // all timers of the map belong to the same service:
+                    break;
+                }
+                timer.parked = false;
+                schedule(timer, now);
+            }
+        }
+    }
+
+    public static int size() {
+        int size = 0;
+        for (Map<String, ExpiryTimer> timers : TIMERS.values()) {
+            size += timers.size();
+        }
+        return size;
+    }
+
+    private static Map<String, ExpiryTimer> timersOf(Service service) {
+        return TIMERS.computeIfAbsent(buildServiceKey(service.getNamespaceId(), service.getName()),
+            k -> new ConcurrentHashMap<>(16));
+    }
+
+    private static void arm(Map<String, ExpiryTimer> timers, String key, Service service, Instance instance,
+                            boolean responsible) {
+        ExpiryTimer timer = new ExpiryTimer(service.getNamespaceId(), service.getName(), instance.getClusterName(),
+            instance.getIp(), instance.getPort());
+        if (timers.putIfAbsent(key, timer) != null) {
+            return;
+        }
+        if (responsible) {
+            schedule(timer, instance.getLastBeat() + instance.getInstanceHeartBeatTimeOut());
+        } else {
+            timer.parked = true;
+        }
+    }
+
+    private static void schedule(ExpiryTimer timer, long deadline) {
+        timer.deadline = deadline;
+        if (timer.queued.compareAndSet(false, true)) {
+            PENDING.offer(timer);
+        }
+    }
+
+    /**
+     * Mark the timer cancelled and queue it, so the wheel thread takes it out of its bucket.
+     */
+    private static void cancel(ExpiryTimer timer) {
+        timer.cancelled = true;
+        timer.parked = false;
+        if (timer.queued.compareAndSet(false, true)) {
+            PENDING.offer(timer);
+        }
+    }
+
+    private static DistroMapper getDistroMapper() {
+        return SpringContext.getAppContext().getBean(DistroMapper.class);
+    }
+
+    private static String buildServiceKey(String namespaceId, String serviceName) {
+        return namespaceId + UtilsAndCommons.NAMESPACE_SERVICE_CONNECTOR + serviceName;
+    }
+
+    private static String buildInstanceKey(String clusterName, String ip, int port) {
+        return clusterName + Constants.NAMING_INSTANCE_ID_SPLITTER + ip + UtilsAndCommons.IP_PORT_SPLITER + port;
+    }
+
+    private static void advance(long nowTick) {
+        List<ExpiryTimer> expired = new ArrayList<>();
+
+        while (currentTick <= nowTick) {
+
+            ExpiryTimer timer;
+            while ((timer = PENDING.poll()) != null) {
+                timer.queued.set(false);
+                if (timer.cancelled) {
+                    unfile(timer);
+                } else {
+                    file(timer);
+                }
+            }
+
+            // move timers of higher levels down once their range comes into reach:
+            for (int level = 1; level < LEVELS; level++) {
+                if ((currentTick & ((1L << (WHEEL_BITS * level)) - 1)) != 0) {
+                    break;
+                }
+                for (ExpiryTimer cascaded : drain(level, slotOf(currentTick, level))) {
+                    if (!cascaded.cancelled) {
+                        file(cascaded);
+                    }
+                }
+            }
+
+            for (ExpiryTimer due : drain(0, slotOf(currentTick, 0))) {
+                if (due.cancelled) {
+                    continue;
+                }
+                if (due.deadline / TICK_MILLIS <= currentTick) {
+                    expired.add(due);
+                } else {
+                    file(due);
+                }
+            }
+
+            currentTick++;
+        }
+
+        if (!expired.isEmpty()) {
+            HealthCheckReactor.scheduleNow(new ExpiryProcessor(expired));
+        }
+    }
+
+    private static void file(ExpiryTimer timer) {
+        unfile(timer);
+
+        long ticks = Math.min(Math.max(timer.deadline / TICK_MILLIS - currentTick, 0L), MAX_TICKS);
+        long expireTick = currentTick + ticks;
+
+        int level = 0;
+        while (level < LEVELS - 1 && ticks >= (1L << (WHEEL_BITS * (level + 1)))) {
+            level++;
+        }
+
+        Set<ExpiryTimer> bucket = WHEELS.get(level).get(slotOf(expireTick, level));
+        bucket.add(timer);
+        timer.bucket = bucket;
+    }
+
+    private static void unfile(ExpiryTimer timer) {
+        if (timer.bucket != null) {
+            timer.bucket.remove(timer);
+            timer.bucket = null;
+        }
+    }
+
+    private static List<ExpiryTimer> drain(int level, int slot) {
+        Set<ExpiryTimer> bucket = WHEELS.get(level).get(slot);
+        if (bucket.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<ExpiryTimer> timers = new ArrayList<>(bucket);
+        bucket.clear();
+        for (ExpiryTimer timer : timers) {
+            timer.bucket = null;
+        }
+        return timers;
+    }
+
+    private static int slotOf(long tick, int level) {
+        return (int) ((tick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+    }
+
+    private static class ExpiryProcessor implements Runnable {
+
+        private List<ExpiryTimer> timers;
+
+        ExpiryProcessor(List<ExpiryTimer> timers) {
+            this.timers = timers;
+        }
+
+        @Override
+        public void run() {
+            ServiceManager serviceManager = SpringContext.getAppContext().getBean(ServiceManager.class);
+            DistroMapper distroMapper = getDistroMapper();
+            for (ExpiryTimer timer : timers) {
+                if (timer.cancelled) {
+                    continue;
+                }
+                try {
+                    process(serviceManager, distroMapper, timer);
+                } catch (Exception e) {
+                    Loggers.SRV_LOG.warn("[CLIENT-BEAT] failed to check instance " + timer.ip + ":" + timer.port
+                        + " of service " + timer.serviceName, e);
+                    schedule(timer, System.currentTimeMillis() + ClientBeatCheckTask.CHECK_INTERVAL);
+                }
+            }
+        }
+
+        private void process(ServiceManager serviceManager, DistroMapper distroMapper, ExpiryTimer timer) {
+            if (!distroMapper.responsible(timer.serviceName)) {
+                // left out of the wheel until this server becomes responsible for the service:
+                timer.parked = true;
+                return;
+            }
+
+            Instance instance = null;
+            Service service = serviceManager.getService(timer.namespaceId, timer.serviceName);
+            if (service != null) {
+                Cluster cluster = service.getClusterMap().get(timer.clusterName);
+                instance = cluster == null ? null : cluster.getInstance(timer.ip, timer.port, true);
+            }
+
+            if (instance == null) {
+                // the instance is gone, so is its timer:
+                Map<String, ExpiryTimer> serviceTimers = TIMERS.get(buildServiceKey(timer.namespaceId, timer.serviceName));
+                if (serviceTimers != null) {
+                    serviceTimers.remove(buildInstanceKey(timer.clusterName, timer.ip, timer.port), timer);
+                }
+                return;
+            }
+
+            schedule(timer, service.getClientBeatCheckTask().check(instance));
+        }
+    }
+
+    private static class ExpiryTimer {
+
+        private final String namespaceId;
+        private final String serviceName;
+        private final String clusterName;
+        private final String ip;
+        private final int port;
+
+        private volatile long deadline;
+
+        /**
+         * Set while the service of the instance is owned by another server, the timer is then out of the wheel.
+         */
+        private volatile boolean parked;
+
+        private volatile boolean cancelled;
+
+        private final AtomicBoolean queued = new AtomicBoolean(false);
+
+        /**
+         * Bucket the timer is filed in, only accessed by the wheel thread.
+         */
+        private Set<ExpiryTimer> bucket;
+
+        ExpiryTimer(String namespaceId, String serviceName, String clusterName, String ip, int port) {
+            this.namespaceId = namespaceId;
+            this.serviceName = serviceName;
+            this.clusterName = clusterName;
+            this.ip = ip;
+            this.port = port;
+        }
+    }
+}
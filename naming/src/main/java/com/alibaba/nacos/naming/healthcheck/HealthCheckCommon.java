@@ -56,6 +56,14 @@ public class HealthCheckCommon {
     @Autowired
     private PushService pushService;
 
+    @Autowired
+    private GlobalConfig globalConfig;
+
+    /**
+     * Services with uncommitted health changes, committed once per window instead of once per instance.
+     */
+    private ConcurrentMap<String, Service> changedServices = new ConcurrentHashMap<>();
+
     private static LinkedBlockingDeque<HealthCheckResult> healthCheckResults = new LinkedBlockingDeque<>(1024 * 128);
 
     private static ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
@@ -143,8 +151,7 @@ public class HealthCheckCommon {
                         ip.setMockValid(true);
 
                         Service service = cluster.getService();
-                        service.setLastModifiedMillis(System.currentTimeMillis());
-                        pushService.serviceChanged(service);
+                        commitLater(service);
                         addResult(new HealthCheckResult(service.getName(), ip));
 
                         Loggers.EVT_LOG.info("serviceName: {} {POS} {IP-ENABLED} valid: {}:{}@{}, region: {}, msg: {}",
@@ -166,6 +173,11 @@ public class HealthCheckCommon {
         }
 
         ip.getFailCount().set(0);
+        if (ip.isHealthy()) {
+            task.markRecovered(ip);
+        } else {
+            task.markFailing(ip);
+        }
         ip.setBeingChecked(false);
     }
 
@@ -180,10 +192,9 @@ public class HealthCheckCommon {
                         ip.setMockValid(false);
 
                         Service service = cluster.getService();
-                        service.setLastModifiedMillis(System.currentTimeMillis());
                         addResult(new HealthCheckResult(service.getName(), ip));
 
-                        pushService.serviceChanged(service);
+                        commitLater(service);
 
                         Loggers.EVT_LOG.info("serviceName: {} {POS} {IP-DISABLED} invalid: {}:{}@{}, region: {}, msg: {}",
                             cluster.getService().getName(), ip.getIp(), ip.getPort(), cluster.getName(), UtilsAndCommons.LOCALHOST_SITE, msg);
@@ -202,6 +213,7 @@ public class HealthCheckCommon {
         }
 
         ip.getOKCount().set(0);
+        task.markFailing(ip);
 
         ip.setBeingChecked(false);
     }
@@ -215,9 +227,8 @@ public class HealthCheckCommon {
                     ip.setMockValid(false);
 
                     Service service = cluster.getService();
-                    service.setLastModifiedMillis(System.currentTimeMillis());
 
-                    pushService.serviceChanged(service);
+                    commitLater(service);
                     addResult(new HealthCheckResult(service.getName(), ip));
 
                     Loggers.EVT_LOG.info("serviceName: {} {POS} {IP-DISABLED} invalid-now: {}:{}@{}, region: {}, msg: {}",
@@ -236,9 +247,42 @@ public class HealthCheckCommon {
         }
 
         ip.getOKCount().set(0);
+        task.markFailing(ip);
         ip.setBeingChecked(false);
     }
 
+    private void commitLater(Service service) {
+        long window = globalConfig.getHealthCommitWindowMillis();
+        if (window <= 0) {
+            commit(service, false);
+            return;
+        }
+
+        final String key = UtilsAndCommons.assembleFullServiceName(service.getNamespaceId(), service.getName());
+        if (changedServices.putIfAbsent(key, service) != null) {
+            return;
+        }
+
+        executorService.schedule(new Runnable() {
+            @Override
+            public void run() {
+                Service changed = changedServices.remove(key);
+                if (changed != null) {
+                    commit(changed, true);
+                }
+            }
+        }, window, TimeUnit.MILLISECONDS);
+    }
+
+    private void commit(Service service, boolean merged) {
+        try {
+            service.setLastModifiedMillis(System.currentTimeMillis());
+            pushService.serviceChanged(service, merged);
+        } catch (Throwable t) {
+            Loggers.SRV_LOG.error("[HEALTH-CHECK] error when commit health status of service: {}", service.getName(), t);
+        }
+    }
+
     private void addResult(HealthCheckResult result) {
 
         if (!switchDomain.getIncrementalList().contains(result.getServiceName())) {
@@ -15,9 +15,8 @@
  */
 package com.alibaba.nacos.naming.healthcheck;
 
-import com.alibaba.nacos.naming.misc.Loggers;
+import org.apache.commons.lang3.RandomUtils;
 
-import java.util.Map;
 import java.util.concurrent.*;
 
 /**
@@ -27,7 +26,12 @@ public class HealthCheckReactor {
 
     private static final ScheduledExecutorService EXECUTOR;
 
-    private static Map<String, ScheduledFuture> futureMap = new ConcurrentHashMap<>();
+    /**
+     * Each round is delayed by the normalized check RT give or take this fraction of it, so clusters which happen to
+     * check together do not keep checking together.
+     */
+    private static final int JITTER_DIVISOR = 10;
+
 
     static {
 
@@ -45,25 +49,11 @@ public class HealthCheckReactor {
                 });
     }
 
-    public static ScheduledFuture<?> scheduleCheck(HealthCheckTask task) {
+    public static void scheduleCheck(HealthCheckTask task) {
         task.setStartTime(System.currentTimeMillis());
-        return EXECUTOR.schedule(task, task.getCheckRTNormalized(), TimeUnit.MILLISECONDS);
-    }
-
-    public static void scheduleCheck(ClientBeatCheckTask task) {
-        futureMap.putIfAbsent(task.taskKey(), EXECUTOR.scheduleWithFixedDelay(task, 5000, 5000, TimeUnit.MILLISECONDS));
-    }
-
-    public static void cancelCheck(ClientBeatCheckTask task) {
-        ScheduledFuture scheduledFuture = futureMap.get(task.taskKey());
-        if (scheduledFuture == null) {
-            return;
-        }
-        try {
-            scheduledFuture.cancel(true);
-        } catch (Exception e) {
-            Loggers.EVT_LOG.error("[CANCEL-CHECK] cancel failed!", e);
-        }
+        long delay = task.getCheckRTNormalized();
+        long jitter = delay / JITTER_DIVISOR;
+        HealthCheckScheduler.schedule(task, delay - jitter + RandomUtils.nextLong(0, 2 * jitter + 1));
     }
 
 
@@ -0,0 +1,159 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.nacos.naming.healthcheck;
+
+import com.alibaba.nacos.naming.boot.SpringContext;
+import com.alibaba.nacos.naming.misc.Loggers;
+import com.alibaba.nacos.naming.misc.SwitchDomain;
+import com.alibaba.nacos.naming.monitor.MetricsMonitor;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.*;
+
+/**
+ * Central scheduler of cluster health check tasks.
+ * <p>
+ * Due tasks are released to {@link HealthCheckReactor} under a global budget of instance checks per second
+ * (see {@link SwitchDomain#getHealthCheckBudgetPerSecond()}, 0 means unlimited). When the budget is exhausted
+ * the remaining due tasks are deferred, and clusters with recently failing instances are released first.
+ * The delay between the scheduled and the actual start of every task is recorded as drift.
+ *
+ * @author nacos
+ */
+public class HealthCheckScheduler {
+
+    private static final long DISPATCH_INTERVAL_MILLIS = 50L;
+
+    private static final DelayQueue<ScheduledCheck> SCHEDULED = new DelayQueue<>();
+
+    /**
+     * Due tasks waiting for budget, those of clusters with failing instances first, only accessed by the dispatcher
+     * thread.
+     */
+    private static final PriorityQueue<ScheduledCheck> READY = new PriorityQueue<>(16,
+        new Comparator<ScheduledCheck>() {
+            @Override
+            public int compare(ScheduledCheck o1, ScheduledCheck o2) {
+                if (o1.failing != o2.failing) {
+                    return o1.failing ? -1 : 1;
+                }
+                return o1.compareTo(o2);
+            }
+        });
+
+    private static final ScheduledExecutorService DISPATCHER;
+
+    private static volatile SwitchDomain switchDomain;
+
+    private static double tokens;
+
+    private static long lastRefillTime = System.currentTimeMillis();
+
+    static {
+        DISPATCHER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r);
+                thread.setDaemon(true);
+                thread.setName("com.alibaba.nacos.naming.health.scheduler");
+                return thread;
+            }
+        });
+
+        DISPATCHER.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    dispatch();
+                } catch (Throwable e) {
+                    Loggers.SRV_LOG.error("[HEALTH-CHECK] error while dispatching health check tasks", e);
+                }
+            }
+        }, DISPATCH_INTERVAL_MILLIS, DISPATCH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public static void schedule(HealthCheckTask task, long delayMillis) {
+        SCHEDULED.offer(new ScheduledCheck(task, System.currentTimeMillis() + delayMillis));
+    }
+
+    private static void dispatch() {
+        ScheduledCheck due;
+        while ((due = SCHEDULED.poll()) != null) {
+            if (due.task.isCancelled()) {
+                continue;
+            }
+            due.failing = due.task.hasFailingInstance();
+            READY.offer(due);
+        }
+
+        int budget = getSwitchDomain().getHealthCheckBudgetPerSecond();
+        long now = System.currentTimeMillis();
+        if (budget > 0) {
+            tokens = Math.min(budget, tokens + (now - lastRefillTime) * budget / 1000.0);
+        }
+        lastRefillTime = now;
+
+        while (!READY.isEmpty()) {
+            if (budget > 0 && tokens <= 0) {
+                break;
+            }
+            ScheduledCheck check = READY.poll();
+            if (check.task.isCancelled()) {
+                continue;
+            }
+            if (budget > 0) {
+                // a cluster larger than the budget is still released, the debt delays the following tasks
+                tokens -= Math.max(1, check.task.getCluster().allIPs(false).size());
+            }
+            MetricsMonitor.getHealthCheckDriftTimer().record(Math.max(0, now - check.dueTime), TimeUnit.MILLISECONDS);
+            HealthCheckReactor.scheduleNow(check.task);
+        }
+
+        MetricsMonitor.getHealthCheckDeferredMonitor().set(READY.size());
+    }
+
+    private static SwitchDomain getSwitchDomain() {
+        if (switchDomain == null) {
+            switchDomain = SpringContext.getAppContext().getBean(SwitchDomain.class);
+        }
+        return switchDomain;
+    }
+
+    private static class ScheduledCheck implements Delayed {
+
+        private final HealthCheckTask task;
+
+        private final long dueTime;
+
+        private boolean failing;
+
+        ScheduledCheck(HealthCheckTask task, long dueTime) {
+            this.task = task;
+            this.dueTime = dueTime;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(dueTime, ((ScheduledCheck) o).dueTime);
+        }
+    }
+}
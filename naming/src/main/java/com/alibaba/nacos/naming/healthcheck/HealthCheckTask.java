@@ -19,10 +19,14 @@ import com.alibaba.fastjson.annotation.JSONField;
 import com.alibaba.nacos.naming.boot.SpringContext;
 import com.alibaba.nacos.naming.core.Cluster;
 import com.alibaba.nacos.naming.core.DistroMapper;
+import com.alibaba.nacos.naming.core.Instance;
 import com.alibaba.nacos.naming.misc.Loggers;
 import com.alibaba.nacos.naming.misc.SwitchDomain;
 import org.apache.commons.lang3.RandomUtils;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * @author nacos
  */
@@ -41,6 +45,13 @@ public class HealthCheckTask implements Runnable {
 
     private volatile boolean cancelled = false;
 
+    /**
+     * Addresses of the instances which are unhealthy or failed their last check, kept up to date by the check
+     * results so the scheduler need not scan the cluster.
+     */
+    @JSONField(serialize = false)
+    private Set<String> failingInstances = ConcurrentHashMap.newKeySet();
+
     @JSONField(serialize = false)
     private DistroMapper distroMapper;
 
@@ -59,8 +70,8 @@ public class HealthCheckTask implements Runnable {
     }
 
     public void initCheckRT() {
-        // first check time delay
-        checkRTNormalized = 2000 + RandomUtils.nextInt(0, RandomUtils.nextInt(0, switchDomain.getTcpHealthParams().getMax()));
+        // first check time delay, spread uniformly so that clusters created together do not check together
+        checkRTNormalized = 2000 + RandomUtils.nextInt(0, switchDomain.getTcpHealthParams().getMax());
         checkRTBest = Long.MAX_VALUE;
         checkRTWorst = 0L;
     }
@@ -106,6 +117,19 @@ public class HealthCheckTask implements Runnable {
         }
     }
 
+    public void markFailing(Instance instance) {
+        failingInstances.add(instance.toIPAddr());
+    }
+
+    public void markRecovered(Instance instance) {
+        failingInstances.remove(instance.toIPAddr());
+    }
+
+    @JSONField(serialize = false)
+    public boolean hasFailingInstance() {
+        return !failingInstances.isEmpty();
+    }
+
     public Cluster getCluster() {
         return cluster;
     }
@@ -18,29 +18,42 @@ package com.alibaba.nacos.naming.healthcheck;
 import com.alibaba.nacos.api.naming.pojo.AbstractHealthChecker;
 import com.alibaba.nacos.naming.core.Cluster;
 import com.alibaba.nacos.naming.core.Instance;
+import com.alibaba.nacos.naming.misc.GlobalConfig;
+import com.alibaba.nacos.naming.misc.HttpClient;
 import com.alibaba.nacos.naming.misc.SwitchDomain;
 import com.alibaba.nacos.naming.monitor.MetricsMonitor;
 import com.ning.http.client.AsyncCompletionHandler;
 import com.ning.http.client.AsyncHttpClient;
 import com.ning.http.client.AsyncHttpClientConfig;
 import com.ning.http.client.Response;
+import io.micrometer.core.instrument.Timer;
 import io.netty.channel.ConnectTimeoutException;
 import org.apache.commons.collections.CollectionUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import java.net.ConnectException;
 import java.net.HttpURLConnection;
 import java.net.SocketTimeoutException;
 import java.net.URL;
+import java.util.ArrayDeque;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import static com.alibaba.nacos.naming.misc.Loggers.SRV_LOG;
 
 /**
  * HTTP health check processor
+ * <p>
+ * Connections are pooled and kept alive between rounds. At most
+ * {@link GlobalConfig#getHttpCheckMaxConcurrentPerHost()} checks run against one host at a time, the others wait
+ * in the queue of the host. Each check times out after a few times the response time last observed.
  *
  * @author xuanyin.zy
  */
@@ -53,19 +66,33 @@ public class HttpHealthCheckProcessor implements HealthCheckProcessor {
     @Autowired
     private HealthCheckCommon healthCheckCommon;
 
+    @Autowired
+    private GlobalConfig globalConfig;
+
     private static AsyncHttpClient asyncHttpClient;
 
     private static final int CONNECT_TIMEOUT_MS = 500;
 
-    static {
+    /**
+     * Timeout of a check in multiples of the response time last observed.
+     */
+    private static final int TIMEOUT_RT_MULTIPLE = 4;
+
+    private final ConcurrentMap<String, HostQueue> hostQueues = new ConcurrentHashMap<>();
+
+    private Timer rtTimer;
+
+    @PostConstruct
+    public void init() {
         try {
             AsyncHttpClientConfig.Builder builder = new AsyncHttpClientConfig.Builder();
 
             builder.setMaximumConnectionsTotal(-1);
             builder.setMaximumConnectionsPerHost(-1);
-            builder.setAllowPoolingConnection(false);
+            builder.setAllowPoolingConnection(true);
+            builder.setIdleConnectionInPoolTimeoutInMs(globalConfig.getHttpCheckKeepAliveMillis());
             builder.setFollowRedirects(false);
-            builder.setIdleConnectionTimeoutInMs(CONNECT_TIMEOUT_MS);
+            builder.setIdleConnectionTimeoutInMs(switchDomain.getHttpHealthParams().getMax());
             builder.setConnectionTimeoutInMs(CONNECT_TIMEOUT_MS);
             builder.setCompressionEnabled(false);
             builder.setIOThreadMultiplier(1);
@@ -75,6 +102,8 @@ public class HttpHealthCheckProcessor implements HealthCheckProcessor {
         } catch (Throwable e) {
             SRV_LOG.error("[HEALTH-CHECK] Error while constructing HTTP asynchronous client", e);
         }
+
+        rtTimer = MetricsMonitor.getHealthCheckRtTimer(getType());
     }
 
     @Override
@@ -93,57 +122,169 @@ public class HttpHealthCheckProcessor implements HealthCheckProcessor {
             return;
         }
 
-        Cluster cluster = task.getCluster();
-
         for (Instance ip : ips) {
-            try {
 
-                if (ip.isMarked()) {
-                    if (SRV_LOG.isDebugEnabled()) {
-                        SRV_LOG.debug("http check, ip is marked as to skip health check, ip: {}" + ip.getIp());
-                    }
-                    continue;
+            if (ip.isMarked()) {
+                if (SRV_LOG.isDebugEnabled()) {
+                    SRV_LOG.debug("http check, ip is marked as to skip health check, ip: {}" + ip.getIp());
                 }
+                continue;
+            }
 
-                if (!ip.markChecking()) {
-                    SRV_LOG.warn("http check started before last one finished, service: {}:{}:{}",
-                        task.getCluster().getService().getName(), task.getCluster().getName(), ip.getIp());
+            if (!ip.markChecking()) {
+                SRV_LOG.warn("http check started before last one finished, service: {}:{}:{}",
+                    task.getCluster().getService().getName(), task.getCluster().getName(), ip.getIp());
 
-                    healthCheckCommon.reEvaluateCheckRT(task.getCheckRTNormalized() * 2, task, switchDomain.getHttpHealthParams());
-                    continue;
+                healthCheckCommon.reEvaluateCheckRT(task.getCheckRTNormalized() * 2, task, switchDomain.getHttpHealthParams());
+                continue;
+            }
+
+            submit(new HttpHealthCheckCallback(ip, task));
+        }
+    }
+
+    private void submit(HttpHealthCheckCallback check) {
+        String host = check.ip.getIp();
+        while (true) {
+            HostQueue queue = hostQueues.get(host);
+            if (queue == null) {
+                HostQueue newQueue = new HostQueue(host);
+                queue = hostQueues.putIfAbsent(host, newQueue);
+                if (queue == null) {
+                    queue = newQueue;
                 }
+            }
 
-                AbstractHealthChecker.Http healthChecker = (AbstractHealthChecker.Http) cluster.getHealthChecker();
+            synchronized (queue) {
+                if (queue.removed) {
+                    continue;
+                }
+                if (queue.inFlight >= globalConfig.getHttpCheckMaxConcurrentPerHost()) {
+                    queue.pending.add(check);
+                    return;
+                }
+                queue.inFlight++;
+            }
 
-                int ckPort = cluster.isUseIPPort4Check() ? ip.getPort() : cluster.getDefCkport();
-                URL host = new URL("http://" + ip.getIp() + ":" + ckPort);
-                URL target = new URL(host, healthChecker.getPath());
+            if (!execute(check, queue)) {
+                release(queue);
+            }
+            return;
+        }
+    }
 
-                AsyncHttpClient.BoundRequestBuilder builder = asyncHttpClient.prepareGet(target.toString());
-                Map<String, String> customHeaders = healthChecker.getCustomHeaders();
-                for (Map.Entry<String, String> entry : customHeaders.entrySet()) {
-                    if ("Host".equals(entry.getKey())) {
-                        builder.setVirtualHost(entry.getValue());
-                        continue;
+    /**
+     * Hand the slot of a finished check to the next pending check of the host, or give it back if there is none.
+     * Checks failing before they are sent are skipped in the same loop.
+     */
+    private void release(HostQueue queue) {
+        while (true) {
+            HttpHealthCheckCallback next;
+            synchronized (queue) {
+                next = queue.pending.poll();
+                if (next == null) {
+                    queue.inFlight--;
+                    if (queue.inFlight == 0) {
+                        queue.removed = true;
+                        hostQueues.remove(queue.host, queue);
                     }
+                    return;
+                }
+            }
+
+            long waited = System.currentTimeMillis() - next.queueTime;
+            if (waited < next.task.getCheckRTNormalized()) {
+                if (execute(next, queue)) {
+                    return;
+                }
+                continue;
+            }
+
+            // the next round of checks is already due, skip this one:
+            SRV_LOG.warn("http check waited too long on host {}: {}ms, service: {}:{}:{}", queue.host, waited,
+                next.task.getCluster().getService().getName(), next.task.getCluster().getName(), next.ip.getIp());
+            next.ip.setBeingChecked(false);
+        }
+    }
 
-                    builder.setHeader(entry.getKey(), entry.getValue());
+    /**
+     * Send a check holding a slot of its host, the callback releases the slot when it completes.
+     *
+     * @return false if the check failed before it was sent, the slot is then still held by the caller
+     */
+    private boolean execute(HttpHealthCheckCallback check, HostQueue queue) {
+        Instance ip = check.ip;
+        HealthCheckTask task = check.task;
+        check.queue = queue;
+        try {
+            Cluster cluster = task.getCluster();
+            AbstractHealthChecker.Http healthChecker = (AbstractHealthChecker.Http) cluster.getHealthChecker();
+
+            int ckPort = cluster.isUseIPPort4Check() ? ip.getPort() : cluster.getDefCkport();
+            URL host = new URL("http://" + ip.getIp() + ":" + ckPort);
+            URL target = new URL(host, healthChecker.getPath());
+
+            AsyncHttpClient.BoundRequestBuilder builder = asyncHttpClient.prepareGet(target.toString());
+            Map<String, String> customHeaders = healthChecker.getCustomHeaders();
+            for (Map.Entry<String, String> entry : customHeaders.entrySet()) {
+                if ("Host".equals(entry.getKey())) {
+                    builder.setVirtualHost(entry.getValue());
+                    continue;
                 }
 
-                builder.execute(new HttpHealthCheckCallback(ip, task));
-                MetricsMonitor.getHttpHealthCheckMonitor().incrementAndGet();
-            } catch (Throwable e) {
-                ip.setCheckRT(switchDomain.getHttpHealthParams().getMax());
-                healthCheckCommon.checkFail(ip, task, "http:error:" + e.getMessage());
-                healthCheckCommon.reEvaluateCheckRT(switchDomain.getHttpHealthParams().getMax(), task, switchDomain.getHttpHealthParams());
+                builder.setHeader(entry.getKey(), entry.getValue());
             }
+
+            HttpClient.setRequestTimeout(builder, getTimeout(ip, task));
+
+            check.startTime = System.currentTimeMillis();
+            builder.execute(check);
+            MetricsMonitor.getHttpHealthCheckMonitor().incrementAndGet();
+            return true;
+        } catch (Throwable e) {
+            ip.setCheckRT(switchDomain.getHttpHealthParams().getMax());
+            healthCheckCommon.checkFail(ip, task, "http:error:" + e.getMessage());
+            healthCheckCommon.reEvaluateCheckRT(switchDomain.getHttpHealthParams().getMax(), task, switchDomain.getHttpHealthParams());
+            return false;
+        }
+    }
+
+    /**
+     * Timeout of a check adapted to the response time last observed of the instance, or the best one of the cluster
+     * if there is none, bounded by the limits of HTTP checks and the interval of the task.
+     */
+    private int getTimeout(Instance ip, HealthCheckTask task) {
+        SwitchDomain.HttpHealthParams params = switchDomain.getHttpHealthParams();
+        long upperBound = Math.max(params.getMin(), Math.min(params.getMax(), task.getCheckRTNormalized()));
+
+        long observed = ip.getCheckRT() > 0 ? ip.getCheckRT() : task.getCheckRTBest();
+        if (observed <= 0 || observed == Long.MAX_VALUE) {
+            return (int) upperBound;
+        }
+
+        return (int) Math.max(params.getMin(), Math.min(upperBound, observed * TIMEOUT_RT_MULTIPLE));
+    }
+
+    private static class HostQueue {
+        private final String host;
+
+        private final Queue<HttpHealthCheckCallback> pending = new ArrayDeque<>();
+
+        private int inFlight = 0;
+
+        private boolean removed = false;
+
+        HostQueue(String host) {
+            this.host = host;
         }
     }
 
     private class HttpHealthCheckCallback extends AsyncCompletionHandler<Integer> {
         private Instance ip;
         private HealthCheckTask task;
+        private HostQueue queue;
 
+        private long queueTime = System.currentTimeMillis();
         private long startTime = System.currentTimeMillis();
 
         public HttpHealthCheckCallback(Instance ip, HealthCheckTask task) {
@@ -153,28 +294,44 @@ public class HttpHealthCheckProcessor implements HealthCheckProcessor {
 
         @Override
         public Integer onCompleted(Response response) throws Exception {
-            ip.setCheckRT(System.currentTimeMillis() - startTime);
-
-            int httpCode = response.getStatusCode();
-            if (HttpURLConnection.HTTP_OK == httpCode) {
-                healthCheckCommon.checkOK(ip, task, "http:" + httpCode);
-                healthCheckCommon.reEvaluateCheckRT(System.currentTimeMillis() - startTime, task, switchDomain.getHttpHealthParams());
-            } else if (HttpURLConnection.HTTP_UNAVAILABLE == httpCode || HttpURLConnection.HTTP_MOVED_TEMP == httpCode) {
-                // server is busy, need verification later
-                healthCheckCommon.checkFail(ip, task, "http:" + httpCode);
-                healthCheckCommon.reEvaluateCheckRT(task.getCheckRTNormalized() * 2, task, switchDomain.getHttpHealthParams());
-            } else {
-                //probably means the state files has been removed by administrator
-                healthCheckCommon.checkFailNow(ip, task, "http:" + httpCode);
-                healthCheckCommon.reEvaluateCheckRT(switchDomain.getHttpHealthParams().getMax(), task, switchDomain.getHttpHealthParams());
-            }
+            try {
+                long rt = System.currentTimeMillis() - startTime;
+                ip.setCheckRT(rt);
+                rtTimer.record(rt, TimeUnit.MILLISECONDS);
+
+                int httpCode = response.getStatusCode();
+                if (HttpURLConnection.HTTP_OK == httpCode) {
+                    healthCheckCommon.checkOK(ip, task, "http:" + httpCode);
+                    healthCheckCommon.reEvaluateCheckRT(rt, task, switchDomain.getHttpHealthParams());
+                } else if (HttpURLConnection.HTTP_UNAVAILABLE == httpCode || HttpURLConnection.HTTP_MOVED_TEMP == httpCode) {
+                    // server is busy, need verification later
+                    healthCheckCommon.checkFail(ip, task, "http:" + httpCode);
+                    healthCheckCommon.reEvaluateCheckRT(task.getCheckRTNormalized() * 2, task, switchDomain.getHttpHealthParams());
+                } else {
+                    //probably means the state files has been removed by administrator
+                    healthCheckCommon.checkFailNow(ip, task, "http:" + httpCode);
+                    healthCheckCommon.reEvaluateCheckRT(switchDomain.getHttpHealthParams().getMax(), task, switchDomain.getHttpHealthParams());
+                }
 
-            return httpCode;
+                return httpCode;
+            } finally {
+                release(queue);
+            }
         }
 
         @Override
         public void onThrowable(Throwable t) {
-            ip.setCheckRT(System.currentTimeMillis() - startTime);
+            try {
+                handleThrowable(t);
+            } finally {
+                release(queue);
+            }
+        }
+
+        private void handleThrowable(Throwable t) {
+            long rt = System.currentTimeMillis() - startTime;
+            ip.setCheckRT(rt);
+            rtTimer.record(rt, TimeUnit.MILLISECONDS);
 
             Throwable cause = t;
             int maxStackDepth = 50;
@@ -16,29 +16,38 @@
 package com.alibaba.nacos.naming.healthcheck;
 
 import com.alibaba.nacos.api.naming.pojo.AbstractHealthChecker;
+import com.alibaba.nacos.common.util.Md5Utils;
 import com.alibaba.nacos.naming.core.Cluster;
 import com.alibaba.nacos.naming.core.Instance;
+import com.alibaba.nacos.naming.misc.GlobalConfig;
 import com.alibaba.nacos.naming.misc.Loggers;
 import com.alibaba.nacos.naming.misc.SwitchDomain;
 import com.alibaba.nacos.naming.monitor.MetricsMonitor;
 import com.mysql.jdbc.jdbc2.optional.MysqlDataSource;
+import io.micrometer.core.instrument.Timer;
 import io.netty.channel.ConnectTimeoutException;
 import org.apache.commons.collections.CollectionUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import java.net.SocketTimeoutException;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
 
 import static com.alibaba.nacos.naming.misc.Loggers.SRV_LOG;
 
 /**
  * MYSQL health check processor
+ * <p>
+ * One idle connection is cached per database instance and credentials, and reused by the next check, which validates
+ * it with the check command itself. Connections to read-only slaves are cached as well. Connections idle for longer than
+ * {@link GlobalConfig#getMysqlCheckIdleTimeoutMillis()} are closed.
  *
  * @author nacos
  */
@@ -51,21 +60,45 @@ public class MysqlHealthCheckProcessor implements HealthCheckProcessor {
     @Autowired
     private SwitchDomain switchDomain;
 
+    @Autowired
+    private GlobalConfig globalConfig;
+
     public static final int CONNECT_TIMEOUT_MS = 500;
 
     private static final String CHECK_MYSQL_MASTER_SQL = "show global variables where variable_name='read_only'";
     private static final String MYSQL_SLAVE_READONLY = "ON";
+    private static final String SQL_STATE_AUTH_FAILED = "28000";
 
-    private static ConcurrentMap<String, Connection> CONNECTION_POOL
-            = new ConcurrentHashMap<String, Connection>();
+    private static ConcurrentMap<String, PooledConnection> CONNECTION_POOL
+            = new ConcurrentHashMap<String, PooledConnection>();
 
     private static ExecutorService EXECUTOR;
 
-    static {
+    private static ScheduledExecutorService EVICTOR = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            thread.setName("com.nacos.mysql.checker.evictor");
+            return thread;
+        }
+    });
+
+    private Timer rtTimer;
+
+    public MysqlHealthCheckProcessor() {
+    }
+
+    @PostConstruct
+    public void init() {
 
         int processorCount = Runtime.getRuntime().availableProcessors();
+        int workers = globalConfig.getMysqlCheckWorkers() > 0 ?
+            globalConfig.getMysqlCheckWorkers() : (processorCount <= 1 ? 1 : processorCount / 2);
+
         EXECUTOR
-                = Executors.newFixedThreadPool(processorCount <= 1 ? 1 : processorCount / 2,
+                = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(globalConfig.getMysqlCheckMaxPending()),
                 new ThreadFactory() {
                     @Override
                     public Thread newThread(Runnable r) {
@@ -76,9 +109,16 @@ public class MysqlHealthCheckProcessor implements HealthCheckProcessor {
                     }
                 }
         );
-    }
 
-    public MysqlHealthCheckProcessor() {
+        long idleTimeout = globalConfig.getMysqlCheckIdleTimeoutMillis();
+        EVICTOR.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                evictIdleConnections();
+            }
+        }, idleTimeout, Math.max(1000L, idleTimeout / 2), TimeUnit.MILLISECONDS);
+
+        rtTimer = MetricsMonitor.getHealthCheckRtTimer(getType());
     }
 
     @Override
@@ -115,6 +155,11 @@ public class MysqlHealthCheckProcessor implements HealthCheckProcessor {
 
                 EXECUTOR.execute(new MysqlCheckTask(ip, task));
                 MetricsMonitor.getMysqlHealthCheckMonitor().incrementAndGet();
+            } catch (RejectedExecutionException e) {
+                // too many checks pending, skip this round without changing the status:
+                SRV_LOG.warn("mysql check rejected, too many pending checks, service: {}:{}:{}",
+                    task.getCluster().getService().getName(), task.getCluster().getName(), ip.getIp());
+                ip.setBeingChecked(false);
             } catch (Exception e) {
                 ip.setCheckRT(switchDomain.getMysqlHealthParams().getMax());
                 healthCheckCommon.checkFail(ip, task, "mysql:error:" + e.getMessage());
@@ -123,6 +168,46 @@ public class MysqlHealthCheckProcessor implements HealthCheckProcessor {
         }
     }
 
+    private void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, PooledConnection> entry : CONNECTION_POOL.entrySet()) {
+            PooledConnection pooled = entry.getValue();
+            if (now - pooled.lastUsed > globalConfig.getMysqlCheckIdleTimeoutMillis()
+                && CONNECTION_POOL.remove(entry.getKey(), pooled)) {
+                close(pooled);
+            }
+        }
+    }
+
+    /**
+     * Close the cached connections of a user whose credentials were just rejected, they were opened with an older
+     * password.
+     */
+    private static void evictConnections(String keyPrefix) {
+        for (Map.Entry<String, PooledConnection> entry : CONNECTION_POOL.entrySet()) {
+            if (entry.getKey().startsWith(keyPrefix) && CONNECTION_POOL.remove(entry.getKey(), entry.getValue())) {
+                close(entry.getValue());
+            }
+        }
+    }
+
+    private static void close(PooledConnection pooled) {
+        try {
+            pooled.connection.close();
+        } catch (Exception e) {
+            Loggers.SRV_LOG.warn("[MYSQL-CHECK] failed to close connection: " + pooled.connection, e);
+        }
+    }
+
+    private static class PooledConnection {
+        private final Connection connection;
+        private long lastUsed = System.currentTimeMillis();
+
+        PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+    }
+
     private class MysqlCheckTask implements Runnable {
         private Instance ip;
         private HealthCheckTask task;
@@ -136,47 +221,50 @@ public class MysqlHealthCheckProcessor implements HealthCheckProcessor {
         @Override
         public void run() {
 
-            Statement statement = null;
-            ResultSet resultSet = null;
+            PooledConnection pooled = null;
+            String userKey = null;
 
             try {
 
                 Cluster cluster = task.getCluster();
-                String key = cluster.getService().getName() + ":" + cluster.getName() + ":" + ip.getIp() + ":" + ip.getPort();
-                Connection connection = CONNECTION_POOL.get(key);
                 AbstractHealthChecker.Mysql config = (AbstractHealthChecker.Mysql) cluster.getHealthChecker();
-
-                if (connection == null || connection.isClosed()) {
-                    MysqlDataSource dataSource = new MysqlDataSource();
-                    dataSource.setConnectTimeout(CONNECT_TIMEOUT_MS);
-                    dataSource.setSocketTimeout(CONNECT_TIMEOUT_MS);
-                    dataSource.setUser(config.getUser());
-                    dataSource.setPassword(config.getPwd());
-                    dataSource.setLoginTimeout(1);
-
-                    dataSource.setServerName(ip.getIp());
-                    dataSource.setPort(ip.getPort());
-
-                    connection = dataSource.getConnection();
-                    CONNECTION_POOL.put(key, connection);
+                userKey = ip.getIp() + ":" + ip.getPort() + ":" + config.getUser() + ":";
+                String key = userKey + Md5Utils.getMD5(String.valueOf(config.getPwd()), "UTF-8");
+
+                boolean slave;
+                pooled = CONNECTION_POOL.remove(key);
+                if (pooled == null || pooled.connection.isClosed()) {
+                    pooled = connect(config);
+                    slave = query(pooled.connection, config);
+                } else {
+                    try {
+                        slave = query(pooled.connection, config);
+                    } catch (SQLException e) {
+                        // the cached connection may have been closed by the server, retry with a new one:
+                        close(pooled);
+                        pooled = null;
+                        pooled = connect(config);
+                        slave = query(pooled.connection, config);
+                    }
                 }
 
-                statement = connection.createStatement();
-                statement.setQueryTimeout(1);
-
-                resultSet = statement.executeQuery(config.getCmd());
-                int resultColumnIndex = 2;
+                pooled.lastUsed = System.currentTimeMillis();
+                if (CONNECTION_POOL.putIfAbsent(key, pooled) == null) {
+                    pooled = null;
+                }
 
-                if (CHECK_MYSQL_MASTER_SQL.equals(config.getCmd())) {
-                    resultSet.next();
-                    if (MYSQL_SLAVE_READONLY.equals(resultSet.getString(resultColumnIndex))) {
-                        throw new IllegalStateException("current node is slave!");
-                    }
+                if (slave) {
+                    healthCheckCommon.checkFail(ip, task, "mysql:error:current node is slave!");
+                    healthCheckCommon.reEvaluateCheckRT(switchDomain.getMysqlHealthParams().getMax(), task, switchDomain.getMysqlHealthParams());
+                    return;
                 }
 
                 healthCheckCommon.checkOK(ip, task, "mysql:+ok");
                 healthCheckCommon.reEvaluateCheckRT(System.currentTimeMillis() - startTime, task, switchDomain.getMysqlHealthParams());
             } catch (SQLException e) {
+                if (SQL_STATE_AUTH_FAILED.equals(e.getSQLState()) && userKey != null) {
+                    evictConnections(userKey);
+                }
                 // fail immediately
                 healthCheckCommon.checkFailNow(ip, task, "mysql:" + e.getMessage());
                 healthCheckCommon.reEvaluateCheckRT(switchDomain.getHttpHealthParams().getMax(), task, switchDomain.getMysqlHealthParams());
@@ -201,22 +289,46 @@ public class MysqlHealthCheckProcessor implements HealthCheckProcessor {
                 healthCheckCommon.checkFail(ip, task, "mysql:error:" + t.getMessage());
                 healthCheckCommon.reEvaluateCheckRT(switchDomain.getMysqlHealthParams().getMax(), task, switchDomain.getMysqlHealthParams());
             } finally {
-                ip.setCheckRT(System.currentTimeMillis() - startTime);
-                if (statement != null) {
-                    try {
-                        statement.close();
-                    } catch (SQLException e) {
-                        Loggers.SRV_LOG.error("[MYSQL-CHECK] failed to close statement:" + statement, e);
-                    }
+                long rt = System.currentTimeMillis() - startTime;
+                ip.setCheckRT(rt);
+                rtTimer.record(rt, TimeUnit.MILLISECONDS);
+                if (pooled != null) {
+                    close(pooled);
                 }
-                if (resultSet != null) {
-                    try {
-                        resultSet.close();
-                    } catch (SQLException e) {
-                        Loggers.SRV_LOG.error("[MYSQL-CHECK] failed to close resultSet:" + resultSet, e);
+            }
+        }
+
+        private PooledConnection connect(AbstractHealthChecker.Mysql config) throws SQLException {
+            MysqlDataSource dataSource = new MysqlDataSource();
+            dataSource.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            dataSource.setSocketTimeout(CONNECT_TIMEOUT_MS);
+            dataSource.setUser(config.getUser());
+            dataSource.setPassword(config.getPwd());
+            dataSource.setLoginTimeout(1);
+
+            dataSource.setServerName(ip.getIp());
+            dataSource.setPort(ip.getPort());
+
+            return new PooledConnection(dataSource.getConnection());
+        }
+
+        /**
+         * @return true if the check command tells the database is a read-only slave
+         */
+        private boolean query(Connection connection, AbstractHealthChecker.Mysql config) throws SQLException {
+            try (Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(1);
+
+                try (ResultSet resultSet = statement.executeQuery(config.getCmd())) {
+                    int resultColumnIndex = 2;
+
+                    if (CHECK_MYSQL_MASTER_SQL.equals(config.getCmd())) {
+                        resultSet.next();
+                        return MYSQL_SLAVE_READONLY.equals(resultSet.getString(resultColumnIndex));
                     }
                 }
             }
+            return false;
         }
     }
 }
@@ -17,6 +17,7 @@ package com.alibaba.nacos.naming.healthcheck;
 
 import com.alibaba.nacos.naming.core.Cluster;
 import com.alibaba.nacos.naming.core.Instance;
+import com.alibaba.nacos.naming.misc.GlobalConfig;
 import com.alibaba.nacos.naming.misc.Loggers;
 import com.alibaba.nacos.naming.misc.SwitchDomain;
 import com.alibaba.nacos.naming.monitor.MetricsMonitor;
@@ -24,6 +25,7 @@ import org.apache.commons.collections.CollectionUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import java.net.ConnectException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
@@ -32,16 +34,21 @@ import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.alibaba.nacos.naming.misc.Loggers.SRV_LOG;
 
 /**
  * TCP health check processor
+ * <p>
+ * Checks are sharded over several selector loops by target address, so that all checks of an instance, and the
+ * connection kept alive to it, stay on one loop. Each loop registers the connects queued to it in batches and
+ * times them out itself, results are then post-processed on {@link #NIO_EXECUTOR}.
  *
  * @author nacos
  */
 @Component
-public class TcpSuperSenseProcessor implements HealthCheckProcessor, Runnable {
+public class TcpSuperSenseProcessor implements HealthCheckProcessor {
 
     @Autowired
     private HealthCheckCommon healthCheckCommon;
@@ -49,11 +56,10 @@ public class TcpSuperSenseProcessor implements HealthCheckProcessor, Runnable {
     @Autowired
     private SwitchDomain switchDomain;
 
-    public static final int CONNECT_TIMEOUT_MS = 500;
-
-    private Map<String, BeatKey> keyMap = new ConcurrentHashMap<>();
+    @Autowired
+    private GlobalConfig globalConfig;
 
-    private BlockingQueue<Beat> taskQueue = new LinkedBlockingQueue<Beat>();
+    public static final int CONNECT_TIMEOUT_MS = 500;
 
     /**
      * this value has been carefully tuned, do not modify unless you're confident
@@ -61,21 +67,11 @@ public class TcpSuperSenseProcessor implements HealthCheckProcessor, Runnable {
     private static final int NIO_THREAD_COUNT = Runtime.getRuntime().availableProcessors() <= 1 ?
         1 : Runtime.getRuntime().availableProcessors() / 2;
 
-    /**
-     * because some hosts doesn't support keep-alive connections, disabled temporarily
-     */
-    private static final long TCP_KEEP_ALIVE_MILLIS = 0;
+    private static final int MAX_CONNECTS_PER_ROUND = 1024;
 
-    private static ScheduledExecutorService TCP_CHECK_EXECUTOR
-        = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
-        @Override
-        public Thread newThread(Runnable r) {
-            Thread t = new Thread(r);
-            t.setName("nacos.naming.tcp.check.worker");
-            t.setDaemon(true);
-            return t;
-        }
-    });
+    private static final long SELECT_TIMEOUT_MS = 50;
+
+    private static final long MAX_WAIT_TIME_MILLISECONDS = 500;
 
     private static ScheduledExecutorService NIO_EXECUTOR
         = Executors.newScheduledThreadPool(NIO_THREAD_COUNT,
@@ -90,16 +86,32 @@ public class TcpSuperSenseProcessor implements HealthCheckProcessor, Runnable {
         }
     );
 
-    private Selector selector;
+    private Shard[] shards;
 
-    public TcpSuperSenseProcessor() {
-        try {
-            selector = Selector.open();
+    @PostConstruct
+    public void init() {
+        int shardCount = globalConfig.getTcpCheckShards() > 0 ? globalConfig.getTcpCheckShards() : NIO_THREAD_COUNT;
 
-            TCP_CHECK_EXECUTOR.submit(this);
+        ExecutorService executor = Executors.newFixedThreadPool(shardCount, new ThreadFactory() {
+            private int index = 0;
 
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r);
+                t.setName("nacos.naming.tcp.check.worker-" + index++);
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        try {
+            shards = new Shard[shardCount];
+            for (int i = 0; i < shardCount; i++) {
+                shards[i] = new Shard(i);
+                executor.submit(shards[i]);
+            }
         } catch (Exception e) {
-            throw new IllegalStateException("Error while initializing SuperSense(TM).");
+            throw new IllegalStateException("Error while initializing SuperSense(TM).", e);
         }
     }
 
@@ -111,6 +123,7 @@ public class TcpSuperSenseProcessor implements HealthCheckProcessor, Runnable {
             return;
         }
 
+        Set<Shard> touched = new HashSet<>(shards.length);
         for (Instance ip : ips) {
 
             if (ip.isMarked()) {
@@ -132,101 +145,268 @@ public class TcpSuperSenseProcessor implements HealthCheckProcessor, Runnable {
             }
 
             Beat beat = new Beat(ip, task);
-            taskQueue.add(beat);
+            Shard shard = shards[(beat.toString().hashCode() & Integer.MAX_VALUE) % shards.length];
+            shard.taskQueue.add(beat);
+            touched.add(shard);
             MetricsMonitor.getTcpHealthCheckMonitor().incrementAndGet();
         }
+
+        for (Shard shard : touched) {
+            shard.selector.wakeup();
+        }
     }
 
-    private void processTask() throws Exception {
-        Collection<Callable<Void>> tasks = new LinkedList<>();
-        do {
-            Beat beat = taskQueue.poll(CONNECT_TIMEOUT_MS / 2, TimeUnit.MILLISECONDS);
-            if (beat == null) {
-                return;
+    private static void close(SelectionKey key) {
+        try {
+            key.cancel();
+            key.channel().close();
+        } catch (Exception ignore) {
+        }
+    }
+
+    /**
+     * One selector loop with the connections of the targets hashed to it. All fields except the task queue are only
+     * accessed by the loop thread.
+     */
+    private class Shard implements Runnable {
+
+        private final int index;
+
+        private final Selector selector;
+
+        private final Queue<Beat> taskQueue = new ConcurrentLinkedQueue<>();
+
+        private final Map<String, BeatKey> keyMap = new HashMap<>(16);
+
+        /**
+         * Connects in progress, in the order of their deadlines.
+         */
+        private final Queue<BeatKey> connecting = new ArrayDeque<>();
+
+        private int outstandingConnects = 0;
+
+        private final AtomicLong lagMonitor;
+
+        private final AtomicLong outstandingConnectMonitor;
+
+        Shard(int index) throws Exception {
+            this.index = index;
+            this.selector = Selector.open();
+            this.lagMonitor = MetricsMonitor.getTcpCheckLagMonitor(index);
+            this.outstandingConnectMonitor = MetricsMonitor.getTcpOutstandingConnectMonitor(index);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    registerConnects();
+
+                    selector.select(SELECT_TIMEOUT_MS);
+
+                    Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
+                    while (iter.hasNext()) {
+                        SelectionKey key = iter.next();
+                        iter.remove();
+
+                        processKey(key);
+                    }
+
+                    expireConnects();
+
+                    outstandingConnectMonitor.set(outstandingConnects);
+                } catch (Throwable e) {
+                    SRV_LOG.error("[HEALTH-CHECK] error while processing NIO task", e);
+                }
+            }
+        }
+
+        private void registerConnects() {
+            long now = System.currentTimeMillis();
+            long maxWaited = -1;
+            int count = 0;
+
+            Beat beat;
+            while (count < MAX_CONNECTS_PER_ROUND && (beat = taskQueue.poll()) != null) {
+                maxWaited = Math.max(maxWaited, now - beat.getStartTime());
+                connect(beat);
+                count++;
             }
 
-            tasks.add(new TaskProcessor(beat));
-        } while (taskQueue.size() > 0 && tasks.size() < NIO_THREAD_COUNT * 64);
+            if (maxWaited < 0) {
+                return;
+            }
 
-        for (Future<?> f : NIO_EXECUTOR.invokeAll(tasks)) {
-            f.get();
+            lagMonitor.set(maxWaited);
+            if (maxWaited > MAX_WAIT_TIME_MILLISECONDS) {
+                Loggers.SRV_LOG.warn("tcp check shard {} lagging, beat task waited too long: {}ms, queued: {}",
+                    index, maxWaited, taskQueue.size());
+            }
         }
-    }
 
-    @Override
-    public void run() {
-        while (true) {
+        private void connect(Beat beat) {
+            SocketChannel channel = null;
             try {
-                processTask();
+                Instance instance = beat.getIp();
+                Cluster cluster = beat.getTask().getCluster();
 
-                int readyCount = selector.selectNow();
-                if (readyCount <= 0) {
-                    continue;
+                BeatKey beatKey = keyMap.get(beat.toString());
+                if (beatKey != null && beatKey.key.isValid()) {
+                    long keepAliveMillis = switchDomain.getTcpKeepAliveMillis();
+                    boolean alive = beatKey.connected && System.currentTimeMillis() - beatKey.birthTime < keepAliveMillis;
+                    if (alive) {
+                        // the connection is still open, so is the port:
+                        beatKey.beat = beat;
+                        postProcess(beat, true, false, System.currentTimeMillis() - beat.getTask().getStartTime(),
+                            "tcp:ok+keepalive");
+                        return;
+                    }
+
+                    close(beatKey.key);
                 }
 
-                Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
-                while (iter.hasNext()) {
-                    SelectionKey key = iter.next();
-                    iter.remove();
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                // only by setting this can we make the socket close event asynchronous
+                channel.socket().setSoLinger(false, -1);
+                channel.socket().setReuseAddress(true);
+                channel.socket().setKeepAlive(true);
+                channel.socket().setTcpNoDelay(true);
+
+                int port = cluster.isUseIPPort4Check() ? instance.getPort() : cluster.getDefCkport();
+                boolean connected = channel.connect(new InetSocketAddress(instance.getIp(), port));
+
+                beat.setStartTime(System.currentTimeMillis());
+
+                SelectionKey key = channel.register(selector,
+                    connected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT | SelectionKey.OP_READ);
+                beatKey = new BeatKey(key, beat);
+                key.attach(beatKey);
+                keyMap.put(beat.toString(), beatKey);
 
-                    NIO_EXECUTOR.execute(new PostProcessor(key));
+                if (connected) {
+                    beatKey.connected = true;
+                    beatKey.finished = true;
+                    postProcess(beat, true, false, System.currentTimeMillis() - beat.getTask().getStartTime(), "tcp:ok+");
+                    return;
                 }
-            } catch (Throwable e) {
-                SRV_LOG.error("[HEALTH-CHECK] error while processing NIO task", e);
-            }
-        }
-    }
 
-    public class PostProcessor implements Runnable {
-        SelectionKey key;
+                connecting.add(beatKey);
+                outstandingConnects++;
+            } catch (Exception e) {
+                postProcess(beat, false, false, switchDomain.getTcpHealthParams().getMax(), "tcp:error:" + e.getMessage());
 
-        public PostProcessor(SelectionKey key) {
-            this.key = key;
+                if (channel != null) {
+                    try {
+                        channel.close();
+                    } catch (Exception ignore) {
+                    }
+                }
+            }
         }
 
-        @Override
-        public void run() {
-            Beat beat = (Beat) key.attachment();
+        private void processKey(SelectionKey key) {
+            BeatKey beatKey = (BeatKey) key.attachment();
+            Beat beat = beatKey.beat;
             SocketChannel channel = (SocketChannel) key.channel();
             try {
                 if (!beat.isHealthy()) {
                     //invalid beat means this server is no longer responsible for the current service
-                    key.cancel();
-                    key.channel().close();
+                    close(key);
+                    keyMap.remove(beat.toString(), beatKey);
 
-                    beat.finishCheck();
+                    if (finish(beatKey)) {
+                        beat.finishCheck();
+                    }
                     return;
                 }
 
                 if (key.isValid() && key.isConnectable()) {
                     //connected
                     channel.finishConnect();
-                    beat.finishCheck(true, false, System.currentTimeMillis() - beat.getTask().getStartTime(), "tcp:ok+");
+                    key.interestOps(SelectionKey.OP_READ);
+                    beatKey.connected = true;
+                    if (finish(beatKey)) {
+                        postProcess(beat, true, false, System.currentTimeMillis() - beat.getTask().getStartTime(), "tcp:ok+");
+                    }
                 }
 
                 if (key.isValid() && key.isReadable()) {
                     //disconnected
                     ByteBuffer buffer = ByteBuffer.allocate(128);
                     if (channel.read(buffer) == -1) {
-                        key.cancel();
-                        key.channel().close();
+                        close(key);
+                        keyMap.remove(beat.toString(), beatKey);
                     } else {
                         // not terminate request, ignore
                     }
                 }
             } catch (ConnectException e) {
                 // unable to connect, possibly port not opened
-                beat.finishCheck(false, true, switchDomain.getTcpHealthParams().getMax(), "tcp:unable2connect:" + e.getMessage());
+                close(key);
+                keyMap.remove(beat.toString(), beatKey);
+                if (finish(beatKey)) {
+                    postProcess(beat, false, true, switchDomain.getTcpHealthParams().getMax(),
+                        "tcp:unable2connect:" + e.getMessage());
+                }
             } catch (Exception e) {
-                beat.finishCheck(false, false, switchDomain.getTcpHealthParams().getMax(), "tcp:error:" + e.getMessage());
+                close(key);
+                keyMap.remove(beat.toString(), beatKey);
+                if (finish(beatKey)) {
+                    postProcess(beat, false, false, switchDomain.getTcpHealthParams().getMax(),
+                        "tcp:error:" + e.getMessage());
+                }
+            }
+        }
 
-                try {
-                    key.cancel();
-                    key.channel().close();
-                } catch (Exception ignore) {
+        private void expireConnects() {
+            long now = System.currentTimeMillis();
+
+            BeatKey beatKey;
+            while ((beatKey = connecting.peek()) != null) {
+                if (!beatKey.finished && beatKey.deadline > now) {
+                    break;
+                }
+
+                connecting.poll();
+                if (!finish(beatKey)) {
+                    continue;
                 }
+
+                close(beatKey.key);
+                keyMap.remove(beatKey.beat.toString(), beatKey);
+                Beat beat = beatKey.beat;
+                postProcess(beat, false, false, beat.getTask().getCheckRTNormalized() * 2, "tcp:timeout");
             }
         }
+
+        /**
+         * Mark the connect of a beat key as finished.
+         *
+         * @return false if it has already been finished
+         */
+        private boolean finish(BeatKey beatKey) {
+            if (beatKey.finished) {
+                return false;
+            }
+            beatKey.finished = true;
+            outstandingConnects--;
+            return true;
+        }
+    }
+
+    private void postProcess(final Beat beat, final boolean success, final boolean now, final long rt,
+                             final String msg) {
+        NIO_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    beat.finishCheck(success, now, rt, msg);
+                } catch (Exception e) {
+                    SRV_LOG.error("[HEALTH-CHECK] error while post processing tcp check of " + beat, e);
+                }
+            }
+        });
     }
 
     private class Beat {
@@ -279,8 +459,6 @@ public class TcpSuperSenseProcessor implements HealthCheckProcessor, Runnable {
                 } else {
                     healthCheckCommon.checkFail(ip, task, msg);
                 }
-
-                keyMap.remove(task.toString());
             }
 
             healthCheckCommon.reEvaluateCheckRT(rt, task, switchDomain.getTcpHealthParams());
@@ -311,110 +489,17 @@ public class TcpSuperSenseProcessor implements HealthCheckProcessor, Runnable {
 
     private static class BeatKey {
         public SelectionKey key;
+        public Beat beat;
         public long birthTime;
+        public long deadline;
+        public boolean connected;
+        public boolean finished;
 
-        public BeatKey(SelectionKey key) {
-            this.key = key;
-            this.birthTime = System.currentTimeMillis();
-        }
-    }
-
-    private static class TimeOutTask implements Runnable {
-        SelectionKey key;
-
-        public TimeOutTask(SelectionKey key) {
+        public BeatKey(SelectionKey key, Beat beat) {
             this.key = key;
-        }
-
-        @Override
-        public void run() {
-            if (key != null && key.isValid()) {
-                SocketChannel channel = (SocketChannel) key.channel();
-                Beat beat = (Beat) key.attachment();
-
-                if (channel.isConnected()) {
-                    return;
-                }
-
-                try {
-                    channel.finishConnect();
-                } catch (Exception ignore) {
-                }
-
-                try {
-                    beat.finishCheck(false, false, beat.getTask().getCheckRTNormalized() * 2, "tcp:timeout");
-                    key.cancel();
-                    key.channel().close();
-                } catch (Exception ignore) {
-                }
-            }
-        }
-    }
-
-    private class TaskProcessor implements Callable<Void> {
-
-        private static final int MAX_WAIT_TIME_MILLISECONDS = 500;
-        Beat beat;
-
-        public TaskProcessor(Beat beat) {
             this.beat = beat;
-        }
-
-        @Override
-        public Void call() {
-            long waited = System.currentTimeMillis() - beat.getStartTime();
-            if (waited > MAX_WAIT_TIME_MILLISECONDS) {
-                Loggers.SRV_LOG.warn("beat task waited too long: " + waited + "ms");
-            }
-
-            SocketChannel channel = null;
-            try {
-                Instance instance = beat.getIp();
-                Cluster cluster = beat.getTask().getCluster();
-
-                BeatKey beatKey = keyMap.get(beat.toString());
-                if (beatKey != null && beatKey.key.isValid()) {
-                    if (System.currentTimeMillis() - beatKey.birthTime < TCP_KEEP_ALIVE_MILLIS) {
-                        instance.setBeingChecked(false);
-                        return null;
-                    }
-
-                    beatKey.key.cancel();
-                    beatKey.key.channel().close();
-                }
-
-                channel = SocketChannel.open();
-                channel.configureBlocking(false);
-                // only by setting this can we make the socket close event asynchronous
-                channel.socket().setSoLinger(false, -1);
-                channel.socket().setReuseAddress(true);
-                channel.socket().setKeepAlive(true);
-                channel.socket().setTcpNoDelay(true);
-
-                int port = cluster.isUseIPPort4Check() ? instance.getPort() : cluster.getDefCkport();
-                channel.connect(new InetSocketAddress(instance.getIp(), port));
-
-                SelectionKey key
-                    = channel.register(selector, SelectionKey.OP_CONNECT | SelectionKey.OP_READ);
-                key.attach(beat);
-                keyMap.put(beat.toString(), new BeatKey(key));
-
-                beat.setStartTime(System.currentTimeMillis());
-
-                NIO_EXECUTOR.schedule(new TimeOutTask(key),
-                    CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
-            } catch (Exception e) {
-                beat.finishCheck(false, false, switchDomain.getTcpHealthParams().getMax(), "tcp:error:" + e.getMessage());
-
-                if (channel != null) {
-                    try {
-                        channel.close();
-                    } catch (Exception ignore) {
-                    }
-                }
-            }
-
-            return null;
+            this.birthTime = System.currentTimeMillis();
+            this.deadline = birthTime + CONNECT_TIMEOUT_MS;
         }
     }
 
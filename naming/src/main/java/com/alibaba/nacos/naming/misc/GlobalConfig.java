@@ -42,6 +42,81 @@ public class GlobalConfig {
     @Value("${nacos.naming.expireInstance:true}")
     private boolean expireInstance = true;
 
+    @Value("${nacos.naming.health.tcp.shards:0}")
+    private int tcpCheckShards = 0;
+
+    @Value("${nacos.naming.health.http.maxConcurrentPerHost:8}")
+    private int httpCheckMaxConcurrentPerHost = 8;
+
+    @Value("${nacos.naming.health.http.keepAliveMillis:30000}")
+    private int httpCheckKeepAliveMillis = 30000;
+
+    @Value("${nacos.naming.health.mysql.workers:0}")
+    private int mysqlCheckWorkers = 0;
+
+    @Value("${nacos.naming.health.mysql.maxPendingChecks:10000}")
+    private int mysqlCheckMaxPending = 10000;
+
+    @Value("${nacos.naming.health.mysql.idleTimeoutMillis:60000}")
+    private long mysqlCheckIdleTimeoutMillis = 60000L;
+
+    @Value("${nacos.naming.health.commitWindowMillis:200}")
+    private long healthCommitWindowMillis = 200L;
+
+    @Value("${nacos.naming.push.senderShards:0}")
+    private int pushSenderShards = 0;
+
+    @Value("${nacos.naming.push.debounceMillis:1000}")
+    private long pushDebounceMillis = 1000L;
+
+    @Value("${nacos.naming.push.maxInFlightPerClient:32}")
+    private int pushMaxInFlightPerClient = 32;
+
+    @Value("${nacos.naming.push.maxInFlightPerService:20000}")
+    private int pushMaxInFlightPerService = 20000;
+
+    @Value("${nacos.naming.push.maxFailuresBeforeDemote:3}")
+    private int pushMaxFailuresBeforeDemote = 3;
+
+    @Value("${nacos.naming.push.demoteMillis:300000}")
+    private long pushDemoteMillis = 300000L;
+
+    @Value("${nacos.naming.push.tcp.portOffset:0}")
+    private int pushTcpPortOffset = 0;
+
+    @Value("${nacos.naming.push.tcp.idleTimeoutMillis:90000}")
+    private long pushTcpIdleTimeoutMillis = 90000L;
+
+    @Value("${nacos.naming.gossip.portOffset:0}")
+    private int gossipPortOffset = 0;
+
+    @Value("${nacos.naming.gossip.periodMillis:1000}")
+    private long gossipPeriodMillis = 1000L;
+
+    @Value("${nacos.naming.gossip.probeTimeoutMillis:300}")
+    private long gossipProbeTimeoutMillis = 300L;
+
+    @Value("${nacos.naming.gossip.indirectProbes:3}")
+    private int gossipIndirectProbes = 3;
+
+    @Value("${nacos.naming.gossip.suspectTimeoutMillis:5000}")
+    private long gossipSuspectTimeoutMillis = 5000L;
+
+    @Value("${nacos.naming.emptyService.reclaimEnabled:true}")
+    private boolean emptyServiceReclaimEnabled = true;
+
+    @Value("${nacos.naming.emptyService.graceMillis:60000}")
+    private long emptyServiceGraceMillis = 60000L;
+
+    @Value("${nacos.naming.emptyService.reclaimPeriodMillis:20000}")
+    private long emptyServiceReclaimPeriodMillis = 20000L;
+
+    @Value("${nacos.naming.subscribers.aggregation.timeoutMillis:3000}")
+    private int subscriberAggregationTimeoutMillis = 3000;
+
+    @Value("${nacos.naming.subscribers.aggregation.cacheMillis:3000}")
+    private long subscriberAggregationCacheMillis = 3000L;
+
     public int getTaskDispatchPeriod() {
         return taskDispatchPeriod;
     }
@@ -61,4 +136,104 @@ public class GlobalConfig {
     public boolean isExpireInstance() {
         return expireInstance;
     }
+
+    public int getTcpCheckShards() {
+        return tcpCheckShards;
+    }
+
+    public int getHttpCheckMaxConcurrentPerHost() {
+        return httpCheckMaxConcurrentPerHost;
+    }
+
+    public int getHttpCheckKeepAliveMillis() {
+        return httpCheckKeepAliveMillis;
+    }
+
+    public int getMysqlCheckWorkers() {
+        return mysqlCheckWorkers;
+    }
+
+    public int getMysqlCheckMaxPending() {
+        return mysqlCheckMaxPending;
+    }
+
+    public long getMysqlCheckIdleTimeoutMillis() {
+        return mysqlCheckIdleTimeoutMillis;
+    }
+
+    public long getHealthCommitWindowMillis() {
+        return healthCommitWindowMillis;
+    }
+
+    public int getPushSenderShards() {
+        return pushSenderShards;
+    }
+
+    public long getPushDebounceMillis() {
+        return pushDebounceMillis;
+    }
+
+    public int getPushMaxInFlightPerClient() {
+        return pushMaxInFlightPerClient;
+    }
+
+    public int getPushMaxInFlightPerService() {
+        return pushMaxInFlightPerService;
+    }
+
+    public int getPushMaxFailuresBeforeDemote() {
+        return pushMaxFailuresBeforeDemote;
+    }
+
+    public long getPushDemoteMillis() {
+        return pushDemoteMillis;
+    }
+
+    public int getPushTcpPortOffset() {
+        return pushTcpPortOffset;
+    }
+
+    public long getPushTcpIdleTimeoutMillis() {
+        return pushTcpIdleTimeoutMillis;
+    }
+
+    public int getGossipPortOffset() {
+        return gossipPortOffset;
+    }
+
+    public long getGossipPeriodMillis() {
+        return gossipPeriodMillis;
+    }
+
+    public long getGossipProbeTimeoutMillis() {
+        return gossipProbeTimeoutMillis;
+    }
+
+    public int getGossipIndirectProbes() {
+        return gossipIndirectProbes;
+    }
+
+    public long getGossipSuspectTimeoutMillis() {
+        return gossipSuspectTimeoutMillis;
+    }
+
+    public boolean isEmptyServiceReclaimEnabled() {
+        return emptyServiceReclaimEnabled;
+    }
+
+    public long getEmptyServiceGraceMillis() {
+        return emptyServiceGraceMillis;
+    }
+
+    public long getEmptyServiceReclaimPeriodMillis() {
+        return emptyServiceReclaimPeriodMillis;
+    }
+
+    public int getSubscriberAggregationTimeoutMillis() {
+        return subscriberAggregationTimeoutMillis;
+    }
+
+    public long getSubscriberAggregationCacheMillis() {
+        return subscriberAggregationCacheMillis;
+    }
 }
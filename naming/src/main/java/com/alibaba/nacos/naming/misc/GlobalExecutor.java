@@ -36,6 +36,8 @@ public class GlobalExecutor {
 
     private static final long SERVER_STATUS_UPDATE_PERIOD = TimeUnit.SECONDS.toMillis(5);
 
+    public static final int SERVICE_UPDATE_THREAD_COUNT = 2;
+
     private static ScheduledExecutorService executorService =
         new ScheduledThreadPoolExecutor(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
             @Override
@@ -100,11 +102,25 @@ public class GlobalExecutor {
         }
     });
 
+    /**
+     * removes empty services one at a time, each removal is a replicated delete and may wait for the raft leader
+     */
+    private static final ScheduledExecutorService EMPTY_SERVICE_RECLAIM_EXECUTOR
+        = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r);
+            t.setName("com.alibaba.nacos.naming.service.reclaimer");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
     /**
      * thread pool that processes getting service detail from other server asynchronously
      */
     private static ExecutorService serviceUpdateExecutor
-        = Executors.newFixedThreadPool(2, new ThreadFactory() {
+        = Executors.newFixedThreadPool(SERVICE_UPDATE_THREAD_COUNT, new ThreadFactory() {
         @Override
         public Thread newThread(Runnable r) {
             Thread t = new Thread(r);
@@ -114,6 +130,20 @@ public class GlobalExecutor {
         }
     });
 
+    /**
+     * thread pool that applies service statuses fetched from other server
+     */
+    private static ExecutorService serviceStatusApplyExecutor
+        = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r);
+            t.setName("com.alibaba.nacos.naming.service.status.applier");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
     public static void submitDataSync(Runnable runnable, long delay) {
         dataSyncExecutor.schedule(runnable, delay, TimeUnit.MILLISECONDS);
     }
@@ -162,4 +192,12 @@ public class GlobalExecutor {
     public static void submitServiceUpdate(Runnable runnable) {
         serviceUpdateExecutor.execute(runnable);
     }
+
+    public static void submitServiceStatusApply(Runnable runnable) {
+        serviceStatusApplyExecutor.execute(runnable);
+    }
+
+    public static void registerEmptyServiceReclaimer(Runnable runnable, long period) {
+        EMPTY_SERVICE_RECLAIM_EXECUTOR.scheduleWithFixedDelay(runnable, period, period, TimeUnit.MILLISECONDS);
+    }
 }
@@ -16,71 +16,60 @@
 package com.alibaba.nacos.naming.misc;
 
 import com.alibaba.nacos.common.util.HttpMethod;
+import com.alibaba.nacos.naming.monitor.MetricsMonitor;
 import com.ning.http.client.AsyncCompletionHandler;
 import com.ning.http.client.AsyncHttpClient;
 import com.ning.http.client.AsyncHttpClientConfig;
+import com.ning.http.client.Response;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.http.*;
-import org.apache.http.client.config.RequestConfig;
-import org.apache.http.client.entity.UrlEncodedFormEntity;
-import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.client.methods.HttpPut;
-import org.apache.http.entity.ContentType;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.message.BasicNameValuePair;
-
-import java.io.IOException;
-import java.io.InputStream;
+
 import java.io.UnsupportedEncodingException;
-import java.net.HttpURLConnection;
-import java.net.URI;
-import java.net.URL;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
-import java.util.zip.GZIPInputStream;
 
 /**
+ * Http transport between the servers.
+ * <p>
+ * All requests go through pooled non-blocking clients keeping alive up to {@link #MAX_CONNECTIONS_PER_PEER}
+ * connections per peer, with a timeout per request. Blocking requests use a client of their own, so a blocking
+ * request issued from a callback never waits for the IO thread it runs on. The latency of every request is
+ * recorded per peer and per api.
+ *
  * @author nacos
  */
 public class HttpClient {
     private static final int TIME_OUT_MILLIS = 10000;
     private static final int CON_TIME_OUT_MILLIS = 5000;
+    private static final int LARGE_TIME_OUT_MILLIS = 30000;
+    private static final int MAX_CONNECTIONS_PER_PEER = 128;
+    private static final int SERVER_ERROR = 500;
+    private static final String URL_SCHEME_SEPARATOR = "://";
+    private static final String CHARSET_PREFIX = "charset=";
+    private static final String CONTENT_TYPE_SEPARATOR = ";";
 
-    private static AsyncHttpClient asyncHttpClient;
+    private static AsyncHttpClient asyncHttpClient = newClient();
 
-    private static CloseableHttpClient postClient;
+    private static AsyncHttpClient syncHttpClient = newClient();
 
-    static {
+    private static AsyncHttpClient newClient() {
         AsyncHttpClientConfig.Builder builder = new AsyncHttpClientConfig.Builder();
         builder.setMaximumConnectionsTotal(-1);
-        builder.setMaximumConnectionsPerHost(128);
+        builder.setMaximumConnectionsPerHost(MAX_CONNECTIONS_PER_PEER);
         builder.setAllowPoolingConnection(true);
         builder.setFollowRedirects(false);
         builder.setIdleConnectionTimeoutInMs(TIME_OUT_MILLIS);
         builder.setConnectionTimeoutInMs(CON_TIME_OUT_MILLIS);
+        builder.setRequestTimeoutInMs(TIME_OUT_MILLIS);
         builder.setCompressionEnabled(true);
         builder.setIOThreadMultiplier(1);
         builder.setMaxRequestRetry(0);
         builder.setUserAgent(UtilsAndCommons.SERVER_VERSION);
 
-        asyncHttpClient = new AsyncHttpClient(builder.build());
-
-        HttpClientBuilder builder2 = HttpClients.custom();
-        builder2.setUserAgent(UtilsAndCommons.SERVER_VERSION);
-        builder2.setConnectionTimeToLive(CON_TIME_OUT_MILLIS, TimeUnit.MILLISECONDS);
-        builder2.setMaxConnPerRoute(-1);
-        builder2.setMaxConnTotal(-1);
-        builder2.disableAutomaticRetries();
-
-        postClient = builder2.build();
+        return new AsyncHttpClient(builder.build());
     }
 
     public static HttpResult httpDelete(String url, List<String> headers, Map<String, String> paramValues) {
@@ -92,29 +81,17 @@ public class HttpClient {
     }
 
     public static HttpResult request(String url, List<String> headers, Map<String, String> paramValues, int connectTimeout, int readTimeout, String encoding, String method) {
-        HttpURLConnection conn = null;
         try {
             String encodedContent = encodingParams(paramValues, encoding);
             url += (null == encodedContent) ? "" : ("?" + encodedContent);
 
-            conn = (HttpURLConnection) new URL(url).openConnection();
-            conn.setConnectTimeout(connectTimeout);
-            conn.setReadTimeout(readTimeout);
-            conn.setRequestMethod(method);
-
-            conn.addRequestProperty("Client-Version", UtilsAndCommons.SERVER_VERSION);
-            conn.addRequestProperty("User-Agent", UtilsAndCommons.SERVER_VERSION);
-            setHeaders(conn, headers, encoding);
-            conn.connect();
+            AsyncHttpClient.BoundRequestBuilder builder = prepareRequest(syncHttpClient, url, method);
+            setHeaders(builder, headers, encoding);
 
-            return getResult(conn);
+            return execute(builder, url, connectTimeout + readTimeout, encoding);
         } catch (Exception e) {
             Loggers.SRV_LOG.warn("Exception while request: {}, caused: {}", url, e);
-            return new HttpResult(500, e.toString(), Collections.<String, String>emptyMap());
-        } finally {
-            if (conn != null) {
-                conn.disconnect();
-            }
+            return new HttpResult(SERVER_ERROR, e.toString(), Collections.<String, String>emptyMap());
         }
     }
 
@@ -136,24 +113,7 @@ public class HttpClient {
             url += (null == encodedContent) ? "" : ("?" + encodedContent);
         }
 
-        AsyncHttpClient.BoundRequestBuilder builder;
-
-        switch (method) {
-            case HttpMethod.GET:
-                builder = asyncHttpClient.prepareGet(url);
-                break;
-            case HttpMethod.POST:
-                builder = asyncHttpClient.preparePost(url);
-                break;
-            case HttpMethod.PUT:
-                builder = asyncHttpClient.preparePut(url);
-                break;
-            case HttpMethod.DELETE:
-                builder = asyncHttpClient.prepareDelete(url);
-                break;
-            default:
-                throw new RuntimeException("not supported method:" + method);
-        }
+        AsyncHttpClient.BoundRequestBuilder builder = prepareRequest(asyncHttpClient, url, method);
 
         if (!CollectionUtils.isEmpty(headers)) {
             for (String header : headers) {
@@ -163,61 +123,73 @@ public class HttpClient {
 
         builder.setHeader("Accept-Charset", "UTF-8");
 
-        if (handler != null) {
-            builder.execute(handler);
-        } else {
-            builder.execute();
-        }
+        builder.execute(monitor(url, handler));
     }
 
-    public static void asyncHttpPostLarge(String url, List<String> headers, String content, AsyncCompletionHandler handler) throws Exception {
-        asyncHttpPostLarge(url, headers, content.getBytes(), handler);
-    }
+    /**
+     * Send a request on the pooled non-blocking client, headers are name and value pairs and added as they are.
+     */
+    public static void asyncHttpRequest(String url, List<String> headers, Map<String, String> paramValues,
+                                        String method, int timeoutMillis, AsyncCompletionHandler handler) throws Exception {
+        if (!MapUtils.isEmpty(paramValues)) {
+            String encodedContent = encodingParams(paramValues, "UTF-8");
+            url += (null == encodedContent) ? "" : ("?" + encodedContent);
+        }
 
-    public static void asyncHttpPostLarge(String url, List<String> headers, byte[] content, AsyncCompletionHandler handler) throws Exception {
-        AsyncHttpClient.BoundRequestBuilder builder = asyncHttpClient.preparePost(url);
+        AsyncHttpClient.BoundRequestBuilder builder = prepareRequest(asyncHttpClient, url, method);
 
-        if (!CollectionUtils.isEmpty(headers)) {
-            for (String header : headers) {
-                builder.setHeader(header.split("=")[0], header.split("=")[1]);
+        if (null != headers) {
+            for (Iterator<String> iter = headers.iterator(); iter.hasNext(); ) {
+                builder.addHeader(iter.next(), iter.next());
             }
         }
+        builder.addHeader("Client-Version", UtilsAndCommons.SERVER_VERSION);
+        builder.addHeader("User-Agent", UtilsAndCommons.SERVER_VERSION);
+        setRequestTimeout(builder, timeoutMillis);
 
-        builder.setBody(content);
-
-        builder.setHeader("Content-Type", "application/json; charset=UTF-8");
-        builder.setHeader("Accept-Charset", "UTF-8");
-        builder.setHeader("Accept-Encoding", "gzip");
-        builder.setHeader("Content-Encoding", "gzip");
+        builder.execute(monitor(url, handler));
+    }
 
-        if (handler != null) {
-            builder.execute(handler);
-        } else {
-            builder.execute();
+    private static AsyncHttpClient.BoundRequestBuilder prepareRequest(AsyncHttpClient client, String url, String method) {
+        switch (method) {
+            case HttpMethod.GET:
+                return client.prepareGet(url);
+            case HttpMethod.POST:
+                return client.preparePost(url);
+            case HttpMethod.PUT:
+                return client.preparePut(url);
+            case HttpMethod.DELETE:
+                return client.prepareDelete(url);
+            default:
+                throw new RuntimeException("not supported method:" + method);
         }
     }
 
+    public static void asyncHttpPostLarge(String url, List<String> headers, String content, AsyncCompletionHandler handler) throws Exception {
+        asyncHttpPostLarge(url, headers, content.getBytes(), handler);
+    }
+
+    public static void asyncHttpPostLarge(String url, List<String> headers, byte[] content, AsyncCompletionHandler handler) throws Exception {
+        asyncHttpLarge(asyncHttpClient.preparePost(url), url, headers, content, handler);
+    }
+
     public static void asyncHttpDeleteLarge(String url, List<String> headers, String content, AsyncCompletionHandler handler) throws Exception {
-        AsyncHttpClient.BoundRequestBuilder builder = asyncHttpClient.prepareDelete(url);
+        asyncHttpLarge(asyncHttpClient.prepareDelete(url), url, headers, content.getBytes(), handler);
+    }
 
+    private static void asyncHttpLarge(AsyncHttpClient.BoundRequestBuilder builder, String url, List<String> headers,
+                                       byte[] content, AsyncCompletionHandler handler) throws Exception {
         if (!CollectionUtils.isEmpty(headers)) {
             for (String header : headers) {
                 builder.setHeader(header.split("=")[0], header.split("=")[1]);
             }
         }
 
-        builder.setBody(content.getBytes());
-
-        builder.setHeader("Content-Type", "application/json; charset=UTF-8");
-        builder.setHeader("Accept-Charset", "UTF-8");
-        builder.setHeader("Accept-Encoding", "gzip");
-        builder.setHeader("Content-Encoding", "gzip");
+        builder.setBody(content);
+        setLargeHeaders(builder);
+        setRequestTimeout(builder, LARGE_TIME_OUT_MILLIS);
 
-        if (handler != null) {
-            builder.execute(handler);
-        } else {
-            builder.execute();
-        }
+        builder.execute(monitor(url, handler));
     }
 
     public static HttpResult httpPost(String url, List<String> headers, Map<String, String> paramValues) {
@@ -226,231 +198,191 @@ public class HttpClient {
 
     public static HttpResult httpPost(String url, List<String> headers, Map<String, String> paramValues, String encoding) {
         try {
-
-            HttpPost httpost = new HttpPost(url);
-
-            RequestConfig requestConfig = RequestConfig.custom().setConnectionRequestTimeout(5000).setConnectTimeout(5000).setSocketTimeout(5000).setRedirectsEnabled(true).setMaxRedirects(5).build();
-            httpost.setConfig(requestConfig);
-
-            List<NameValuePair> nvps = new ArrayList<NameValuePair>();
-
+            AsyncHttpClient.BoundRequestBuilder builder = syncHttpClient.preparePost(url);
             for (Map.Entry<String, String> entry : paramValues.entrySet()) {
-                nvps.add(new BasicNameValuePair(entry.getKey(), entry.getValue()));
-            }
-
-            httpost.setEntity(new UrlEncodedFormEntity(nvps, encoding));
-            HttpResponse response = postClient.execute(httpost);
-            HttpEntity entity = response.getEntity();
-
-            String charset = encoding;
-            if (entity.getContentType() != null) {
-
-                HeaderElement[] headerElements = entity.getContentType().getElements();
-
-                if (headerElements != null && headerElements.length > 0 && headerElements[0] != null &&
-                        headerElements[0].getParameterByName("charset") != null) {
-                    charset = headerElements[0].getParameterByName("charset").getValue();
-                }
+                builder.addParameter(entry.getKey(), entry.getValue());
             }
+            builder.setBodyEncoding(encoding);
+            builder.setHeader("Content-Type", "application/x-www-form-urlencoded; charset=" + encoding);
 
-            return new HttpResult(response.getStatusLine().getStatusCode(), IOUtils.toString(entity.getContent(), charset), Collections.<String, String>emptyMap());
+            return execute(builder, url, CON_TIME_OUT_MILLIS, encoding);
         } catch (Throwable e) {
-            return new HttpResult(500, e.toString(), Collections.<String, String>emptyMap());
+            return new HttpResult(SERVER_ERROR, e.toString(), Collections.<String, String>emptyMap());
         }
     }
 
     public static void asyncHttpPutLarge(String url, Map<String, String> headers, byte[] content, AsyncCompletionHandler handler) throws Exception {
-        AsyncHttpClient.BoundRequestBuilder builder = asyncHttpClient.preparePut(url);
-
-        if (!headers.isEmpty()) {
-            for (String headerKey : headers.keySet()) {
-                builder.setHeader(headerKey, headers.get(headerKey));
-            }
-        }
-
-        builder.setBody(content);
-
-        builder.setHeader("Content-Type", "application/json; charset=UTF-8");
-        builder.setHeader("Accept-Charset", "UTF-8");
-        builder.setHeader("Accept-Encoding", "gzip");
-        builder.setHeader("Content-Encoding", "gzip");
-
-        if (handler != null) {
-            builder.execute(handler);
-        } else {
-            builder.execute();
-        }
+        asyncHttpLarge(asyncHttpClient.preparePut(url), url, headers, content, handler);
     }
 
     public static void asyncHttpGetLarge(String url, Map<String, String> headers, byte[] content, AsyncCompletionHandler handler) throws Exception {
-        AsyncHttpClient.BoundRequestBuilder builder = asyncHttpClient.prepareGet(url);
+        asyncHttpLarge(asyncHttpClient.prepareGet(url), url, headers, content, handler);
+    }
 
-        if (!headers.isEmpty()) {
-            for (String headerKey : headers.keySet()) {
-                builder.setHeader(headerKey, headers.get(headerKey));
-            }
+    private static void asyncHttpLarge(AsyncHttpClient.BoundRequestBuilder builder, String url,
+                                       Map<String, String> headers, byte[] content,
+                                       AsyncCompletionHandler handler) throws Exception {
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            builder.setHeader(entry.getKey(), entry.getValue());
         }
 
         builder.setBody(content);
+        setLargeHeaders(builder);
+        setRequestTimeout(builder, LARGE_TIME_OUT_MILLIS);
 
-        builder.setHeader("Content-Type", "application/json; charset=UTF-8");
-        builder.setHeader("Accept-Charset", "UTF-8");
-        builder.setHeader("Accept-Encoding", "gzip");
-        builder.setHeader("Content-Encoding", "gzip");
-
-        if (handler != null) {
-            builder.execute(handler);
-        } else {
-            builder.execute();
-        }
+        builder.execute(monitor(url, handler));
     }
 
     public static HttpResult httpPutLarge(String url, Map<String, String> headers, byte[] content) {
-        try {
-            HttpClientBuilder builder = HttpClients.custom();
-            builder.setUserAgent(UtilsAndCommons.SERVER_VERSION);
-            builder.setConnectionTimeToLive(500, TimeUnit.MILLISECONDS);
-
-            CloseableHttpClient httpClient = builder.build();
-            HttpPut httpPut = new HttpPut(url);
-
-            for (Map.Entry<String, String> entry : headers.entrySet()) {
-                httpPut.setHeader(entry.getKey(), entry.getValue());
-            }
-
-            httpPut.setEntity(new StringEntity(new String(content, "UTF-8"), ContentType.create("application/json", "UTF-8")));
-
-            HttpResponse response = httpClient.execute(httpPut);
-            HttpEntity entity = response.getEntity();
-
-            HeaderElement[] headerElements = entity.getContentType().getElements();
-            String charset = headerElements[0].getParameterByName("charset").getValue();
-
-            return new HttpResult(response.getStatusLine().getStatusCode(),
-                IOUtils.toString(entity.getContent(), charset), Collections.<String, String>emptyMap());
-        } catch (Exception e) {
-            return new HttpResult(500, e.toString(), Collections.<String, String>emptyMap());
-        }
+        return httpLarge(syncHttpClient.preparePut(url), url, headers, content);
     }
 
     public static HttpResult httpGetLarge(String url, Map<String, String> headers, String content) {
+        return httpLarge(syncHttpClient.prepareGet(url), url, headers, content.getBytes(StandardCharsets.UTF_8));
+    }
 
-        try {
-            HttpClientBuilder builder = HttpClients.custom();
-            builder.setUserAgent(UtilsAndCommons.SERVER_VERSION);
-            builder.setConnectionTimeToLive(500, TimeUnit.MILLISECONDS);
-
-            CloseableHttpClient httpClient = builder.build();
-            HttpGetWithEntity httpGetWithEntity = new HttpGetWithEntity();
-            httpGetWithEntity.setURI(new URI(url));
+    public static HttpResult httpPostLarge(String url, Map<String, String> headers, String content) {
+        return httpLarge(syncHttpClient.preparePost(url), url, headers, content.getBytes(StandardCharsets.UTF_8));
+    }
 
+    private static HttpResult httpLarge(AsyncHttpClient.BoundRequestBuilder builder, String url,
+                                        Map<String, String> headers, byte[] content) {
+        try {
             for (Map.Entry<String, String> entry : headers.entrySet()) {
-                httpGetWithEntity.setHeader(entry.getKey(), entry.getValue());
+                builder.setHeader(entry.getKey(), entry.getValue());
             }
+            builder.setBody(content);
+            builder.setHeader("Content-Type", "application/json; charset=UTF-8");
 
-            httpGetWithEntity.setEntity(new StringEntity(content, ContentType.create("application/json", "UTF-8")));
-            HttpResponse response = httpClient.execute(httpGetWithEntity);
-            HttpEntity entity = response.getEntity();
-
-            HeaderElement[] headerElements = entity.getContentType().getElements();
-            String charset = headerElements[0].getParameterByName("charset").getValue();
-
-            return new HttpResult(response.getStatusLine().getStatusCode(),
-                IOUtils.toString(entity.getContent(), charset), Collections.<String, String>emptyMap());
+            return execute(builder, url, LARGE_TIME_OUT_MILLIS, "UTF-8");
         } catch (Exception e) {
-            return new HttpResult(500, e.toString(), Collections.<String, String>emptyMap());
+            return new HttpResult(SERVER_ERROR, e.toString(), Collections.<String, String>emptyMap());
         }
     }
 
-    public static HttpResult httpPostLarge(String url, Map<String, String> headers, String content) {
-        try {
-            HttpClientBuilder builder = HttpClients.custom();
-            builder.setUserAgent(UtilsAndCommons.SERVER_VERSION);
-            builder.setConnectionTimeToLive(500, TimeUnit.MILLISECONDS);
-
-            CloseableHttpClient httpClient = builder.build();
-            HttpPost httpost = new HttpPost(url);
-
-            for (Map.Entry<String, String> entry : headers.entrySet()) {
-                httpost.setHeader(entry.getKey(), entry.getValue());
-            }
+    /**
+     * Set the timeout of a single request. The client only takes it through the deprecated per request config, kept
+     * here so no other class depends on it.
+     */
+    @SuppressWarnings("deprecation")
+    public static void setRequestTimeout(AsyncHttpClient.BoundRequestBuilder builder, int timeoutMillis) {
+        builder.setPerRequestConfig(new com.ning.http.client.PerRequestConfig(null, timeoutMillis));
+    }
 
-            httpost.setEntity(new StringEntity(content, ContentType.create("application/json", "UTF-8")));
-            HttpResponse response = httpClient.execute(httpost);
-            HttpEntity entity = response.getEntity();
+    private static void setLargeHeaders(AsyncHttpClient.BoundRequestBuilder builder) {
+        builder.setHeader("Content-Type", "application/json; charset=UTF-8");
+        builder.setHeader("Accept-Charset", "UTF-8");
+        builder.setHeader("Accept-Encoding", "gzip");
+        builder.setHeader("Content-Encoding", "gzip");
+    }
 
-            HeaderElement[] headerElements = entity.getContentType().getElements();
-            String charset = headerElements[0].getParameterByName("charset").getValue();
+    private static HttpResult execute(AsyncHttpClient.BoundRequestBuilder builder, String url, int timeoutMillis,
+                                      String encoding) throws Exception {
+        setRequestTimeout(builder, timeoutMillis);
 
-            return new HttpResult(response.getStatusLine().getStatusCode(),
-                    IOUtils.toString(entity.getContent(), charset), Collections.<String, String>emptyMap());
-        } catch (Exception e) {
-            return new HttpResult(500, e.toString(), Collections.<String, String>emptyMap());
+        long start = System.currentTimeMillis();
+        boolean success = false;
+        try {
+            Response response = builder.execute().get(timeoutMillis + CON_TIME_OUT_MILLIS, TimeUnit.MILLISECONDS);
+            success = response.getStatusCode() < SERVER_ERROR;
+            return getResult(response, encoding);
+        } finally {
+            record(url, start, success);
         }
     }
 
-    private static HttpResult getResult(HttpURLConnection conn) throws IOException {
-        int respCode = conn.getResponseCode();
+    /**
+     * Record the latency of a request, then hand the response to the handler of the caller.
+     */
+    private static AsyncCompletionHandler<Object> monitor(final String url, final AsyncCompletionHandler handler) {
+        final long start = System.currentTimeMillis();
+        return new AsyncCompletionHandler<Object>() {
+            @Override
+            public Object onCompleted(Response response) throws Exception {
+                record(url, start, response.getStatusCode() < SERVER_ERROR);
+                return handler == null ? response : handler.onCompleted(response);
+            }
 
-        InputStream inputStream;
-        if (HttpURLConnection.HTTP_OK == respCode) {
-            inputStream = conn.getInputStream();
-        } else {
-            inputStream = conn.getErrorStream();
-        }
+            @Override
+            public void onThrowable(Throwable t) {
+                record(url, start, false);
+                if (handler == null) {
+                    super.onThrowable(t);
+                    return;
+                }
+                handler.onThrowable(t);
+            }
+        };
+    }
 
-        Map<String, String> respHeaders = new HashMap<String, String>(conn.getHeaderFields().size());
-        for (Map.Entry<String, List<String>> entry : conn.getHeaderFields().entrySet()) {
-            respHeaders.put(entry.getKey(), entry.getValue().get(0));
+    private static void record(String url, long start, boolean success) {
+        String peer = getPeer(url);
+        String api = getApi(url);
+        MetricsMonitor.getPeerRequestTimer(peer, api).record(System.currentTimeMillis() - start, TimeUnit.MILLISECONDS);
+        if (!success) {
+            MetricsMonitor.getPeerRequestErrorCounter(peer, api).increment();
         }
+    }
 
-        String gzipEncoding = "gzip";
+    static String getPeer(String url) {
+        int start = url.indexOf(URL_SCHEME_SEPARATOR);
+        start = start < 0 ? 0 : start + URL_SCHEME_SEPARATOR.length();
+        int end = url.indexOf('/', start);
+        return end < 0 ? url.substring(start) : url.substring(start, end);
+    }
 
-        if (gzipEncoding.equals(respHeaders.get(HttpHeaders.CONTENT_ENCODING))) {
-            inputStream = new GZIPInputStream(inputStream);
+    static String getApi(String url) {
+        int start = url.indexOf(URL_SCHEME_SEPARATOR);
+        start = start < 0 ? 0 : start + URL_SCHEME_SEPARATOR.length();
+        int path = url.indexOf('/', start);
+        if (path < 0) {
+            return "/";
         }
+        int query = url.indexOf('?', path);
+        return query < 0 ? url.substring(path) : url.substring(path, query);
+    }
 
-        HttpResult result = new HttpResult(respCode, IOUtils.toString(inputStream, getCharset(conn)), respHeaders);
-        inputStream.close();
+    private static HttpResult getResult(Response response, String encoding) throws Exception {
+        Map<String, String> respHeaders = new HashMap<String, String>(16);
+        for (Map.Entry<String, List<String>> entry : response.getHeaders().entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                respHeaders.put(entry.getKey(), entry.getValue().get(0));
+            }
+        }
 
-        return result;
+        return new HttpResult(response.getStatusCode(),
+            response.getResponseBody(getCharset(response.getContentType(), encoding)), respHeaders);
     }
 
-    private static String getCharset(HttpURLConnection conn) {
-        String contentType = conn.getContentType();
+    private static String getCharset(String contentType, String encoding) {
         if (StringUtils.isEmpty(contentType)) {
-            return "UTF-8";
-        }
-
-        String[] values = contentType.split(";");
-        if (values.length == 0) {
-            return "UTF-8";
+            return encoding;
         }
 
-        String charset = "UTF-8";
-        for (String value : values) {
+        String charset = encoding;
+        for (String value : contentType.split(CONTENT_TYPE_SEPARATOR)) {
             value = value.trim();
 
-            if (value.toLowerCase().startsWith("charset=")) {
-                charset = value.substring("charset=".length());
+            if (value.toLowerCase().startsWith(CHARSET_PREFIX)) {
+                charset = value.substring(CHARSET_PREFIX.length());
             }
         }
 
         return charset;
     }
 
-    private static void setHeaders(HttpURLConnection conn, List<String> headers, String encoding) {
+    private static void setHeaders(AsyncHttpClient.BoundRequestBuilder builder, List<String> headers, String encoding) {
         if (null != headers) {
             for (Iterator<String> iter = headers.iterator(); iter.hasNext(); ) {
-                conn.addRequestProperty(iter.next(), iter.next());
+                builder.addHeader(iter.next(), iter.next());
             }
         }
 
-        conn.addRequestProperty("Content-Type", "application/x-www-form-urlencoded;charset="
+        builder.addHeader("Content-Type", "application/x-www-form-urlencoded;charset="
                 + encoding);
-        conn.addRequestProperty("Accept-Charset", encoding);
-        conn.addRequestProperty("Client-Version", UtilsAndCommons.SERVER_VERSION);
-        conn.addRequestProperty("User-Agent", UtilsAndCommons.SERVER_VERSION);
+        builder.addHeader("Accept-Charset", encoding);
+        builder.addHeader("Client-Version", UtilsAndCommons.SERVER_VERSION);
+        builder.addHeader("User-Agent", UtilsAndCommons.SERVER_VERSION);
     }
 
     public static String encodingParams(Map<String, String> params, String encoding)
@@ -500,14 +432,4 @@ public class HttpClient {
             return respHeaders.get(name);
         }
     }
-
-    public static class HttpGetWithEntity extends HttpEntityEnclosingRequestBase {
-
-        public final static String METHOD_NAME = "GET";
-
-        @Override
-        public String getMethod() {
-            return METHOD_NAME;
-        }
-    }
 }
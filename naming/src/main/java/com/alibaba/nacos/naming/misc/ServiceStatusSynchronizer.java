@@ -16,21 +16,44 @@
 package com.alibaba.nacos.naming.misc;
 
 import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
 import com.alibaba.nacos.naming.boot.RunningConfig;
 import com.ning.http.client.AsyncCompletionHandler;
 import com.ning.http.client.Response;
 import org.apache.commons.lang3.StringUtils;
 
 import java.net.HttpURLConnection;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * @author nacos
  */
 public class ServiceStatusSynchronizer implements Synchronizer {
+
+    private static final String ACKNOWLEDGED = "ok";
+
+    private static final String MISMATCHED = "mismatched";
+
     @Override
     public void send(final String serverIP, Message msg) {
+        send(serverIP, msg, null);
+    }
+
+    /**
+     * Send service checksums to server
+     *
+     * @param serverIP       target server address
+     * @param msg            message to send
+     * @param onAcknowledged callback invoked once the target server has compared the checksums, with the services
+     *                       whose checksums it does not hold yet, may be null
+     */
+    public void send(final String serverIP, Message msg, final Consumer<List<String>> onAcknowledged) {
         if(serverIP == null) {
             return;
         }
@@ -58,6 +81,17 @@ public class ServiceStatusSynchronizer implements Synchronizer {
 
                         return 1;
                     }
+                    if (onAcknowledged == null) {
+                        return 0;
+                    }
+                    String body = response.getResponseBody();
+                    if (ACKNOWLEDGED.equals(body)) {
+                        onAcknowledged.accept(Collections.<String>emptyList());
+                    } else if (StringUtils.startsWith(body, "{")) {
+                        JSONArray mismatched = JSON.parseObject(body).getJSONArray(MISMATCHED);
+                        onAcknowledged.accept(mismatched == null
+                            ? Collections.<String>emptyList() : mismatched.toJavaList(String.class));
+                    }
                     return 0;
                 }
             });
@@ -98,4 +132,53 @@ public class ServiceStatusSynchronizer implements Synchronizer {
 
         return msg;
     }
+
+    /**
+     * Get health statuses of several services of one namespace from server in one request
+     *
+     * @param serverIP     source server address
+     * @param namespaceId  namespace of the services
+     * @param serviceNames names of the services
+     * @return message containing the statuses of the services found on source server
+     */
+    public Message getBatch(String serverIP, String namespaceId, Collection<String> serviceNames) {
+        if (serverIP == null || serviceNames == null || serviceNames.isEmpty()) {
+            return null;
+        }
+
+        JSONObject body = new JSONObject();
+        body.put("namespaceId", namespaceId);
+        body.put("serviceNames", serviceNames);
+
+        String server = serverIP;
+        if (!server.contains(UtilsAndCommons.IP_PORT_SPLITER)) {
+            server = server + UtilsAndCommons.IP_PORT_SPLITER + RunningConfig.getServerPort();
+        }
+
+        String url = "http://" + server + RunningConfig.getContextPath()
+            + UtilsAndCommons.NACOS_NAMING_CONTEXT + "/instance/statuses/batch";
+
+        HttpClient.HttpResult result;
+        try {
+            if (Loggers.SRV_LOG.isDebugEnabled()) {
+                Loggers.SRV_LOG.debug("[STATUS-SYNCHRONIZE] sync service status from: {}, namespace: {}, services: {}",
+                    serverIP, namespaceId, serviceNames.size());
+            }
+            result = HttpClient.httpPostLarge(url, new HashMap<>(2), body.toJSONString());
+        } catch (Exception e) {
+            Loggers.SRV_LOG.warn("[STATUS-SYNCHRONIZE] Failed to get service status from " + serverIP, e);
+            return null;
+        }
+
+        if (HttpURLConnection.HTTP_OK != result.code || StringUtils.isEmpty(result.content)) {
+            Loggers.SRV_LOG.warn("[STATUS-SYNCHRONIZE] Failed to get service status from {}, code: {}, msg: {}",
+                serverIP, result.code, result.content);
+            return null;
+        }
+
+        Message msg = new Message();
+        msg.setData(result.content);
+
+        return msg;
+    }
 }
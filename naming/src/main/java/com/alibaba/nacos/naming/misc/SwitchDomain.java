@@ -62,6 +62,11 @@ public class SwitchDomain implements Record, Cloneable {
 
     private long serviceStatusSynchronizationPeriodMillis = TimeUnit.SECONDS.toMillis(5);
 
+    /**
+     * Every this many service status reports a full checksum list is sent instead of only the changed ones.
+     */
+    private int serviceStatusFullSyncRounds = 12;
+
     private boolean disableAddIP = false;
 
     private boolean sendBeatOnly = false;
@@ -87,6 +92,19 @@ public class SwitchDomain implements Record, Cloneable {
 
     private boolean defaultInstanceEphemeral = true;
 
+    /**
+     * whether clients may send compact beats which only carry the address of the instance
+     */
+    private boolean lightBeatEnabled = true;
+
+    private boolean batchBeatEnabled = true;
+
+    private long tcpKeepAliveMillis = 0L;
+
+    private int healthCheckBudgetPerSecond = 0;
+
+    private String deltaPushJavaVersion = "1.1.3";
+
     public boolean isEnableAuthentication() {
         return enableAuthentication;
     }
@@ -274,6 +292,30 @@ public class SwitchDomain implements Record, Cloneable {
         this.serviceStatusSynchronizationPeriodMillis = serviceStatusSynchronizationPeriodMillis;
     }
 
+    public int getServiceStatusFullSyncRounds() {
+        return serviceStatusFullSyncRounds;
+    }
+
+    public void setServiceStatusFullSyncRounds(int serviceStatusFullSyncRounds) {
+        this.serviceStatusFullSyncRounds = serviceStatusFullSyncRounds;
+    }
+
+    public boolean isLightBeatEnabled() {
+        return lightBeatEnabled;
+    }
+
+    public void setLightBeatEnabled(boolean lightBeatEnabled) {
+        this.lightBeatEnabled = lightBeatEnabled;
+    }
+
+    public boolean isBatchBeatEnabled() {
+        return batchBeatEnabled;
+    }
+
+    public void setBatchBeatEnabled(boolean batchBeatEnabled) {
+        this.batchBeatEnabled = batchBeatEnabled;
+    }
+
     public boolean isDisableAddIP() {
         return disableAddIP;
     }
@@ -454,6 +496,30 @@ public class SwitchDomain implements Record, Cloneable {
         }
     }
 
+    public long getTcpKeepAliveMillis() {
+        return tcpKeepAliveMillis;
+    }
+
+    public void setTcpKeepAliveMillis(long tcpKeepAliveMillis) {
+        this.tcpKeepAliveMillis = tcpKeepAliveMillis;
+    }
+
+    public int getHealthCheckBudgetPerSecond() {
+        return healthCheckBudgetPerSecond;
+    }
+
+    public void setHealthCheckBudgetPerSecond(int healthCheckBudgetPerSecond) {
+        this.healthCheckBudgetPerSecond = healthCheckBudgetPerSecond;
+    }
+
+    public String getDeltaPushJavaVersion() {
+        return deltaPushJavaVersion;
+    }
+
+    public void setDeltaPushJavaVersion(String deltaPushJavaVersion) {
+        this.deltaPushJavaVersion = deltaPushJavaVersion;
+    }
+
     public static class TcpHealthParams implements HealthParams {
         private int max = 5000;
         private int min = 1000;
@@ -37,12 +37,18 @@ public class SwitchEntry {
     public static final String CHECK = "check";
     public static final String PUSH_ENABLED = "pushEnabled";
     public static final String SERVICE_STATUS_SYNC_PERIOD = "serviceStatusSynchronizationPeriodMillis";
+    public static final String SERVICE_STATUS_FULL_SYNC_ROUNDS = "serviceStatusFullSyncRounds";
     public static final String SERVER_STATUS_SYNC_PERIOD = "serverStatusSynchronizationPeriodMillis";
     public static final String HEALTH_CHECK_TIMES = "healthCheckTimes";
     public static final String DISABLE_ADD_IP = "disableAddIP";
     public static final String SEND_BEAT_ONLY = "sendBeatOnly";
     public static final String LIMITED_URL_MAP = "limitedUrlMap";
     public static final String ENABLE_STANDALONE = "enableStandalone";
+    public static final String LIGHT_BEAT_ENABLED = "lightBeatEnabled";
+    public static final String BATCH_BEAT_ENABLED = "batchBeatEnabled";
+    public static final String TCP_KEEP_ALIVE_MILLIS = "tcpKeepAliveMillis";
+    public static final String HEALTH_CHECK_BUDGET_PER_SECOND = "healthCheckBudgetPerSecond";
+    public static final String DELTA_PUSH_JAVA_VERSION = "deltaPushJavaVersion";
     public static final int MIN_PUSH_CACHE_TIME_MIILIS = 10000;
     public static final int MIN_CACHE_TIME_MIILIS = 1000;
     public static final int MIN_SERVICE_SYNC_TIME_MIILIS = 5000;
@@ -188,6 +188,16 @@ public class SwitchManager implements RecordListener<SwitchDomain> {
                 switchDomain.setServiceStatusSynchronizationPeriodMillis(millis);
             }
 
+            if (entry.equals(SwitchEntry.SERVICE_STATUS_FULL_SYNC_ROUNDS)) {
+                int rounds = Integer.parseInt(value);
+
+                if (rounds < 1) {
+                    throw new IllegalArgumentException("serviceStatusFullSyncRounds can not be less than 1: " + rounds);
+                }
+
+                switchDomain.setServiceStatusFullSyncRounds(rounds);
+            }
+
             if (entry.equals(SwitchEntry.SERVER_STATUS_SYNC_PERIOD)) {
                 Long millis = Long.parseLong(value);
 
@@ -267,6 +277,44 @@ public class SwitchManager implements RecordListener<SwitchDomain> {
                 switchDomain.setDefaultInstanceEphemeral(Boolean.parseBoolean(defaultEphemeral));
             }
 
+            if (entry.equals(SwitchEntry.LIGHT_BEAT_ENABLED)) {
+                boolean lightBeatEnabled = Boolean.parseBoolean(value);
+                switchDomain.setLightBeatEnabled(lightBeatEnabled);
+            }
+
+            if (entry.equals(SwitchEntry.BATCH_BEAT_ENABLED)) {
+                boolean batchBeatEnabled = Boolean.parseBoolean(value);
+                switchDomain.setBatchBeatEnabled(batchBeatEnabled);
+            }
+
+            if (entry.equals(SwitchEntry.TCP_KEEP_ALIVE_MILLIS)) {
+                long tcpKeepAliveMillis = Long.parseLong(value);
+
+                if (tcpKeepAliveMillis < 0) {
+                    throw new IllegalArgumentException("tcpKeepAliveMillis can not be less than 0: " + tcpKeepAliveMillis);
+                }
+
+                switchDomain.setTcpKeepAliveMillis(tcpKeepAliveMillis);
+            }
+
+            if (entry.equals(SwitchEntry.HEALTH_CHECK_BUDGET_PER_SECOND)) {
+                int healthCheckBudgetPerSecond = Integer.parseInt(value);
+
+                if (healthCheckBudgetPerSecond < 0) {
+                    throw new IllegalArgumentException("healthCheckBudgetPerSecond can not be less than 0: " + healthCheckBudgetPerSecond);
+                }
+
+                switchDomain.setHealthCheckBudgetPerSecond(healthCheckBudgetPerSecond);
+            }
+
+            if (entry.equals(SwitchEntry.DELTA_PUSH_JAVA_VERSION)) {
+                if (!value.matches(UtilsAndCommons.VERSION_STRING_SYNTAX)) {
+                    throw new IllegalArgumentException("illegal version, must match: " + UtilsAndCommons.VERSION_STRING_SYNTAX);
+                }
+
+                switchDomain.setDeltaPushJavaVersion(value);
+            }
+
             if (debug) {
                 update(switchDomain);
             } else {
@@ -297,6 +345,7 @@ public class SwitchManager implements RecordListener<SwitchDomain> {
         switchDomain.setIncrementalList(newSwitchDomain.getIncrementalList());
         switchDomain.setServerStatusSynchronizationPeriodMillis(newSwitchDomain.getServerStatusSynchronizationPeriodMillis());
         switchDomain.setServiceStatusSynchronizationPeriodMillis(newSwitchDomain.getServiceStatusSynchronizationPeriodMillis());
+        switchDomain.setServiceStatusFullSyncRounds(newSwitchDomain.getServiceStatusFullSyncRounds());
         switchDomain.setDisableAddIP(newSwitchDomain.isDisableAddIP());
         switchDomain.setSendBeatOnly(newSwitchDomain.isSendBeatOnly());
         switchDomain.setLimitedUrlMap(newSwitchDomain.getLimitedUrlMap());
@@ -308,6 +357,11 @@ public class SwitchManager implements RecordListener<SwitchDomain> {
         switchDomain.setEnableAuthentication(newSwitchDomain.isEnableAuthentication());
         switchDomain.setOverriddenServerStatus(newSwitchDomain.getOverriddenServerStatus());
         switchDomain.setDefaultInstanceEphemeral(newSwitchDomain.isDefaultInstanceEphemeral());
+        switchDomain.setLightBeatEnabled(newSwitchDomain.isLightBeatEnabled());
+        switchDomain.setBatchBeatEnabled(newSwitchDomain.isBatchBeatEnabled());
+        switchDomain.setTcpKeepAliveMillis(newSwitchDomain.getTcpKeepAliveMillis());
+        switchDomain.setHealthCheckBudgetPerSecond(newSwitchDomain.getHealthCheckBudgetPerSecond());
+        switchDomain.setDeltaPushJavaVersion(newSwitchDomain.getDeltaPushJavaVersion());
     }
 
     public SwitchDomain getSwitchDomain() {
@@ -25,6 +25,8 @@ import com.alibaba.nacos.naming.exception.NacosException;
 import com.alibaba.nacos.naming.healthcheck.JsonAdapter;
 import com.alibaba.nacos.naming.selector.Selector;
 import com.alibaba.nacos.naming.selector.SelectorJsonAdapter;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.File;
@@ -90,6 +92,8 @@ public class UtilsAndCommons {
 
     public static final int RAFT_PUBLISH_TIMEOUT = 5000;
 
+    private static final Interner<String> STRING_INTERNER = Interners.newWeakInterner();
+
     public static final String SERVER_VERSION = NACOS_SERVER_HEADER + ":" + NACOS_VERSION;
 
     public static final String SELF_SERVICE_CLUSTER_ENV = "naming_self_service_cluster_ips";
@@ -210,6 +214,14 @@ public class UtilsAndCommons {
         return UtilsAndCommons.DOMAINS_DATA_ID_PRE + UtilsAndCommons.SWITCH_DOMAIN_NAME;
     }
 
+    /**
+     * Intern a string which repeats across many objects, such as names of clusters and services. Interned strings
+     * are weakly referenced and collected once no longer used.
+     */
+    public static String intern(String value) {
+        return value == null ? null : STRING_INTERNER.intern(value);
+    }
+
     public static Map<String, String> parseMetadata(String metadata) throws NacosException {
 
         Map<String, String> metadataMap = new HashMap<>(16);
@@ -19,9 +19,12 @@ import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.ImmutableTag;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -41,6 +44,16 @@ public class MetricsMonitor {
     private static AtomicLong leaderStatus = new AtomicLong();
     private static AtomicInteger totalPush = new AtomicInteger();
     private static AtomicInteger failedPush = new AtomicInteger();
+    private static AtomicInteger serviceUpdateQueueSize = new AtomicInteger();
+    private static AtomicLong serviceUpdateLag = new AtomicLong();
+    private static AtomicInteger healthCheckDeferred = new AtomicInteger();
+    private static AtomicInteger pushInFlight = new AtomicInteger();
+    private static AtomicInteger pushDemotedClient = new AtomicInteger();
+    private static AtomicInteger subscriberCount = new AtomicInteger();
+    private static AtomicInteger subscribedServiceCount = new AtomicInteger();
+    private static Map<String, AtomicInteger> namespaceSubscriberCounts = new ConcurrentHashMap<>();
+    private static Map<String, AtomicLong> shardMonitors = new ConcurrentHashMap<>();
+    private static Map<String, AtomicInteger> gossipMemberMonitors = new ConcurrentHashMap<>();
 
     static {
         List<Tag> tags = new ArrayList<Tag>();
@@ -92,6 +105,41 @@ public class MetricsMonitor {
         tags.add(new ImmutableTag("module", "naming"));
         tags.add(new ImmutableTag("name", "failedPush"));
         Metrics.gauge("nacos_monitor", tags, failedPush);
+
+        tags = new ArrayList<Tag>();
+        tags.add(new ImmutableTag("module", "naming"));
+        tags.add(new ImmutableTag("name", "serviceUpdateQueueSize"));
+        Metrics.gauge("nacos_monitor", tags, serviceUpdateQueueSize);
+
+        tags = new ArrayList<Tag>();
+        tags.add(new ImmutableTag("module", "naming"));
+        tags.add(new ImmutableTag("name", "serviceUpdateLag"));
+        Metrics.gauge("nacos_monitor", tags, serviceUpdateLag);
+
+        tags = new ArrayList<Tag>();
+        tags.add(new ImmutableTag("module", "naming"));
+        tags.add(new ImmutableTag("name", "healthCheckDeferred"));
+        Metrics.gauge("nacos_monitor", tags, healthCheckDeferred);
+
+        tags = new ArrayList<Tag>();
+        tags.add(new ImmutableTag("module", "naming"));
+        tags.add(new ImmutableTag("name", "pushInFlight"));
+        Metrics.gauge("nacos_monitor", tags, pushInFlight);
+
+        tags = new ArrayList<Tag>();
+        tags.add(new ImmutableTag("module", "naming"));
+        tags.add(new ImmutableTag("name", "pushDemotedClient"));
+        Metrics.gauge("nacos_monitor", tags, pushDemotedClient);
+
+        tags = new ArrayList<Tag>();
+        tags.add(new ImmutableTag("module", "naming"));
+        tags.add(new ImmutableTag("name", "subscriberCount"));
+        Metrics.gauge("nacos_monitor", tags, subscriberCount);
+
+        tags = new ArrayList<Tag>();
+        tags.add(new ImmutableTag("module", "naming"));
+        tags.add(new ImmutableTag("name", "subscribedServiceCount"));
+        Metrics.gauge("nacos_monitor", tags, subscribedServiceCount);
     }
 
     public static AtomicInteger getMysqlHealthCheckMonitor() {
@@ -134,6 +182,177 @@ public class MetricsMonitor {
         return failedPush;
     }
 
+    public static AtomicInteger getServiceUpdateQueueSizeMonitor() {
+        return serviceUpdateQueueSize;
+    }
+
+    public static AtomicLong getServiceUpdateLagMonitor() {
+        return serviceUpdateLag;
+    }
+
+    public static AtomicInteger getHealthCheckDeferredMonitor() {
+        return healthCheckDeferred;
+    }
+
+    public static AtomicInteger getPushInFlightMonitor() {
+        return pushInFlight;
+    }
+
+    public static AtomicInteger getPushDemotedClientMonitor() {
+        return pushDemotedClient;
+    }
+
+    public static AtomicInteger getSubscriberCountMonitor() {
+        return subscriberCount;
+    }
+
+    public static AtomicInteger getSubscribedServiceCountMonitor() {
+        return subscribedServiceCount;
+    }
+
+    public static AtomicInteger getNamespaceSubscriberCountMonitor(String namespaceId) {
+        AtomicInteger monitor = namespaceSubscriberCounts.get(namespaceId);
+        if (monitor != null) {
+            return monitor;
+        }
+        synchronized (namespaceSubscriberCounts) {
+            monitor = namespaceSubscriberCounts.get(namespaceId);
+            if (monitor == null) {
+                List<Tag> tags = new ArrayList<Tag>();
+                tags.add(new ImmutableTag("module", "naming"));
+                tags.add(new ImmutableTag("namespace", namespaceId));
+                monitor = Metrics.gauge("nacos_subscriber_count", tags, new AtomicInteger());
+                namespaceSubscriberCounts.put(namespaceId, monitor);
+            }
+        }
+        return monitor;
+    }
+
+    public static AtomicInteger getGossipMemberMonitor(String state) {
+        AtomicInteger monitor = gossipMemberMonitors.get(state);
+        if (monitor != null) {
+            return monitor;
+        }
+        synchronized (gossipMemberMonitors) {
+            monitor = gossipMemberMonitors.get(state);
+            if (monitor == null) {
+                List<Tag> tags = new ArrayList<Tag>();
+                tags.add(new ImmutableTag("module", "naming"));
+                tags.add(new ImmutableTag("state", state));
+                monitor = Metrics.gauge("nacos_gossip_member", tags, new AtomicInteger());
+                gossipMemberMonitors.put(state, monitor);
+            }
+        }
+        return monitor;
+    }
+
+    public static AtomicLong getTcpCheckLagMonitor(int shard) {
+        return getShardMonitor("tcpCheckLag", shard);
+    }
+
+    public static AtomicLong getTcpOutstandingConnectMonitor(int shard) {
+        return getShardMonitor("tcpOutstandingConnect", shard);
+    }
+
+    private static AtomicLong getShardMonitor(String name, int shard) {
+        String key = name + ":" + shard;
+        AtomicLong monitor = shardMonitors.get(key);
+        if (monitor != null) {
+            return monitor;
+        }
+        synchronized (shardMonitors) {
+            monitor = shardMonitors.get(key);
+            if (monitor == null) {
+                List<Tag> tags = new ArrayList<Tag>();
+                tags.add(new ImmutableTag("module", "naming"));
+                tags.add(new ImmutableTag("name", name));
+                tags.add(new ImmutableTag("shard", String.valueOf(shard)));
+                monitor = Metrics.gauge("nacos_shard_monitor", tags, new AtomicLong());
+                shardMonitors.put(key, monitor);
+            }
+        }
+        return monitor;
+    }
+
+    public static Timer getHealthCheckRtTimer(String type) {
+        return Timer.builder("nacos_health_check_rt")
+            .tags("module", "naming", "type", type)
+            .publishPercentileHistogram()
+            .register(Metrics.globalRegistry);
+    }
+
+    public static Timer getHealthCheckDriftTimer() {
+        return Timer.builder("nacos_health_check_drift")
+            .tags("module", "naming")
+            .publishPercentileHistogram()
+            .register(Metrics.globalRegistry);
+    }
+
+    public static Timer getPushLatencyTimer(String stage) {
+        return Timer.builder("nacos_push_latency")
+            .tags("module", "naming", "stage", stage)
+            .publishPercentileHistogram()
+            .register(Metrics.globalRegistry);
+    }
+
+    public static Counter getPushPayloadCacheCounter(String result) {
+        return Metrics.counter("nacos_push_payload_cache",
+            "module", "naming", "result", result);
+    }
+
+    public static Counter getPushFlowCounter(String result) {
+        return Metrics.counter("nacos_push_flow",
+            "module", "naming", "result", result);
+    }
+
+    /**
+     * Time from a member state change at some node until it is learnt here through gossip.
+     */
+    public static Timer getGossipConvergenceTimer(String state) {
+        return Timer.builder("nacos_gossip_convergence")
+            .tags("module", "naming", "state", state)
+            .publishPercentileHistogram()
+            .register(Metrics.globalRegistry);
+    }
+
+    public static Counter getGossipMessageCounter(String type) {
+        return Metrics.counter("nacos_gossip_message",
+            "module", "naming", "type", type);
+    }
+
+    public static Timer getDistroForwardTimer(String target) {
+        return Timer.builder("nacos_distro_forward_latency")
+            .tags("module", "naming", "target", target)
+            .publishPercentileHistogram()
+            .register(Metrics.globalRegistry);
+    }
+
+    public static Counter getDistroForwardCounter(String target, String result) {
+        return Metrics.counter("nacos_distro_forward",
+            "module", "naming", "target", target, "result", result);
+    }
+
+    public static Timer getPeerRequestTimer(String peer, String api) {
+        return Timer.builder("nacos_peer_request")
+            .tags("module", "naming", "peer", peer, "api", api)
+            .publishPercentileHistogram()
+            .register(Metrics.globalRegistry);
+    }
+
+    public static Counter getPeerRequestErrorCounter(String peer, String api) {
+        return Metrics.counter("nacos_peer_request_error",
+            "module", "naming", "peer", peer, "api", api);
+    }
+
+    public static Counter getReclaimedServiceCounter() {
+        return Metrics.counter("nacos_reclaimed_service", "module", "naming");
+    }
+
+    public static Counter getSubscriberAggregationCounter(String result) {
+        return Metrics.counter("nacos_subscriber_aggregation",
+            "module", "naming", "result", result);
+    }
+
     public static Counter getDiskException() {
         return Metrics.counter("nacos_exception",
             "module", "naming", "name", "disk");
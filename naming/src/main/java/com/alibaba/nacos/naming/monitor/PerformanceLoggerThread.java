@@ -95,6 +95,8 @@ public class PerformanceLoggerThread {
         MetricsMonitor.getTotalPushMonitor().set(pushService.getTotalPush());
         MetricsMonitor.getFailedPushMonitor().set(pushService.getFailedPushCount());
 
+        MetricsMonitor.getServiceUpdateQueueSizeMonitor().set(serviceManager.getUpdatedServiceQueueSize());
+
         if (raftCore.isLeader()) {
             MetricsMonitor.getLeaderStatusMonitor().set(1);
         } else if (raftCore.getPeerSet().local().state == RaftPeer.State.FOLLOWER) {
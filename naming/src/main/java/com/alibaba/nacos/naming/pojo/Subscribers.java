@@ -26,6 +26,8 @@ public class Subscribers implements Serializable {
 
     private List<Subscriber> subscribers;
 
+    private int count;
+
     public List<Subscriber> getSubscribers() {
         return subscribers;
     }
@@ -33,4 +35,12 @@ public class Subscribers implements Serializable {
     public void setSubscribers(List<Subscriber> subscribers) {
         this.subscribers = subscribers;
     }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
 }
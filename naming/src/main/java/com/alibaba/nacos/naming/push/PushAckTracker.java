@@ -0,0 +1,399 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.nacos.naming.push;
+
+import com.alibaba.nacos.naming.misc.Loggers;
+import com.alibaba.nacos.naming.monitor.MetricsMonitor;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Flow control of UDP pushes.
+ * <p>
+ * Retransmissions are driven by a hashed timing wheel instead of one scheduled task per ack, with the timeout of
+ * every client adapted to its measured ack round trip. Pushes in flight are capped per client and per service, a push
+ * over a cap is deferred until a slot is released, and clients failing to ack several pushes in a row are demoted to
+ * polling for a while.
+ *
+ * @author nacos
+ */
+public class PushAckTracker {
+
+    private static final long TICK_MILLIS = 50L;
+
+    private static final int WHEEL_SIZE = 512;
+
+    private static final long INITIAL_RTO_MILLIS = 1000L;
+
+    private static final long MIN_RTO_MILLIS = 200L;
+
+    private static final long MAX_RTO_MILLIS = 10000L;
+
+    private static final long STATE_EXPIRE_MILLIS = TimeUnit.MINUTES.toMillis(10L);
+
+    private final int maxInFlightPerClient;
+
+    private final int maxInFlightPerService;
+
+    private final int maxFailuresBeforeDemote;
+
+    private final long demoteMillis;
+
+    private final ConcurrentMap<String, ClientState> clientStates = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, AtomicInteger> serviceInFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Pushes over the cap of a client, by client and service. Only the latest push of a service is kept.
+     */
+    private final ConcurrentMap<String, ConcurrentMap<String, Runnable>> clientDeferred = new ConcurrentHashMap<>();
+
+    /**
+     * Pushes over the cap of a service, by service and client. Only the latest push to a client is kept.
+     */
+    private final ConcurrentMap<String, ConcurrentMap<String, Runnable>> serviceDeferred = new ConcurrentHashMap<>();
+
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+
+    private final List<List<Timeout>> wheel = new ArrayList<>(WHEEL_SIZE);
+
+    private final ScheduledExecutorService executor;
+
+    /**
+     * The next tick to be processed, only accessed by the wheel thread.
+     */
+    private long currentTick;
+
+    public PushAckTracker(int maxInFlightPerClient, int maxInFlightPerService, int maxFailuresBeforeDemote,
+                          long demoteMillis) {
+        this.maxInFlightPerClient = maxInFlightPerClient;
+        this.maxInFlightPerService = maxInFlightPerService;
+        this.maxFailuresBeforeDemote = maxFailuresBeforeDemote;
+        this.demoteMillis = demoteMillis;
+
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new ArrayList<Timeout>());
+        }
+        currentTick = System.currentTimeMillis() / TICK_MILLIS;
+
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r);
+                t.setDaemon(true);
+                t.setName("com.alibaba.nacos.naming.push.retransmitter.wheel");
+                return t;
+            }
+        });
+
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    advance(System.currentTimeMillis() / TICK_MILLIS);
+                } catch (Throwable e) {
+                    Loggers.PUSH.error("[NACOS-PUSH] error while advancing retransmission wheel", e);
+                }
+            }
+        }, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reserve an in-flight slot for a new push.
+     *
+     * @param deferred push run again once a slot of the client or the service is released, if this one is throttled
+     * @return false if the client is demoted or the client or the service has too many pushes in flight
+     */
+    public boolean tryAcquire(String clientAddr, String serviceKey, Runnable deferred) {
+        ClientState state = getState(clientAddr);
+        if (state.isDemoted()) {
+            return false;
+        }
+
+        AtomicInteger serviceCount = serviceInFlight.get(serviceKey);
+        if (serviceCount == null) {
+            serviceInFlight.putIfAbsent(serviceKey, new AtomicInteger());
+            serviceCount = serviceInFlight.get(serviceKey);
+        }
+
+        if (state.inFlight.incrementAndGet() > maxInFlightPerClient) {
+            state.inFlight.decrementAndGet();
+            MetricsMonitor.getPushFlowCounter("clientThrottled").increment();
+            defer(clientDeferred, clientAddr, serviceKey, deferred);
+            return false;
+        }
+        if (serviceCount.incrementAndGet() > maxInFlightPerService) {
+            serviceCount.decrementAndGet();
+            state.inFlight.decrementAndGet();
+            MetricsMonitor.getPushFlowCounter("serviceThrottled").increment();
+            defer(serviceDeferred, serviceKey, clientAddr, deferred);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Release the slot of an acknowledged push.
+     *
+     * @param rttMillis round trip of the ack, negative if the push was retransmitted and the sample is ambiguous
+     */
+    public void onAck(String clientAddr, String serviceKey, long rttMillis) {
+        ClientState state = release(clientAddr, serviceKey);
+        state.onAck(rttMillis);
+        runDeferred(clientAddr, serviceKey);
+    }
+
+    /**
+     * Release the slot of a push which was never acknowledged.
+     */
+    public void onFailure(String clientAddr, String serviceKey) {
+        ClientState state = release(clientAddr, serviceKey);
+        if (state.onFailure(maxFailuresBeforeDemote, demoteMillis)) {
+            MetricsMonitor.getPushFlowCounter("demoted").increment();
+            Loggers.PUSH.warn("[NACOS-PUSH] client {} failed to ack {} pushes in a row, demoted to polling for {} ms",
+                clientAddr, maxFailuresBeforeDemote, demoteMillis);
+        }
+        runDeferred(clientAddr, serviceKey);
+    }
+
+    public boolean isDemoted(String clientAddr) {
+        ClientState state = clientStates.get(clientAddr);
+        return state != null && state.isDemoted();
+    }
+
+    /**
+     * Retransmission timeout of a client, doubled for every retransmission already done.
+     */
+    public long getRto(String clientAddr, int retryTimes) {
+        long rto = getState(clientAddr).rto;
+        for (int i = 1; i < retryTimes && rto < MAX_RTO_MILLIS; i++) {
+            rto <<= 1;
+        }
+        return Math.min(rto, MAX_RTO_MILLIS);
+    }
+
+    public void schedule(Runnable task, long delayMillis) {
+        pending.offer(new Timeout(task, (System.currentTimeMillis() + delayMillis) / TICK_MILLIS));
+    }
+
+    /**
+     * Drop the states of clients idle for a long time and refresh the gauges.
+     */
+    public void removeIdleStates() {
+        long now = System.currentTimeMillis();
+        int inFlight = 0;
+        int demoted = 0;
+        for (Map.Entry<String, ClientState> entry : clientStates.entrySet()) {
+            ClientState state = entry.getValue();
+            boolean idle = state.inFlight.get() == 0 && !state.isDemoted()
+                && now - state.lastActiveMillis > STATE_EXPIRE_MILLIS;
+            if (idle) {
+                clientStates.remove(entry.getKey(), state);
+                continue;
+            }
+            inFlight += state.inFlight.get();
+            if (state.isDemoted()) {
+                demoted++;
+            }
+        }
+
+        for (Map.Entry<String, AtomicInteger> entry : serviceInFlight.entrySet()) {
+            if (entry.getValue().get() == 0) {
+                serviceInFlight.remove(entry.getKey(), entry.getValue());
+            }
+        }
+
+        removeEmpty(clientDeferred);
+        removeEmpty(serviceDeferred);
+
+        MetricsMonitor.getPushInFlightMonitor().set(inFlight);
+        MetricsMonitor.getPushDemotedClientMonitor().set(demoted);
+    }
+
+    private void defer(ConcurrentMap<String, ConcurrentMap<String, Runnable>> deferredMap, String key,
+                       String subKey, Runnable deferred) {
+        ConcurrentMap<String, Runnable> pushes = deferredMap.get(key);
+        if (pushes == null) {
+            deferredMap.putIfAbsent(key, new ConcurrentHashMap<String, Runnable>(4));
+            pushes = deferredMap.get(key);
+        }
+        pushes.put(subKey, deferred);
+        MetricsMonitor.getPushFlowCounter("deferred").increment();
+    }
+
+    /**
+     * Run a deferred push for the slot just released, one of the client if any, otherwise one of the service. It
+     * takes the slot as a new push, and is deferred again if throttled once more.
+     */
+    private void runDeferred(String clientAddr, String serviceKey) {
+        Runnable deferred = pollDeferred(clientDeferred.get(clientAddr));
+        if (deferred == null) {
+            deferred = pollDeferred(serviceDeferred.get(serviceKey));
+        }
+        if (deferred == null) {
+            return;
+        }
+        try {
+            deferred.run();
+        } catch (Throwable e) {
+            Loggers.PUSH.error("[NACOS-PUSH] error while running deferred push", e);
+        }
+    }
+
+    private Runnable pollDeferred(ConcurrentMap<String, Runnable> pushes) {
+        if (pushes == null) {
+            return null;
+        }
+        for (String key : pushes.keySet()) {
+            Runnable deferred = pushes.remove(key);
+            if (deferred != null) {
+                return deferred;
+            }
+        }
+        return null;
+    }
+
+    private void removeEmpty(ConcurrentMap<String, ConcurrentMap<String, Runnable>> deferredMap) {
+        for (Map.Entry<String, ConcurrentMap<String, Runnable>> entry : deferredMap.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                deferredMap.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private ClientState release(String clientAddr, String serviceKey) {
+        ClientState state = getState(clientAddr);
+        if (state.inFlight.decrementAndGet() < 0) {
+            state.inFlight.set(0);
+        }
+        AtomicInteger serviceCount = serviceInFlight.get(serviceKey);
+        if (serviceCount != null && serviceCount.decrementAndGet() < 0) {
+            serviceCount.set(0);
+        }
+        return state;
+    }
+
+    private ClientState getState(String clientAddr) {
+        ClientState state = clientStates.get(clientAddr);
+        if (state == null) {
+            clientStates.putIfAbsent(clientAddr, new ClientState());
+            state = clientStates.get(clientAddr);
+        }
+        return state;
+    }
+
+    private void advance(long nowTick) {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            long ticks = Math.max(0, timeout.deadlineTick - currentTick);
+            timeout.rounds = ticks / WHEEL_SIZE;
+            wheel.get((int) ((currentTick + ticks) % WHEEL_SIZE)).add(timeout);
+        }
+
+        for (; currentTick <= nowTick; currentTick++) {
+            Iterator<Timeout> iterator = wheel.get((int) (currentTick % WHEEL_SIZE)).iterator();
+            while (iterator.hasNext()) {
+                Timeout expired = iterator.next();
+                if (expired.rounds > 0) {
+                    expired.rounds--;
+                    continue;
+                }
+                iterator.remove();
+                try {
+                    expired.task.run();
+                } catch (Throwable e) {
+                    Loggers.PUSH.error("[NACOS-PUSH] error while retransmitting push", e);
+                }
+            }
+        }
+    }
+
+    private static class Timeout {
+
+        private final Runnable task;
+
+        private final long deadlineTick;
+
+        private long rounds;
+
+        Timeout(Runnable task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+
+    private static class ClientState {
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private volatile long rto = INITIAL_RTO_MILLIS;
+
+        private long srtt = -1;
+
+        private long rttvar;
+
+        private int consecutiveFailures;
+
+        private volatile long demotedUntil;
+
+        private volatile long lastActiveMillis = System.currentTimeMillis();
+
+        boolean isDemoted() {
+            return demotedUntil > System.currentTimeMillis();
+        }
+
+        /**
+         * Smooth the round trip as TCP does, RTO = SRTT + 4 * RTTVAR.
+         */
+        synchronized void onAck(long rttMillis) {
+            lastActiveMillis = System.currentTimeMillis();
+            consecutiveFailures = 0;
+            if (rttMillis < 0) {
+                return;
+            }
+            if (srtt < 0) {
+                srtt = rttMillis;
+                rttvar = rttMillis / 2;
+            } else {
+                rttvar = (3 * rttvar + Math.abs(srtt - rttMillis)) / 4;
+                srtt = (7 * srtt + rttMillis) / 8;
+            }
+            rto = Math.max(MIN_RTO_MILLIS, Math.min(MAX_RTO_MILLIS, srtt + 4 * rttvar));
+        }
+
+        /**
+         * Back off as TCP does on a timeout, the next round trip sampled brings the timeout back.
+         *
+         * @return true if the client is demoted by this failure
+         */
+        synchronized boolean onFailure(int maxFailures, long demoteMillis) {
+            lastActiveMillis = System.currentTimeMillis();
+            rto = Math.min(MAX_RTO_MILLIS, rto << 1);
+            if (++consecutiveFailures < maxFailures) {
+                return false;
+            }
+            consecutiveFailures = 0;
+            demotedUntil = System.currentTimeMillis() + demoteMillis;
+            return true;
+        }
+    }
+}
@@ -16,10 +16,14 @@
 package com.alibaba.nacos.naming.push;
 
 import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
 import com.alibaba.nacos.naming.core.Service;
+import com.alibaba.nacos.naming.misc.GlobalConfig;
 import com.alibaba.nacos.naming.misc.Loggers;
 import com.alibaba.nacos.naming.misc.SwitchDomain;
 import com.alibaba.nacos.naming.misc.UtilsAndCommons;
+import com.alibaba.nacos.naming.monitor.MetricsMonitor;
 import com.alibaba.nacos.naming.pojo.Subscriber;
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -31,6 +35,7 @@ import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.ApplicationListener;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.DatagramPacket;
@@ -53,50 +58,60 @@ public class PushService implements ApplicationContextAware, ApplicationListener
     @Autowired
     private SwitchDomain switchDomain;
 
+    @Autowired
+    private GlobalConfig globalConfig;
+
     private ApplicationContext applicationContext;
 
     private static final long ACK_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10L);
 
-    private static final int MAX_RETRY_TIMES = 1;
+    private static final int MAX_RETRY_TIMES = 3;
 
     private static volatile ConcurrentMap<String, Receiver.AckEntry> ackMap
         = new ConcurrentHashMap<String, Receiver.AckEntry>();
 
-    private static ConcurrentMap<String, ConcurrentMap<String, PushClient>> clientMap
-        = new ConcurrentHashMap<String, ConcurrentMap<String, PushClient>>();
+    private static SubscriberRegistry subscriberRegistry = new SubscriberRegistry();
 
     private static volatile ConcurrentHashMap<String, Long> udpSendTimeMap = new ConcurrentHashMap<String, Long>();
 
     public static volatile ConcurrentHashMap<String, Long> pushCostMap = new ConcurrentHashMap<String, Long>();
 
-    private static int totalPush = 0;
+    private static AtomicInteger totalPush = new AtomicInteger();
 
-    private static int failedPush = 0;
+    private static AtomicInteger failedPush = new AtomicInteger();
 
     private static ConcurrentHashMap<String, Long> lastPushMillisMap = new ConcurrentHashMap<>();
 
     private static DatagramSocket udpSocket;
 
+    private static final String DELTA_PUSH_TYPE = "dom-delta";
+
+    private static final String PUSH_ACK_TYPE = "push-ack";
+
+    private static final long PAYLOAD_EXPIRE_MILLIS = TimeUnit.MINUTES.toMillis(10L);
+
+    /**
+     * Payloads shared by all subscribers with the same service, clusters and agent, across push rounds.
+     */
+    private static ConcurrentMap<String, PushPayload> payloadCache = new ConcurrentHashMap<>();
+
     private static Map<String, Future> futureMap = new ConcurrentHashMap<>();
     private static ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
         @Override
         public Thread newThread(Runnable r) {
             Thread t = new Thread(r);
             t.setDaemon(true);
-            t.setName("com.alibaba.nacos.naming.push.retransmitter");
+            t.setName("com.alibaba.nacos.naming.push.cleaner");
             return t;
         }
     });
 
-    private static ScheduledExecutorService udpSender = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
-        @Override
-        public Thread newThread(Runnable r) {
-            Thread t = new Thread(r);
-            t.setDaemon(true);
-            t.setName("com.alibaba.nacos.naming.push.udpSender");
-            return t;
-        }
-    });
+    /**
+     * Push senders sharded by service key, so pushes of one service stay ordered while services push in parallel.
+     */
+    private ScheduledExecutorService[] udpSenders;
+
+    private static PushAckTracker ackTracker;
 
     static {
         try {
@@ -109,6 +124,21 @@ public class PushService implements ApplicationContextAware, ApplicationListener
             inThread.setName("com.alibaba.nacos.naming.push.receiver");
             inThread.start();
 
+            executorService.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        removeExpiredPayloads();
+                        if (ackTracker != null) {
+                            ackTracker.removeIdleStates();
+                        }
+                    } catch (Throwable e) {
+                        Loggers.PUSH.warn("[NACOS-PUSH] failed to remove expired push states");
+                    }
+                }
+            }, 0, 20, TimeUnit.SECONDS);
+
+            // cheap as only the subscribers expiring since the last run are visited
             executorService.scheduleWithFixedDelay(new Runnable() {
                 @Override
                 public void run() {
@@ -118,13 +148,39 @@ public class PushService implements ApplicationContextAware, ApplicationListener
                         Loggers.PUSH.warn("[NACOS-PUSH] failed to remove client zombie");
                     }
                 }
-            }, 0, 20, TimeUnit.SECONDS);
+            }, 0, 1, TimeUnit.SECONDS);
 
         } catch (SocketException e) {
             Loggers.SRV_LOG.error("[NACOS-PUSH] failed to init push service");
         }
     }
 
+    @PostConstruct
+    public void init() {
+        int shards = globalConfig.getPushSenderShards();
+        if (shards <= 0) {
+            shards = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        }
+
+        ackTracker = new PushAckTracker(globalConfig.getPushMaxInFlightPerClient(),
+            globalConfig.getPushMaxInFlightPerService(), globalConfig.getPushMaxFailuresBeforeDemote(),
+            globalConfig.getPushDemoteMillis());
+
+        udpSenders = new ScheduledExecutorService[shards];
+        for (int i = 0; i < shards; i++) {
+            final int shard = i;
+            udpSenders[i] = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r);
+                    t.setDaemon(true);
+                    t.setName("com.alibaba.nacos.naming.push.udpSender-" + shard);
+                    return t;
+                }
+            });
+        }
+    }
+
     @Override
     public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
         this.applicationContext = applicationContext;
@@ -135,74 +191,117 @@ public class PushService implements ApplicationContextAware, ApplicationListener
         Service service = event.getService();
         String serviceName = service.getName();
         String namespaceId = service.getNamespaceId();
+        String serviceKey = UtilsAndCommons.assembleFullServiceName(namespaceId, serviceName);
+        long changedMillis = System.currentTimeMillis();
 
-        Future future = udpSender.schedule(new Runnable() {
+        FutureTask<Void> future = new FutureTask<>(new Runnable() {
             @Override
             public void run() {
+                // changes arriving from now on may not be seen by this push, let them schedule a new one
+                futureMap.remove(serviceKey);
                 try {
                     Loggers.PUSH.info(serviceName + " is changed, add it to push queue.");
-                    ConcurrentMap<String, PushClient> clients = clientMap.get(UtilsAndCommons.assembleFullServiceName(namespaceId, serviceName));
-                    if (MapUtils.isEmpty(clients)) {
+                    Collection<PushClient> clients = subscriberRegistry.getClients(serviceKey);
+                    if (clients.isEmpty()) {
                         return;
                     }
 
-                    Map<String, Object> cache = new HashMap<>(16);
                     long lastRefTime = System.nanoTime();
-                    for (PushClient client : clients.values()) {
+                    for (PushClient client : clients) {
                         if (client.zombie()) {
                             Loggers.PUSH.debug("client is zombie: " + client.toString());
-                            clients.remove(client.toString());
-                            Loggers.PUSH.debug("client is zombie: " + client.toString());
+                            subscriberRegistry.remove(client);
                             continue;
                         }
+                        push(service, serviceKey, client, lastRefTime);
+                    }
 
-                        Receiver.AckEntry ackEntry;
-                        Loggers.PUSH.debug("push serviceName: {} to client: {}", serviceName, client.toString());
-                        String key = getPushCacheKey(serviceName, client.getIp(), client.getAgent());
-                        byte[] compressData = null;
-                        Map<String, Object> data = null;
-                        if (switchDomain.getDefaultPushCacheMillis() >= 20000 && cache.containsKey(key)) {
-                            org.javatuples.Pair pair = (org.javatuples.Pair) cache.get(key);
-                            compressData = (byte[]) (pair.getValue0());
-                            data = (Map<String, Object>) pair.getValue1();
-
-                            Loggers.PUSH.debug("[PUSH-CACHE] cache hit: {}:{}", serviceName, client.getAddrStr());
-                        }
+                    MetricsMonitor.getPushLatencyTimer("dispatch")
+                        .record(System.currentTimeMillis() - changedMillis, TimeUnit.MILLISECONDS);
+                } catch (Exception e) {
+                    Loggers.PUSH.error("[NACOS-PUSH] failed to push serviceName: {} to client, error: {}", serviceName, e);
+                }
 
-                        if (compressData != null) {
-                            ackEntry = prepareAckEntry(client, compressData, data, lastRefTime);
-                        } else {
-                            ackEntry = prepareAckEntry(client, prepareHostsData(client), lastRefTime);
-                            if (ackEntry != null) {
-                                cache.put(key, new org.javatuples.Pair<>(ackEntry.origin.getData(), ackEntry.data));
-                            }
-                        }
+            }
+        }, null);
 
-                        Loggers.PUSH.info("serviceName: {} changed, schedule push for: {}, agent: {}, key: {}",
-                            client.getServiceName(), client.getAddrStr(), client.getAgent(), (ackEntry == null ? null : ackEntry.key));
+        // merge the changes of one service within the debounce window into a single push
+        if (futureMap.putIfAbsent(serviceKey, future) != null) {
+            return;
+        }
 
-                        udpPush(ackEntry);
-                    }
-                } catch (Exception e) {
-                    Loggers.PUSH.error("[NACOS-PUSH] failed to push serviceName: {} to client, error: {}", serviceName, e);
+        long debounce = event.isMerged() ? 0L : globalConfig.getPushDebounceMillis();
+        getUdpSender(serviceKey).schedule(future, debounce, TimeUnit.MILLISECONDS);
+    }
 
-                } finally {
-                    futureMap.remove(UtilsAndCommons.assembleFullServiceName(namespaceId, serviceName));
-                }
+    /**
+     * Push the current data of the service to a client. A push throttled by flow control is deferred, and pushes
+     * whatever the service holds once a slot is released.
+     */
+    private void push(final Service service, final String serviceKey, final PushClient client, long lastRefTime)
+        throws Exception {
+        String serviceName = service.getName();
+        String version = service.getChecksum() + "_" + service.getLastModifiedMillis()
+            + "_" + switchDomain.getPushCacheMillis(serviceName);
+        boolean selective = service.getSelector() != null;
 
+        Receiver.AckEntry ackEntry;
+        Loggers.PUSH.debug("push serviceName: {} to client: {}", serviceName, client.toString());
+        String key = getPushCacheKey(client, selective);
+        PushPayload payload = getPayload(key, serviceKey, version, service.getLastModifiedMillis(),
+            lastRefTime, client);
+
+        // a delta is only usable by a client which acknowledged the version it is based on
+        boolean delta = payload.deltaData != null && client.getAckedVersion() == payload.baseVersion
+            && supportDeltaPush(client.getAgent());
+        ackEntry = payload.prepareAckEntry(client, delta, lastRefTime);
+        if (ackEntry != null) {
+            ackEntry.client = client;
+            ackEntry.serviceKey = serviceKey;
+            ackEntry.hostsVersion = payload.hostsVersion;
+
+            Runnable deferred = new Runnable() {
+                @Override
+                public void run() {
+                    getUdpSender(serviceKey).execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (client.zombie()) {
+                                return;
+                            }
+                            try {
+                                push(service, serviceKey, client, System.nanoTime());
+                            } catch (Exception e) {
+                                Loggers.PUSH.error("[NACOS-PUSH] failed to push deferred serviceName: {} to client: {}",
+                                    service.getName(), client.getAddrStr(), e);
+                            }
+                        }
+                    });
+                }
+            };
+            if (!ackTracker.tryAcquire(client.getAddrStr(), serviceKey, deferred)) {
+                Loggers.PUSH.debug("[NACOS-PUSH] push to {} is throttled or demoted, service: {}",
+                    client.getAddrStr(), serviceKey);
+                return;
             }
-        }, 1000, TimeUnit.MILLISECONDS);
+        }
+
+        Loggers.PUSH.info("serviceName: {} changed, schedule push for: {}, agent: {}, key: {}",
+            client.getServiceName(), client.getAddrStr(), client.getAgent(), (ackEntry == null ? null : ackEntry.key));
 
-        futureMap.put(UtilsAndCommons.assembleFullServiceName(namespaceId, serviceName), future);
+        udpPush(ackEntry);
+    }
 
+    private ScheduledExecutorService getUdpSender(String serviceKey) {
+        return udpSenders[(serviceKey.hashCode() & Integer.MAX_VALUE) % udpSenders.length];
     }
 
     public int getTotalPush() {
-        return totalPush;
+        return totalPush.get();
     }
 
     public void setTotalPush(int totalPush) {
-        PushService.totalPush = totalPush;
+        PushService.totalPush.set(totalPush);
     }
 
     public void addClient(String namespaceId,
@@ -225,60 +324,66 @@ public class PushService implements ApplicationContextAware, ApplicationListener
         addClient(client);
     }
 
+    /**
+     * Subscribe a client through a push channel, pushes to it are sent over the channel instead of UDP.
+     */
+    public void addClient(PushTcpServer.Connection connection,
+                          String namespaceId,
+                          String serviceName,
+                          String clusters,
+                          String agent,
+                          DataSource dataSource,
+                          String tenant,
+                          String app) {
+
+        PushClient client = new PushClient(namespaceId,
+            serviceName,
+            clusters,
+            agent,
+            connection.getRemoteAddress(),
+            dataSource,
+            tenant,
+            app);
+        client.connection = connection;
+        connection.addSubscription(client);
+        addClient(client);
+    }
+
     public static void addClient(PushClient client) {
         // client is stored by key 'serviceName' because notify event is driven by serviceName change
-        String serviceKey = UtilsAndCommons.assembleFullServiceName(client.getNamespaceId(), client.getServiceName());
-        ConcurrentMap<String, PushClient> clients =
-            clientMap.get(serviceKey);
-        if (clients == null) {
-            clientMap.putIfAbsent(serviceKey, new ConcurrentHashMap<String, PushClient>(1024));
-            clients = clientMap.get(serviceKey);
-        }
-
-        PushClient oldClient = clients.get(client.toString());
-        if (oldClient != null) {
-            oldClient.refresh();
-        } else {
-            PushClient res = clients.putIfAbsent(client.toString(), client);
-            if (res != null) {
-                Loggers.PUSH.warn("client: {} already associated with key {}", res.getAddrStr(), res.toString());
-            }
-            Loggers.PUSH.debug("client: {} added for serviceName: {}", client.getAddrStr(), client.getServiceName());
-        }
+        subscriberRegistry.add(client);
+    }
+
+    /**
+     * Unsubscribe the clients of a closed push channel.
+     */
+    public static void removeClients(Collection<PushClient> clients) {
+        subscriberRegistry.removeAll(clients);
     }
 
     public List<Subscriber> getClients(String serviceName, String namespaceId) {
         String serviceKey = UtilsAndCommons.assembleFullServiceName(namespaceId, serviceName);
-        ConcurrentMap<String, PushClient> clientConcurrentMap = clientMap.get(serviceKey);
-        if (Objects.isNull(clientConcurrentMap)) {
+        if (!subscriberRegistry.hasClients(serviceKey)) {
             return null;
         }
         List<Subscriber> clients = new ArrayList<Subscriber>();
-        clientConcurrentMap.forEach((key, client) -> {
+        for (PushClient client : subscriberRegistry.getClients(serviceKey)) {
             clients.add(new Subscriber(client.getAddrStr(), client.getAgent(), client.getApp(), client.getIp(), namespaceId, serviceName));
-        });
+        }
         return clients;
     }
 
-    public static void removeClientIfZombie() {
-
-        int size = 0;
-        for (Map.Entry<String, ConcurrentMap<String, PushClient>> entry : clientMap.entrySet()) {
-            ConcurrentMap<String, PushClient> clientConcurrentMap = entry.getValue();
-            for (Map.Entry<String, PushClient> entry1 : clientConcurrentMap.entrySet()) {
-                PushClient client = entry1.getValue();
-                if (client.zombie()) {
-                    clientConcurrentMap.remove(entry1.getKey());
-                }
-            }
+    public int getSubscriberCount() {
+        return subscriberRegistry.getSubscriberCount();
+    }
 
-            size += clientConcurrentMap.size();
-        }
+    public static void removeClientIfZombie() {
+        subscriberRegistry.removeExpired(System.currentTimeMillis());
 
         if (Loggers.PUSH.isDebugEnabled()) {
-            Loggers.PUSH.debug("[NACOS-PUSH] clientMap size: {}", size);
+            Loggers.PUSH.debug("[NACOS-PUSH] subscriber count: {}, subscribed service count: {}",
+                subscriberRegistry.getSubscriberCount(), subscriberRegistry.getSubscribedServiceCount());
         }
-
     }
 
     private static Receiver.AckEntry prepareAckEntry(PushClient client, byte[] dataBytes, Map<String, Object> data,
@@ -305,17 +410,106 @@ public class PushService implements ApplicationContextAware, ApplicationListener
         return null;
     }
 
-    public static String getPushCacheKey(String serviceName, String clientIP, String agent) {
-        return serviceName + UtilsAndCommons.CACHE_KEY_SPLITER + agent;
+    /**
+     * Clients sharing this key receive the same payload. The client IP is only part of the key when the service
+     * has a selector, as the selector may filter the instances by consumer.
+     */
+    public static String getPushCacheKey(PushClient client, boolean selective) {
+        String key = UtilsAndCommons.assembleFullServiceName(client.getNamespaceId(), client.getServiceName())
+            + UtilsAndCommons.CACHE_KEY_SPLITER + client.getClusters()
+            + UtilsAndCommons.CACHE_KEY_SPLITER + client.getAgent();
+        return selective ? key + UtilsAndCommons.CACHE_KEY_SPLITER + client.getIp() : key;
+    }
+
+    private static PushPayload getPayload(String key, String serviceKey, String version, long lastModifiedMillis,
+                                          long lastRefTime, PushClient client) throws Exception {
+        PushPayload payload = payloadCache.get(key);
+        if (payload != null && payload.isValid(version, lastModifiedMillis)) {
+            return payload;
+        }
+
+        long buildMillis = System.currentTimeMillis();
+        String hostsData = client.getDataSource().getData(client);
+        MetricsMonitor.getPushPayloadCacheCounter("miss").increment();
+
+        PushPayload built = new PushPayload(serviceKey, version, hostsData, buildMillis, lastRefTime, payload);
+        payloadCache.put(key, built);
+        return built;
+    }
+
+    /**
+     * Diff two hosts data by instance address, the result keeps every field of the current data except the host list,
+     * which is replaced by the added, modified and removed instances.
+     */
+    private static String computeDelta(String previousHostsData, String hostsData) {
+        JSONObject previous = JSON.parseObject(previousHostsData);
+        JSONObject current = JSON.parseObject(hostsData);
+        JSONArray previousHosts = previous.getJSONArray("hosts");
+        JSONArray currentHosts = current.getJSONArray("hosts");
+        if (previousHosts == null || currentHosts == null) {
+            return null;
+        }
+
+        Map<String, JSONObject> previousHostMap = new HashMap<>(previousHosts.size());
+        for (int i = 0; i < previousHosts.size(); i++) {
+            JSONObject host = previousHosts.getJSONObject(i);
+            previousHostMap.put(host.getString("ip") + ":" + host.getIntValue("port"), host);
+        }
+
+        JSONArray added = new JSONArray();
+        JSONArray modified = new JSONArray();
+        for (int i = 0; i < currentHosts.size(); i++) {
+            JSONObject host = currentHosts.getJSONObject(i);
+            JSONObject previousHost = previousHostMap.remove(host.getString("ip") + ":" + host.getIntValue("port"));
+            if (previousHost == null) {
+                added.add(host);
+            } else if (!previousHost.equals(host)) {
+                modified.add(host);
+            }
+        }
+
+        current.remove("hosts");
+        current.put("added", added);
+        current.put("modified", modified);
+        current.put("removed", new JSONArray(new ArrayList<>(previousHostMap.keySet())));
+        return current.toJSONString();
+    }
+
+    private boolean supportDeltaPush(String agent) {
+        ClientInfo clientInfo = new ClientInfo(agent);
+        return ClientInfo.ClientType.JAVA == clientInfo.type
+            && clientInfo.version.compareTo(VersionUtil.parseVersion(switchDomain.getDeltaPushJavaVersion())) >= 0;
+    }
+
+    private static void removeExpiredPayloads() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, PushPayload> entry : payloadCache.entrySet()) {
+            PushPayload payload = entry.getValue();
+            if (now - payload.usedMillis > PAYLOAD_EXPIRE_MILLIS || !subscriberRegistry.hasClients(payload.serviceKey)) {
+                payloadCache.remove(entry.getKey(), payload);
+            }
+        }
     }
 
     public void serviceChanged(Service service) {
+        serviceChanged(service, false);
+    }
+
+    /**
+     * @param merged true if the caller already merged the changes within its own window, e.g. health check results,
+     *               the push is then sent without waiting for the debounce window
+     */
+    public void serviceChanged(Service service, boolean merged) {
         // merge some change events to reduce the push frequency:
         if (futureMap.containsKey(UtilsAndCommons.assembleFullServiceName(service.getNamespaceId(), service.getName()))) {
             return;
         }
 
-        this.applicationContext.publishEvent(new ServiceChangeEvent(this, service));
+        this.applicationContext.publishEvent(new ServiceChangeEvent(this, service, merged));
+    }
+
+    public boolean isPushDemoted(String clientIP, int udpPort) {
+        return ackTracker != null && ackTracker.isDemoted(clientIP + ":" + udpPort);
     }
 
     public boolean canEnablePush(String agent) {
@@ -348,11 +542,11 @@ public class PushService implements ApplicationContextAware, ApplicationListener
     }
 
     public int getFailedPushCount() {
-        return ackMap.size() + failedPush;
+        return ackMap.size() + failedPush.get();
     }
 
     public void setFailedPush(int failedPush) {
-        PushService.failedPush = failedPush;
+        PushService.failedPush.set(failedPush);
     }
 
 
@@ -381,6 +575,20 @@ public class PushService implements ApplicationContextAware, ApplicationListener
 
         public long lastRefTime = System.currentTimeMillis();
 
+        /**
+         * Version of the hosts data last acknowledged by the client, the base of delta pushes.
+         */
+        private volatile long ackedVersion;
+
+        private PushTcpServer.Connection connection;
+
+        private SubscriberRegistry.ClientKey key;
+
+        /**
+         * Second the client expires at, maintained by {@link SubscriberRegistry}.
+         */
+        volatile long expireBucket;
+
         public PushClient(String namespaceId,
                           String serviceName,
                           String clusters,
@@ -389,14 +597,15 @@ public class PushService implements ApplicationContextAware, ApplicationListener
                           DataSource dataSource,
                           String tenant,
                           String app) {
-            this.namespaceId = namespaceId;
-            this.serviceName = serviceName;
-            this.clusters = clusters;
-            this.agent = agent;
+            this.namespaceId = SubscriberRegistry.intern(namespaceId);
+            this.serviceName = SubscriberRegistry.intern(serviceName);
+            this.clusters = SubscriberRegistry.intern(clusters);
+            this.agent = SubscriberRegistry.intern(agent);
             this.socketAddr = socketAddr;
             this.dataSource = dataSource;
-            this.tenant = tenant;
-            this.app = app;
+            this.tenant = SubscriberRegistry.intern(tenant);
+            this.app = SubscriberRegistry.intern(app);
+            this.key = new SubscriberRegistry.ClientKey(this.clusters, this.agent, socketAddr);
         }
 
         public DataSource getDataSource() {
@@ -405,10 +614,26 @@ public class PushService implements ApplicationContextAware, ApplicationListener
 
         public PushClient(InetSocketAddress socketAddr) {
             this.socketAddr = socketAddr;
+            this.key = new SubscriberRegistry.ClientKey(null, null, socketAddr);
         }
 
         public boolean zombie() {
-            return System.currentTimeMillis() - lastRefTime > switchDomain.getPushCacheMillis(serviceName);
+            if (connection != null) {
+                return !connection.isOpen();
+            }
+            return System.currentTimeMillis() > getExpireMillis();
+        }
+
+        public long getExpireMillis() {
+            return lastRefTime + switchDomain.getPushCacheMillis(serviceName);
+        }
+
+        public SubscriberRegistry.ClientKey getKey() {
+            return key;
+        }
+
+        public String getServiceKey() {
+            return UtilsAndCommons.assembleFullServiceName(namespaceId, serviceName);
         }
 
         @Override
@@ -434,7 +659,7 @@ public class PushService implements ApplicationContextAware, ApplicationListener
 
         @Override
         public int hashCode() {
-            return Objects.hash(serviceName, clusters, socketAddr);
+            return Objects.hash(serviceName, key);
         }
 
         @Override
@@ -445,7 +670,7 @@ public class PushService implements ApplicationContextAware, ApplicationListener
 
             PushClient other = (PushClient) obj;
 
-            return serviceName.equals(other.serviceName) && clusters.equals(other.clusters) && socketAddr.equals(other.socketAddr);
+            return Objects.equals(serviceName, other.serviceName) && Objects.equals(key, other.key);
         }
 
         public String getClusters() {
@@ -495,6 +720,106 @@ public class PushService implements ApplicationContextAware, ApplicationListener
         public void refresh() {
             lastRefTime = System.currentTimeMillis();
         }
+
+        public PushTcpServer.Connection getConnection() {
+            return connection;
+        }
+
+        public long getAckedVersion() {
+            return ackedVersion;
+        }
+
+        public void setAckedVersion(long ackedVersion) {
+            this.ackedVersion = ackedVersion;
+        }
+    }
+
+    private static class PushPayload {
+
+        private final String serviceKey;
+
+        private final String version;
+
+        private final String hostsData;
+
+        private final long buildMillis;
+
+        /**
+         * Version of the hosts data reported back by the acks of the clients, the push round that built it.
+         */
+        private final long hostsVersion;
+
+        private final long baseVersion;
+
+        private final String deltaData;
+
+        private volatile long usedMillis = System.currentTimeMillis();
+
+        /**
+         * Packets of the current push round, only accessed by the sender shard of the service.
+         */
+        private long roundLastRefTime;
+
+        private Receiver.AckEntry fullEntry;
+
+        private Receiver.AckEntry deltaEntry;
+
+        PushPayload(String serviceKey, String version, String hostsData, long buildMillis, long hostsVersion,
+                    PushPayload previous) {
+            this.serviceKey = serviceKey;
+            this.version = version;
+            this.hostsData = hostsData;
+            this.buildMillis = buildMillis;
+            this.hostsVersion = hostsVersion;
+
+            String delta = null;
+            if (previous != null) {
+                try {
+                    delta = computeDelta(previous.hostsData, hostsData);
+                } catch (Exception e) {
+                    Loggers.PUSH.warn("[NACOS-PUSH] failed to compute delta of service: {}", serviceKey, e);
+                }
+            }
+            this.deltaData = delta;
+            this.baseVersion = delta == null ? 0L : previous.hostsVersion;
+        }
+
+        boolean isValid(String version, long lastModifiedMillis) {
+            // a payload built in the same millisecond as the last modification may have missed it
+            return this.version.equals(version) && buildMillis > lastModifiedMillis;
+        }
+
+        Receiver.AckEntry prepareAckEntry(PushClient client, boolean delta, long lastRefTime) {
+            usedMillis = System.currentTimeMillis();
+            if (roundLastRefTime != lastRefTime) {
+                roundLastRefTime = lastRefTime;
+                fullEntry = null;
+                deltaEntry = null;
+            }
+
+            Receiver.AckEntry template = delta ? deltaEntry : fullEntry;
+            if (template != null) {
+                MetricsMonitor.getPushPayloadCacheCounter("hit").increment();
+                return PushService.prepareAckEntry(client, template.origin.getData(), template.data, lastRefTime);
+            }
+
+            Map<String, Object> data = new HashMap<String, Object>(8);
+            data.put("type", delta ? DELTA_PUSH_TYPE : "dom");
+            data.put("data", delta ? deltaData : hostsData);
+            data.put("version", hostsVersion);
+            if (delta) {
+                data.put("baseVersion", baseVersion);
+            }
+
+            Receiver.AckEntry entry = PushService.prepareAckEntry(client, data, lastRefTime);
+            MetricsMonitor.getPushPayloadCacheCounter("envelope").increment();
+            if (delta) {
+                deltaEntry = entry;
+            } else {
+                fullEntry = entry;
+            }
+            return entry;
+        }
     }
 
     private static byte[] compressIfNecessary(byte[] dataBytes) throws IOException {
@@ -512,14 +837,6 @@ public class PushService implements ApplicationContextAware, ApplicationListener
         return out.toByteArray();
     }
 
-    private static Map<String, Object> prepareHostsData(PushClient client) throws Exception {
-        Map<String, Object> cmd = new HashMap<String, Object>(2);
-        cmd.put("type", "dom");
-        cmd.put("data", client.getDataSource().getData(client));
-
-        return cmd;
-    }
-
     private static Receiver.AckEntry prepareAckEntry(PushClient client, Map<String, Object> data, long lastRefTime) {
         if (MapUtils.isEmpty(data)) {
             Loggers.PUSH.error("[NACOS-PUSH] pushing empty data for client is not allowed: {}", client);
@@ -560,41 +877,63 @@ public class PushService implements ApplicationContextAware, ApplicationListener
             return null;
         }
 
-        if (ackEntry.getRetryTimes() > MAX_RETRY_TIMES) {
+        long now = System.currentTimeMillis();
+        if (ackEntry.getRetryTimes() == 0) {
+            ackEntry.firstSendMillis = now;
+        }
+        long deadline = ackEntry.firstSendMillis + TimeUnit.NANOSECONDS.toMillis(ACK_TIMEOUT_NANOS);
+        if (ackEntry.getRetryTimes() > MAX_RETRY_TIMES || (ackEntry.getRetryTimes() > 0 && now >= deadline)) {
             Loggers.PUSH.warn("max re-push times reached, retry times {}, key: {}", ackEntry.retryTimes, ackEntry.key);
-            ackMap.remove(ackEntry.key);
+            releaseFailedPush(ackEntry);
             udpSendTimeMap.remove(ackEntry.key);
-            failedPush += 1;
+            failedPush.incrementAndGet();
             return ackEntry;
         }
 
         try {
             if (!ackMap.containsKey(ackEntry.key)) {
-                totalPush++;
+                totalPush.incrementAndGet();
             }
             ackMap.put(ackEntry.key, ackEntry);
             udpSendTimeMap.put(ackEntry.key, System.currentTimeMillis());
 
-            Loggers.PUSH.info("send udp packet: " + ackEntry.key);
-            udpSocket.send(ackEntry.origin);
+            PushTcpServer.Connection connection = ackEntry.client == null ? null : ackEntry.client.getConnection();
+            if (connection != null) {
+                Loggers.PUSH.info("send push frame: " + ackEntry.key);
+                if (!connection.send(ackEntry.origin.getData())) {
+                    throw new IOException("push channel is closed or congested: " + connection.getRemoteAddress());
+                }
+            } else {
+                Loggers.PUSH.info("send udp packet: " + ackEntry.key);
+                udpSocket.send(ackEntry.origin);
+            }
 
             ackEntry.increaseRetryTime();
 
-            executorService.schedule(new Retransmitter(ackEntry), TimeUnit.NANOSECONDS.toMillis(ACK_TIMEOUT_NANOS),
-                TimeUnit.MILLISECONDS);
+            String clientAddr = ackEntry.client == null ? null : ackEntry.client.getAddrStr();
+            long timeout = clientAddr == null ? TimeUnit.NANOSECONDS.toMillis(ACK_TIMEOUT_NANOS)
+                : ackTracker.getRto(clientAddr, ackEntry.getRetryTimes());
+            // all retransmissions of a push end within the ack timeout
+            ackTracker.schedule(new Retransmitter(ackEntry), Math.max(0L, Math.min(timeout, deadline - now)));
 
             return ackEntry;
         } catch (Exception e) {
             Loggers.PUSH.error("[NACOS-PUSH] failed to push data: {} to client: {}, error: {}",
                 ackEntry.data, ackEntry.origin.getAddress().getHostAddress(), e);
-            ackMap.remove(ackEntry.key);
+            releaseFailedPush(ackEntry);
             udpSendTimeMap.remove(ackEntry.key);
-            failedPush += 1;
+            failedPush.incrementAndGet();
 
             return null;
         }
     }
 
+    private static void releaseFailedPush(Receiver.AckEntry ackEntry) {
+        if (ackMap.remove(ackEntry.key, ackEntry) && ackEntry.client != null) {
+            ackTracker.onFailure(ackEntry.client.getAddrStr(), ackEntry.serviceKey);
+        }
+    }
+
     private static String getACKKey(String host, int port, long lastRefTime) {
         return StringUtils.strip(host) + "," + port + "," + lastRefTime;
     }
@@ -608,8 +947,9 @@ public class PushService implements ApplicationContextAware, ApplicationListener
 
         @Override
         public void run() {
-            if (ackMap.containsKey(ackEntry.key)) {
+            if (ackMap.get(ackEntry.key) == ackEntry) {
                 Loggers.PUSH.info("retry to push data, key: " + ackEntry.key);
+                MetricsMonitor.getPushFlowCounter("retransmit").increment();
                 udpPush(ackEntry);
             }
         }
@@ -626,36 +966,49 @@ public class PushService implements ApplicationContextAware, ApplicationListener
                     udpSocket.receive(packet);
 
                     String json = new String(packet.getData(), 0, packet.getLength(), Charset.forName("UTF-8")).trim();
-                    AckPacket ackPacket = JSON.parseObject(json, AckPacket.class);
-
-                    InetSocketAddress socketAddress = (InetSocketAddress) packet.getSocketAddress();
-                    String ip = socketAddress.getAddress().getHostAddress();
-                    int port = socketAddress.getPort();
+                    ack((InetSocketAddress) packet.getSocketAddress(), json);
+                } catch (Throwable e) {
+                    Loggers.PUSH.error("[NACOS-PUSH] error while receiving ack data", e);
+                }
+            }
+        }
 
-                    if (System.nanoTime() - ackPacket.lastRefTime > ACK_TIMEOUT_NANOS) {
-                        Loggers.PUSH.warn("ack takes too long from {} ack json: {}", packet.getSocketAddress(), json);
-                    }
+        /**
+         * Handle an ack received from a client, through UDP or a push channel.
+         */
+        public static void ack(InetSocketAddress socketAddress, String json) {
+            AckPacket ackPacket = JSON.parseObject(json, AckPacket.class);
 
-                    String ackKey = getACKKey(ip, port, ackPacket.lastRefTime);
-                    AckEntry ackEntry = ackMap.remove(ackKey);
-                    if (ackEntry == null) {
-                        throw new IllegalStateException("unable to find ackEntry for key: " + ackKey
-                            + ", ack json: " + json);
-                    }
+            String ip = socketAddress.getAddress().getHostAddress();
+            int port = socketAddress.getPort();
 
-                    long pushCost = System.currentTimeMillis() - udpSendTimeMap.get(ackKey);
+            if (System.nanoTime() - ackPacket.lastRefTime > ACK_TIMEOUT_NANOS) {
+                Loggers.PUSH.warn("ack takes too long from {} ack json: {}", socketAddress, json);
+            }
 
-                    Loggers.PUSH.info("received ack: {} from: {}:, cost: {} ms, unacked: {}, total push: {}",
-                        json, ip, port, pushCost, ackMap.size(), totalPush);
+            String ackKey = getACKKey(ip, port, ackPacket.lastRefTime);
+            AckEntry ackEntry = ackMap.remove(ackKey);
+            if (ackEntry == null) {
+                throw new IllegalStateException("unable to find ackEntry for key: " + ackKey
+                    + ", ack json: " + json);
+            }
 
-                    pushCostMap.put(ackKey, pushCost);
+            long pushCost = System.currentTimeMillis() - udpSendTimeMap.get(ackKey);
 
-                    udpSendTimeMap.remove(ackKey);
+            Loggers.PUSH.info("received ack: {} from: {}:, cost: {} ms, unacked: {}, total push: {}",
+                json, ip, port, pushCost, ackMap.size(), totalPush);
 
-                } catch (Throwable e) {
-                    Loggers.PUSH.error("[NACOS-PUSH] error while receiving ack data", e);
-                }
+            pushCostMap.put(ackKey, pushCost);
+            if (ackEntry.client != null) {
+                // only the round trip of a push sent once is a reliable sample
+                ackTracker.onAck(ackEntry.client.getAddrStr(), ackEntry.serviceKey,
+                    ackEntry.getRetryTimes() == 1 ? pushCost : -1L);
+                // a client failing to apply a delta acks with another type and gets a full push next time
+                ackEntry.client.setAckedVersion(PUSH_ACK_TYPE.equals(ackPacket.type) ? ackEntry.hostsVersion : 0L);
             }
+            MetricsMonitor.getPushLatencyTimer("ack").record(pushCost, TimeUnit.MILLISECONDS);
+
+            udpSendTimeMap.remove(ackKey);
         }
 
         public static class AckEntry {
@@ -677,6 +1030,10 @@ public class PushService implements ApplicationContextAware, ApplicationListener
             public DatagramPacket origin;
             private AtomicInteger retryTimes = new AtomicInteger(0);
             public Map<String, Object> data;
+            public PushClient client;
+            public String serviceKey;
+            public long hostsVersion;
+            public long firstSendMillis;
         }
 
         public static class AckPacket {
@@ -0,0 +1,380 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.nacos.naming.push;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.nacos.api.common.Constants;
+import com.alibaba.nacos.naming.boot.RunningConfig;
+import com.alibaba.nacos.naming.controllers.InstanceController;
+import com.alibaba.nacos.naming.misc.GlobalConfig;
+import com.alibaba.nacos.naming.misc.Loggers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Push channel for subscribers which can not receive UDP pushes.
+ * <p>
+ * A client keeps one TCP connection to the port of this server plus {@code nacos.naming.push.tcp.portOffset},
+ * subscribes all its services over it and receives the same push packets as through UDP, each one framed by
+ * its length as a 4 bytes int. Frames sent by the client are JSON: {@code subscribe}, {@code ping} and the
+ * acks of the pushes. Every {@code subscribe} is answered by a {@code subscribe-result} frame telling whether the
+ * service is pushed on the connection. All connections are served by a single selector thread.
+ *
+ * @author nacos
+ */
+@Component
+public class PushTcpServer {
+
+    private static final int FRAME_HEADER_BYTES = 4;
+
+    private static final int MAX_FRAME_BYTES = 10 * 1024 * 1024;
+
+    private static final long MAX_PENDING_BYTES = 16 * 1024 * 1024;
+
+    private static final int READ_BUFFER_BYTES = 4096;
+
+    private static final long SELECT_TIMEOUT_MILLIS = 1000L;
+
+    private static final String SUBSCRIBE_TYPE = "subscribe";
+
+    private static final String SUBSCRIBE_RESULT_TYPE = "subscribe-result";
+
+    private static final String PING_TYPE = "ping";
+
+    private static final String ACK_TYPE_SUFFIX = "-ack";
+
+    @Autowired
+    private GlobalConfig globalConfig;
+
+    @Autowired
+    private PushService pushService;
+
+    @Lazy
+    @Autowired
+    private InstanceController instanceController;
+
+    private Selector selector;
+
+    private final Map<SocketChannel, Connection> connections = new ConcurrentHashMap<>();
+
+    private final Queue<Connection> writable = new ConcurrentLinkedQueue<>();
+
+    @PostConstruct
+    public void init() {
+        int offset = globalConfig.getPushTcpPortOffset();
+        if (offset <= 0) {
+            return;
+        }
+
+        int port = RunningConfig.getServerPort() + offset;
+        try {
+            selector = Selector.open();
+            ServerSocketChannel serverChannel = ServerSocketChannel.open();
+            serverChannel.configureBlocking(false);
+            serverChannel.socket().setReuseAddress(true);
+            serverChannel.bind(new InetSocketAddress(port), 1024);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            Loggers.PUSH.error("[NACOS-PUSH] failed to open push channel on port {}", port, e);
+            return;
+        }
+
+        new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r);
+                thread.setDaemon(true);
+                thread.setName("com.alibaba.nacos.naming.push.channel");
+                return thread;
+            }
+        }).execute(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        });
+
+        Loggers.PUSH.info("[NACOS-PUSH] push channel listening on port {}", port);
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    private void loop() {
+        long lastIdleCheck = System.currentTimeMillis();
+        while (true) {
+            try {
+                selector.select(SELECT_TIMEOUT_MILLIS);
+
+                Connection connection;
+                while ((connection = writable.poll()) != null) {
+                    if (connection.key.isValid()) {
+                        connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    }
+                }
+
+                Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    SelectionKey key = iterator.next();
+                    iterator.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept((ServerSocketChannel) key.channel());
+                        continue;
+                    }
+                    Connection conn = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            conn.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            conn.write();
+                        }
+                    } catch (Exception e) {
+                        Loggers.PUSH.warn("[NACOS-PUSH] push channel of {} is broken: {}", conn.remoteAddress,
+                            e.getMessage());
+                        conn.close();
+                    }
+                }
+
+                long now = System.currentTimeMillis();
+                if (now - lastIdleCheck >= SELECT_TIMEOUT_MILLIS) {
+                    lastIdleCheck = now;
+                    closeIdleConnections(now);
+                }
+            } catch (Throwable e) {
+                Loggers.PUSH.error("[NACOS-PUSH] error in push channel loop", e);
+            }
+        }
+    }
+
+    private void accept(ServerSocketChannel serverChannel) throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        channel.socket().setKeepAlive(true);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        connections.put(channel, connection);
+    }
+
+    private void closeIdleConnections(long now) {
+        long idleTimeout = globalConfig.getPushTcpIdleTimeoutMillis();
+        for (Connection connection : connections.values()) {
+            if (now - connection.lastActiveMillis > idleTimeout) {
+                Loggers.PUSH.info("[NACOS-PUSH] close idle push channel of {}", connection.remoteAddress);
+                connection.close();
+            }
+        }
+    }
+
+    private void handleFrame(Connection connection, byte[] frame) {
+        String json = new String(frame, StandardCharsets.UTF_8);
+        JSONObject packet = JSON.parseObject(json);
+        String type = packet.getString("type");
+
+        if (SUBSCRIBE_TYPE.equals(type)) {
+            String agent = packet.getString("agent");
+            String serviceName = packet.getString("serviceName");
+            String clusters = packet.getString("clusters") == null ? "" : packet.getString("clusters");
+            boolean accepted = pushService.canEnablePush(agent);
+            if (accepted) {
+                String namespaceId = packet.getString("namespaceId");
+                pushService.addClient(connection,
+                    namespaceId == null ? Constants.DEFAULT_NAMESPACE_ID : namespaceId,
+                    serviceName,
+                    clusters,
+                    agent,
+                    instanceController.getPushDataSource(),
+                    packet.getString("tenant"),
+                    packet.getString("app"));
+            }
+
+            JSONObject result = new JSONObject();
+            result.put("type", SUBSCRIBE_RESULT_TYPE);
+            result.put("serviceName", serviceName);
+            result.put("clusters", clusters);
+            result.put("accepted", accepted);
+            connection.send(result.toJSONString().getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+
+        if (PING_TYPE.equals(type)) {
+            return;
+        }
+
+        if (type != null && type.endsWith(ACK_TYPE_SUFFIX)) {
+            PushService.Receiver.ack(connection.remoteAddress, json);
+            return;
+        }
+
+        Loggers.PUSH.warn("[NACOS-PUSH] unknown frame from {}: {}", connection.remoteAddress, json);
+    }
+
+    public class Connection {
+
+        private final SocketChannel channel;
+
+        private final InetSocketAddress remoteAddress;
+
+        private SelectionKey key;
+
+        private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+
+        private final Queue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<>();
+
+        private final AtomicLong pendingBytes = new AtomicLong();
+
+        private volatile boolean open = true;
+
+        private volatile long lastActiveMillis = System.currentTimeMillis();
+
+        private final Set<PushService.PushClient> subscriptions = ConcurrentHashMap.newKeySet();
+
+        Connection(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.remoteAddress = (InetSocketAddress) channel.getRemoteAddress();
+        }
+
+        public InetSocketAddress getRemoteAddress() {
+            return remoteAddress;
+        }
+
+        public boolean isOpen() {
+            return open;
+        }
+
+        public void addSubscription(PushService.PushClient client) {
+            subscriptions.add(client);
+        }
+
+        /**
+         * Queue a frame to the client, called by any thread.
+         *
+         * @return false if the connection is closed or too much data is waiting to be written
+         */
+        public boolean send(byte[] data) {
+            if (!open || pendingBytes.get() > MAX_PENDING_BYTES) {
+                return false;
+            }
+            ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_BYTES + data.length);
+            frame.putInt(data.length).put(data);
+            frame.flip();
+
+            pendingBytes.addAndGet(frame.remaining());
+            writeQueue.offer(frame);
+            writable.offer(this);
+            selector.wakeup();
+            return true;
+        }
+
+        private void read() throws IOException {
+            int read = channel.read(readBuffer);
+            if (read < 0) {
+                close();
+                return;
+            }
+            lastActiveMillis = System.currentTimeMillis();
+
+            readBuffer.flip();
+            while (readBuffer.remaining() >= FRAME_HEADER_BYTES) {
+                int length = readBuffer.getInt(readBuffer.position());
+                if (length < 0 || length > MAX_FRAME_BYTES) {
+                    throw new IOException("illegal frame length: " + length);
+                }
+                if (readBuffer.remaining() < FRAME_HEADER_BYTES + length) {
+                    break;
+                }
+                readBuffer.getInt();
+                byte[] frame = new byte[length];
+                readBuffer.get(frame);
+                try {
+                    handleFrame(this, frame);
+                } catch (Exception e) {
+                    Loggers.PUSH.warn("[NACOS-PUSH] failed to handle frame from {}", remoteAddress, e);
+                }
+            }
+            readBuffer.compact();
+
+            // make room for a frame larger than the buffer
+            if (!readBuffer.hasRemaining()) {
+                ByteBuffer larger = ByteBuffer.allocate(readBuffer.capacity() * 2);
+                readBuffer.flip();
+                larger.put(readBuffer);
+                readBuffer = larger;
+            }
+        }
+
+        private void write() throws IOException {
+            ByteBuffer frame;
+            while ((frame = writeQueue.peek()) != null) {
+                int written = channel.write(frame);
+                pendingBytes.addAndGet(-written);
+                if (frame.hasRemaining()) {
+                    return;
+                }
+                writeQueue.poll();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            if (!writeQueue.isEmpty()) {
+                // a frame queued after the queue was drained
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+
+        private void close() {
+            open = false;
+            connections.remove(channel);
+            PushService.removeClients(subscriptions);
+            writeQueue.clear();
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Loggers.PUSH.debug("[NACOS-PUSH] failed to close push channel of {}", remoteAddress, e);
+            }
+        }
+    }
+}
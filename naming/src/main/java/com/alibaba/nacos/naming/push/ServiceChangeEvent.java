@@ -26,12 +26,26 @@ public class ServiceChangeEvent extends ApplicationEvent {
 
     private Service service;
 
+    /**
+     * Whether the changes were already merged by the caller, the push is then not debounced again.
+     */
+    private boolean merged;
+
     public ServiceChangeEvent(Object source, Service service) {
+        this(source, service, false);
+    }
+
+    public ServiceChangeEvent(Object source, Service service, boolean merged) {
         super(source);
         this.service = service;
+        this.merged = merged;
     }
 
     public Service getService() {
         return service;
     }
+
+    public boolean isMerged() {
+        return merged;
+    }
 }
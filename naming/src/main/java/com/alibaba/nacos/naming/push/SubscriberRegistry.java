@@ -0,0 +1,262 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.nacos.naming.push;
+
+import com.alibaba.nacos.naming.misc.Loggers;
+import com.alibaba.nacos.naming.misc.UtilsAndCommons;
+import com.alibaba.nacos.naming.monitor.MetricsMonitor;
+
+import java.net.Inet4Address;
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Subscribers of all services.
+ * <p>
+ * Clients are identified by a compact {@link ClientKey} instead of a descriptive string, and the strings they hold
+ * are interned since they repeat across subscriptions. Polling clients are kept in buckets by the second they expire
+ * at, a refresh moves a client to a later bucket, so evicting zombies only visits the buckets which are due instead
+ * of all subscribers. Clients subscribed through a push channel are removed when the channel is closed.
+ *
+ * @author nacos
+ */
+public class SubscriberRegistry {
+
+    private static final long BUCKET_MILLIS = 1000L;
+
+    private final ConcurrentMap<String, ConcurrentMap<ClientKey, PushService.PushClient>> services
+        = new ConcurrentHashMap<>();
+
+    private final ConcurrentSkipListMap<Long, Set<PushService.PushClient>> expiries = new ConcurrentSkipListMap<>();
+
+    private final ConcurrentMap<String, AtomicInteger> namespaceCounts = new ConcurrentHashMap<>();
+
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    public static String intern(String value) {
+        return UtilsAndCommons.intern(value);
+    }
+
+    /**
+     * Add a client, or refresh it if it already subscribes the service.
+     */
+    public void add(PushService.PushClient client) {
+        String serviceKey = client.getServiceKey();
+        while (true) {
+            ConcurrentMap<ClientKey, PushService.PushClient> clients = services.get(serviceKey);
+            if (clients == null) {
+                services.putIfAbsent(serviceKey, new ConcurrentHashMap<ClientKey, PushService.PushClient>(16));
+                clients = services.get(serviceKey);
+            }
+
+            PushService.PushClient oldClient = clients.putIfAbsent(client.getKey(), client);
+            if (oldClient != null) {
+                refresh(oldClient);
+                return;
+            }
+
+            // the map may have been dropped as empty in the meantime
+            if (services.get(serviceKey) != clients) {
+                clients.remove(client.getKey(), client);
+                continue;
+            }
+
+            subscriberCount.incrementAndGet();
+            getNamespaceCount(client.getNamespaceId()).incrementAndGet();
+            if (client.getConnection() == null) {
+                reschedule(client);
+            }
+            Loggers.PUSH.debug("client: {} added for serviceName: {}", client.getAddrStr(), client.getServiceName());
+            return;
+        }
+    }
+
+    public void refresh(PushService.PushClient client) {
+        client.refresh();
+        if (client.getConnection() == null) {
+            reschedule(client);
+        }
+    }
+
+    public void remove(PushService.PushClient client) {
+        String serviceKey = client.getServiceKey();
+        ConcurrentMap<ClientKey, PushService.PushClient> clients = services.get(serviceKey);
+        if (clients == null || !clients.remove(client.getKey(), client)) {
+            return;
+        }
+
+        subscriberCount.decrementAndGet();
+        getNamespaceCount(client.getNamespaceId()).decrementAndGet();
+        Set<PushService.PushClient> bucket = expiries.get(client.expireBucket);
+        if (bucket != null) {
+            bucket.remove(client);
+        }
+        if (clients.isEmpty()) {
+            services.remove(serviceKey, clients);
+        }
+    }
+
+    public void removeAll(Collection<PushService.PushClient> clients) {
+        for (PushService.PushClient client : clients) {
+            remove(client);
+        }
+    }
+
+    public Collection<PushService.PushClient> getClients(String serviceKey) {
+        ConcurrentMap<ClientKey, PushService.PushClient> clients = services.get(serviceKey);
+        if (clients == null) {
+            return Collections.emptyList();
+        }
+        return clients.values();
+    }
+
+    public boolean hasClients(String serviceKey) {
+        ConcurrentMap<ClientKey, PushService.PushClient> clients = services.get(serviceKey);
+        return clients != null && !clients.isEmpty();
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    public int getSubscribedServiceCount() {
+        return services.size();
+    }
+
+    /**
+     * Remove the clients which were not refreshed before they expired, only the buckets due are visited.
+     */
+    public void removeExpired(long now) {
+        ConcurrentNavigableMap<Long, Set<PushService.PushClient>> due = expiries.headMap(now / BUCKET_MILLIS, true);
+        for (Map.Entry<Long, Set<PushService.PushClient>> entry : due.entrySet()) {
+            expiries.remove(entry.getKey());
+            for (PushService.PushClient client : entry.getValue()) {
+                if (client.expireBucket != entry.getKey()) {
+                    // moved to a later bucket by a refresh
+                    continue;
+                }
+                if (client.zombie()) {
+                    remove(client);
+                } else {
+                    // the cache time of the service may have been changed
+                    reschedule(client);
+                }
+            }
+        }
+
+        MetricsMonitor.getSubscriberCountMonitor().set(subscriberCount.get());
+        MetricsMonitor.getSubscribedServiceCountMonitor().set(services.size());
+        for (Map.Entry<String, AtomicInteger> entry : namespaceCounts.entrySet()) {
+            MetricsMonitor.getNamespaceSubscriberCountMonitor(entry.getKey()).set(entry.getValue().get());
+        }
+    }
+
+    private void reschedule(PushService.PushClient client) {
+        // round up so a client is never visited before it expires
+        long bucket = (client.getExpireMillis() + BUCKET_MILLIS - 1) / BUCKET_MILLIS;
+        long oldBucket = client.expireBucket;
+        if (bucket == oldBucket) {
+            return;
+        }
+
+        Set<PushService.PushClient> clients = expiries.get(bucket);
+        if (clients == null) {
+            expiries.putIfAbsent(bucket, ConcurrentHashMap.<PushService.PushClient>newKeySet());
+            clients = expiries.get(bucket);
+        }
+        client.expireBucket = bucket;
+        clients.add(client);
+
+        Set<PushService.PushClient> oldClients = expiries.get(oldBucket);
+        if (oldClients != null) {
+            oldClients.remove(client);
+        }
+    }
+
+    private AtomicInteger getNamespaceCount(String namespaceId) {
+        AtomicInteger count = namespaceCounts.get(namespaceId);
+        if (count == null) {
+            namespaceCounts.putIfAbsent(namespaceId, new AtomicInteger());
+            count = namespaceCounts.get(namespaceId);
+        }
+        return count;
+    }
+
+    /**
+     * Identity of a subscriber within a service, an IPv4 address and port packed in a long.
+     */
+    public static final class ClientKey {
+
+        private final String clusters;
+
+        private final String agent;
+
+        private final long packedAddr;
+
+        /**
+         * Only set for addresses which can not be packed.
+         */
+        private final InetSocketAddress socketAddr;
+
+        public ClientKey(String clusters, String agent, InetSocketAddress socketAddr) {
+            this.clusters = intern(clusters);
+            this.agent = intern(agent);
+            if (socketAddr.getAddress() instanceof Inet4Address) {
+                byte[] ip = socketAddr.getAddress().getAddress();
+                long addr = 0;
+                for (byte b : ip) {
+                    addr = (addr << 8) | (b & 0xFF);
+                }
+                this.packedAddr = (addr << 16) | socketAddr.getPort();
+                this.socketAddr = null;
+            } else {
+                this.packedAddr = socketAddr.getPort();
+                this.socketAddr = socketAddr;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Long.hashCode(packedAddr);
+            result = 31 * result + (clusters == null ? 0 : clusters.hashCode());
+            result = 31 * result + (agent == null ? 0 : agent.hashCode());
+            return 31 * result + (socketAddr == null ? 0 : socketAddr.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ClientKey)) {
+                return false;
+            }
+            ClientKey other = (ClientKey) obj;
+            return packedAddr == other.packedAddr
+                && (clusters == null ? other.clusters == null : clusters.equals(other.clusters))
+                && (agent == null ? other.agent == null : agent.equals(other.agent))
+                && (socketAddr == null ? other.socketAddr == null : socketAddr.equals(other.socketAddr));
+        }
+    }
+}
@@ -16,6 +16,7 @@
 package com.alibaba.nacos.naming.selector;
 
 
+import com.alibaba.nacos.api.cmdb.pojo.Entity;
 import com.alibaba.nacos.api.cmdb.pojo.PreservedEntityTypes;
 import com.alibaba.nacos.api.selector.ExpressionSelector;
 import com.alibaba.nacos.api.selector.SelectorType;
@@ -23,13 +24,18 @@ import com.alibaba.nacos.cmdb.service.CmdbReader;
 import com.alibaba.nacos.naming.boot.SpringContext;
 import com.alibaba.nacos.naming.core.Instance;
 import com.alibaba.nacos.naming.exception.NacosException;
+import com.alibaba.nacos.naming.misc.Loggers;
 
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A selector to implement a so called same-label-prior rule for service discovery.
@@ -65,10 +71,6 @@ public class LabelSelector extends ExpressionSelector implements Selector {
      */
     private Set<String> labels;
 
-    private static final Set<String> SUPPORTED_INNER_CONNCETORS = new HashSet<>();
-
-    private static final Set<String> SUPPORTED_OUTER_CONNCETORS = new HashSet<>();
-
     private static final String CONSUMER_PREFIX = "CONSUMER.label.";
 
     private static final String PROVIDER_PREFIX = "PROVIDER.label.";
@@ -77,10 +79,19 @@ public class LabelSelector extends ExpressionSelector implements Selector {
 
     private static final char CAND = '&';
 
-    static {
-        SUPPORTED_INNER_CONNCETORS.add(String.valueOf(CEQUAL));
-        SUPPORTED_OUTER_CONNCETORS.add(String.valueOf(CAND));
-    }
+    private static final String CACHE_KEY_SEPARATOR = "\u0001";
+
+    private static final int MAX_CACHED_SELECTIONS = 1024;
+
+    /**
+     * The expression compiled once, see {@link SelectorExpression}.
+     */
+    private transient volatile SelectorExpression compiled;
+
+    /**
+     * Selections of the current version of the providers, by the label values of the consumers.
+     */
+    private transient volatile SelectionCache cache;
 
     public Set<String> getLabels() {
         return labels;
@@ -88,6 +99,15 @@ public class LabelSelector extends ExpressionSelector implements Selector {
 
     public void setLabels(Set<String> labels) {
         this.labels = labels;
+        this.compiled = null;
+        this.cache = null;
+    }
+
+    @Override
+    public void setExpression(String expression) {
+        super.setExpression(expression);
+        this.compiled = null;
+        this.cache = null;
     }
 
     public LabelSelector() {
@@ -102,25 +122,140 @@ public class LabelSelector extends ExpressionSelector implements Selector {
         return ExpressionInterpreter.parseExpression(expression);
     }
 
+    /**
+     * @return the compiled expression, null if nothing to select on
+     */
+    private SelectorExpression getCompiled() {
+        SelectorExpression current = compiled;
+        if (current != null) {
+            return current;
+        }
+
+        String expression = getExpression();
+        if (StringUtils.isBlank(expression)) {
+            // selectors stored before the expression was kept only have the labels of an equality chain
+            if (labels == null || labels.isEmpty()) {
+                return null;
+            }
+            List<String> terms = new ArrayList<>();
+            for (String label : labels) {
+                terms.add(CONSUMER_PREFIX + label + CEQUAL + PROVIDER_PREFIX + label);
+            }
+            expression = StringUtils.join(terms, CAND);
+        }
+
+        try {
+            current = SelectorExpression.compile(expression);
+        } catch (NacosException e) {
+            Loggers.SRV_LOG.warn("[SELECTOR] invalid label expression: {}, {}", expression, e.getErrorMsg());
+            return null;
+        }
+        compiled = current;
+        return current;
+    }
 
     @Override
     public List<Instance> select(String consumer, List<Instance> providers) {
 
-        if (labels.isEmpty()) {
+        SelectorExpression expression = getCompiled();
+        if (expression == null) {
             return providers;
         }
 
-        List<Instance> instanceList = new ArrayList<>();
-        for (Instance instance : providers) {
+        CmdbReader cmdbReader = getCmdbReader();
+        return doSelect(cmdbReader, expression, getConsumerLabels(cmdbReader, expression, consumer), providers);
+    }
 
-            boolean matched = true;
-            for (String labelName : getLabels()) {
+    @Override
+    public List<Instance> select(String consumer, List<Instance> providers, String providersVersion) {
+
+        SelectorExpression expression = getCompiled();
+        if (expression == null) {
+            return providers;
+        }
 
-                String consumerLabelValue = getCmdbReader().queryLabel(consumer, PreservedEntityTypes.ip.name(), labelName);
+        CmdbReader cmdbReader = getCmdbReader();
+        SelectionCache current = cache;
+        long cmdbVersion = cmdbReader.getVersion();
+        if (current == null || current.cmdbVersion != cmdbVersion
+            || !current.providersVersion.equals(providersVersion)) {
+            current = new SelectionCache(providersVersion, cmdbVersion);
+            cache = current;
+        }
 
-                if (StringUtils.isNotBlank(consumerLabelValue) &&
-                        !StringUtils.equals(consumerLabelValue,
-                            getCmdbReader().queryLabel(instance.getIp(), PreservedEntityTypes.ip.name(), labelName))) {
+        // consumers with the same labels get the same providers
+        String[] consumerLabels = getConsumerLabels(cmdbReader, expression, consumer);
+        String key = StringUtils.join(consumerLabels, CACHE_KEY_SEPARATOR);
+        List<Instance> selected = current.selections.get(key);
+        if (selected != null) {
+            return selected;
+        }
+
+        selected = Collections.unmodifiableList(doSelect(cmdbReader, expression, consumerLabels, providers));
+        if (current.selections.size() >= MAX_CACHED_SELECTIONS) {
+            current.selections.clear();
+        }
+        current.selections.put(key, selected);
+        return selected;
+    }
+
+    /**
+     * Values of the consumer labels the expression refers to, in the order of
+     * {@link SelectorExpression#getConsumerLabels()}.
+     */
+    private String[] getConsumerLabels(CmdbReader cmdbReader, SelectorExpression expression, String consumer) {
+        List<String> labelList = expression.getConsumerLabels();
+        String[] values = new String[labelList.size()];
+        Entity entity = cmdbReader.queryEntity(consumer, PreservedEntityTypes.ip.name());
+        if (entity == null || entity.getLabels() == null) {
+            return values;
+        }
+        for (int i = 0; i < values.length; i++) {
+            values[i] = entity.getLabels().get(labelList.get(i));
+        }
+        return values;
+    }
+
+    private List<Instance> doSelect(CmdbReader cmdbReader, SelectorExpression expression, String[] consumerLabels,
+                                    List<Instance> providers) {
+
+        List<String> equalLabels = expression.getEqualLabels();
+        List<Instance> instanceList = equalLabels != null
+            ? selectByIndex(cmdbReader, expression, consumerLabels, providers)
+            : selectByExpression(cmdbReader, expression, consumerLabels, providers);
+
+        if (instanceList.isEmpty()) {
+            return providers;
+        }
+
+        return instanceList;
+    }
+
+    /**
+     * Providers must have the same value as the consumer for every label the consumer has, served by the label
+     * index of the CMDB.
+     */
+    private List<Instance> selectByIndex(CmdbReader cmdbReader, SelectorExpression expression,
+                                         String[] consumerLabels, List<Instance> providers) {
+
+        List<Set<String>> matchedIps = new ArrayList<>();
+        List<String> labelList = expression.getConsumerLabels();
+        for (int i = 0; i < consumerLabels.length; i++) {
+            if (StringUtils.isNotBlank(consumerLabels[i])) {
+                matchedIps.add(cmdbReader.queryEntityNamesByLabel(PreservedEntityTypes.ip.name(),
+                    labelList.get(i), consumerLabels[i]));
+            }
+        }
+
+        if (matchedIps.isEmpty()) {
+            return providers;
+        }
+
+        List<Instance> instanceList = new ArrayList<>();
+        for (Instance instance : providers) {
+            boolean matched = true;
+            for (Set<String> ips : matchedIps) {
+                if (!ips.contains(instance.getIp())) {
                     matched = false;
                     break;
                 }
@@ -129,29 +264,77 @@ public class LabelSelector extends ExpressionSelector implements Selector {
                 instanceList.add(instance);
             }
         }
+        return instanceList;
+    }
 
-        if (instanceList.isEmpty()) {
-            return providers;
+    private List<Instance> selectByExpression(final CmdbReader cmdbReader, SelectorExpression expression,
+                                              String[] consumerLabels, List<Instance> providers) {
+
+        final Map<String, String> consumerLabelMap = new HashMap<>(consumerLabels.length * 2);
+        List<String> labelList = expression.getConsumerLabels();
+        for (int i = 0; i < consumerLabels.length; i++) {
+            consumerLabelMap.put(labelList.get(i), consumerLabels[i]);
         }
 
+        SelectorExpression.Context context = new SelectorExpression.Context() {
+
+            private Instance lastProvider;
+
+            private Map<String, String> lastProviderLabels;
+
+            @Override
+            public String getConsumerLabel(String name) {
+                return consumerLabelMap.get(name);
+            }
+
+            @Override
+            public String getProviderLabel(Instance provider, String name) {
+                // one lookup of the entity for all labels of a provider
+                if (provider != lastProvider) {
+                    Entity entity = cmdbReader.queryEntity(provider.getIp(), PreservedEntityTypes.ip.name());
+                    lastProvider = provider;
+                    lastProviderLabels = entity == null ? null : entity.getLabels();
+                }
+                return lastProviderLabels == null ? null : lastProviderLabels.get(name);
+            }
+        };
+
+        List<Instance> instanceList = new ArrayList<>();
+        for (Instance instance : providers) {
+            if (expression.test(context, instance)) {
+                instanceList.add(instance);
+            }
+        }
         return instanceList;
     }
 
+    private static class SelectionCache {
+
+        private final String providersVersion;
+
+        private final long cmdbVersion;
+
+        private final Map<String, List<Instance>> selections = new ConcurrentHashMap<>();
+
+        SelectionCache(String providersVersion, long cmdbVersion) {
+            this.providersVersion = providersVersion;
+            this.cmdbVersion = cmdbVersion;
+        }
+    }
+
     /**
      * Expression interpreter for label selector.
-     * <p>
-     * For now it supports very limited set of syntax rules.
      */
     public static class ExpressionInterpreter {
 
         /**
          * Parse the label expression.
          * <p>
-         * Currently we support the very single type of expression:
+         * Besides the equality chain below, boolean operators, IN-lists, constants and provider metadata are
+         * supported, see {@link SelectorExpression}:
          * <pre>
          *     consumer.labelA = provider.labelA & consumer.labelB = provider.labelB
          * </pre>
-         * Later we will implement a interpreter to parse this expression in a standard LL parser way.
          *
          * @param expression the label expression to parse
          * @return collection of labels
@@ -162,36 +345,7 @@ public class LabelSelector extends ExpressionSelector implements Selector {
                 return new HashSet<>();
             }
 
-            expression = StringUtils.deleteWhitespace(expression);
-
-            List<String> elements = getTerms(expression);
-            Set<String> gotLabels = new HashSet<>();
-            int index = 0;
-
-            index = checkInnerSyntax(elements, index);
-
-            if (index == -1) {
-                throw new NacosException(NacosException.INVALID_PARAM, "parse expression failed!");
-            }
-
-            gotLabels.add(elements.get(index++).split(PROVIDER_PREFIX)[1]);
-
-            while (index < elements.size()) {
-
-                index = checkOuterSyntax(elements, index);
-
-                if (index >= elements.size()) {
-                    return gotLabels;
-                }
-
-                if (index == -1) {
-                    throw new NacosException(NacosException.INVALID_PARAM, "parse expression failed!");
-                }
-
-                gotLabels.add(elements.get(index++).split(PROVIDER_PREFIX)[1]);
-            }
-
-            return gotLabels;
+            return new HashSet<>(SelectorExpression.compile(expression).getLabels());
         }
 
         public static List<String> getTerms(String expression) {
@@ -219,70 +373,5 @@ public class LabelSelector extends ExpressionSelector implements Selector {
 
             return terms;
         }
-
-        private static int skipEmpty(List<String> elements, int start) {
-            while (start < elements.size() && StringUtils.isBlank(elements.get(start))) {
-                start++;
-            }
-            return start;
-        }
-
-        private static int checkOuterSyntax(List<String> elements, int start) {
-
-            int index = start;
-
-            index = skipEmpty(elements, index);
-            if (index >= elements.size()) {
-                return index;
-            }
-
-            if (!SUPPORTED_OUTER_CONNCETORS.contains(elements.get(index++))) {
-                return -1;
-            }
-
-            return checkInnerSyntax(elements, index);
-        }
-
-        private static int checkInnerSyntax(List<String> elements, int start) {
-
-            int index = start;
-
-            index = skipEmpty(elements, index);
-            if (index >= elements.size()) {
-                return -1;
-            }
-
-            if (!elements.get(index).startsWith(CONSUMER_PREFIX)) {
-                return -1;
-            }
-
-            String labelConsumer = elements.get(index++).split(CONSUMER_PREFIX)[1];
-
-            index = skipEmpty(elements, index);
-            if (index >= elements.size()) {
-                return -1;
-            }
-
-            if (!SUPPORTED_INNER_CONNCETORS.contains(elements.get(index++))) {
-                return -1;
-            }
-
-            index = skipEmpty(elements, index);
-            if (index >= elements.size()) {
-                return -1;
-            }
-
-            if (!elements.get(index).startsWith(PROVIDER_PREFIX)) {
-                return -1;
-            }
-
-            String labelProvider = elements.get(index).split(PROVIDER_PREFIX)[1];
-
-            if (!labelConsumer.equals(labelProvider)) {
-                return -1;
-            }
-
-            return index;
-        }
     }
 }
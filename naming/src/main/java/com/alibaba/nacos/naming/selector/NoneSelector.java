@@ -31,4 +31,9 @@ public class NoneSelector extends com.alibaba.nacos.api.selector.NoneSelector im
     public List<Instance> select(String consumer, List<Instance> providers) {
         return providers;
     }
+
+    @Override
+    public List<Instance> select(String consumer, List<Instance> providers, String providersVersion) {
+        return providers;
+    }
 }
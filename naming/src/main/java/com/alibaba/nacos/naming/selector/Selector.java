@@ -53,4 +53,14 @@ public interface Selector {
      * @return selected provider addresses
      */
     List<Instance> select(String consumer, List<Instance> providers);
+
+    /**
+     * Select qualified instances from providers, the result may be reused while the providers keep the same version
+     *
+     * @param consumer         consumer address
+     * @param providers        candidate provider addresses
+     * @param providersVersion version of the candidate providers, changed whenever they change
+     * @return selected provider addresses, which must not be modified
+     */
+    List<Instance> select(String consumer, List<Instance> providers, String providersVersion);
 }
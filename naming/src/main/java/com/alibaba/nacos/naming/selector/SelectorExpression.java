@@ -0,0 +1,604 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.nacos.naming.selector;
+
+import com.alibaba.nacos.naming.core.Instance;
+import com.alibaba.nacos.naming.exception.NacosException;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Selector expression compiled into a tree of conditions.
+ * <p>
+ * Grammar, keywords are case insensitive:
+ * <pre>
+ *     expression := and ( ('|' | '||' | OR) and )*
+ *     and        := not ( ('&amp;' | '&amp;&amp;' | AND) not )*
+ *     not        := ('!' | NOT) not | '(' expression ')' | comparison
+ *     comparison := operand ('=' | '==' | '!=') operand
+ *                 | operand [NOT] IN '(' operand ( ',' operand )* ')'
+ *     operand    := CONSUMER.label.name | PROVIDER.label.name | PROVIDER.metadata.key | 'constant' | constant
+ * </pre>
+ * For example {@code CONSUMER.label.site = PROVIDER.label.site & PROVIDER.metadata.env IN ('prod', 'pre')}.
+ * <p>
+ * A consumer without a label is not restricted by the equalities on that label, as {@code =} with a missing
+ * consumer label is true. Operands are evaluated lazily and conditions short-circuit, so labels of a provider are
+ * only looked up when needed.
+ *
+ * @author nacos
+ */
+public class SelectorExpression {
+
+    private static final String CONSUMER_LABEL_PREFIX = "CONSUMER.label.";
+
+    private static final String PROVIDER_LABEL_PREFIX = "PROVIDER.label.";
+
+    private static final String PROVIDER_METADATA_PREFIX = "PROVIDER.metadata.";
+
+    private static final String CONSUMER_PREFIX = "CONSUMER.";
+
+    private static final String PROVIDER_PREFIX = "PROVIDER.";
+
+    private static final String LEFT_PARENTHESIS = "(";
+
+    private static final String RIGHT_PARENTHESIS = ")";
+
+    private static final String EQUAL = "=";
+
+    private static final String NOT_EQUAL = "!=";
+
+    private static final String COMMA = ",";
+
+    private static final String SYMBOL_NOT = "!";
+
+    private static final String SYMBOL_AND = "&";
+
+    private static final String SYMBOL_OR = "|";
+
+    private static final Set<String> SYMBOLS = new HashSet<>(Arrays.asList(LEFT_PARENTHESIS, RIGHT_PARENTHESIS,
+        EQUAL, COMMA, NOT_EQUAL, SYMBOL_NOT, SYMBOL_AND, SYMBOL_OR));
+
+    private static final String KEYWORD_AND = "AND";
+
+    private static final String KEYWORD_OR = "OR";
+
+    private static final String KEYWORD_NOT = "NOT";
+
+    private static final String KEYWORD_IN = "IN";
+
+    private final Condition condition;
+
+    private final Set<String> labels;
+
+    private final List<String> consumerLabels;
+
+    private final List<String> equalLabels;
+
+    private SelectorExpression(Condition condition, Set<String> labels, List<String> consumerLabels,
+                               List<String> equalLabels) {
+        this.condition = condition;
+        this.labels = labels;
+        this.consumerLabels = consumerLabels;
+        this.equalLabels = equalLabels;
+    }
+
+    public static SelectorExpression compile(String expression) throws NacosException {
+        if (StringUtils.isBlank(expression)) {
+            throw new NacosException(NacosException.INVALID_PARAM, "empty selector expression!");
+        }
+        Parser parser = new Parser(tokenize(expression));
+        Condition condition = parser.parseExpression();
+        if (parser.position < parser.tokens.size()) {
+            throw parser.error("unexpected " + parser.tokens.get(parser.position));
+        }
+        return new SelectorExpression(condition, Collections.unmodifiableSet(parser.labels),
+            Collections.unmodifiableList(new ArrayList<>(parser.consumerLabels)), getEqualLabels(condition));
+    }
+
+    public boolean test(Context context, Instance provider) {
+        return condition.test(context, provider);
+    }
+
+    /**
+     * @return names of all labels referenced
+     */
+    public Set<String> getLabels() {
+        return labels;
+    }
+
+    /**
+     * @return names of the consumer labels referenced, the selection only depends on these of the consumer
+     */
+    public List<String> getConsumerLabels() {
+        return consumerLabels;
+    }
+
+    /**
+     * @return the labels if the expression only requires equal labels of consumer and provider joined by AND,
+     * which can be served by an index, otherwise null
+     */
+    public List<String> getEqualLabels() {
+        return equalLabels;
+    }
+
+    private static List<String> getEqualLabels(Condition condition) {
+        List<String> result = new ArrayList<>();
+        List<Condition> pending = new ArrayList<>();
+        pending.add(condition);
+        while (!pending.isEmpty()) {
+            Condition current = pending.remove(pending.size() - 1);
+            if (current instanceof And) {
+                pending.add(((And) current).left);
+                pending.add(((And) current).right);
+                continue;
+            }
+            if (!(current instanceof Compare) || ((Compare) current).negate) {
+                return null;
+            }
+            Compare compare = (Compare) current;
+            boolean sameLabel = compare.left instanceof ConsumerLabel && compare.right instanceof ProviderLabel
+                && ((ConsumerLabel) compare.left).name.equals(((ProviderLabel) compare.right).name);
+            if (!sameLabel) {
+                return null;
+            }
+            result.add(((ConsumerLabel) compare.left).name);
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Values an expression is evaluated on.
+     */
+    public interface Context {
+
+        /**
+         * Get a label of the consumer.
+         *
+         * @param name label name
+         * @return label value of the consumer, null if absent
+         */
+        String getConsumerLabel(String name);
+
+        /**
+         * Get a label of a provider.
+         *
+         * @param provider provider instance
+         * @param name     label name
+         * @return label value of the provider, null if absent
+         */
+        String getProviderLabel(Instance provider, String name);
+    }
+
+    private interface Condition {
+
+        /**
+         * Evaluate the condition on a provider.
+         *
+         * @param context  values of the consumer and the labels of the provider
+         * @param provider provider instance
+         * @return true if the provider is selected
+         */
+        boolean test(Context context, Instance provider);
+    }
+
+    private interface Operand {
+
+        /**
+         * Evaluate the operand on a provider.
+         *
+         * @param context  values of the consumer and the labels of the provider
+         * @param provider provider instance
+         * @return value of the operand, null if absent
+         */
+        String value(Context context, Instance provider);
+    }
+
+    private static class And implements Condition {
+
+        private final Condition left;
+
+        private final Condition right;
+
+        And(Condition left, Condition right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(Context context, Instance provider) {
+            return left.test(context, provider) && right.test(context, provider);
+        }
+    }
+
+    private static class Or implements Condition {
+
+        private final Condition left;
+
+        private final Condition right;
+
+        Or(Condition left, Condition right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(Context context, Instance provider) {
+            return left.test(context, provider) || right.test(context, provider);
+        }
+    }
+
+    private static class Not implements Condition {
+
+        private final Condition condition;
+
+        Not(Condition condition) {
+            this.condition = condition;
+        }
+
+        @Override
+        public boolean test(Context context, Instance provider) {
+            return !condition.test(context, provider);
+        }
+    }
+
+    private static class Compare implements Condition {
+
+        private final Operand left;
+
+        private final Operand right;
+
+        private final boolean negate;
+
+        Compare(Operand left, Operand right, boolean negate) {
+            this.left = left;
+            this.right = right;
+            this.negate = negate;
+        }
+
+        @Override
+        public boolean test(Context context, Instance provider) {
+            String leftValue = left.value(context, provider);
+            if (!negate && leftValue == null && left instanceof ConsumerLabel) {
+                return true;
+            }
+            String rightValue = right.value(context, provider);
+            if (!negate && rightValue == null && right instanceof ConsumerLabel) {
+                return true;
+            }
+            boolean equal = leftValue == null ? rightValue == null : leftValue.equals(rightValue);
+            return equal != negate;
+        }
+    }
+
+    private static class In implements Condition {
+
+        private final Operand operand;
+
+        private final List<Operand> candidates;
+
+        /**
+         * Candidates all constant, matched with a set lookup.
+         */
+        private final Set<String> constants;
+
+        In(Operand operand, List<Operand> candidates) {
+            this.operand = operand;
+            this.candidates = candidates;
+            Set<String> values = new HashSet<>();
+            for (Operand candidate : candidates) {
+                if (!(candidate instanceof Constant)) {
+                    values = null;
+                    break;
+                }
+                values.add(((Constant) candidate).value);
+            }
+            this.constants = values;
+        }
+
+        @Override
+        public boolean test(Context context, Instance provider) {
+            String value = operand.value(context, provider);
+            if (value == null) {
+                return false;
+            }
+            if (constants != null) {
+                return constants.contains(value);
+            }
+            for (Operand candidate : candidates) {
+                if (value.equals(candidate.value(context, provider))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class ConsumerLabel implements Operand {
+
+        private final String name;
+
+        ConsumerLabel(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String value(Context context, Instance provider) {
+            String value = context.getConsumerLabel(name);
+            return StringUtils.isBlank(value) ? null : value;
+        }
+    }
+
+    private static class ProviderLabel implements Operand {
+
+        private final String name;
+
+        ProviderLabel(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String value(Context context, Instance provider) {
+            return context.getProviderLabel(provider, name);
+        }
+    }
+
+    private static class ProviderMetadata implements Operand {
+
+        private final String key;
+
+        ProviderMetadata(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public String value(Context context, Instance provider) {
+            return provider.getMetadata() == null ? null : provider.getMetadata().get(key);
+        }
+    }
+
+    private static class Constant implements Operand {
+
+        private final String value;
+
+        Constant(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public String value(Context context, Instance provider) {
+            return value;
+        }
+    }
+
+    private static class Token {
+
+        private final String text;
+
+        private final boolean quoted;
+
+        Token(String text, boolean quoted) {
+            this.text = text;
+            this.quoted = quoted;
+        }
+
+        boolean is(String symbol) {
+            return !quoted && text.equalsIgnoreCase(symbol);
+        }
+
+        @Override
+        public String toString() {
+            return quoted ? "'" + text + "'" : text;
+        }
+    }
+
+    private static List<Token> tokenize(String expression) throws NacosException {
+        List<Token> tokens = new ArrayList<>();
+        int index = 0;
+        int length = expression.length();
+        while (index < length) {
+            char ch = expression.charAt(index);
+            if (Character.isWhitespace(ch)) {
+                index++;
+                continue;
+            }
+
+            if (ch == '\'' || ch == '"') {
+                int end = expression.indexOf(ch, index + 1);
+                if (end < 0) {
+                    throw new NacosException(NacosException.INVALID_PARAM,
+                        "unterminated string in selector expression: " + expression);
+                }
+                tokens.add(new Token(expression.substring(index + 1, end), true));
+                index = end + 1;
+                continue;
+            }
+
+            if ("()=,".indexOf(ch) >= 0) {
+                // '==' is the same as '='
+                int end = ch == '=' && index + 1 < length && expression.charAt(index + 1) == '=' ? index + 2 : index + 1;
+                tokens.add(new Token(String.valueOf(ch), false));
+                index = end;
+                continue;
+            }
+
+            if (ch == '!') {
+                boolean notEqual = index + 1 < length && expression.charAt(index + 1) == '=';
+                tokens.add(new Token(notEqual ? NOT_EQUAL : SYMBOL_NOT, false));
+                index += notEqual ? 2 : 1;
+                continue;
+            }
+
+            if (ch == '&' || ch == '|') {
+                boolean doubled = index + 1 < length && expression.charAt(index + 1) == ch;
+                tokens.add(new Token(String.valueOf(ch), false));
+                index += doubled ? 2 : 1;
+                continue;
+            }
+
+            int end = index;
+            while (end < length && isWordChar(expression.charAt(end))) {
+                end++;
+            }
+            if (end == index) {
+                throw new NacosException(NacosException.INVALID_PARAM,
+                    "unexpected '" + ch + "' in selector expression: " + expression);
+            }
+            tokens.add(new Token(expression.substring(index, end), false));
+            index = end;
+        }
+        return tokens;
+    }
+
+    private static boolean isWordChar(char ch) {
+        return Character.isLetterOrDigit(ch) || "._-:/@#$%*+".indexOf(ch) >= 0;
+    }
+
+    /**
+     * Recursive descent parser of the grammar above.
+     */
+    private static class Parser {
+
+        private final List<Token> tokens;
+
+        private int position;
+
+        private final Set<String> labels = new HashSet<>();
+
+        private final Set<String> consumerLabels = new LinkedHashSet<>();
+
+        Parser(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        Condition parseExpression() throws NacosException {
+            Condition condition = parseAnd();
+            while (accept(SYMBOL_OR) || accept(KEYWORD_OR)) {
+                condition = new Or(condition, parseAnd());
+            }
+            return condition;
+        }
+
+        private Condition parseAnd() throws NacosException {
+            Condition condition = parseNot();
+            while (accept(SYMBOL_AND) || accept(KEYWORD_AND)) {
+                condition = new And(condition, parseNot());
+            }
+            return condition;
+        }
+
+        private Condition parseNot() throws NacosException {
+            if (accept(SYMBOL_NOT) || accept(KEYWORD_NOT)) {
+                return new Not(parseNot());
+            }
+            if (accept(LEFT_PARENTHESIS)) {
+                Condition condition = parseExpression();
+                expect(RIGHT_PARENTHESIS);
+                return condition;
+            }
+            return parseComparison();
+        }
+
+        private Condition parseComparison() throws NacosException {
+            Operand left = parseOperand();
+            if (accept(EQUAL)) {
+                return new Compare(left, parseOperand(), false);
+            }
+            if (accept(NOT_EQUAL)) {
+                return new Compare(left, parseOperand(), true);
+            }
+
+            boolean negate = accept(KEYWORD_NOT);
+            if (accept(KEYWORD_IN)) {
+                expect(LEFT_PARENTHESIS);
+                List<Operand> candidates = new ArrayList<>();
+                candidates.add(parseOperand());
+                while (accept(COMMA)) {
+                    candidates.add(parseOperand());
+                }
+                expect(RIGHT_PARENTHESIS);
+                Condition in = new In(left, candidates);
+                return negate ? new Not(in) : in;
+            }
+            throw error("expect comparison");
+        }
+
+        private Operand parseOperand() throws NacosException {
+            if (position >= tokens.size()) {
+                throw error("expect operand");
+            }
+            Token token = tokens.get(position++);
+            if (token.quoted) {
+                return new Constant(token.text);
+            }
+
+            String text = token.text;
+            if (text.startsWith(CONSUMER_LABEL_PREFIX) && text.length() > CONSUMER_LABEL_PREFIX.length()) {
+                String name = text.substring(CONSUMER_LABEL_PREFIX.length());
+                labels.add(name);
+                consumerLabels.add(name);
+                return new ConsumerLabel(name);
+            }
+            if (text.startsWith(PROVIDER_LABEL_PREFIX) && text.length() > PROVIDER_LABEL_PREFIX.length()) {
+                String name = text.substring(PROVIDER_LABEL_PREFIX.length());
+                labels.add(name);
+                return new ProviderLabel(name);
+            }
+            if (text.startsWith(PROVIDER_METADATA_PREFIX) && text.length() > PROVIDER_METADATA_PREFIX.length()) {
+                return new ProviderMetadata(text.substring(PROVIDER_METADATA_PREFIX.length()));
+            }
+
+            // a misspelled reference must not silently become a constant
+            boolean reference = text.startsWith(CONSUMER_PREFIX) || text.startsWith(PROVIDER_PREFIX);
+            boolean symbol = SYMBOLS.contains(text) || isKeyword(text);
+            if (reference || symbol) {
+                position--;
+                throw error("unexpected " + text);
+            }
+            return new Constant(text);
+        }
+
+        private boolean isKeyword(String text) {
+            return KEYWORD_AND.equalsIgnoreCase(text) || KEYWORD_OR.equalsIgnoreCase(text)
+                || KEYWORD_NOT.equalsIgnoreCase(text) || KEYWORD_IN.equalsIgnoreCase(text);
+        }
+
+        private boolean accept(String symbol) {
+            if (position < tokens.size() && tokens.get(position).is(symbol)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String symbol) throws NacosException {
+            if (!accept(symbol)) {
+                throw error("expect " + symbol);
+            }
+        }
+
+        private NacosException error(String message) {
+            return new NacosException(NacosException.INVALID_PARAM,
+                "parse expression failed at token " + position + ": " + message);
+        }
+    }
+}
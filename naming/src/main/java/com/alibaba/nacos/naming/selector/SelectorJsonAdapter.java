@@ -91,6 +91,9 @@ public class SelectorJsonAdapter implements ObjectDeserializer, ObjectSerializer
         if (StringUtils.equals(selector.getType(), SelectorType.label.name())) {
             LabelSelector labelSelector = (LabelSelector) selector;
             writer.writeFieldValue(',', "labels", JSON.toJSONString(labelSelector.getLabels()));
+            if (labelSelector.getExpression() != null) {
+                writer.writeFieldValue(',', "expression", labelSelector.getExpression());
+            }
         }
     }
 }
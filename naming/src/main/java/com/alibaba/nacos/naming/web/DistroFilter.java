@@ -22,6 +22,9 @@ import com.alibaba.nacos.naming.misc.HttpClient;
 import com.alibaba.nacos.naming.misc.Loggers;
 import com.alibaba.nacos.naming.misc.SwitchDomain;
 import com.alibaba.nacos.naming.misc.UtilsAndCommons;
+import com.alibaba.nacos.naming.monitor.MetricsMonitor;
+import com.ning.http.client.AsyncCompletionHandler;
+import com.ning.http.client.Response;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -33,9 +36,15 @@ import java.lang.reflect.Method;
 import java.net.URI;
 import java.security.AccessControlException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author nacos
@@ -45,6 +54,12 @@ public class DistroFilter implements Filter {
     private static final int PROXY_CONNECT_TIMEOUT = 2000;
     private static final int PROXY_READ_TIMEOUT = 2000;
 
+    /**
+     * Headers of the connection to this server, not to be forwarded.
+     */
+    private static final Set<String> HOP_BY_HOP_HEADERS = new HashSet<>(Arrays.asList(
+        "host", "connection", "content-length", "transfer-encoding", "accept-encoding", "keep-alive"));
+
     @Autowired
     private DistroMapper distroMapper;
 
@@ -107,24 +122,35 @@ public class DistroFilter implements Filter {
                     return;
                 }
 
+                String targetServer = distroMapper.mapSrv(groupedServiceName);
                 List<String> headerList = new ArrayList<>(16);
                 Enumeration<String> headers = req.getHeaderNames();
                 while (headers.hasMoreElements()) {
                     String headerName = headers.nextElement();
+                    if (HOP_BY_HOP_HEADERS.contains(headerName.toLowerCase())) {
+                        continue;
+                    }
                     headerList.add(headerName);
                     headerList.add(req.getHeader(headerName));
                 }
+                Map<String, String> params = StringUtils.isBlank(req.getQueryString())
+                    ? HttpClient.translateParameterMap(req.getParameterMap()) : new HashMap<String, String>(2);
+
+                if (req.isAsyncSupported()) {
+                    forwardAsync(req, resp, targetServer, urlString, headerList, params);
+                    return;
+                }
+
                 HttpClient.HttpResult result =
-                    HttpClient.request("http://" + distroMapper.mapSrv(groupedServiceName) + urlString, headerList,
-                        StringUtils.isBlank(req.getQueryString()) ? HttpClient.translateParameterMap(req.getParameterMap()) : new HashMap<>(2)
-                        , PROXY_CONNECT_TIMEOUT, PROXY_READ_TIMEOUT, "UTF-8", req.getMethod());
+                    HttpClient.request("http://" + targetServer + urlString, headerList, params,
+                        PROXY_CONNECT_TIMEOUT, PROXY_READ_TIMEOUT, "UTF-8", req.getMethod());
 
                 try {
                     resp.setCharacterEncoding("UTF-8");
                     resp.getWriter().write(result.content);
                     resp.setStatus(result.code);
                 } catch (Exception ignore) {
-                    Loggers.SRV_LOG.warn("[DISTRO-FILTER] request failed: " + distroMapper.mapSrv(groupedServiceName) + urlString);
+                    Loggers.SRV_LOG.warn("[DISTRO-FILTER] request failed: " + targetServer + urlString);
                 }
                 return;
             }
@@ -146,6 +172,99 @@ public class DistroFilter implements Filter {
 
     }
 
+    /**
+     * Forward the request to the responsible server without holding the container thread, the response is written
+     * from the IO thread of the http client when the responsible server replies.
+     */
+    private void forwardAsync(HttpServletRequest req, final HttpServletResponse resp, final String targetServer,
+                              final String urlString, List<String> headerList, Map<String, String> params)
+        throws Exception {
+
+        final AsyncContext asyncContext = req.startAsync();
+        asyncContext.setTimeout(PROXY_CONNECT_TIMEOUT + PROXY_READ_TIMEOUT);
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final long start = System.currentTimeMillis();
+
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                Loggers.SRV_LOG.warn("[DISTRO-FILTER] request timeout: " + targetServer + urlString);
+                if (complete(asyncContext, resp, done, HttpServletResponse.SC_GATEWAY_TIMEOUT,
+                    "forward to " + targetServer + " timeout")) {
+                    recordForward(targetServer, start, false);
+                }
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+
+        try {
+            HttpClient.asyncHttpRequest("http://" + targetServer + urlString, headerList, params, req.getMethod(),
+                PROXY_READ_TIMEOUT, new AsyncCompletionHandler<Void>() {
+                    @Override
+                    public Void onCompleted(Response response) throws Exception {
+                        if (complete(asyncContext, resp, done, response.getStatusCode(),
+                            response.getResponseBody("UTF-8"))) {
+                            recordForward(targetServer, start, true);
+                        }
+                        return null;
+                    }
+
+                    @Override
+                    public void onThrowable(Throwable t) {
+                        Loggers.SRV_LOG.warn("[DISTRO-FILTER] request failed: " + targetServer + urlString, t);
+                        if (complete(asyncContext, resp, done, HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                            t.toString())) {
+                            recordForward(targetServer, start, false);
+                        }
+                    }
+                });
+        } catch (Exception e) {
+            Loggers.SRV_LOG.warn("[DISTRO-FILTER] request failed: " + targetServer + urlString, e);
+            if (complete(asyncContext, resp, done, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.toString())) {
+                recordForward(targetServer, start, false);
+            }
+        }
+    }
+
+    /**
+     * Answer the forwarded request once, the reply may race with the timeout of the async context.
+     *
+     * @return false if the request is already answered, the caller then records nothing
+     */
+    private static boolean complete(AsyncContext asyncContext, HttpServletResponse resp, AtomicBoolean done, int code,
+                                    String content) {
+        if (!done.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            resp.setCharacterEncoding("UTF-8");
+            resp.setStatus(code);
+            resp.getWriter().write(content);
+        } catch (Exception e) {
+            Loggers.SRV_LOG.warn("[DISTRO-FILTER] failed to write response: " + e.getMessage());
+        } finally {
+            asyncContext.complete();
+        }
+        return true;
+    }
+
+    private static void recordForward(String targetServer, long start, boolean success) {
+        MetricsMonitor.getDistroForwardTimer(targetServer)
+            .record(System.currentTimeMillis() - start, TimeUnit.MILLISECONDS);
+        MetricsMonitor.getDistroForwardCounter(targetServer, success ? "success" : "failure").increment();
+    }
+
     @Override
     public void destroy() {
 
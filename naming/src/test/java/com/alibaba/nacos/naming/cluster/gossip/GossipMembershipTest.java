@@ -0,0 +1,216 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.nacos.naming.cluster.gossip;
+
+import com.alibaba.fastjson.JSON;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.DatagramSocket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author nacos
+ */
+public class GossipMembershipTest {
+
+    private static final String LOCAL = "127.0.0.1:8848";
+
+    private static final String PEER = "127.0.0.2:8848";
+
+    private final List<GossipMembership> cluster = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (GossipMembership membership : cluster) {
+            membership.stop();
+        }
+    }
+
+    @Test
+    public void testSuspectAndDeclareDead() {
+        RecordingTransport transport = new RecordingTransport();
+        GossipMembership membership = new GossipMembership(LOCAL, transport, 1000L, 300L, 3, 5000L);
+        membership.join(Collections.singletonList(PEER));
+
+        membership.tick(0L);
+        Assert.assertEquals(GossipMessage.PING, transport.lastMessage().getType());
+        Assert.assertEquals(PEER, transport.lastAddress);
+
+        membership.tick(1000L);
+        Assert.assertEquals(Member.State.SUSPECT, getMember(membership, PEER).getState());
+
+        membership.tick(6000L);
+        Assert.assertEquals(Member.State.DEAD, getMember(membership, PEER).getState());
+    }
+
+    @Test
+    public void testAckKeepsMemberAlive() {
+        RecordingTransport transport = new RecordingTransport();
+        GossipMembership membership = new GossipMembership(LOCAL, transport, 1000L, 300L, 3, 5000L);
+        membership.join(Collections.singletonList(PEER));
+
+        membership.tick(0L);
+        GossipMessage ack = new GossipMessage();
+        ack.setType(GossipMessage.ACK);
+        ack.setSeq(transport.lastMessage().getSeq());
+        ack.setFrom(PEER);
+        ack.setIncarnation(1L);
+        membership.receive(ack, 100L);
+
+        membership.tick(1000L);
+        Assert.assertEquals(Member.State.ALIVE, getMember(membership, PEER).getState());
+        Assert.assertEquals(1L, getMember(membership, PEER).getIncarnation());
+    }
+
+    @Test
+    public void testRefuteSuspicion() {
+        RecordingTransport transport = new RecordingTransport();
+        GossipMembership membership = new GossipMembership(LOCAL, transport, 1000L, 300L, 3, 5000L);
+        long incarnation = membership.getIncarnation();
+
+        GossipMessage ping = new GossipMessage();
+        ping.setType(GossipMessage.PING);
+        ping.setSeq(1L);
+        ping.setFrom(PEER);
+        ping.setIncarnation(1L);
+        ping.setUpdates(Collections.singletonList(
+            new GossipMessage.Update(LOCAL, Member.State.SUSPECT, incarnation, 0L)));
+        membership.receive(ping, 0L);
+
+        Assert.assertEquals(incarnation + 1, membership.getIncarnation());
+        GossipMessage ack = transport.lastMessage();
+        Assert.assertEquals(GossipMessage.ACK, ack.getType());
+        Assert.assertEquals(incarnation + 1, ack.getIncarnation());
+        Assert.assertEquals(Member.State.ALIVE, getMember(membership, PEER).getState());
+    }
+
+    @Test
+    public void testConvergenceOverLoopback() throws Exception {
+        int size = 10;
+        List<String> addresses = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            DatagramSocket socket = new DatagramSocket(0);
+            addresses.add("127.0.0.1:" + socket.getLocalPort());
+            socket.close();
+        }
+
+        for (String address : addresses) {
+            GossipMembership membership = new GossipMembership(address, new UdpGossipTransport(0), 100L, 40L, 3,
+                500L);
+            membership.start();
+            // only the first member is known, the others are learnt through gossip
+            membership.join(Collections.singletonList(addresses.get(0)));
+            cluster.add(membership);
+        }
+
+        long start = System.currentTimeMillis();
+        waitUntil(new Condition() {
+            @Override
+            public boolean met() {
+                for (GossipMembership membership : cluster) {
+                    if (countHealthy(membership) != cluster.size()) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }, TimeUnit.SECONDS.toMillis(15));
+        Assert.assertTrue(System.currentTimeMillis() - start < TimeUnit.SECONDS.toMillis(15));
+
+        final GossipMembership failed = cluster.remove(size - 1);
+        failed.stop();
+
+        waitUntil(new Condition() {
+            @Override
+            public boolean met() {
+                for (GossipMembership membership : cluster) {
+                    Member member = getMember(membership, failed.getLocalAddress());
+                    if (member == null || member.getState() != Member.State.DEAD) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }, TimeUnit.SECONDS.toMillis(15));
+
+        for (GossipMembership membership : cluster) {
+            Assert.assertEquals(cluster.size(), countHealthy(membership));
+        }
+    }
+
+    private static int countHealthy(GossipMembership membership) {
+        int healthy = 0;
+        for (Member member : membership.getMembers()) {
+            if (member.isHealthy()) {
+                healthy++;
+            }
+        }
+        return healthy;
+    }
+
+    private static Member getMember(GossipMembership membership, String address) {
+        for (Member member : membership.getMembers()) {
+            if (member.getAddress().equals(address)) {
+                return member;
+            }
+        }
+        return null;
+    }
+
+    private static void waitUntil(Condition condition, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.met()) {
+            if (System.currentTimeMillis() > deadline) {
+                Assert.fail("condition not met in " + timeoutMillis + " ms");
+            }
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+    }
+
+    private interface Condition {
+        boolean met();
+    }
+
+    private static class RecordingTransport implements GossipTransport {
+
+        private String lastAddress;
+
+        private byte[] lastData;
+
+        @Override
+        public void start(GossipMembership membership) {
+        }
+
+        @Override
+        public void send(String address, byte[] data) {
+            lastAddress = address;
+            lastData = data;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        GossipMessage lastMessage() {
+            return JSON.parseObject(lastData, GossipMessage.class);
+        }
+    }
+}
@@ -19,16 +19,22 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.alibaba.nacos.api.common.Constants;
+import com.alibaba.nacos.api.naming.CommonParams;
+import com.alibaba.nacos.api.naming.NamingResponseCode;
+import com.alibaba.nacos.api.naming.utils.NamingUtils;
 import com.alibaba.nacos.naming.BaseTest;
+import com.alibaba.nacos.naming.cluster.ServerListManager;
 import com.alibaba.nacos.naming.consistency.persistent.raft.RaftPeerSet;
 import com.alibaba.nacos.naming.core.Cluster;
 import com.alibaba.nacos.naming.core.Instance;
 import com.alibaba.nacos.naming.core.Service;
+import com.alibaba.nacos.naming.healthcheck.RsInfo;
 import com.alibaba.nacos.naming.misc.UtilsAndCommons;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -38,12 +44,15 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author nkorange
@@ -59,6 +68,9 @@ public class InstanceControllerTest extends BaseTest {
     @Mock
     private RaftPeerSet peerSet;
 
+    @Mock
+    private ServerListManager serverListManager;
+
     private MockMvc mockmvc;
 
     @Before
@@ -164,4 +176,124 @@ public class InstanceControllerTest extends BaseTest {
         JSONArray hosts = result.getJSONArray("hosts");
         Assert.assertEquals(hosts.size(), 0);
     }
+
+    @Test
+    public void beatAfterMetadataEditedOnServer() throws Exception {
+
+        Service service = new Service();
+        service.setName(TEST_SERVICE_NAME);
+        Cluster cluster = new Cluster(UtilsAndCommons.DEFAULT_CLUSTER_NAME, service);
+        service.addCluster(cluster);
+
+        Map<String, String> clientMetadata = new HashMap<>(4);
+        clientMetadata.put("version", "1");
+        String clientChecksum = NamingUtils.getMetadataChecksum(clientMetadata);
+
+        Instance instance = new Instance("1.1.1.1", 9999, UtilsAndCommons.DEFAULT_CLUSTER_NAME);
+        instance.setClientMetadataChecksum(clientChecksum);
+        // edited through the console:
+        Map<String, String> editedMetadata = new HashMap<>(clientMetadata);
+        editedMetadata.put("owner", "ops");
+        instance.setMetadata(editedMetadata);
+        instance.setWeight(5);
+        instance.setEnabled(false);
+
+        Mockito.when(serviceManager.getService(Constants.DEFAULT_NAMESPACE_ID, TEST_SERVICE_NAME)).thenReturn(service);
+        Mockito.when(serviceManager.getInstance(Constants.DEFAULT_NAMESPACE_ID, TEST_SERVICE_NAME,
+            UtilsAndCommons.DEFAULT_CLUSTER_NAME, "1.1.1.1", 9999)).thenReturn(instance);
+
+        // light beats of the unchanged client are accepted:
+        MockHttpServletRequestBuilder builder =
+            MockMvcRequestBuilders.put(UtilsAndCommons.NACOS_NAMING_CONTEXT + "/instance/beat")
+                .param("serviceName", TEST_SERVICE_NAME)
+                .param("ip", "1.1.1.1")
+                .param("port", "9999")
+                .param(CommonParams.METADATA_CHECKSUM, clientChecksum);
+        JSONObject result = JSON.parseObject(mockmvc.perform(builder).andReturn().getResponse().getContentAsString());
+        Assert.assertEquals(NamingResponseCode.OK, result.getIntValue(CommonParams.CODE));
+
+        // and so are its full beats, without touching the edit:
+        RsInfo beat = new RsInfo();
+        beat.setIp("1.1.1.1");
+        beat.setPort(9999);
+        beat.setWeight(1);
+        beat.setMetadata(clientMetadata);
+        builder = MockMvcRequestBuilders.put(UtilsAndCommons.NACOS_NAMING_CONTEXT + "/instance/beat")
+            .param("serviceName", TEST_SERVICE_NAME)
+            .param("beat", JSON.toJSONString(beat))
+            .param(CommonParams.METADATA_CHECKSUM, clientChecksum);
+        result = JSON.parseObject(mockmvc.perform(builder).andReturn().getResponse().getContentAsString());
+        Assert.assertEquals(NamingResponseCode.OK, result.getIntValue(CommonParams.CODE));
+        Mockito.verify(serviceManager, Mockito.never()).registerInstance(Mockito.anyString(), Mockito.anyString(),
+            Mockito.any(Instance.class));
+        Mockito.verify(serviceManager, Mockito.never()).updateInstance(Mockito.anyString(), Mockito.anyString(),
+            Mockito.any(Instance.class));
+
+        // a change of the client replaces the metadata only:
+        Map<String, String> changedMetadata = new HashMap<>(clientMetadata);
+        changedMetadata.put("version", "2");
+        beat.setMetadata(changedMetadata);
+        String changedChecksum = NamingUtils.getMetadataChecksum(changedMetadata);
+        builder = MockMvcRequestBuilders.put(UtilsAndCommons.NACOS_NAMING_CONTEXT + "/instance/beat")
+            .param("serviceName", TEST_SERVICE_NAME)
+            .param("beat", JSON.toJSONString(beat))
+            .param(CommonParams.METADATA_CHECKSUM, changedChecksum);
+        result = JSON.parseObject(mockmvc.perform(builder).andReturn().getResponse().getContentAsString());
+        Assert.assertEquals(NamingResponseCode.OK, result.getIntValue(CommonParams.CODE));
+
+        ArgumentCaptor<Instance> updated = ArgumentCaptor.forClass(Instance.class);
+        Mockito.verify(serviceManager).updateInstance(Mockito.eq(Constants.DEFAULT_NAMESPACE_ID),
+            Mockito.eq(TEST_SERVICE_NAME), updated.capture());
+        Assert.assertEquals(changedMetadata, updated.getValue().getMetadata());
+        Assert.assertEquals(changedChecksum, updated.getValue().getClientMetadataChecksum());
+        Assert.assertEquals(5, updated.getValue().getWeight(), 0.001);
+        Assert.assertFalse(updated.getValue().isEnabled());
+    }
+
+    @Test
+    public void batchBeatWithUnreachableOwner() throws Exception {
+
+        switchDomain.setBatchBeatEnabled(true);
+        String serviceName = Constants.DEFAULT_GROUP + Constants.SERVICE_INFO_SPLITER + TEST_SERVICE_NAME;
+        Mockito.when(distroMapper.responsible(serviceName)).thenReturn(false);
+        // nothing listens on port 1:
+        Mockito.when(distroMapper.mapSrv(serviceName)).thenReturn("127.0.0.1:1");
+
+        JSONObject item = new JSONObject();
+        item.put(CommonParams.SERVICE_NAME, serviceName);
+        item.put("ip", "1.1.1.1");
+        item.put("port", 9999);
+        JSONArray beats = new JSONArray();
+        beats.add(item);
+
+        MockHttpServletRequestBuilder builder =
+            MockMvcRequestBuilders.post(UtilsAndCommons.NACOS_NAMING_CONTEXT + "/instance/beat/batch")
+                .param(CommonParams.BEATS, beats.toJSONString());
+        assertForwardFailed(builder);
+
+        // a client pretending to be a server gets its beats routed all the same:
+        builder = MockMvcRequestBuilders.post(UtilsAndCommons.NACOS_NAMING_CONTEXT + "/instance/beat/batch")
+            .header("User-Agent", UtilsAndCommons.NACOS_SERVER_HEADER)
+            .param("clientIP", "127.0.0.1:8848")
+            .param(CommonParams.BEATS, beats.toJSONString());
+        assertForwardFailed(builder);
+        Mockito.verify(serviceManager, Mockito.never()).getInstance(Mockito.anyString(), Mockito.anyString(),
+            Mockito.anyString(), Mockito.anyString(), Mockito.anyInt());
+    }
+
+    private void assertForwardFailed(MockHttpServletRequestBuilder builder) throws Exception {
+        MvcResult mvcResult = mockmvc.perform(builder).andReturn();
+        mvcResult.getAsyncResult(10000L);
+        String content = mockmvc.perform(MockMvcRequestBuilders.asyncDispatch(mvcResult)).andReturn().getResponse()
+            .getContentAsString();
+        JSONObject result = JSON.parseObject(content);
+
+        Assert.assertEquals(NamingResponseCode.OK, result.getIntValue(CommonParams.CODE));
+        Assert.assertTrue(result.getJSONArray(CommonParams.NOT_FOUND).isEmpty());
+        JSONArray failed = result.getJSONArray(CommonParams.FAILED);
+        Assert.assertNotNull(failed);
+        Assert.assertEquals(1, failed.size());
+        Assert.assertEquals("1.1.1.1", failed.getJSONObject(0).getString("ip"));
+        Assert.assertEquals(9999, failed.getJSONObject(0).getIntValue("port"));
+    }
 }
@@ -93,6 +93,32 @@ public class ClusterTest {
         Assert.assertEquals(2345, ips.get(1).getPort());
     }
 
+    @Test
+    public void getInstance() {
+
+        Instance instance1 = new Instance("1.1.1.1", 1234);
+        instance1.setEphemeral(true);
+
+        Instance instance2 = new Instance("1.1.1.1", 2345);
+        instance2.setEphemeral(false);
+
+        List<Instance> list = new ArrayList<>();
+        list.add(instance1);
+        cluster.updateIPs(list, true);
+
+        list = new ArrayList<>();
+        list.add(instance2);
+        cluster.updateIPs(list, false);
+
+        Assert.assertSame(instance1, cluster.getInstance("1.1.1.1", 1234, true));
+        Assert.assertNull(cluster.getInstance("1.1.1.1", 1234, false));
+        Assert.assertSame(instance2, cluster.getInstance("1.1.1.1", 2345));
+        Assert.assertNull(cluster.getInstance("1.1.1.2", 1234));
+
+        cluster.updateIPs(new ArrayList<>(), true);
+        Assert.assertNull(cluster.getInstance("1.1.1.1", 1234));
+    }
+
     @Test
     public void testValidate() {
         Service service = new Service("nacos.service.2");
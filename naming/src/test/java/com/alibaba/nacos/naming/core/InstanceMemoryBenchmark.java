@@ -0,0 +1,95 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.nacos.naming.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Heap taken by instances with the metadata as a plain map of their own strings, as parsed from JSON, and with the
+ * compact and interned metadata of {@link Instance}. Not a unit test, run the main method with a heap large enough
+ * for the instances, e.g. -Xmx4g:
+ * <pre>
+ *     java -cp ... com.alibaba.nacos.naming.core.InstanceMemoryBenchmark [instances]
+ * </pre>
+ *
+ * @author nacos
+ */
+public class InstanceMemoryBenchmark {
+
+    private static final int SERVICES = 1000;
+
+    public static void main(String[] args) throws Exception {
+        int instanceCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+        long base = usedMemory();
+        List<com.alibaba.nacos.api.naming.pojo.Instance> plain = new ArrayList<>(instanceCount);
+        for (int i = 0; i < instanceCount; i++) {
+            com.alibaba.nacos.api.naming.pojo.Instance instance = new com.alibaba.nacos.api.naming.pojo.Instance();
+            fill(instance, i);
+            plain.add(instance);
+        }
+        long plainBytes = usedMemory() - base;
+        plain = null;
+
+        base = usedMemory();
+        List<Instance> compact = new ArrayList<>(instanceCount);
+        for (int i = 0; i < instanceCount; i++) {
+            Instance instance = new Instance();
+            fill(instance, i);
+            compact.add(instance);
+        }
+        long compactBytes = usedMemory() - base;
+
+        System.out.println("instances: " + compact.size());
+        System.out.println("plain:   " + plainBytes / instanceCount + " bytes/instance");
+        System.out.println("compact: " + compactBytes / instanceCount + " bytes/instance");
+    }
+
+    /**
+     * Every string is a copy of its own, as it is when the instance is parsed from a request or from JSON.
+     */
+    private static void fill(com.alibaba.nacos.api.naming.pojo.Instance instance, int i) {
+        instance.setIp(copy("10." + (i >> 16 & 0xFF) + "." + (i >> 8 & 0xFF) + "." + (i & 0xFF)));
+        instance.setPort(8080);
+        instance.setClusterName(copy("DEFAULT"));
+        instance.setServiceName(copy("DEFAULT_GROUP@@service-" + i % SERVICES));
+
+        Map<String, String> metadata = new HashMap<>(16);
+        metadata.put(copy("version"), copy("1.0." + i % 4));
+        metadata.put(copy("env"), copy("prod"));
+        metadata.put(copy("zone"), copy("zone-" + i % 8));
+        metadata.put(copy("protocol"), copy("dubbo"));
+        metadata.put(copy("preserved.heart.beat.interval"), copy("5000"));
+        metadata.put(copy("pid"), copy(String.valueOf(10000 + i % 50000)));
+        instance.setMetadata(metadata);
+    }
+
+    private static String copy(String value) {
+        return new String(value.toCharArray());
+    }
+
+    private static long usedMemory() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
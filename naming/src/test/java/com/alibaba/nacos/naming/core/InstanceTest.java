@@ -69,4 +69,53 @@ public class InstanceTest {
         RsInfo info1 = JSON.parseObject(json, RsInfo.class);
         System.out.println(info1);
     }
+
+    @Test
+    public void compactMetadata() {
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put("version", new String("1.0.0"));
+        metadata.put("env", "prod");
+        instance.setMetadata(metadata);
+
+        Instance other = new Instance();
+        Map<String, String> otherMetadata = new HashMap<>();
+        otherMetadata.put(new String("env"), "test");
+        otherMetadata.put("version", new String("1.0.0"));
+        other.setMetadata(otherMetadata);
+
+        Assert.assertTrue(instance.getMetadata() instanceof CompactMetadata);
+        Assert.assertEquals(metadata, instance.getMetadata());
+        Assert.assertEquals(instance.getMetadata(), metadata);
+        Assert.assertEquals(metadata.hashCode(), instance.getMetadata().hashCode());
+        Assert.assertEquals("prod", instance.getMetadata().get("env"));
+        Assert.assertNull(instance.getMetadata().get("missing"));
+        Assert.assertSame(instance.getMetadata().get("version"), other.getMetadata().get("version"));
+
+        instance.addMetadata("zone", "a");
+        Assert.assertEquals(3, instance.getMetadata().size());
+        Assert.assertEquals("a", instance.getMetadata().get("zone"));
+
+        try {
+            instance.getMetadata().put("zone", "b");
+            Assert.fail("metadata should be immutable");
+        } catch (UnsupportedOperationException e) {
+            Assert.assertEquals("a", instance.getMetadata().get("zone"));
+        }
+    }
+
+    @Test
+    public void compactMetadataJson() {
+        instance.setIp("1.1.1.1");
+        instance.setPort(1234);
+        instance.setClusterName(new String("DEFAULT"));
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put("version", "1.0.0");
+        instance.setMetadata(metadata);
+
+        Instance parsed = Instance.fromJSON(instance.toJSON());
+        Assert.assertTrue(parsed.getMetadata() instanceof CompactMetadata);
+        Assert.assertEquals(metadata, parsed.getMetadata());
+        Assert.assertSame(instance.getClusterName(), parsed.getClusterName());
+        Assert.assertEquals(instance.getMetadataChecksum(), parsed.getMetadataChecksum());
+    }
 }
@@ -19,14 +19,17 @@ import com.alibaba.nacos.naming.BaseTest;
 import com.alibaba.nacos.naming.consistency.ConsistencyService;
 import com.alibaba.nacos.naming.consistency.Datum;
 import com.alibaba.nacos.naming.consistency.KeyBuilder;
+import com.alibaba.nacos.naming.misc.GlobalConfig;
 import com.alibaba.nacos.naming.misc.UtilsAndCommons;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.Spy;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.Collections;
 import java.util.List;
 
 import static org.mockito.Mockito.when;
@@ -84,4 +87,68 @@ public class ServiceManagerTest extends BaseTest {
         service.setNamespaceId(TEST_NAMESPACE);
         serviceManager.updateIpAddresses(service, UtilsAndCommons.UPDATE_INSTANCE_ACTION_ADD, true);
     }
+
+    @Test
+    public void testReclaimEmptyServices() throws Exception {
+        ReflectionTestUtils.setField(serviceManager, "consistencyService", consistencyService);
+        ReflectionTestUtils.setField(serviceManager, "distroMapper", distroMapper);
+        ReflectionTestUtils.setField(serviceManager, "globalConfig", new GlobalConfig());
+        when(consistencyService.isAvailable()).thenReturn(true);
+        when(distroMapper.responsible(Mockito.anyString())).thenReturn(true);
+        when(distroMapper.responsible("not-responsible")).thenReturn(false);
+
+        long expired = System.currentTimeMillis() - 120000L;
+        Service empty = new Service("empty");
+        empty.setNamespaceId(TEST_NAMESPACE);
+        empty.setAutoCreated(true);
+        empty.setLastModifiedMillis(expired);
+        serviceManager.putService(empty);
+
+        Service explicit = new Service("explicit");
+        explicit.setNamespaceId(TEST_NAMESPACE);
+        explicit.setLastModifiedMillis(expired);
+        serviceManager.putService(explicit);
+
+        Service fresh = new Service("fresh");
+        fresh.setNamespaceId(TEST_NAMESPACE);
+        fresh.setAutoCreated(true);
+        fresh.setLastModifiedMillis(System.currentTimeMillis());
+        serviceManager.putService(fresh);
+
+        Service notResponsible = new Service("not-responsible");
+        notResponsible.setNamespaceId(TEST_NAMESPACE);
+        notResponsible.setAutoCreated(true);
+        notResponsible.setLastModifiedMillis(expired);
+        serviceManager.putService(notResponsible);
+
+        Service notEmpty = new Service(TEST_SERVICE_NAME);
+        notEmpty.setNamespaceId(TEST_NAMESPACE);
+        notEmpty.setAutoCreated(true);
+        Cluster cluster = new Cluster(TEST_CLUSTER_NAME, notEmpty);
+        notEmpty.getClusterMap().put(TEST_CLUSTER_NAME, cluster);
+        Instance instance = new Instance("1.1.1.1", 1);
+        instance.setClusterName(TEST_CLUSTER_NAME);
+        cluster.updateIPs(Collections.singletonList(instance), true);
+        notEmpty.setLastModifiedMillis(expired);
+        serviceManager.putService(notEmpty);
+
+        // an instance registered but not yet applied to the service:
+        Service registering = new Service("registering");
+        registering.setNamespaceId(TEST_NAMESPACE);
+        registering.setAutoCreated(true);
+        registering.setLastModifiedMillis(expired);
+        serviceManager.putService(registering);
+        Instances instances = new Instances();
+        instances.setInstanceList(Collections.singletonList(new Instance("1.1.1.2", 1)));
+        Datum datum = new Datum();
+        datum.value = instances;
+        when(consistencyService.get(KeyBuilder.buildInstanceListKey(TEST_NAMESPACE, "registering", true)))
+            .thenReturn(datum);
+
+        serviceManager.new EmptyServiceReclaimer().run();
+
+        Mockito.verify(consistencyService).remove(KeyBuilder.buildServiceMetaKey(TEST_NAMESPACE, "empty"));
+        Mockito.verify(consistencyService, Mockito.times(1)).remove(Mockito.anyString());
+        Assert.assertEquals(1L, serviceManager.getReclaimedServiceCount());
+    }
 }
@@ -4,6 +4,7 @@ import com.alibaba.nacos.naming.BaseTest;
 import com.alibaba.nacos.naming.cluster.ServerListManager;
 import com.alibaba.nacos.naming.cluster.servers.Server;
 import com.alibaba.nacos.naming.pojo.Subscriber;
+import com.alibaba.nacos.naming.pojo.Subscribers;
 import com.alibaba.nacos.naming.push.PushService;
 import org.junit.Assert;
 import org.junit.Before;
@@ -13,6 +14,7 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -93,5 +95,26 @@ public class SubscribeManagerTest extends BaseTest {
 
         }
     }
-}
 
+    @Test
+    public void getSubscribersPage() throws Exception {
+        String serviceName = "test";
+        String namespaceId = "public";
+        List<Subscriber> clients = new ArrayList<Subscriber>();
+        for (int i = 4; i >= 0; i--) {
+            clients.add(new Subscriber("127.0.0.1:" + (8080 + i), "test", "app", "127.0.0.1", namespaceId, serviceName));
+        }
+        Mockito.when(pushService.getClients(serviceName, namespaceId)).thenReturn(clients);
+        ReflectionTestUtils.setField(subscribeManager, "pushService", pushService);
+
+        Subscribers page = subscribeManager.getSubscribers(serviceName, namespaceId, false, 2, 2);
+        Assert.assertEquals(5, page.getCount());
+        Assert.assertEquals(2, page.getSubscribers().size());
+        Assert.assertEquals("127.0.0.1:8082", page.getSubscribers().get(0).getAddrStr());
+        Assert.assertEquals("127.0.0.1:8083", page.getSubscribers().get(1).getAddrStr());
+
+        page = subscribeManager.getSubscribers(serviceName, namespaceId, false, 4, 2);
+        Assert.assertEquals(5, page.getCount());
+        Assert.assertTrue(page.getSubscribers().isEmpty());
+    }
+}
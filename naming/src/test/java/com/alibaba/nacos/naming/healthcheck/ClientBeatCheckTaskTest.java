@@ -1,7 +1,7 @@
 package com.alibaba.nacos.naming.healthcheck;
 
 import com.alibaba.nacos.api.naming.PreservedMetadataKeys;
-import com.alibaba.nacos.naming.core.DistroMapper;
+import com.alibaba.nacos.naming.boot.SpringContext;
 import com.alibaba.nacos.naming.core.Instance;
 import com.alibaba.nacos.naming.core.Service;
 import com.alibaba.nacos.naming.misc.GlobalConfig;
@@ -15,11 +15,10 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.Spy;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.context.ApplicationContext;
 import org.springframework.test.util.ReflectionTestUtils;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -32,26 +31,24 @@ public class ClientBeatCheckTaskTest {
     @Spy
     private ClientBeatCheckTask clientBeatCheckTask;
     @Mock
-    private DistroMapper distroMapperSpy;
-    @Mock
     private Service serviceSpy;
     @Mock
     private GlobalConfig globalConfig;
     @Mock
     private PushService pushService;
-
+    @Mock
+    private ApplicationContext context;
 
     @Before
     public void init() {
+        new SpringContext().setApplicationContext(context);
         ReflectionTestUtils.setField(clientBeatCheckTask, "service", serviceSpy);
-        Mockito.doReturn(distroMapperSpy).when(clientBeatCheckTask).getDistroMapper();
         Mockito.doReturn(globalConfig).when(clientBeatCheckTask).getGlobalConfig();
         Mockito.doReturn(pushService).when(clientBeatCheckTask).getPushService();
     }
 
     @Test
     public void testHeartBeatNotTimeout() {
-        List<Instance> instances = new ArrayList<>();
         Instance instance = new Instance();
         instance.setLastBeat(System.currentTimeMillis());
         instance.setMarked(false);
@@ -59,18 +56,13 @@ public class ClientBeatCheckTaskTest {
         Map<String, String> metadata = new HashMap<>();
         metadata.put(PreservedMetadataKeys.HEART_BEAT_TIMEOUT, "1000000000");
         instance.setMetadata(metadata);
-        instances.add(instance);
-        Mockito.when(serviceSpy.allIPs(true)).thenReturn(instances);
 
-        Mockito.doReturn("test").when(serviceSpy).getName();
-        Mockito.doReturn(true).when(distroMapperSpy).responsible(Mockito.anyString());
-        clientBeatCheckTask.run();
+        clientBeatCheckTask.check(instance);
         Assert.assertTrue(instance.isHealthy());
     }
 
     @Test
     public void testHeartBeatTimeout() {
-        List<Instance> instances = new ArrayList<>();
         Instance instance = new Instance();
         instance.setLastBeat(System.currentTimeMillis() - 1000);
         instance.setMarked(false);
@@ -78,19 +70,14 @@ public class ClientBeatCheckTaskTest {
         Map<String, String> metadata = new HashMap<>();
         metadata.put(PreservedMetadataKeys.HEART_BEAT_TIMEOUT, "10");
         instance.setMetadata(metadata);
-        instances.add(instance);
         Mockito.doReturn("test").when(serviceSpy).getName();
-        Mockito.doReturn(true).when(distroMapperSpy).responsible(Mockito.anyString());
-
-        Mockito.when(serviceSpy.allIPs(true)).thenReturn(instances);
 
-        clientBeatCheckTask.run();
+        clientBeatCheckTask.check(instance);
         Assert.assertFalse(instance.isHealthy());
     }
 
     @Test
     public void testIpDeleteTimeOut() {
-        List<Instance> instances = new ArrayList<>();
         Instance instance = new Instance();
         instance.setLastBeat(System.currentTimeMillis());
         instance.setMarked(true);
@@ -98,17 +85,13 @@ public class ClientBeatCheckTaskTest {
         Map<String, String> metadata = new HashMap<>();
         metadata.put(PreservedMetadataKeys.IP_DELETE_TIMEOUT, "10");
         instance.setMetadata(metadata);
-        instances.add(instance);
-        Mockito.doReturn(true).when(distroMapperSpy).responsible(null);
         Mockito.doReturn(true).when(globalConfig).isExpireInstance();
-        Mockito.when(serviceSpy.allIPs(true)).thenReturn(instances);
 
-        clientBeatCheckTask.run();
+        clientBeatCheckTask.check(instance);
     }
 
     @Test
     public void testIpDeleteNotTimeOut() {
-        List<Instance> instances = new ArrayList<>();
         Instance instance = new Instance();
         instance.setLastBeat(System.currentTimeMillis());
         instance.setMarked(true);
@@ -116,12 +99,9 @@ public class ClientBeatCheckTaskTest {
         Map<String, String> metadata = new HashMap<>();
         metadata.put(PreservedMetadataKeys.IP_DELETE_TIMEOUT, "10000");
         instance.setMetadata(metadata);
-        instances.add(instance);
 
-        Mockito.doReturn(true).when(distroMapperSpy).responsible(null);
         Mockito.doReturn(true).when(globalConfig).isExpireInstance();
-        Mockito.when(serviceSpy.allIPs(true)).thenReturn(instances);
 
-        clientBeatCheckTask.run();
+        clientBeatCheckTask.check(instance);
     }
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.nacos.naming.misc;
+
+import com.ning.http.client.AsyncCompletionHandler;
+import com.ning.http.client.Response;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author nacos
+ */
+public class HttpClientTest {
+
+    private HttpServer server;
+
+    private String baseUrl;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/echo", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String body = IOUtils.toString(exchange.getRequestBody(), "UTF-8");
+                String reply = exchange.getRequestMethod() + " " + exchange.getRequestURI().getRawQuery() + " "
+                    + body + " " + exchange.getRequestHeaders().getFirst("User-Agent");
+                byte[] data = reply.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=UTF-8");
+                exchange.sendResponseHeaders(200, data.length);
+                try (OutputStream output = exchange.getResponseBody()) {
+                    output.write(data);
+                }
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testGetPeerAndApi() {
+        Assert.assertEquals("1.1.1.1:8848", HttpClient.getPeer("http://1.1.1.1:8848/nacos/v1/ns/api?a=b"));
+        Assert.assertEquals("/nacos/v1/ns/api", HttpClient.getApi("http://1.1.1.1:8848/nacos/v1/ns/api?a=b"));
+        Assert.assertEquals("/", HttpClient.getApi("http://1.1.1.1:8848"));
+    }
+
+    @Test
+    public void testSyncRequests() {
+        Map<String, String> params = new HashMap<>(2);
+        params.put("name", "välue");
+
+        HttpClient.HttpResult result = HttpClient.httpGet(baseUrl + "/echo", null, params);
+        Assert.assertEquals(200, result.code);
+        Assert.assertTrue(result.content.startsWith("GET "));
+        Assert.assertTrue(result.content.contains("name=v%C3%A4lue"));
+        Assert.assertTrue(result.content.endsWith(UtilsAndCommons.SERVER_VERSION));
+
+        params = new HashMap<>(2);
+        params.put("name", "välue");
+        result = HttpClient.httpPost(baseUrl + "/echo", null, params);
+        Assert.assertEquals(200, result.code);
+        Assert.assertTrue(result.content.startsWith("POST null name=v%C3%A4lue"));
+
+        result = HttpClient.httpPostLarge(baseUrl + "/echo", Collections.<String, String>emptyMap(), "{\"k\":\"ä\"}");
+        Assert.assertEquals(200, result.code);
+        Assert.assertTrue(result.content.startsWith("POST null {\"k\":\"ä\"}"));
+    }
+
+    @Test
+    public void testFailedRequest() {
+        server.stop(0);
+        HttpClient.HttpResult result = HttpClient.httpGet(baseUrl + "/echo", null, null);
+        Assert.assertEquals(500, result.code);
+    }
+
+    @Test
+    public void testAsyncRequest() throws Exception {
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        HttpClient.asyncHttpGet(baseUrl + "/echo", null, null, new AsyncCompletionHandler() {
+            @Override
+            public Object onCompleted(Response response) throws Exception {
+                future.complete(response.getResponseBody());
+                return null;
+            }
+
+            @Override
+            public void onThrowable(Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        Assert.assertTrue(future.get(10, TimeUnit.SECONDS).startsWith("GET "));
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.nacos.naming.selector;
+
+import com.alibaba.nacos.naming.core.Instance;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the compiled selector expression with the former interpretation, which looked up every label of the
+ * consumer and the provider for each provider. Not a unit test, run the main method:
+ * <pre>
+ *     java -cp ... com.alibaba.nacos.naming.selector.SelectorExpressionBenchmark [providers] [rounds]
+ * </pre>
+ *
+ * @author nacos
+ */
+public class SelectorExpressionBenchmark {
+
+    private static final String[] LABELS = {"site", "unit", "rack"};
+
+    private static final String CONSUMER_IP = "10.0.0.1";
+
+    public static void main(String[] args) throws Exception {
+        int providerCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        final Map<String, Map<String, String>> cmdb = new HashMap<>(providerCount * 2);
+        List<Instance> providers = new ArrayList<>(providerCount);
+        for (int i = 0; i < providerCount; i++) {
+            String ip = "10." + (i >> 16 & 0xFF) + "." + (i >> 8 & 0xFF) + "." + (i & 0xFF);
+            Map<String, String> labels = new HashMap<>(16);
+            labels.put("site", "site" + i % 4);
+            labels.put("unit", "unit" + i % 8);
+            labels.put("rack", "rack" + i % 64);
+            cmdb.put(ip, labels);
+            Instance instance = new Instance(ip, 8080);
+            Map<String, String> metadata = new HashMap<>(16);
+            metadata.put("env", i % 10 == 0 ? "pre" : "prod");
+            instance.setMetadata(metadata);
+            providers.add(instance);
+        }
+        Map<String, String> consumerLabels = new HashMap<>(16);
+        consumerLabels.put("site", "site1");
+        consumerLabels.put("unit", "unit1");
+        consumerLabels.put("rack", "rack1");
+        cmdb.put(CONSUMER_IP, consumerLabels);
+
+        final SelectorExpression expression = SelectorExpression.compile(
+            "CONSUMER.label.site = PROVIDER.label.site && CONSUMER.label.unit = PROVIDER.label.unit "
+                + "&& CONSUMER.label.rack = PROVIDER.label.rack && PROVIDER.metadata.env IN ('prod')");
+        final SelectorExpression.Context context = new SelectorExpression.Context() {
+            @Override
+            public String getConsumerLabel(String name) {
+                return cmdb.get(CONSUMER_IP).get(name);
+            }
+
+            @Override
+            public String getProviderLabel(Instance provider, String name) {
+                return cmdb.get(provider.getIp()).get(name);
+            }
+        };
+
+        // warm up
+        for (int i = 0; i < rounds; i++) {
+            interpreted(cmdb, providers);
+            compiled(expression, context, providers);
+        }
+
+        long start = System.nanoTime();
+        int interpretedMatches = 0;
+        for (int i = 0; i < rounds; i++) {
+            interpretedMatches = interpreted(cmdb, providers).size();
+        }
+        long interpretedNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int compiledMatches = 0;
+        for (int i = 0; i < rounds; i++) {
+            compiledMatches = compiled(expression, context, providers).size();
+        }
+        long compiledNanos = System.nanoTime() - start;
+
+        System.out.println("providers: " + providerCount + ", rounds: " + rounds);
+        System.out.println("interpreted: " + TimeUnit.NANOSECONDS.toMicros(interpretedNanos / rounds)
+            + " us/select, matched " + interpretedMatches);
+        System.out.println("compiled:    " + TimeUnit.NANOSECONDS.toMicros(compiledNanos / rounds)
+            + " us/select, matched " + compiledMatches);
+    }
+
+    /**
+     * The former way: every label of the consumer and of the provider is looked up for each provider and all are
+     * compared without short-circuit.
+     */
+    private static List<Instance> interpreted(Map<String, Map<String, String>> cmdb, List<Instance> providers) {
+        List<Instance> result = new ArrayList<>();
+        for (Instance instance : providers) {
+            boolean matched = true;
+            for (String label : LABELS) {
+                String consumerValue = cmdb.get(CONSUMER_IP).get(label);
+                String providerValue = cmdb.get(instance.getIp()).get(label);
+                if (consumerValue != null && !consumerValue.equals(providerValue)) {
+                    matched = false;
+                }
+            }
+            if (matched && "prod".equals(instance.getMetadata().get("env"))) {
+                result.add(instance);
+            }
+        }
+        return result;
+    }
+
+    private static List<Instance> compiled(SelectorExpression expression, SelectorExpression.Context context,
+                                           List<Instance> providers) {
+        List<Instance> result = new ArrayList<>();
+        for (Instance instance : providers) {
+            if (expression.test(context, instance)) {
+                result.add(instance);
+            }
+        }
+        return result;
+    }
+}
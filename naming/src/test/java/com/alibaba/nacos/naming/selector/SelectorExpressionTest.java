@@ -0,0 +1,100 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.nacos.naming.selector;
+
+import com.alibaba.nacos.naming.core.Instance;
+import com.alibaba.nacos.naming.exception.NacosException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author nacos
+ */
+public class SelectorExpressionTest {
+
+    private final Map<String, String> consumerLabels = new HashMap<>();
+
+    private final Map<String, Map<String, String>> providerLabels = new HashMap<>();
+
+    private final SelectorExpression.Context context = new SelectorExpression.Context() {
+        @Override
+        public String getConsumerLabel(String name) {
+            return consumerLabels.get(name);
+        }
+
+        @Override
+        public String getProviderLabel(Instance provider, String name) {
+            Map<String, String> labels = providerLabels.get(provider.getIp());
+            return labels == null ? null : labels.get(name);
+        }
+    };
+
+    @Test
+    public void testEqualChain() throws NacosException {
+        SelectorExpression expression =
+            SelectorExpression.compile("CONSUMER.label.A=PROVIDER.label.A &CONSUMER.label.B=PROVIDER.label.B");
+        Assert.assertEquals(Arrays.asList("A", "B"), expression.getConsumerLabels());
+        Assert.assertNotNull(expression.getEqualLabels());
+        Assert.assertEquals(2, expression.getEqualLabels().size());
+
+        consumerLabels.put("A", "a1");
+        Assert.assertTrue(expression.test(context, provider("1.1.1.1", "A", "a1")));
+        Assert.assertFalse(expression.test(context, provider("1.1.1.2", "A", "a2")));
+    }
+
+    @Test
+    public void testBooleanOperators() throws NacosException {
+        SelectorExpression expression = SelectorExpression.compile(
+            "(CONSUMER.label.site = PROVIDER.label.site OR PROVIDER.label.role == 'gateway') "
+                + "and not PROVIDER.metadata.env in ('test', 'dev')");
+        Assert.assertNull(expression.getEqualLabels());
+
+        consumerLabels.put("site", "hz");
+        Instance sameSite = provider("1.1.1.1", "site", "hz");
+        Instance gateway = provider("1.1.1.2", "role", "gateway");
+        Instance otherSite = provider("1.1.1.3", "site", "sh");
+        Instance testEnv = provider("1.1.1.4", "site", "hz");
+        testEnv.addMetadata("env", "test");
+
+        Assert.assertTrue(expression.test(context, sameSite));
+        Assert.assertTrue(expression.test(context, gateway));
+        Assert.assertFalse(expression.test(context, otherSite));
+        Assert.assertFalse(expression.test(context, testEnv));
+    }
+
+    @Test(expected = NacosException.class)
+    public void testInvalidExpression() throws NacosException {
+        SelectorExpression.compile("CONSUMER.label.A = ");
+    }
+
+    @Test(expected = NacosException.class)
+    public void testInvalidReference() throws NacosException {
+        SelectorExpression.compile("CONSUMER.labels.A = PROVIDER.label.A");
+    }
+
+    private Instance provider(String ip, String label, String value) {
+        Instance instance = new Instance(ip, 8080);
+        instance.setMetadata(new HashMap<String, String>(16));
+        Map<String, String> labels = new HashMap<>(16);
+        labels.put(label, value);
+        providerLabels.put(ip, labels);
+        return instance;
+    }
+}